@@ -0,0 +1,39 @@
+package com.capstone.civilify.DTO;
+
+import com.capstone.civilify.util.KnowledgeBaseEntryReader;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Body of a KB {@code /chat} response: {@code {"answer": "...", "sources": [entry, ...]}}.
+ */
+@JsonDeserialize(using = KnowledgeBaseChatPayload.Decoder.class)
+public record KnowledgeBaseChatPayload(String answer, List<KnowledgeBaseEntry> sources) {
+
+    public static final class Decoder extends JsonDeserializer<KnowledgeBaseChatPayload> {
+        @Override
+        public KnowledgeBaseChatPayload deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            String answer = null;
+            List<KnowledgeBaseEntry> sources = new ArrayList<>();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("answer".equals(field) && value == JsonToken.VALUE_STRING) {
+                    answer = p.getText();
+                } else if ("sources".equals(field)) {
+                    sources = KnowledgeBaseEntryReader.readArray(p);
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return new KnowledgeBaseChatPayload(answer, sources);
+        }
+    }
+}
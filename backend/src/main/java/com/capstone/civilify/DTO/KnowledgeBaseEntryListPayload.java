@@ -0,0 +1,41 @@
+package com.capstone.civilify.DTO;
+
+import com.capstone.civilify.util.KnowledgeBaseEntryReader;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Body of a KB entry listing or bulk fetch. The entries are read from {@code entries},
+ * else {@code data}, else {@code results}, whichever the endpoint uses.
+ */
+@JsonDeserialize(using = KnowledgeBaseEntryListPayload.Decoder.class)
+public record KnowledgeBaseEntryListPayload(List<KnowledgeBaseEntry> entries) {
+
+    public static final class Decoder extends JsonDeserializer<KnowledgeBaseEntryListPayload> {
+        @Override
+        public KnowledgeBaseEntryListPayload deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            List<KnowledgeBaseEntry> entries = null;
+            List<KnowledgeBaseEntry> data = null;
+            List<KnowledgeBaseEntry> results = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "entries" -> entries = KnowledgeBaseEntryReader.readArray(p);
+                    case "data" -> data = KnowledgeBaseEntryReader.readArray(p);
+                    case "results" -> results = KnowledgeBaseEntryReader.readArray(p);
+                    default -> p.skipChildren();
+                }
+            }
+            List<KnowledgeBaseEntry> listed = entries != null ? entries : data != null ? data : results;
+            return new KnowledgeBaseEntryListPayload(listed != null ? listed : new ArrayList<>());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.capstone.civilify.DTO;
+
+import com.capstone.civilify.util.KnowledgeBaseEntryReader;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.io.IOException;
+
+/**
+ * Body of a KB {@code /kb/entries/{id}} response, either {@code {"success": true, "entry": {...}}}
+ * or the entry object itself.
+ */
+@JsonDeserialize(using = KnowledgeBaseEntryPayload.Decoder.class)
+public record KnowledgeBaseEntryPayload(KnowledgeBaseEntry entry) {
+
+    public static final class Decoder extends JsonDeserializer<KnowledgeBaseEntryPayload> {
+        @Override
+        public KnowledgeBaseEntryPayload deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            return new KnowledgeBaseEntryPayload(KnowledgeBaseEntryReader.read(p, true));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.capstone.civilify.DTO;
+
+import com.capstone.civilify.util.KnowledgeBaseEntryReader;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Body of a KB {@code /kb/search} response: {@code {"success": true, "results": [entry, ...]}}.
+ */
+@JsonDeserialize(using = KnowledgeBaseSearchPayload.Decoder.class)
+public record KnowledgeBaseSearchPayload(boolean success, List<KnowledgeBaseEntry> results) {
+
+    public static final class Decoder extends JsonDeserializer<KnowledgeBaseSearchPayload> {
+        @Override
+        public KnowledgeBaseSearchPayload deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            boolean success = false;
+            List<KnowledgeBaseEntry> results = new ArrayList<>();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (field) {
+                    case "success" -> success = value == JsonToken.VALUE_TRUE;
+                    case "results" -> results = KnowledgeBaseEntryReader.readArray(p);
+                    default -> p.skipChildren();
+                }
+            }
+            return new KnowledgeBaseSearchPayload(success, results);
+        }
+    }
+}
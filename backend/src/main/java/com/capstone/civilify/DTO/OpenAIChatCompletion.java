@@ -0,0 +1,71 @@
+package com.capstone.civilify.DTO;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.io.IOException;
+
+/**
+ * Text of an OpenAI chat completion, or of one streamed completion chunk.
+ *
+ * Only the first choice is read: {@code delta.content} for streamed chunks and
+ * {@code message.content} for complete responses. Everything else in the payload is
+ * skipped on the token stream without being materialized.
+ *
+ * @param content The generated text, or null when the payload carried none
+ */
+@JsonDeserialize(using = OpenAIChatCompletion.Decoder.class)
+public record OpenAIChatCompletion(String content) {
+
+    public static final class Decoder extends JsonDeserializer<OpenAIChatCompletion> {
+        @Override
+        public OpenAIChatCompletion deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            StringBuilder content = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                if (p.nextToken() == JsonToken.START_ARRAY && "choices".equals(field)) {
+                    boolean first = true;
+                    JsonToken token;
+                    while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+                        if (first && token == JsonToken.START_OBJECT) {
+                            content = readChoice(p);
+                        } else {
+                            p.skipChildren();
+                        }
+                        first = false;
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return new OpenAIChatCompletion(content != null ? content.toString() : null);
+        }
+
+        // delta.content then message.content of one choice; null when the choice carries no content string
+        private static StringBuilder readChoice(JsonParser p) throws IOException {
+            StringBuilder content = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                if (p.nextToken() == JsonToken.START_OBJECT && ("delta".equals(field) || "message".equals(field))) {
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String inner = p.currentName();
+                        if (p.nextToken() == JsonToken.VALUE_STRING && "content".equals(inner)) {
+                            if (content == null) {
+                                content = new StringBuilder();
+                            }
+                            content.append(p.getText());
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return content;
+        }
+    }
+}
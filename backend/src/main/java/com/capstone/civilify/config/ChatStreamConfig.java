@@ -0,0 +1,34 @@
+package com.capstone.civilify.config;
+
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Worker pool for streamed chat exchanges. Each SSE stream holds a worker for the whole
+ * generation, so the pool is sized separately from the servlet threads.
+ */
+@Configuration
+public class ChatStreamConfig {
+
+    @Value("${openai.stream.threads:16}")
+    private int threads;
+
+    @Value("${openai.stream.queue:64}")
+    private int queueCapacity;
+
+    @Bean(name = "chatStreamExecutor")
+    public Executor chatStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("chat-stream-");
+        executor.setDaemon(true);
+        executor.initialize();
+        return executor;
+    }
+}
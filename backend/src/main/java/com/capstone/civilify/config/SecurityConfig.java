@@ -114,8 +114,8 @@ public class SecurityConfig {
         // Set max age for preflight requests (1 hour)
         configuration.setMaxAge(3600L);
         
-        // Set exposed headers - explicitly expose the Authorization header
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        // Set exposed headers - explicitly expose the Authorization header and the page cursor
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "X-Next-Cursor"));
         
         // Set max age for CORS preflight requests (in seconds) - 1 hour
         configuration.setMaxAge(3600L);
@@ -3,6 +3,8 @@ package com.capstone.civilify.controller;
 import com.capstone.civilify.model.ChatConversation;
 import com.capstone.civilify.model.ChatMessage;
 import com.capstone.civilify.service.ChatService;
+import com.capstone.civilify.service.ChatWriteBehindQueue.WriteRejectedException;
+import com.capstone.civilify.util.FutureAdapters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 // ExecutionException import removed as it's not being used
 
 @RestController
@@ -23,6 +26,9 @@ public class ChatController {
     @Autowired
     private ChatService chatService;
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
     // Create a new conversation
     @PostMapping("/conversations")
     public ResponseEntity<?> createConversation(@RequestBody Map<String, String> request) {
@@ -47,33 +53,34 @@ public class ChatController {
         }
     }
 
-    // Get all conversations for a user
+    // Get all conversations for a user, or one page of them when limit/cursor is given
     @GetMapping("/conversations/user/{email}")
-    public ResponseEntity<?> getUserConversations(@PathVariable String email) {
+    public CompletableFuture<ResponseEntity<?>> getUserConversations(@PathVariable String email,
+                                                                     @RequestParam(required = false) Integer limit,
+                                                                     @RequestParam(required = false) String cursor) {
         try {
-            List<ChatConversation> conversations = chatService.getUserConversations(email);
-            return ResponseEntity.ok(conversations);
-        } catch (Exception e) {
-            logger.error("Error getting user conversations", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(createErrorResponse("Error getting user conversations: " + e.getMessage()));
+            CompletableFuture<ResponseEntity<?>> response;
+            if (limit != null || cursor != null) {
+                response = chatService.getUserConversationsAsync(email, pageLimit(limit), cursor).thenApply(this::pageResponse);
+            } else {
+                response = chatService.getUserConversationsAsync(email).thenApply(conversations -> ResponseEntity.ok(conversations));
+            }
+            return withErrorHandling(response, "Error getting user conversations");
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(createErrorResponse(e.getMessage())));
         }
     }
 
     // Get a specific conversation
     @GetMapping("/conversations/{id}")
-    public ResponseEntity<?> getConversation(@PathVariable String id) {
-        try {
-            ChatConversation conversation = chatService.getConversation(id);
+    public CompletableFuture<ResponseEntity<?>> getConversation(@PathVariable String id) {
+        CompletableFuture<ResponseEntity<?>> response = chatService.getConversationAsync(id).thenApply(conversation -> {
             if (conversation == null) {
                 return ResponseEntity.notFound().build();
             }
             return ResponseEntity.ok(conversation);
-        } catch (Exception e) {
-            logger.error("Error getting conversation", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(createErrorResponse("Error getting conversation: " + e.getMessage()));
-        }
+        });
+        return withErrorHandling(response, "Error getting conversation");
     }
 
     // Update conversation details
@@ -115,6 +122,11 @@ public class ChatController {
             );
 
             return ResponseEntity.ok(message);
+        } catch (WriteRejectedException e) {
+            logger.warn("Message not added: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "1")
+                    .body(createErrorResponse(e.getMessage()));
         } catch (Exception e) {
             logger.error("Error adding message", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -122,16 +134,22 @@ public class ChatController {
         }
     }
 
-    // Get all messages for a conversation
+    // Get all messages for a conversation, or one page when limit/cursor is given: the latest
+    // messages first, X-Next-Cursor pages back through older ones
     @GetMapping("/conversations/{id}/messages")
-    public ResponseEntity<?> getConversationMessages(@PathVariable String id) {
+    public CompletableFuture<ResponseEntity<?>> getConversationMessages(@PathVariable String id,
+                                                                        @RequestParam(required = false) Integer limit,
+                                                                        @RequestParam(required = false) String cursor) {
         try {
-            List<ChatMessage> messages = chatService.getConversationMessages(id);
-            return ResponseEntity.ok(messages);
-        } catch (Exception e) {
-            logger.error("Error getting conversation messages", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(createErrorResponse("Error getting conversation messages: " + e.getMessage()));
+            CompletableFuture<ResponseEntity<?>> response;
+            if (limit != null || cursor != null) {
+                response = chatService.getConversationMessagesPageAsync(id, pageLimit(limit), cursor).thenApply(this::pageResponse);
+            } else {
+                response = chatService.getConversationMessagesAsync(id).thenApply(messages -> ResponseEntity.ok(messages));
+            }
+            return withErrorHandling(response, "Error getting conversation messages");
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(createErrorResponse(e.getMessage())));
         }
     }
 
@@ -179,16 +197,21 @@ public class ChatController {
         }
     }
 
-    // Get conversations by status
+    // Get conversations by status, or one page of them when limit/cursor is given
     @GetMapping("/conversations/status/{status}")
-    public ResponseEntity<?> getConversationsByStatus(@PathVariable String status) {
+    public CompletableFuture<ResponseEntity<?>> getConversationsByStatus(@PathVariable String status,
+                                                                         @RequestParam(required = false) Integer limit,
+                                                                         @RequestParam(required = false) String cursor) {
         try {
-            List<ChatConversation> conversations = chatService.getConversationsByStatus(status);
-            return ResponseEntity.ok(conversations);
-        } catch (Exception e) {
-            logger.error("Error getting conversations by status", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(createErrorResponse("Error getting conversations by status: " + e.getMessage()));
+            CompletableFuture<ResponseEntity<?>> response;
+            if (limit != null || cursor != null) {
+                response = chatService.getConversationsByStatusAsync(status, pageLimit(limit), cursor).thenApply(this::pageResponse);
+            } else {
+                response = chatService.getConversationsByStatusAsync(status).thenApply(conversations -> ResponseEntity.ok(conversations));
+            }
+            return withErrorHandling(response, "Error getting conversations by status");
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(createErrorResponse(e.getMessage())));
         }
     }
 
@@ -214,6 +237,32 @@ public class ChatController {
         }
     }
     
+    // Page items as the body (same shape as the unpaged response), the next cursor as a header
+    private ResponseEntity<?> pageResponse(ChatService.Page<?> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
+    }
+    
+    private static int pageLimit(Integer limit) {
+        return limit != null ? limit : DEFAULT_PAGE_SIZE;
+    }
+    
+    // Maps a failed read to the same error responses the blocking endpoints returned
+    private CompletableFuture<ResponseEntity<?>> withErrorHandling(CompletableFuture<ResponseEntity<?>> response, String errorMessage) {
+        return response.exceptionally(t -> {
+            Throwable cause = FutureAdapters.unwrap(t);
+            if (cause instanceof IllegalArgumentException) {
+                return ResponseEntity.badRequest().body(createErrorResponse(cause.getMessage()));
+            }
+            logger.error(errorMessage, cause);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse(errorMessage + ": " + cause.getMessage()));
+        });
+    }
+    
     // Helper method to create error response
     private Map<String, Object> createErrorResponse(String message) {
         Map<String, Object> errorResponse = new HashMap<>();
@@ -202,6 +202,23 @@ public class KnowledgeBaseController {
         }
     }
     
+    /**
+     * Runtime metrics for the knowledge base client (caches, request coalescing, auth negotiation, HTTP pool, local replica, circuit breaker, hedging).
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<?> metrics() {
+        java.util.Map<String, Object> metrics = new java.util.LinkedHashMap<>();
+        metrics.put("caches", knowledgeBaseService.getCacheStats());
+        metrics.put("singleFlight", knowledgeBaseService.getSingleFlightStats());
+        metrics.put("auth", knowledgeBaseService.getAuthStats());
+        metrics.put("httpClient", knowledgeBaseService.getHttpClientStats());
+        metrics.put("replica", knowledgeBaseService.getReplicaStats());
+        metrics.put("circuitBreaker", knowledgeBaseService.getCircuitBreakerStats());
+        metrics.put("hedging", knowledgeBaseService.getHedgeStats());
+        metrics.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(metrics);
+    }
+    
     private String extractToken(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
@@ -2,20 +2,39 @@ package com.capstone.civilify.controller;
 
 import com.capstone.civilify.model.ChatConversation;
 import com.capstone.civilify.model.ChatMessage;
+import com.capstone.civilify.service.CannedResponseEngine;
 import com.capstone.civilify.service.ChatService;
+import com.capstone.civilify.service.ConversationContextManager;
+import com.capstone.civilify.service.ConversationDeletionService;
+import com.capstone.civilify.service.GliAnswerCache;
+import com.capstone.civilify.service.OpenAIAdmissionController;
+import com.capstone.civilify.service.OpenAIAdmissionController.AdmissionRejectedException;
 import com.capstone.civilify.service.OpenAIService;
+import com.capstone.civilify.service.PromptLibrary;
 import com.capstone.civilify.service.KnowledgeBaseService;
+import com.capstone.civilify.util.CpaReportTurnPredictor;
 import com.capstone.civilify.util.KnowledgeBaseSkipClassifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @RestController
@@ -32,9 +51,55 @@ public class OpenAIController {
     @Autowired
     private KnowledgeBaseSkipClassifier kbSkipClassifier;
     
+    @Autowired
+    private CpaReportTurnPredictor reportTurnPredictor;
+    
+    @Autowired
+    private ConversationContextManager contextManager;
+    
+    @Autowired
+    private PromptLibrary promptLibrary;
+    
+    @Autowired
+    private GliAnswerCache answerCache;
+    
+    @Autowired
+    private CannedResponseEngine cannedResponses;
+    
+    @Autowired
+    private ConversationDeletionService conversationDeletion;
+    
+    @Autowired
+    @Qualifier("chatStreamExecutor")
+    private Executor chatStreamExecutor;
+    
+    // Upper bound on one streamed chat exchange, including the KB stage
+    @Value("${openai.stream.timeout.ms:120000}")
+    private long streamTimeoutMs;
+    
+    // Prefetched KB hits below this similarity do not ground a report; the case facts are searched instead
+    @Value("${openai.cpa.prefetch.min-similarity:0.5}")
+    private double reportPrefetchMinSimilarity;
+    
+    private static final String VILLY_EMAIL = "villy@civilify.com";
+    
+    // Longest case-facts query sent to the KB when grounding a CPA report turn
+    private static final int MAX_FACTS_QUERY_CHARS = 500;
+    
+    private static final String GENERATION_ERROR_RESPONSE = "I apologize, but I'm experiencing technical difficulties. Please try again or consult with a licensed attorney for urgent matters.";
+    
+    // Stored after the part of a streamed answer that was delivered before the stream failed
+    private static final String INTERRUPTED_RESPONSE_NOTE = "\n\n[Response interrupted. Please ask again for the complete answer.]";
+    
+    private static final java.util.regex.Pattern PLAUSIBILITY_PATTERN = java.util.regex.Pattern.compile(
+        "Plausibility Score:\\s*\\d{1,3}%\\s*-\\s*([\\w\\s]+?)(?=\\.|\\n|$)(?:[\\.:\\-\\s]*)([^\n]*)",
+        java.util.regex.Pattern.CASE_INSENSITIVE
+    );
+    
     // CPA structured facts feature removed
     
-    // Endpoint to delete all previous conversations for a user
+    // Endpoint to delete all previous conversations for a user; the deletion runs as a
+    // background job whose progress is served by the status endpoint below
     @PostMapping("/delete-previous-conversations")
     public ResponseEntity<?> deleteAllPreviousConversations(@RequestBody Map<String, String> request) {
         try {
@@ -45,30 +110,34 @@ public class OpenAIController {
                 logger.warn("No user email provided for deleting conversations");
                 return ResponseEntity.badRequest().body(createErrorResponse("User email is required"));
             }
+            if (excludeConversationId != null && excludeConversationId.trim().isEmpty()) {
+                excludeConversationId = null;
+            }
             
             // First check if the user has any conversations to delete
             boolean hasConversations = chatService.userHasConversations(userEmail);
             
-            // Only proceed with deletion if conversations exist
-            int deletedCount = 0;
-            if (hasConversations) {
-                if (excludeConversationId != null && !excludeConversationId.trim().isEmpty()) {
-                    deletedCount = chatService.deleteAllUserConversationsExcept(userEmail, excludeConversationId);
-                } else {
-                    deletedCount = chatService.deleteAllUserConversations(userEmail);
-                }
-                logger.info("Deleted {} previous conversations for user: {} (excluding {})", deletedCount, userEmail, excludeConversationId);
-            } else {
-                logger.info("No conversations found to delete for user: {}", userEmail);
-            }
-            
             Map<String, Object> responseBody = new HashMap<>();
             responseBody.put("success", true);
-            responseBody.put("message", deletedCount > 0 ? "Successfully deleted previous conversations" : "No conversations found to delete");
-            responseBody.put("deletedCount", deletedCount);
             responseBody.put("conversationsExisted", hasConversations);
             
+            // Only start a deletion job if conversations exist
+            if (hasConversations) {
+                ConversationDeletionService.Job job = conversationDeletion.deleteUserConversations(userEmail, excludeConversationId);
+                responseBody.put("message", "Deleting previous conversations");
+                responseBody.put("jobId", job.getJobId());
+                responseBody.put("status", job.getStatus().name().toLowerCase());
+                return ResponseEntity.accepted().body(responseBody);
+            }
+            
+            logger.info("No conversations found to delete for user: {}", userEmail);
+            responseBody.put("message", "No conversations found to delete");
+            responseBody.put("deletedCount", 0);
             return ResponseEntity.ok(responseBody);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Conversation deletion rejected: too many jobs queued");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(createErrorResponse("Too many deletions in progress, please try again later"));
         } catch (Exception e) {
             logger.error("Error deleting previous conversations", e);
             return ResponseEntity.internalServerError()
@@ -76,6 +145,16 @@ public class OpenAIController {
         }
     }
     
+    // Progress of a conversation deletion job
+    @GetMapping("/delete-previous-conversations/{jobId}")
+    public ResponseEntity<?> getConversationDeletionStatus(@PathVariable String jobId) {
+        ConversationDeletionService.Job job = conversationDeletion.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(createErrorResponse("Unknown or expired deletion job"));
+        }
+        return ResponseEntity.ok(job.toMap());
+    }
+    
     @PostMapping("/chat")
     public ResponseEntity<?> generateChatResponse(@RequestBody Map<String, String> request) {
         try {
@@ -99,271 +178,94 @@ public class OpenAIController {
                 return ResponseEntity.badRequest().body(createErrorResponse("User email is required"));
             }
             
-            // Choose system prompt based on chat mode
-            String systemPrompt;
-            if (mode.equals("A")) {
-                // General Legal Information Mode
-                systemPrompt = "YOU ARE VILLY, CIVILIFY'S AI-POWERED LEGAL ASSISTANT.\n\n" +
-                    "ROLE: Answer ONLY general legal questions using Philippine law as default reference.\n\n" +
-                    "STRICT SCOPE:\n" +
-                    "- ONLY answer questions related to Philippine law, legal processes, rights, duties, and legal concepts\n" +
-                    "- DO NOT answer general knowledge questions (math, science, history, geography, etc.)\n" +
-                    "- DO NOT answer personal advice, medical, financial, or non-legal questions\n" +
-                    "- For non-legal questions: Politely redirect to legal topics ONLY\n" +
-                    "- Example redirect: \"I specialize in Philippine legal information. Please ask me about laws, legal processes, or legal rights instead.\"\n" +
-                    "- CRITICAL: When a user asks a non-legal question (like math, general knowledge, etc.), DO NOT answer it. Instead, redirect them to legal topics.\n" +
-                    "- If a user message contains both legal and non-legal questions, address ONLY the legal part and redirect the non-legal part.\n\n" +
-                    "BEHAVIOR FOR NON-LEGAL QUESTIONS:\n" +
-                    "- When you detect a non-legal question (math, science, history, general knowledge, etc.):\n" +
-                    "  1. DO NOT provide the answer to the non-legal question\n" +
-                    "  2. Politely redirect the user to legal topics\n" +
-                    "  3. Example: \"I specialize in Philippine legal information. I can't answer math or general knowledge questions, but I'm here to help with legal matters. Please ask me about laws, legal processes, or legal rights instead.\"\n" +
-                    "- If a message contains both legal and non-legal questions:\n" +
-                    "  1. Address ONLY the legal question\n" +
-                    "  2. Politely redirect the non-legal question without answering it\n" +
-                    "  3. Example: \"Regarding your legal question [address legal part]... As for your math question, I specialize in legal matters. Please ask me about laws or legal processes instead.\"\n\n" +
-                    "FORMATTING AND STYLE REQUIREMENTS:\n" +
-                    "- ALWAYS capitalize the first letter of sentences, including list items\n" +
-                    "- Ensure proper text alignment: all text should be left-aligned\n" +
-                    "- List items must start with a capital letter (e.g., \"**Historical Context**: The current...\" not \"**historical context**: the current...\")\n" +
-                    "- Maintain consistent formatting throughout your response\n" +
-                    "- Use proper paragraph spacing and list indentation\n" +
-                    "- Ensure all sentences, including those in lists, begin with uppercase letters\n\n" +
-                    "ABOUT CIVILIFY MODES (when asked):\n" +
-                    "Civilify offers TWO modes to assist users with Philippine legal matters:\n\n" +
-                    "1. **General Legal Information (GLI) Mode** - This mode (the current mode you're in):\n" +
-                    "   - Provides general legal information about Philippine laws, rights, and legal processes\n" +
-                    "   - Answers questions about legal concepts, procedures, and requirements\n" +
-                    "   - Offers educational legal information backed by authoritative sources\n" +
-                    "   - Best for: Learning about laws, understanding legal rights, researching legal topics\n\n" +
-                    "2. **Case Plausibility Assessment (CPA) Mode**:\n" +
-                    "   - Analyzes specific legal situations and provides plausibility assessments\n" +
-                    "   - Asks clarifying questions to gather case facts and details\n" +
-                    "   - Generates structured reports with plausibility scores and recommended next steps\n" +
-                    "   - Best for: Evaluating a specific legal situation, getting case-specific guidance\n\n" +
-                    "IMPORTANT: When explaining modes, be accurate and specific about what Civilify does.\n\n" +
-                    "RESPONSE FORMAT:\n" +
-                    "- Use clear headings, bullet points, and numbered lists\n" +
-                    "- Be concise but comprehensive\n" +
-                    "- Use plain language, avoid legalese\n" +
-                    "- Structure information logically (general to specific)\n" +
-                    "- Include actionable information when possible\n" +
-                    "- Use examples to clarify complex legal concepts\n\n" +
-                    "BEHAVIOR:\n" +
-                    "- For legal questions: Provide accurate, helpful information\n" +
-                    "- For mode explanation questions: Use the information provided above\n" +
-                    "- For non-legal questions: Redirect to legal topics without answering the original question\n" +
-                    "- Always be professional and respectful\n" +
-                    "- When uncertain: Acknowledge limitations and recommend consulting a licensed attorney\n\n" +
-                    "LIMITATIONS:\n" +
-                    "- Do not provide legal advice or representation\n" +
-                    "- Do not draft legal documents\n" +
-                    "- Do not connect users with lawyers\n" +
-                    "- Recommend consulting licensed attorneys for serious matters\n\n" +
-                    "SOURCES: Include relevant sources in your response using this format:\n" +
-                    "- [Source Title](URL)\n" +
-                    "- [Another Source](URL)\n" +
-                    "Do not include a 'Sources:' header - just list the links directly after your main content.\n" +
-                    "Only include sources that are relevant to the legal question asked.\n\n" +
-                    "You are Villy, created by Civilify to help with legal questions using Philippine law.";
-            } else {
-                // Case Plausibility Assessment Mode
-                systemPrompt = "You are Villy, Civilify's AI-powered legal assistant.\n\n" +
-                    "ROLE: Help users assess the plausibility of their legal cases under Philippine law.\n\n" +
-                    "STRICT SCOPE:\n" +
-                    "- ONLY help with legal cases, legal situations, and legal questions under Philippine law\n" +
-                    "- DO NOT answer general knowledge questions (math, science, history, geography, etc.)\n" +
-                    "- DO NOT answer personal advice, medical, financial, or non-legal questions\n" +
-                    "- For non-legal questions: Politely redirect to legal topics ONLY\n" +
-                    "- Example redirect: \"I specialize in helping assess legal cases under Philippine law. Please share details about your legal situation, or ask me about legal matters related to your case instead.\"\n" +
-                    "- CRITICAL: When a user asks a non-legal question (like math, general knowledge, etc.), DO NOT answer it. Instead, redirect them to legal topics.\n" +
-                    "- If a user message contains both legal and non-legal questions, address ONLY the legal part and redirect the non-legal part.\n\n" +
-                    "ABOUT CIVILIFY MODES (when asked):\n" +
-                    "Civilify offers TWO modes to assist users with Philippine legal matters:\n\n" +
-                    "1. **General Legal Information (GLI) Mode**:\n" +
-                    "   - Provides general legal information about Philippine laws, rights, and legal processes\n" +
-                    "   - Answers questions about legal concepts, procedures, and requirements\n" +
-                    "   - Offers educational legal information backed by authoritative sources\n" +
-                    "   - Best for: Learning about laws, understanding legal rights, researching legal topics\n\n" +
-                    "2. **Case Plausibility Assessment (CPA) Mode** - This mode (the current mode you're in):\n" +
-                    "   - Analyzes specific legal situations and provides plausibility assessments\n" +
-                    "   - Asks clarifying questions to gather case facts and details\n" +
-                    "   - Generates structured reports with plausibility scores and recommended next steps\n" +
-                    "   - Best for: Evaluating a specific legal situation, getting case-specific guidance\n\n" +
-                    "IMPORTANT: When explaining modes, be accurate and specific about what Civilify does.\n\n" +
-                    "CRITICAL - WHEN TO USE CONVERSATIONAL RESPONSES (NOT REPORTS):\n" +
-                    "- Questions about Civilify's features, modes, or capabilities: Answer conversationally, DO NOT generate a report\n" +
-                    "- Questions about how to use the system: Answer conversationally, DO NOT generate a report\n" +
-                    "- Greetings or general chitchat: Respond conversationally, DO NOT generate a report\n" +
-                    "- Questions about what you can do: Answer conversationally, DO NOT generate a report\n" +
-                    "- Non-legal questions (math, science, general knowledge): Redirect to legal topics, DO NOT answer them\n" +
-                    "- ONLY generate structured assessment reports when analyzing ACTUAL LEGAL CASES with specific facts\n\n" +
-                    "CONVERSATION FLOW:\n" +
-                    "- Always respond with helpful, relevant questions or information\n" +
-                    "- Ask one meaningful follow-up question at a time to clarify facts\n" +
-                    "- Be empathetic and supportive, especially for serious legal matters\n" +
-                    "- NEVER leave responses blank or empty\n" +
-                    "- If uncertain, ask clarifying questions rather than staying silent\n" +
-                    "- For mode explanation questions: Use the information provided above in a conversational manner\n" +
-                    "- For non-legal questions: Politely redirect without answering the question\n\n" +
-                    "BEHAVIOR FOR NON-LEGAL QUESTIONS:\n" +
-                    "- When you detect a non-legal question (math, science, history, general knowledge, etc.):\n" +
-                    "  1. DO NOT provide the answer to the non-legal question\n" +
-                    "  2. Politely redirect the user to legal topics\n" +
-                    "  3. Example: \"I specialize in helping assess legal cases under Philippine law. I can't answer math or general knowledge questions, but I'm here to help with your legal situation. Please share details about your legal case, or ask me about legal matters instead.\"\n" +
-                    "- If a message contains both legal and non-legal questions:\n" +
-                    "  1. Address ONLY the legal question\n" +
-                    "  2. Politely redirect the non-legal question without answering it\n" +
-                    "  3. Example: \"Regarding your legal situation [address legal part]... As for your math question, I specialize in legal matters. Please focus on your legal case instead.\"\n\n" +
-                    "ASSESSMENT PROCESS (ONLY for actual legal cases with specific facts):\n" +
-                    "- Gather key facts: what happened, where, when, who was involved\n" +
-                    "- Understand the user's goal: file a case, defend against charges, etc.\n" +
-                    "- Ask about legal documents: subpoenas, complaints, police reports\n" +
-                    "- When you have enough information about an ACTUAL CASE, provide a structured assessment\n\n" +
-                    "ASSESSMENT FORMAT (STRICT STRUCTURE - Follow exactly):\n" +
-                    "Case Summary:\n[Brief summary of the situation in a single paragraph. No bullet points, no markdown bold markers, just plain text.]\n\n" +
-                    "Legal Issues or Concerns:\n- [First key legal issue identified - no markdown bold markers]\n" +
-                    "- [Second key legal issue identified - no markdown bold markers]\n" +
-                    "- [Additional issues if applicable - no markdown bold markers]\n\n" +
-                    "Plausibility Score: [X]% - [Label]\n" +
-                    "[Label should be descriptive like 'Moderately Strong', 'Weak', 'Very Strong', 'Highly Likely', etc. No markdown bold markers.]\n\n" +
-                    "Suggested Next Steps:\n" +
-                    "1. **Step Label:** [Detailed description of the step - ONLY the label should be bold with **]\n" +
-                    "2. **Step Label:** [Detailed description of the step - ONLY the label should be bold with **]\n" +
-                    "3. **Step Label:** [Detailed description of the step - ONLY the label should be bold with **]\n" +
-                    "[Continue with numbered list, each with bold label using **Label:** format]\n\n" +
-                    "DISCLAIMER: This is a legal pre-assessment only. Please consult a licensed lawyer, especially if your situation is urgent. [Optional: Add a follow-up question if relevant]\n\n" +
-                    "FORMATTING RULES:\n" +
-                    "- Section headings (Case Summary, Legal Issues or Concerns, Plausibility Score, Suggested Next Steps, DISCLAIMER) should be plain text with colon, NO markdown bold (**)\n" +
-                    "- Case Summary must be a single paragraph, no bullets, no markdown bold markers\n" +
-                    "- Legal Issues or Concerns must use bullet points (-), no markdown bold markers in the content\n" +
-                    "- Plausibility Score must be on its own line with plain heading, followed by percentage and label (no markdown bold)\n" +
-                    "- Suggested Next Steps must be a numbered list (1., 2., 3., etc.)\n" +
-                    "- Each step in Suggested Next Steps must have a bold label using **Label:** format (ONLY the label should be bold)\n" +
-                    "- DISCLAIMER must be plain text with colon (no markdown bold), followed by the disclaimer text\n" +
-                    "- Use proper spacing between sections (blank line between each major section)\n" +
-                    "- DO NOT use ** for section headings - the frontend will style them automatically\n" +
-                    "- ONLY use ** for step labels within Suggested Next Steps\n\n" +
-                    "IMPORTANT: Always provide a response. Never leave the user without guidance or next steps.";
-            }
-            
-            // Get or create conversation
-            ChatConversation conversation = null;
-            List<ChatMessage> conversationMessages = new ArrayList<>();
-            
-            if (conversationId != null && !conversationId.isEmpty()) {
-                // Get existing conversation
-                try {
-                    conversation = chatService.getConversation(conversationId);
-                    if (conversation != null) {
-                        conversationMessages = chatService.getConversationMessages(conversationId);
-                        logger.info("Retrieved existing conversation with {} messages", conversationMessages.size());
-                    }
-                } catch (Exception e) {
-                    logger.warn("Could not retrieve conversation: {}", e.getMessage());
-                }
-            }
-            
-            if (conversation == null) {
-                // Create new conversation
-                String title = "Chat with Villy - " + (mode.equals("A") ? "General Assistance" : "Case Assessment");
-                conversation = chatService.createConversation(userId, userEmail, title);
-                logger.info("Created new conversation with ID: {}", conversation.getId());
-                conversationId = conversation.getId();
+            // Check if this is a meta/informational question about Civilify itself (should not trigger CPA report)
+            boolean isMetaQuestion = isMetaOrInformationalQuestion(userMessage);
+            if (isMetaQuestion) {
+                logger.info("CPA: Detected meta/informational question - will skip report generation");
             }
             
-            // Do NOT re-save the user message here to avoid duplicates; frontend already persists it
-            logger.info("Skipping backend user-message save to avoid duplicates (conversationId={})", conversationId);
+            // CPA: start the KB lookup for a possible report turn while the history loads
+            CompletableFuture<java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry>> reportPrefetch =
+                startReportPrefetch(userMessage, mode, isMetaQuestion);
             
-            // Prepare conversation history for OpenAI
-            List<Map<String, String>> conversationHistoryForAI = conversationMessages.stream()
-                .map(msg -> {
-                    Map<String, String> messageMap = new HashMap<>();
-                    messageMap.put("content", msg.getContent());
-                    messageMap.put("isUserMessage", String.valueOf(msg.isUserMessage()));
-                    return messageMap;
-                })
-                .collect(Collectors.toList());
+            // Get or create conversation and prepare its history for OpenAI
+            ChatContext context = prepareConversation(conversationId, userId, userEmail, mode);
+            conversationId = context.conversationId();
+            List<Map<String, String>> conversationHistoryForAI = context.history();
             
-            // Limit conversation history for CPA mode to prevent context confusion
-            if ("B".equals(mode) && conversationHistoryForAI.size() > 8) {
-                logger.info("CPA: Limiting conversation history from {} to 8 messages", conversationHistoryForAI.size());
-                conversationHistoryForAI = conversationHistoryForAI.subList(
-                    Math.max(0, conversationHistoryForAI.size() - 8), 
-                    conversationHistoryForAI.size()
-                );
+            boolean likelyReport = predictReportTurn(userMessage, mode, isMetaQuestion, conversationHistoryForAI);
+            if (!likelyReport && reportPrefetch != null) {
+                // Not a report turn: stop waiting for the speculative search (it still warms the KB cache)
+                reportPrefetch.cancel(false);
             }
             
-            logger.info("Conversation history prepared: {} messages for conversation {}", 
-                conversationHistoryForAI.size(), conversationId);
-            
             // Classify query to determine if KB lookup is needed
-            boolean canSkipKB = kbSkipClassifier.canSkipKnowledgeBase(userMessage, mode, false);
-            String classificationReason = kbSkipClassifier.getClassificationReason(userMessage, mode, false);
+            KnowledgeBaseSkipClassifier.Category category = kbSkipClassifier.classify(userMessage, mode, likelyReport);
+            boolean canSkipKB = category.skipsKnowledgeBase();
+            String classificationReason = category.getReason();
             logger.info("KB Skip Classification: {} - Reason: {}", canSkipKB ? "SKIP KB" : "USE KB", classificationReason);
             
-            // Check if this is a meta/informational question about Civilify itself (should not trigger CPA report)
-            boolean isMetaQuestion = isMetaOrInformationalQuestion(userMessage);
-            if (isMetaQuestion) {
-                logger.info("CPA: Detected meta/informational question - will skip report generation");
+            // Small talk (greetings, thanks, "who are you") is answered locally without an OpenAI call
+            String cannedResponse = cannedResponses.respond(userMessage, mode, category, request.get("userName"));
+            
+            // Skip KB stages entirely while the KB circuit breaker is open (outage fast path)
+            boolean kbAvailable = isKnowledgeBaseAvailable();
+            if (!canSkipKB && !kbAvailable) {
+                logger.warn("KB circuit open - skipping KB stages for this request");
             }
             
             // Mode-aware KB usage
-            String primaryKbAnswer = null;
-            java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> kbSources = new java.util.ArrayList<>();
-
-            if ("A".equals(mode)) {
-                // GLI: Check if KB lookup can be skipped for faster response
-                if (canSkipKB) {
-                    logger.info("GLI: Skipping KB lookup - Query classified as: {}", classificationReason);
-                } else {
-                    // GLI: KB-first to gather context and sources for UI
-                    logger.info("GLI: Fetching KB for query requiring legal provisions");
-                    com.capstone.civilify.DTO.KnowledgeBaseChatResponse kbResponse =
-                        openAIService.getKnowledgeBaseService().chatWithKnowledgeBaseEnhanced(userMessage, mode);
-
-                    if (kbResponse != null && !kbResponse.hasError()) {
-                        primaryKbAnswer = kbResponse.getAnswer();
-                        if (kbResponse.getSources() != null) {
-                            kbSources.addAll(kbResponse.getSources());
-                        }
-                        logger.info("GLI: KB response obtained: answer length={}, sources count={}",
-                            primaryKbAnswer != null ? primaryKbAnswer.length() : 0, kbSources.size());
-                    } else {
-                        logger.warn("GLI: KB response failed or empty: {}", kbResponse != null ? kbResponse.getError() : "null response");
-                    }
-                }
-            } else {
-                // CPA: Do not call KB during conversational probing phase (performance + avoid blank responses)
-                logger.info("CPA: Skipping KB calls during conversational phase. Classification: {}", classificationReason);
+            KbContext kbContext = fetchKnowledgeContext(userMessage, mode, canSkipKB, classificationReason, kbAvailable);
+            String primaryKbAnswer = kbContext.primaryAnswer();
+            java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> kbSources = kbContext.sources();
+            
+            // CPA: ground a predicted report turn up front so the report is generated once
+            if (likelyReport && kbAvailable) {
+                kbSources = groundReportTurn(userMessage, conversationHistoryForAI, reportPrefetch);
             }
+            boolean groundedReport = likelyReport && !kbSources.isEmpty();
 
-            // Step 2: Generate enhanced AI response with KB context (GLI may include KB context; CPA will pass nulls here)
-            String enhancedSystemPrompt = buildEnhancedSystemPrompt(systemPrompt, primaryKbAnswer, kbSources, mode);
+            // GLI: reuse the answer to the same (or a reworded) standalone question on the same KB entries
+            boolean gliCacheable = "A".equals(mode) && !canSkipKB;
+            java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> answerSources =
+                gliCacheable ? new java.util.ArrayList<>(kbSources) : null;
+            String aiResponse = gliCacheable ? answerCache.lookup(userMessage, answerSources) : cannedResponse;
+            boolean answeredFromCache = gliCacheable && aiResponse != null;
             
-            String aiResponse;
-            try {
-                aiResponse = openAIService.generateResponse(
-                    userMessage,
-                    enhancedSystemPrompt,
-                    conversationHistoryForAI,
-                    mode
-                );
-                logger.info("Enhanced AI response generated with mode {} using KB context. Response length: {}", 
-                    mode, aiResponse != null ? aiResponse.length() : 0);
-            } catch (Exception e) {
-                logger.error("Error generating AI response: {}", e.getMessage(), e);
-                aiResponse = "I apologize, but I'm experiencing technical difficulties. Please try again or consult with a licensed attorney for urgent matters.";
+            if (aiResponse == null) {
+                // Step 2: Generate enhanced AI response with KB context (GLI answer + sources; CPA report turns sources only)
+                String enhancedSystemPrompt = promptLibrary.systemPrompt(mode, primaryKbAnswer, kbSources);
+                ConversationContextManager.ContextWindow contextWindow = contextManager.fit(
+                    context.conversation(), conversationHistoryForAI, context.earlierMessages(), enhancedSystemPrompt, userMessage, mode);
+            
+                try {
+                    aiResponse = openAIService.generateResponse(
+                        userMessage,
+                        contextWindow.systemPrompt(),
+                        contextWindow.history(),
+                        mode,
+                        generationPriority(likelyReport),
+                        canSkipKB
+                    );
+                    logger.info("Enhanced AI response generated with mode {} using KB context. Response length: {}", 
+                        mode, aiResponse != null ? aiResponse.length() : 0);
+                } catch (AdmissionRejectedException e) {
+                    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                        .body(createBusyResponse(e));
+                } catch (Exception e) {
+                    logger.error("Error generating AI response: {}", e.getMessage(), e);
+                    aiResponse = GENERATION_ERROR_RESPONSE;
+                }
+                if (gliCacheable && isGeneratedAnswer(aiResponse)) {
+                    answerCache.store(userMessage, answerSources, aiResponse);
+                }
             }
             
             // Handle blank responses - provide fallback
             if (aiResponse == null || aiResponse.trim().isEmpty()) {
                 logger.warn("AI generated blank response, providing fallback");
-                if ("B".equals(mode)) {
-                    aiResponse = "I understand you're going through a difficult situation. Could you please provide more details about your case so I can better assist you? For urgent legal matters, I recommend consulting with a licensed attorney immediately.";
-                } else {
-                    aiResponse = "I apologize, but I'm having trouble processing your request right now. Please try rephrasing your question or ask about Philippine legal matters.";
-                }
+                aiResponse = blankResponseFallback(mode);
             }
 
             // GLI: Allow AI to include sources as instructed in system prompt
@@ -374,36 +276,8 @@ public class OpenAIController {
             // CPA structured facts/report generation removed
             
             // Step 3: Source enrichment rules per mode
-            if ("A".equals(mode) && !canSkipKB) {
-                // GLI: Only attempt additional source enrichment if query requires KB
-                if (kbSources.isEmpty()) {
-                    logger.info("GLI: No sources from initial KB response, attempting additional search");
-                    int desiredLimit = computeDesiredSourceLimit(userMessage);
-                    java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> additionalKbEntries =
-                        openAIService.getKnowledgeBaseSources(userMessage, desiredLimit);
-                    if (additionalKbEntries != null) {
-                        kbSources.addAll(additionalKbEntries);
-                    }
-                    logger.info("GLI: Additional KB sources obtained: {}", kbSources.size());
-                }
-                
-                // If still no sources, try a broader search with keywords
-                if (kbSources.isEmpty()) {
-                    logger.info("GLI: Still no sources, attempting broader keyword search");
-                    String[] keywords = userMessage.toLowerCase().split("\\s+");
-                    for (String keyword : keywords) {
-                        if (keyword.length() > 3) { // Only search meaningful keywords
-                            int desiredLimit = computeDesiredSourceLimit(userMessage);
-                            java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> keywordResults =
-                                openAIService.getKnowledgeBaseSources(keyword, desiredLimit);
-                            if (keywordResults != null && !keywordResults.isEmpty()) {
-                                kbSources.addAll(keywordResults);
-                                logger.info("GLI: Found sources for keyword '{}': {}", keyword, keywordResults.size());
-                                break; // Stop at first successful keyword search
-                            }
-                        }
-                    }
-                }
+            if ("A".equals(mode) && !canSkipKB && kbAvailable) {
+                enrichGliSources(userMessage, kbSources);
             } else if ("A".equals(mode) && canSkipKB) {
                 logger.info("GLI: Skipping source enrichment for conversational query");
             }
@@ -412,6 +286,12 @@ public class OpenAIController {
             Map<String, Object> responseBody = new HashMap<>();
             responseBody.put("conversationId", conversationId);
             responseBody.put("success", true);
+            if (answeredFromCache) {
+                responseBody.put("fromCache", true);
+            }
+            if (cannedResponse != null) {
+                responseBody.put("canned", true);
+            }
 
             // Note: response and plausibility score will be set AFTER CPA report regeneration (if any)
             
@@ -421,143 +301,30 @@ public class OpenAIController {
                 if (isMetaQuestion) {
                     responseBody.put("isReport", false);
                     logger.info("CPA: Meta question detected - marking as non-report (conversational response)");
-                } else {
-                    // Check if response contains actual report structure
-                    boolean hasReportStructure = aiResponse != null && (
-                        aiResponse.contains("Case Summary:") || 
-                        aiResponse.contains("Plausibility Score:") ||
-                        aiResponse.contains("Legal Issues or Concerns:")
-                    );
-                    
-                    if (hasReportStructure) {
-                        responseBody.put("isReport", true);
+                } else if (hasReportStructure(aiResponse)) {
+                    responseBody.put("isReport", true);
                     // CPA: Fetch KB sources based on what's actually mentioned in the report
                     try {
-                        // NEW APPROACH: Extract citations/sources mentioned in the report response
-                        List<String> citationsFromReport = extractCitationsFromReport(aiResponse);
-                        logger.info("CPA: Extracted {} citations from report: {}", citationsFromReport.size(), citationsFromReport);
-                        
-                        java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> reportSources = new java.util.ArrayList<>();
-                        int desiredLimitForReport = computeDesiredSourceLimit(userMessage);
-                        
-                        // Query KB API for each citation found in the report
-                        if (!citationsFromReport.isEmpty()) {
-                            for (String citation : citationsFromReport) {
-                                logger.info("CPA: Querying KB API for citation: {}", citation);
-                                java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> citationSources =
-                                    openAIService.getKnowledgeBaseSources(citation, Math.max(2, desiredLimitForReport / citationsFromReport.size()));
-                                if (citationSources != null && !citationSources.isEmpty()) {
-                                    // Filter to only include sources that match the citation
-                                    for (com.capstone.civilify.DTO.KnowledgeBaseEntry source : citationSources) {
-                                        if (source != null && source.getEntryId() != null && 
-                                            (source.getCanonicalCitation() != null && source.getCanonicalCitation().contains(citation) ||
-                                             source.getTitle() != null && source.getTitle().toLowerCase().contains(citation.toLowerCase()))) {
-                                            reportSources.add(source);
-                                        }
-                                    }
-                                    logger.info("CPA: Found {} matching sources for citation: {}", citationSources.size(), citation);
-                                }
-                            }
-                        }
-                        
-                        // If no sources found from citations, query based on legal concepts mentioned in the report
-                        if (reportSources.isEmpty()) {
-                            logger.info("CPA: No sources from citations, querying based on report content");
-                            // Extract key legal terms from the actual report text (not just legal issues section)
-                            String reportQuery = extractLegalConceptsFromReport(aiResponse);
-                            if (reportQuery == null || reportQuery.isBlank()) {
-                                reportQuery = userMessage;
-                                }
-                            if (reportQuery != null && !reportQuery.isBlank()) {
-                                reportSources = openAIService.getKnowledgeBaseSources(reportQuery, desiredLimitForReport);
-                                logger.info("CPA: Report-based KB search completed, returned {} sources", reportSources != null ? reportSources.size() : 0);
-                            }
-                        }
-                        
-                        logger.info("CPA: Total KB sources found: {}", reportSources != null ? reportSources.size() : 0);
+                        kbSources = collectReportSources(aiResponse, userMessage, kbSources);
 
-                        if (reportSources != null && !reportSources.isEmpty()) {
-                            KnowledgeBaseService kbService = openAIService.getKnowledgeBaseService();
-                            if (kbService != null) {
-                                Map<String, Boolean> hydrationCache = new HashMap<>();
-                                for (com.capstone.civilify.DTO.KnowledgeBaseEntry entry : reportSources) {
-                                    if (entry == null) continue;
-                                    String entryId = entry.getEntryId();
-                                    if (entryId == null || entryId.trim().isEmpty()) {
-                                        logger.debug("CPA: KB entry missing entryId, skipping hydration. Title={}", entry.getTitle());
-                                        continue;
-                                    }
-                                    if (entry.getSourceUrls() != null && !entry.getSourceUrls().isEmpty()) {
-                                        continue;
-                                    }
-                                    Boolean attempted = hydrationCache.get(entryId);
-                                    if (attempted != null && !attempted) {
-                                        continue;
-                                    }
-                                    boolean hydrated = kbService.hydrateEntryDetails(entry);
-                                    hydrationCache.put(entryId, hydrated);
-                                    if (hydrated) {
-                                        int urlCount = entry.getSourceUrls() != null ? entry.getSourceUrls().size() : 0;
-                                        logger.info("CPA: Hydrated entry {} with {} URLs from KB detail endpoint", entryId, urlCount);
-                            } else {
-                                        logger.debug("CPA: Hydration attempt failed for entry {}", entryId);
-                            }
-                                }
-                        } else {
-                                logger.warn("CPA: KnowledgeBaseService unavailable for hydration");
-                            }
-                        }
-                        
-                        if (reportSources != null && !reportSources.isEmpty()) {
-                            // Make aiResponse effectively final for lambda
-                            final String finalAiResponse = aiResponse;
-                            
-                            // Validate that sources are from KB (must have entryId) and are relevant to the report
-                            List<com.capstone.civilify.DTO.KnowledgeBaseEntry> validReportSources = reportSources.stream()
-                                .filter(e -> e != null && e.getEntryId() != null && !e.getEntryId().trim().isEmpty())
-                                .filter(e -> e.getSourceUrls() != null && !e.getSourceUrls().isEmpty())
-                                .filter(e -> isSourceRelevantToReport(e, finalAiResponse)) // Filter to only include relevant sources
-                                .collect(Collectors.toList());
-                            
-                            logger.info("CPA: KB search returned {} sources, {} have valid entryIds", 
-                                reportSources.size(), validReportSources.size());
-                            
-                            for (com.capstone.civilify.DTO.KnowledgeBaseEntry e : validReportSources) {
-                                logger.debug("KB source: entryId={}, title={}, similarity={}, hasUrls={}", 
-                                    e.getEntryId(), e.getTitle(), e.getSimilarity(), 
-                                    e.getSourceUrls() != null && !e.getSourceUrls().isEmpty());
-                            }
-                            
-                            // Merge into kbSources without duplicates by entryId
-                            java.util.Map<String, com.capstone.civilify.DTO.KnowledgeBaseEntry> uniq = new java.util.LinkedHashMap<>();
-                            for (com.capstone.civilify.DTO.KnowledgeBaseEntry e : kbSources) {
-                                if (e != null && e.getEntryId() != null && !e.getEntryId().trim().isEmpty()) {
-                                    uniq.put(e.getEntryId(), e);
-                                }
-                            }
-                            for (com.capstone.civilify.DTO.KnowledgeBaseEntry e : validReportSources) {
-                                if (e.getEntryId() != null) {
-                                    uniq.put(e.getEntryId(), e);
-                                }
-                            }
-                            kbSources = new java.util.ArrayList<>(uniq.values());
-                            logger.info("CPA: KB sources fetched for report: {} unique sources (all with entryIds)", kbSources.size());
-                        } else {
-                            logger.warn("CPA: KB search returned null or empty sources");
-                        }
-
-                        if (kbSources != null && !kbSources.isEmpty()) {
-                        // Regenerate the report with KB context and strict source-citation instructions
-                        String reportPrompt = buildEnhancedSystemPrompt(systemPrompt, null, kbSources, mode);
-                        String regenerated = openAIService.generateResponse(
-                            userMessage,
-                            reportPrompt,
-                            conversationHistoryForAI,
-                            mode
-                        );
-                        if (regenerated != null && !regenerated.isBlank()) {
-                            aiResponse = regenerated;
-                            logger.info("CPA: Regenerated report with KB context and citations.");
+                        if (groundedReport) {
+                            // Single pass: the report was already generated on the prefetched KB context
+                            logger.info("CPA: Report generated in one grounded pass ({} KB sources)", kbSources.size());
+                        } else if (kbSources != null && !kbSources.isEmpty()) {
+                            // Unpredicted report: regenerate with KB context and strict source-citation instructions
+                            String reportPrompt = promptLibrary.systemPrompt(mode, null, kbSources);
+                            ConversationContextManager.ContextWindow reportWindow = contextManager.fit(
+                                context.conversation(), conversationHistoryForAI, context.earlierMessages(), reportPrompt, userMessage, mode);
+                            String regenerated = openAIService.generateResponse(
+                                userMessage,
+                                reportWindow.systemPrompt(),
+                                reportWindow.history(),
+                                mode,
+                                OpenAIAdmissionController.Priority.REPORT
+                            );
+                            if (regenerated != null && !regenerated.isBlank()) {
+                                aiResponse = regenerated;
+                                logger.info("CPA: Regenerated report with KB context and citations.");
                             }
                         } else {
                             logger.info("CPA: Skipping report regeneration - no KB sources available");
@@ -565,9 +332,13 @@ public class OpenAIController {
                     } catch (Exception ex) {
                         logger.warn("CPA: Failed fetching KB sources for report: {}", ex.getMessage());
                     }
-                    } else {
-                        responseBody.put("isReport", false);
-                        logger.info("CPA: No report structure detected - conversational response");
+                } else {
+                    responseBody.put("isReport", false);
+                    logger.info("CPA: No report structure detected - conversational response");
+                    if (likelyReport) {
+                        // Report prediction missed; prefetched context is not shown for a conversational turn
+                        logger.info("CPA: Predicted report turn answered conversationally");
+                        kbSources = new java.util.ArrayList<>();
                     }
                 }
             }
@@ -577,162 +348,739 @@ public class OpenAIController {
             
             // Extract plausibility score label and summary from the FINAL AI response (for mode B)
             // This must be done AFTER regeneration to get the correct score
-            String plausibilityLabel = null;
-            String plausibilitySummary = null;
-            if ("B".equals(mode) && aiResponse != null) {
-                // Regex to match: Plausibility Score: 60% - Moderate There is a moderate chance...
-                java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(
-                    "Plausibility Score:\\s*\\d{1,3}%\\s*-\\s*([\\w\\s]+?)(?=\\.|\\n|$)(?:[\\.:\\-\\s]*)([^\n]*)",
-                    java.util.regex.Pattern.CASE_INSENSITIVE
-                );
-                java.util.regex.Matcher matcher = pattern.matcher(aiResponse);
-                if (matcher.find()) {
-                    plausibilityLabel = matcher.group(1).trim();
-                    plausibilitySummary = matcher.group(2).trim();
-                    // Clean up: if summary is empty or just "Suggested Next Steps", set to null
-                    if (plausibilitySummary.isEmpty() || plausibilitySummary.toLowerCase().contains("suggested next steps")) {
-                        plausibilitySummary = null;
+            responseBody.putAll(extractPlausibility(aiResponse, mode));
+            
+            // Prepare sources list for response (after CPA report generation to include KB sources)
+            java.util.List<java.util.Map<String, Object>> sources = buildSourcesPayload(userMessage, aiResponse, mode, kbSources);
+            
+            // Add sources to response body
+            responseBody.put("sources", sources);
+            responseBody.put("hasKnowledgeBaseContext", !sources.isEmpty());
+
+            // Now persist the final AI response (original or regenerated)
+            ChatMessage aiChatMessage = chatService.addMessage(
+                conversationId, null, VILLY_EMAIL, aiResponse, false);
+            logger.info("Added AI response to conversation: {}", aiChatMessage.getId());
+
+            return ResponseEntity.ok(responseBody);
+        } catch (Exception e) {
+            logger.error("Error generating AI response", e);
+            return ResponseEntity.internalServerError()
+                    .body(createErrorResponse("Error generating AI response: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * Streaming variant of {@code /chat}: OpenAI deltas are forwarded to the browser as
+     * server-sent events while they are generated.
+     * 
+     * Events, in order: {@code meta} (conversationId), any number of {@code delta} (text chunk),
+     * then trailing {@code sources} and {@code metadata} (isReport, plausibility, KB context),
+     * and finally {@code done} once the full text has been persisted. Failures are reported
+     * as an {@code error} event. Predicted CPA report turns are grounded before streaming, as
+     * in {@code /chat}; an unpredicted report is not regenerated, its cited sources are looked
+     * up afterwards and sent as trailing sources.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChatResponse(@RequestBody Map<String, String> request) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        String userMessage = request.get("message");
+        String userEmail = request.get("userEmail");
+        
+        if (userMessage == null || userMessage.trim().isEmpty() || userEmail == null || userEmail.trim().isEmpty()) {
+            logger.warn("Stream request rejected: message and user email are required");
+            sendErrorAndComplete(emitter, userMessage == null || userMessage.trim().isEmpty()
+                ? "Message is required" : "User email is required");
+            return emitter;
+        }
+        
+        // A client that disconnects or an SSE timeout stops the OpenAI stream right away,
+        // instead of when the next delta fails to send
+        OpenAIService.StreamControl streamControl = new OpenAIService.StreamControl();
+        emitter.onTimeout(streamControl::cancel);
+        emitter.onError(error -> streamControl.cancel());
+        emitter.onCompletion(streamControl::cancel);
+        try {
+            chatStreamExecutor.execute(() -> runStreamingChat(emitter, request, streamControl));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Chat stream executor saturated, rejecting stream request");
+            sendErrorAndComplete(emitter, "Server is busy, please try again");
+        }
+        return emitter;
+    }
+    
+    private void runStreamingChat(SseEmitter emitter, Map<String, String> request, OpenAIService.StreamControl streamControl) {
+        String userMessage = request.get("message");
+        String mode = request.getOrDefault("mode", "A");
+        String userEmail = request.get("userEmail");
+        try {
+            boolean isMetaQuestion = isMetaOrInformationalQuestion(userMessage);
+            CompletableFuture<java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry>> reportPrefetch =
+                startReportPrefetch(userMessage, mode, isMetaQuestion);
+            ChatContext context = prepareConversation(request.get("conversationId"), request.get("userId"), userEmail, mode);
+            String conversationId = context.conversationId();
+            emitter.send(SseEmitter.event().name("meta").data(Map.of("conversationId", conversationId, "mode", mode)));
+            
+            boolean likelyReport = predictReportTurn(userMessage, mode, isMetaQuestion, context.history());
+            if (!likelyReport && reportPrefetch != null) {
+                reportPrefetch.cancel(false);
+            }
+            KnowledgeBaseSkipClassifier.Category category = kbSkipClassifier.classify(userMessage, mode, likelyReport);
+            boolean canSkipKB = category.skipsKnowledgeBase();
+            String classificationReason = category.getReason();
+            boolean kbAvailable = isKnowledgeBaseAvailable();
+            logger.info("Stream KB Skip Classification: {} - Reason: {}", canSkipKB ? "SKIP KB" : "USE KB", classificationReason);
+            String cannedResponse = cannedResponses.respond(userMessage, mode, category, request.get("userName"));
+            
+            KbContext kbContext = fetchKnowledgeContext(userMessage, mode, canSkipKB, classificationReason, kbAvailable);
+            java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> kbSources = kbContext.sources();
+            if (likelyReport && kbAvailable) {
+                kbSources = groundReportTurn(userMessage, context.history(), reportPrefetch);
+            }
+            boolean gliCacheable = "A".equals(mode) && !canSkipKB;
+            java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> answerSources =
+                gliCacheable ? new java.util.ArrayList<>(kbSources) : null;
+            String cachedAnswer = gliCacheable ? answerCache.lookup(userMessage, answerSources) : null;
+            
+            String aiResponse;
+            // What the client has received so far, so a failure mid-stream keeps it rather than appending an apology
+            StringBuilder streamed = new StringBuilder();
+            boolean interrupted = false;
+            try {
+                if (cachedAnswer != null || cannedResponse != null) {
+                    aiResponse = cachedAnswer != null ? cachedAnswer : cannedResponse;
+                    sendDelta(emitter, aiResponse);
+                } else {
+                    String enhancedSystemPrompt = promptLibrary.systemPrompt(mode, kbContext.primaryAnswer(), kbSources);
+                    ConversationContextManager.ContextWindow contextWindow = contextManager.fit(
+                        context.conversation(), context.history(), context.earlierMessages(), enhancedSystemPrompt, userMessage, mode);
+                    aiResponse = openAIService.streamResponse(userMessage, contextWindow.systemPrompt(), contextWindow.history(), mode,
+                        generationPriority(likelyReport), canSkipKB, delta -> {
+                            sendDelta(emitter, delta);
+                            streamed.append(delta);
+                        }, streamControl);
+                    if (gliCacheable && isGeneratedAnswer(aiResponse)) {
+                        answerCache.store(userMessage, answerSources, aiResponse);
                     }
                 }
+            } catch (ClientGoneException | CancellationException e) {
+                // Nothing was delivered in full; don't persist a half-written answer the user never saw
+                logger.info("Chat stream client disconnected for conversation {}", conversationId);
+                emitter.complete();
+                return;
+            } catch (AdmissionRejectedException e) {
+                try {
+                    emitter.send(SseEmitter.event().name("error").data(createBusyResponse(e)));
+                    emitter.complete();
+                } catch (Exception sendFailed) {
+                    emitter.completeWithError(sendFailed);
+                }
+                return;
+            } catch (Exception e) {
+                logger.error("Error streaming AI response: {}", e.getMessage(), e);
+                aiResponse = null;
+                if (streamed.length() > 0) {
+                    // The client already shows part of the answer: report the failure beside it and keep that part
+                    interrupted = true;
+                    aiResponse = streamed + INTERRUPTED_RESPONSE_NOTE;
+                    Map<String, Object> error = createErrorResponse("The response was interrupted: " + e.getMessage());
+                    error.put("partial", true);
+                    emitter.send(SseEmitter.event().name("error").data(error));
+                }
             }
-            if (plausibilityLabel != null) responseBody.put("plausibilityLabel", plausibilityLabel);
-            if (plausibilitySummary != null) responseBody.put("plausibilitySummary", plausibilitySummary);
             
-            // Prepare sources list for response (after CPA report generation to include KB sources)
-            java.util.List<java.util.Map<String, Object>> sources = new java.util.ArrayList<>();
+            if (aiResponse == null || aiResponse.trim().isEmpty()) {
+                // Nothing streamed: deliver the same fallback text the blocking endpoint would return
+                aiResponse = aiResponse == null ? GENERATION_ERROR_RESPONSE : blankResponseFallback(mode);
+                sendDelta(emitter, aiResponse);
+            }
             
-            // Determine if we should provide sources
-            boolean shouldProvideSources;
-            boolean hasReportStructure = aiResponse != null && (
-                aiResponse.contains("Case Summary") || 
-                aiResponse.contains("Plausibility Score") ||
-                aiResponse.contains("Legal Issues")
-            );
+            if ("A".equals(mode) && !canSkipKB && kbAvailable) {
+                enrichGliSources(userMessage, kbSources);
+            }
+            boolean isReport = "B".equals(mode) && !isMetaQuestion && hasReportStructure(aiResponse);
+            if (isReport) {
+                try {
+                    kbSources = collectReportSources(aiResponse, userMessage, kbSources);
+                } catch (Exception ex) {
+                    logger.warn("CPA: Failed fetching KB sources for streamed report: {}", ex.getMessage());
+                }
+            } else if (likelyReport) {
+                kbSources = new java.util.ArrayList<>();
+            }
             
-            if ("B".equals(mode) && hasReportStructure) {
-                // CPA mode with report: Always try to provide sources if available
-                shouldProvideSources = true; // Always try for CPA reports
-                logger.info("CPA: Report detected, will attempt to provide sources ({} KB sources available)", 
-                    kbSources != null ? kbSources.size() : 0);
-            } else {
-                // GLI mode or no report: Only provide sources for law-related queries
-                shouldProvideSources = isLawRelatedQuery(userMessage, aiResponse);
-                logger.debug("isLawRelatedQuery returned: {} for mode: {}", shouldProvideSources, mode);
+            java.util.List<java.util.Map<String, Object>> sources = buildSourcesPayload(userMessage, aiResponse, mode, kbSources);
+            emitter.send(SseEmitter.event().name("sources").data(sources));
+            
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("conversationId", conversationId);
+            if ("B".equals(mode)) {
+                metadata.put("isReport", isReport);
+            }
+            metadata.putAll(extractPlausibility(aiResponse, mode));
+            metadata.put("hasKnowledgeBaseContext", !sources.isEmpty());
+            if (cachedAnswer != null) {
+                metadata.put("fromCache", true);
+            }
+            if (cannedResponse != null) {
+                metadata.put("canned", true);
             }
+            if (interrupted) {
+                metadata.put("interrupted", true);
+            }
+            emitter.send(SseEmitter.event().name("metadata").data(metadata));
             
-            if (shouldProvideSources && kbSources != null && !kbSources.isEmpty()) {
-                if ("B".equals(mode)) {
-                    KnowledgeBaseService kbService = openAIService.getKnowledgeBaseService();
-                    if (kbService != null) {
-                        Map<String, Boolean> hydrationCache = new HashMap<>();
-                        for (com.capstone.civilify.DTO.KnowledgeBaseEntry entry : kbSources) {
-                            if (entry == null) continue;
-                            String entryId = entry.getEntryId();
-                            if (entryId == null || entryId.trim().isEmpty()) {
-                                continue;
-                            }
-                            if (entry.getSourceUrls() != null && !entry.getSourceUrls().isEmpty()) {
-                                continue;
-                            }
-                            Boolean attempted = hydrationCache.get(entryId);
-                            if (attempted != null && !attempted) {
-                                continue;
-                            }
-                            boolean hydrated = kbService.hydrateEntryDetails(entry);
-                            hydrationCache.put(entryId, hydrated);
-                            if (hydrated) {
-                                int urlCount = entry.getSourceUrls() != null ? entry.getSourceUrls().size() : 0;
-                                logger.info("CPA: Hydrated final KB source {} with {} URLs", entryId, urlCount);
-                            } else {
-                                logger.debug("CPA: Unable to hydrate final KB source {}", entryId);
-                            }
-                        }
-                    } else {
-                        logger.warn("CPA: KnowledgeBaseService unavailable during final source hydration");
+            ChatMessage aiChatMessage = chatService.addMessage(conversationId, null, VILLY_EMAIL, aiResponse, false);
+            logger.info("Added streamed AI response to conversation: {}", aiChatMessage.getId());
+            emitter.send(SseEmitter.event().name("done").data(Map.of("messageId", aiChatMessage.getId())));
+            emitter.complete();
+        } catch (ClientGoneException | java.io.IOException e) {
+            logger.info("Chat stream client disconnected before completion: {}", e.getMessage());
+            emitter.complete();
+        } catch (Exception e) {
+            logger.error("Error in streaming chat", e);
+            sendErrorAndComplete(emitter, "Error generating AI response: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Thrown from the delta callback when the SSE connection is gone, to stop reading the
+     * OpenAI stream instead of generating tokens nobody will receive.
+     */
+    private static class ClientGoneException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        ClientGoneException(Throwable cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+    
+    // A real model answer, as opposed to a fallback or apology for a failed call
+    private boolean isGeneratedAnswer(String aiResponse) {
+        return aiResponse != null && !aiResponse.isBlank()
+            && !GENERATION_ERROR_RESPONSE.equals(aiResponse)
+            && !openAIService.isFailureResponse(aiResponse);
+    }
+    
+    private void sendDelta(SseEmitter emitter, String text) {
+        try {
+            emitter.send(SseEmitter.event().name("delta").data(Map.of("text", text)));
+        } catch (java.io.IOException | IllegalStateException e) {
+            throw new ClientGoneException(e);
+        }
+    }
+    
+    private void sendErrorAndComplete(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(createErrorResponse(message)));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+    
+    private record ChatContext(String conversationId, ChatConversation conversation, List<Map<String, String>> history,
+                               int earlierMessages) {}
+    
+    /**
+     * Load the conversation (creating it if needed) and shape its messages into the
+     * history format OpenAIService expects. Active conversations come from the history cache,
+     * which holds the latest messages; {@code earlierMessages} counts older ones left out.
+     * What is actually sent is decided per request by {@link ConversationContextManager}.
+     */
+    private ChatContext prepareConversation(String conversationId, String userId, String userEmail, String mode) throws Exception {
+        // Get or create conversation
+        ChatConversation conversation = null;
+        List<ChatMessage> conversationMessages = new ArrayList<>();
+        int earlierMessages = 0;
+        
+        if (conversationId != null && !conversationId.isEmpty()) {
+            // Get existing conversation
+            try {
+                com.capstone.civilify.service.ConversationHistoryCache.Snapshot history =
+                    chatService.getConversationHistory(conversationId);
+                if (history != null) {
+                    conversation = history.conversation();
+                    conversationMessages = history.messages();
+                    earlierMessages = history.earlierMessages();
+                    logger.info("Retrieved existing conversation with {} messages", conversationMessages.size() + earlierMessages);
+                }
+            } catch (Exception e) {
+                logger.warn("Could not retrieve conversation: {}", e.getMessage());
+            }
+        }
+        
+        if (conversation == null) {
+            // Create new conversation
+            String title = "Chat with Villy - " + (mode.equals("A") ? "General Assistance" : "Case Assessment");
+            conversation = chatService.createConversation(userId, userEmail, title);
+            logger.info("Created new conversation with ID: {}", conversation.getId());
+            conversationId = conversation.getId();
+        }
+        
+        // Do NOT re-save the user message here to avoid duplicates; frontend already persists it
+        logger.info("Skipping backend user-message save to avoid duplicates (conversationId={})", conversationId);
+        
+        // Prepare conversation history for OpenAI
+        List<Map<String, String>> conversationHistoryForAI = conversationMessages.stream()
+            .map(msg -> {
+                Map<String, String> messageMap = new HashMap<>();
+                messageMap.put("content", msg.getContent());
+                messageMap.put("isUserMessage", String.valueOf(msg.isUserMessage()));
+                return messageMap;
+            })
+            .collect(Collectors.toList());
+        
+        logger.info("Conversation history prepared: {} messages for conversation {}", 
+            conversationHistoryForAI.size(), conversationId);
+        return new ChatContext(conversationId, conversation, conversationHistoryForAI, earlierMessages);
+    }
+    
+    private record KbContext(String primaryAnswer, java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> sources) {}
+    
+    /**
+     * Mode-aware KB stage that runs before generation: GLI asks the KB for an answer and
+     * sources, CPA skips the KB during the conversational phase.
+     */
+    private KbContext fetchKnowledgeContext(String userMessage, String mode, boolean canSkipKB,
+                                            String classificationReason, boolean kbAvailable) {
+        String primaryKbAnswer = null;
+        java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> kbSources = new java.util.ArrayList<>();
+
+        if ("A".equals(mode)) {
+            // GLI: Check if KB lookup can be skipped for faster response
+            if (canSkipKB) {
+                logger.info("GLI: Skipping KB lookup - Query classified as: {}", classificationReason);
+            } else if (!kbAvailable) {
+                logger.info("GLI: Skipping KB lookup - knowledge base unavailable");
+            } else {
+                // GLI: KB-first to gather context and sources for UI
+                logger.info("GLI: Fetching KB for query requiring legal provisions");
+                com.capstone.civilify.DTO.KnowledgeBaseChatResponse kbResponse =
+                    openAIService.getKnowledgeBaseService().chatWithKnowledgeBaseEnhanced(userMessage, mode);
+
+                if (kbResponse != null && !kbResponse.hasError()) {
+                    primaryKbAnswer = kbResponse.getAnswer();
+                    if (kbResponse.getSources() != null) {
+                        kbSources.addAll(kbResponse.getSources());
                     }
+                    logger.info("GLI: KB response obtained: answer length={}, sources count={}",
+                        primaryKbAnswer != null ? primaryKbAnswer.length() : 0, kbSources.size());
+                } else {
+                    logger.warn("GLI: KB response failed or empty: {}", kbResponse != null ? kbResponse.getError() : "null response");
                 }
-                // Filter and sort sources by relevance (similarity score)
-                // Only include sources with valid entryId, title, and URLs (ensures they're from KB and have clickable links)
-                List<com.capstone.civilify.DTO.KnowledgeBaseEntry> validSources = kbSources.stream()
-                    .filter(entry -> entry != null 
-                        && entry.getEntryId() != null && !entry.getEntryId().trim().isEmpty()
-                        && entry.getTitle() != null && !entry.getTitle().trim().isEmpty()
-                        && entry.getSourceUrls() != null && !entry.getSourceUrls().isEmpty()) // Must have URLs
-                    .sorted((e1, e2) -> {
-                        // Sort by similarity (higher is better), then by title for consistency
-                        Double sim1 = e1.getSimilarity();
-                        Double sim2 = e2.getSimilarity();
-                        if (sim1 != null && sim2 != null) {
-                            int compare = Double.compare(sim2, sim1); // Descending order
-                            if (compare != 0) return compare;
-                        } else if (sim1 != null) return -1;
-                        else if (sim2 != null) return 1;
-                        // If similarity is null or equal, sort by title
-                        String title1 = e1.getTitle() != null ? e1.getTitle() : "";
-                        String title2 = e2.getTitle() != null ? e2.getTitle() : "";
-                        return title1.compareTo(title2);
-                    })
-                    .collect(Collectors.toList());
-                
-                // Limit to maximum 3 most relevant sources
-                int maxSources = Math.min(validSources.size(), 3);
-                logger.info("Filtered {} KB sources to {} most relevant sources with URLs", kbSources.size(), maxSources);
-                
-                for (int i = 0; i < maxSources; i++) {
-                    com.capstone.civilify.DTO.KnowledgeBaseEntry entry = validSources.get(i);
-                    Map<String, Object> source = new HashMap<>();
-                    source.put("entryId", entry.getEntryId());
-                    source.put("title", entry.getTitle());
-                    source.put("type", entry.getType());
-                    source.put("canonicalCitation", entry.getCanonicalCitation());
-                    source.put("summary", entry.getSummary());
-                    
-                    // Log similarity score for debugging
-                    if (entry.getSimilarity() != null) {
-                        logger.debug("Including source: {} (similarity: {})", entry.getTitle(), entry.getSimilarity());
+            }
+        } else {
+            // CPA: No KB answer stage (performance + avoid blank responses); report turns are grounded separately
+            logger.info("CPA: Skipping KB answer stage. Classification: {}", classificationReason);
+        }
+        return new KbContext(primaryKbAnswer, kbSources);
+    }
+    
+    private boolean predictReportTurn(String userMessage, String mode, boolean isMetaQuestion,
+                                      List<Map<String, String>> history) {
+        if (!"B".equals(mode) || isMetaQuestion) {
+            return false;
+        }
+        boolean likelyReport = reportTurnPredictor.isLikelyReportTurn(userMessage, history);
+        logger.info("CPA: Report turn prediction: {} - Reason: {}", likelyReport ? "REPORT" : "CONVERSATIONAL",
+            reportTurnPredictor.getPredictionReason(userMessage, history));
+        return likelyReport;
+    }
+    
+    /**
+     * CPA: speculatively search the KB with the current message before the conversation is
+     * loaded, so a report turn does not wait for the lookup after it. Only messages that carry
+     * case facts on their own are searched; short replies ("yes, last March") are not, and
+     * their report turns are grounded on the case facts instead. The result is only used if
+     * the turn is then predicted to produce a report and it clears the quality bar.
+     * @return The pending search, or null when the message cannot be a useful query
+     */
+    private CompletableFuture<java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry>> startReportPrefetch(
+            String userMessage, String mode, boolean isMetaQuestion) {
+        if (!"B".equals(mode) || isMetaQuestion || !isKnowledgeBaseAvailable()
+                || !reportTurnPredictor.isSelfContainedQuery(userMessage)
+                || kbSkipClassifier.canSkipKnowledgeBase(userMessage, mode, false)) {
+            return null;
+        }
+        KnowledgeBaseService kbService = openAIService.getKnowledgeBaseService();
+        if (kbService == null) {
+            return null;
+        }
+        logger.info("CPA: Prefetching KB context for a possible report turn");
+        return kbService.searchKnowledgeBaseAsync(userMessage, computeDesiredSourceLimit(userMessage));
+    }
+    
+    /**
+     * CPA: KB sources for a predicted report turn. Prefetched hits are used only when they
+     * reach openai.cpa.prefetch.min-similarity; otherwise the KB is searched with the facts
+     * the user has shared. Sources are hydrated so the report can cite their URLs.
+     */
+    private java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> groundReportTurn(
+            String userMessage, List<Map<String, String>> history,
+            CompletableFuture<java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry>> reportPrefetch) {
+        java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> sources = new java.util.ArrayList<>();
+        if (reportPrefetch != null) {
+            try {
+                for (com.capstone.civilify.DTO.KnowledgeBaseEntry entry : reportPrefetch.join()) {
+                    if (entry.getSimilarity() != null && entry.getSimilarity() >= reportPrefetchMinSimilarity) {
+                        sources.add(entry);
                     }
-                    
-                    // Only include source URLs if they exist and are valid
-                    // These URLs come from KB API (if provided) or are generated from citations (as fallback)
-                    if (entry.getSourceUrls() != null && !entry.getSourceUrls().isEmpty()) {
-                        // Filter out any invalid or empty URLs
-                        List<String> validUrls = entry.getSourceUrls().stream()
-                            .filter(url -> url != null && !url.trim().isEmpty() && url.startsWith("http"))
-                            .collect(Collectors.toList());
-                        if (!validUrls.isEmpty()) {
-                            source.put("sourceUrls", validUrls);
-                            logger.info("Added {} source URLs for entry: {} (entryId: {})", 
-                                validUrls.size(), entry.getTitle(), entry.getEntryId());
-                        } else {
-                            logger.debug("No valid URLs found for entry: {} (raw URLs: {})", entry.getTitle(), entry.getSourceUrls());
+                }
+            } catch (CompletionException | CancellationException e) {
+                logger.warn("CPA: KB prefetch failed: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+        }
+        if (sources.isEmpty()) {
+            String factsQuery = buildCaseFactsQuery(userMessage, history);
+            logger.info("CPA: No strong prefetched sources, searching KB with case facts ({} chars)", factsQuery.length());
+            java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> factSources =
+                openAIService.getKnowledgeBaseSources(factsQuery, computeDesiredSourceLimit(userMessage));
+            if (factSources != null) {
+                sources.addAll(factSources);
+            }
+        }
+        if (!sources.isEmpty()) {
+            KnowledgeBaseService kbService = openAIService.getKnowledgeBaseService();
+            if (kbService != null) {
+                int withUrls = kbService.hydrateEntries(sources);
+                logger.info("CPA: {} of {} grounding sources have URLs after hydration", withUrls, sources.size());
+            }
+        }
+        logger.info("CPA: Grounding predicted report turn with {} KB sources", sources.size());
+        return sources;
+    }
+    
+    // The user's side of the conversation, newest facts kept when it is too long for a search query
+    private String buildCaseFactsQuery(String userMessage, List<Map<String, String>> history) {
+        StringBuilder facts = new StringBuilder();
+        if (history != null) {
+            for (Map<String, String> message : history) {
+                String content = message.get("content");
+                if ("true".equals(message.get("isUserMessage")) && content != null && !content.isBlank()) {
+                    facts.append(content.trim()).append(' ');
+                }
+            }
+        }
+        String trimmedMessage = userMessage != null ? userMessage.trim() : "";
+        if (!facts.toString().trim().endsWith(trimmedMessage)) {
+            facts.append(trimmedMessage);
+        }
+        String query = facts.toString().trim();
+        return query.length() > MAX_FACTS_QUERY_CHARS ? query.substring(query.length() - MAX_FACTS_QUERY_CHARS) : query;
+    }
+    
+    /**
+     * GLI: fill in sources when the KB stage returned none, first with a direct search and
+     * then with a keyword-by-keyword fallback.
+     */
+    private void enrichGliSources(String userMessage, java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> kbSources) {
+        // GLI: Only attempt additional source enrichment if query requires KB
+        if (kbSources.isEmpty()) {
+            logger.info("GLI: No sources from initial KB response, attempting additional search");
+            int desiredLimit = computeDesiredSourceLimit(userMessage);
+            java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> additionalKbEntries =
+                openAIService.getKnowledgeBaseSources(userMessage, desiredLimit);
+            if (additionalKbEntries != null) {
+                kbSources.addAll(additionalKbEntries);
+            }
+            logger.info("GLI: Additional KB sources obtained: {}", kbSources.size());
+        }
+        
+        // If still no sources, try a broader search with keywords
+        if (kbSources.isEmpty()) {
+            logger.info("GLI: Still no sources, attempting broader keyword search");
+            String[] keywords = userMessage.toLowerCase().split("\\s+");
+            for (String keyword : keywords) {
+                if (!isKnowledgeBaseAvailable()) {
+                    logger.info("GLI: KB became unavailable, stopping keyword search");
+                    break;
+                }
+                if (keyword.length() > 3) { // Only search meaningful keywords
+                    int desiredLimit = computeDesiredSourceLimit(userMessage);
+                    java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> keywordResults =
+                        openAIService.getKnowledgeBaseSources(keyword, desiredLimit);
+                    if (keywordResults != null && !keywordResults.isEmpty()) {
+                        kbSources.addAll(keywordResults);
+                        logger.info("GLI: Found sources for keyword '{}': {}", keyword, keywordResults.size());
+                        break; // Stop at first successful keyword search
+                    }
+                }
+            }
+        }
+    }
+    
+    private String blankResponseFallback(String mode) {
+        if ("B".equals(mode)) {
+            return "I understand you're going through a difficult situation. Could you please provide more details about your case so I can better assist you? For urgent legal matters, I recommend consulting with a licensed attorney immediately.";
+        }
+        return "I apologize, but I'm having trouble processing your request right now. Please try rephrasing your question or ask about Philippine legal matters.";
+    }
+    
+    // Check if response contains actual report structure
+    private boolean hasReportStructure(String aiResponse) {
+        return aiResponse != null && (
+            aiResponse.contains("Case Summary:") || 
+            aiResponse.contains("Plausibility Score:") ||
+            aiResponse.contains("Legal Issues or Concerns:")
+        );
+    }
+    
+    /**
+     * CPA: look up KB sources for what the report actually cites (falling back to its legal
+     * concepts), hydrate them, and merge the relevant ones into {@code kbSources}.
+     * @return The merged source list, de-duplicated by entryId
+     */
+    private java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> collectReportSources(
+            String aiResponse, String userMessage, java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> kbSources) {
+        // NEW APPROACH: Extract citations/sources mentioned in the report response
+        List<String> citationsFromReport = extractCitationsFromReport(aiResponse);
+        logger.info("CPA: Extracted {} citations from report: {}", citationsFromReport.size(), citationsFromReport);
+        
+        java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> reportSources = new java.util.ArrayList<>();
+        int desiredLimitForReport = computeDesiredSourceLimit(userMessage);
+        
+        // Query KB API for each citation found in the report
+        boolean kbAvailableForReport = isKnowledgeBaseAvailable();
+        if (!kbAvailableForReport) {
+            logger.warn("CPA: KB circuit open - skipping report source lookup");
+        }
+        if (kbAvailableForReport && !citationsFromReport.isEmpty()) {
+            for (String citation : citationsFromReport) {
+                logger.info("CPA: Querying KB API for citation: {}", citation);
+                java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> citationSources =
+                    openAIService.getKnowledgeBaseSources(citation, Math.max(2, desiredLimitForReport / citationsFromReport.size()));
+                if (citationSources != null && !citationSources.isEmpty()) {
+                    // Filter to only include sources that match the citation
+                    for (com.capstone.civilify.DTO.KnowledgeBaseEntry source : citationSources) {
+                        if (source != null && source.getEntryId() != null && 
+                            (source.getCanonicalCitation() != null && source.getCanonicalCitation().contains(citation) ||
+                             source.getTitle() != null && source.getTitle().toLowerCase().contains(citation.toLowerCase()))) {
+                            reportSources.add(source);
                         }
-                    } else {
-                        logger.warn("Entry '{}' (entryId: {}) has no sourceUrls - this should not happen for KB entries", 
-                            entry.getTitle(), entry.getEntryId());
                     }
-                    sources.add(source);
+                    logger.info("CPA: Found {} matching sources for citation: {}", citationSources.size(), citation);
                 }
-                logger.info("Providing {} sources for law-related query (including CPA report sources)", sources.size());
+            }
+        }
+        
+        // If no sources found from citations, query based on legal concepts mentioned in the report
+        if (kbAvailableForReport && reportSources.isEmpty()) {
+            logger.info("CPA: No sources from citations, querying based on report content");
+            // Extract key legal terms from the actual report text (not just legal issues section)
+            String reportQuery = extractLegalConceptsFromReport(aiResponse);
+            if (reportQuery == null || reportQuery.isBlank()) {
+                reportQuery = userMessage;
+            }
+            if (reportQuery != null && !reportQuery.isBlank()) {
+                reportSources = openAIService.getKnowledgeBaseSources(reportQuery, desiredLimitForReport);
+                logger.info("CPA: Report-based KB search completed, returned {} sources", reportSources != null ? reportSources.size() : 0);
+            }
+        }
+        
+        logger.info("CPA: Total KB sources found: {}", reportSources != null ? reportSources.size() : 0);
+
+        if (reportSources != null && !reportSources.isEmpty()) {
+            KnowledgeBaseService kbService = openAIService.getKnowledgeBaseService();
+            if (kbService != null) {
+                // Hydrate all sources lacking URLs in one parallel, de-duplicated batch
+                int withUrls = kbService.hydrateEntries(reportSources);
+                logger.info("CPA: {} of {} report sources have URLs after hydration", withUrls, reportSources.size());
             } else {
-                logger.info("Not providing sources - query not law-related or no KB sources available");
+                logger.warn("CPA: KnowledgeBaseService unavailable for hydration");
+            }
+        }
+        
+        if (reportSources == null || reportSources.isEmpty()) {
+            logger.warn("CPA: KB search returned null or empty sources");
+            return kbSources;
+        }
+        
+        // Validate that sources are from KB (must have entryId) and are relevant to the report
+        List<com.capstone.civilify.DTO.KnowledgeBaseEntry> validReportSources = reportSources.stream()
+            .filter(e -> e != null && e.getEntryId() != null && !e.getEntryId().trim().isEmpty())
+            .filter(e -> e.getSourceUrls() != null && !e.getSourceUrls().isEmpty())
+            .filter(e -> isSourceRelevantToReport(e, aiResponse)) // Filter to only include relevant sources
+            .collect(Collectors.toList());
+        
+        logger.info("CPA: KB search returned {} sources, {} have valid entryIds", 
+            reportSources.size(), validReportSources.size());
+        
+        for (com.capstone.civilify.DTO.KnowledgeBaseEntry e : validReportSources) {
+            logger.debug("KB source: entryId={}, title={}, similarity={}, hasUrls={}", 
+                e.getEntryId(), e.getTitle(), e.getSimilarity(), 
+                e.getSourceUrls() != null && !e.getSourceUrls().isEmpty());
+        }
+        
+        // Merge into kbSources without duplicates by entryId
+        java.util.Map<String, com.capstone.civilify.DTO.KnowledgeBaseEntry> uniq = new java.util.LinkedHashMap<>();
+        for (com.capstone.civilify.DTO.KnowledgeBaseEntry e : kbSources) {
+            if (e != null && e.getEntryId() != null && !e.getEntryId().trim().isEmpty()) {
+                uniq.put(e.getEntryId(), e);
+            }
+        }
+        for (com.capstone.civilify.DTO.KnowledgeBaseEntry e : validReportSources) {
+            if (e.getEntryId() != null) {
+                uniq.put(e.getEntryId(), e);
+            }
+        }
+        java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> merged = new java.util.ArrayList<>(uniq.values());
+        logger.info("CPA: KB sources fetched for report: {} unique sources (all with entryIds)", merged.size());
+        return merged;
+    }
+    
+    /**
+     * Plausibility score label and summary from a CPA response, keyed as they appear in the
+     * response body; empty for other modes or when the score line is missing.
+     */
+    private Map<String, Object> extractPlausibility(String aiResponse, String mode) {
+        Map<String, Object> plausibility = new HashMap<>();
+        if ("B".equals(mode) && aiResponse != null) {
+            // Regex to match: Plausibility Score: 60% - Moderate There is a moderate chance...
+            java.util.regex.Matcher matcher = PLAUSIBILITY_PATTERN.matcher(aiResponse);
+            if (matcher.find()) {
+                String plausibilityLabel = matcher.group(1).trim();
+                String plausibilitySummary = matcher.group(2).trim();
+                plausibility.put("plausibilityLabel", plausibilityLabel);
+                // Clean up: if summary is empty or just "Suggested Next Steps", leave it out
+                if (!plausibilitySummary.isEmpty() && !plausibilitySummary.toLowerCase().contains("suggested next steps")) {
+                    plausibility.put("plausibilitySummary", plausibilitySummary);
+                }
+            }
+        }
+        return plausibility;
+    }
+    
+    /**
+     * Up to three of the most relevant KB sources (with URLs) in the shape the chat UI renders,
+     * or an empty list when the exchange should not show sources.
+     */
+    private java.util.List<java.util.Map<String, Object>> buildSourcesPayload(String userMessage, String aiResponse, String mode,
+                                                                             java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> kbSources) {
+        java.util.List<java.util.Map<String, Object>> sources = new java.util.ArrayList<>();
+        
+        // Determine if we should provide sources
+        boolean shouldProvideSources;
+        boolean hasReportStructure = aiResponse != null && (
+            aiResponse.contains("Case Summary") || 
+            aiResponse.contains("Plausibility Score") ||
+            aiResponse.contains("Legal Issues")
+        );
+        
+        if ("B".equals(mode) && hasReportStructure) {
+            // CPA mode with report: Always try to provide sources if available
+            shouldProvideSources = true; // Always try for CPA reports
+            logger.info("CPA: Report detected, will attempt to provide sources ({} KB sources available)", 
+                kbSources != null ? kbSources.size() : 0);
+        } else {
+            // GLI mode or no report: Only provide sources for law-related queries
+            shouldProvideSources = isLawRelatedQuery(userMessage, aiResponse);
+            logger.debug("isLawRelatedQuery returned: {} for mode: {}", shouldProvideSources, mode);
+        }
+        
+        if (shouldProvideSources && kbSources != null && !kbSources.isEmpty()) {
+            if ("B".equals(mode)) {
+                KnowledgeBaseService kbService = openAIService.getKnowledgeBaseService();
+                if (kbService != null) {
+                    int withUrls = kbService.hydrateEntries(kbSources);
+                    logger.info("CPA: {} of {} final KB sources have URLs after hydration", withUrls, kbSources.size());
+                } else {
+                    logger.warn("CPA: KnowledgeBaseService unavailable during final source hydration");
+                }
             }
-            logger.info("Knowledge base sources included in response: {}", sources.size());
+            // Filter and sort sources by relevance (similarity score)
+            // Only include sources with valid entryId, title, and URLs (ensures they're from KB and have clickable links)
+            List<com.capstone.civilify.DTO.KnowledgeBaseEntry> validSources = kbSources.stream()
+                .filter(entry -> entry != null 
+                    && entry.getEntryId() != null && !entry.getEntryId().trim().isEmpty()
+                    && entry.getTitle() != null && !entry.getTitle().trim().isEmpty()
+                    && entry.getSourceUrls() != null && !entry.getSourceUrls().isEmpty()) // Must have URLs
+                .sorted((e1, e2) -> {
+                    // Sort by similarity (higher is better), then by title for consistency
+                    Double sim1 = e1.getSimilarity();
+                    Double sim2 = e2.getSimilarity();
+                    if (sim1 != null && sim2 != null) {
+                        int compare = Double.compare(sim2, sim1); // Descending order
+                        if (compare != 0) return compare;
+                    } else if (sim1 != null) return -1;
+                    else if (sim2 != null) return 1;
+                    // If similarity is null or equal, sort by title
+                    String title1 = e1.getTitle() != null ? e1.getTitle() : "";
+                    String title2 = e2.getTitle() != null ? e2.getTitle() : "";
+                    return title1.compareTo(title2);
+                })
+                .collect(Collectors.toList());
             
-            // Add sources to response body
-            responseBody.put("sources", sources);
-            responseBody.put("hasKnowledgeBaseContext", shouldProvideSources && !sources.isEmpty());
-
-            // Now persist the final AI response (original or regenerated)
-            ChatMessage aiChatMessage = chatService.addMessage(
-                conversationId, null, "villy@civilify.com", aiResponse, false);
-            logger.info("Added AI response to conversation: {}", aiChatMessage.getId());
-
-            return ResponseEntity.ok(responseBody);
-        } catch (Exception e) {
-            logger.error("Error generating AI response", e);
-            return ResponseEntity.internalServerError()
-                    .body(createErrorResponse("Error generating AI response: " + e.getMessage()));
+            // Limit to maximum 3 most relevant sources
+            int maxSources = Math.min(validSources.size(), 3);
+            logger.info("Filtered {} KB sources to {} most relevant sources with URLs", kbSources.size(), maxSources);
+            
+            for (int i = 0; i < maxSources; i++) {
+                com.capstone.civilify.DTO.KnowledgeBaseEntry entry = validSources.get(i);
+                Map<String, Object> source = new HashMap<>();
+                source.put("entryId", entry.getEntryId());
+                source.put("title", entry.getTitle());
+                source.put("type", entry.getType());
+                source.put("canonicalCitation", entry.getCanonicalCitation());
+                source.put("summary", entry.getSummary());
+                
+                // Log similarity score for debugging
+                if (entry.getSimilarity() != null) {
+                    logger.debug("Including source: {} (similarity: {})", entry.getTitle(), entry.getSimilarity());
+                }
+                
+                // Only include source URLs if they exist and are valid
+                // These URLs come from KB API (if provided) or are generated from citations (as fallback)
+                if (entry.getSourceUrls() != null && !entry.getSourceUrls().isEmpty()) {
+                    // Filter out any invalid or empty URLs
+                    List<String> validUrls = entry.getSourceUrls().stream()
+                        .filter(url -> url != null && !url.trim().isEmpty() && url.startsWith("http"))
+                        .collect(Collectors.toList());
+                    if (!validUrls.isEmpty()) {
+                        source.put("sourceUrls", validUrls);
+                        logger.info("Added {} source URLs for entry: {} (entryId: {})", 
+                            validUrls.size(), entry.getTitle(), entry.getEntryId());
+                    } else {
+                        logger.debug("No valid URLs found for entry: {} (raw URLs: {})", entry.getTitle(), entry.getSourceUrls());
+                    }
+                } else {
+                    logger.warn("Entry '{}' (entryId: {}) has no sourceUrls - this should not happen for KB entries", 
+                        entry.getTitle(), entry.getEntryId());
+                }
+                sources.add(source);
+            }
+            logger.info("Providing {} sources for law-related query (including CPA report sources)", sources.size());
+        } else {
+            logger.info("Not providing sources - query not law-related or no KB sources available");
         }
+        logger.info("Knowledge base sources included in response: {}", sources.size());
+        return sources;
+    }
+    
+    // Runtime metrics for the chat pipeline (KB source cache counters)
+    @GetMapping("/metrics")
+    public ResponseEntity<?> metrics() {
+        Map<String, Object> metrics = new java.util.LinkedHashMap<>();
+        metrics.put("kbSourceCache", openAIService.getCacheStats());
+        metrics.put("httpClient", openAIService.getHttpClientStats());
+        metrics.put("openAiAdmission", openAIService.getAdmissionStats());
+        metrics.put("openAiRateLimits", openAIService.getRateLimitStats());
+        metrics.put("modelRouting", openAIService.getModelRoutingStats());
+        metrics.put("context", contextManager.stats());
+        metrics.put("prompts", promptLibrary.stats());
+        metrics.put("answerCache", answerCache.stats());
+        metrics.put("cannedResponses", cannedResponses.stats());
+        metrics.put("chatWriteBehind", chatService.getWriteBehindStats());
+        metrics.put("chatHistoryCache", chatService.getHistoryCacheStats());
+        metrics.put("conversationDeletion", conversationDeletion.stats());
+        metrics.put("kbCircuitBreaker", openAIService.getKnowledgeBaseService().getCircuitBreakerStats());
+        metrics.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(metrics);
+    }
+    
+    private boolean isKnowledgeBaseAvailable() {
+        KnowledgeBaseService kbService = openAIService.getKnowledgeBaseService();
+        return kbService != null && kbService.isAvailable();
     }
     
     private Map<String, Object> createErrorResponse(String message) {
@@ -742,9 +1090,18 @@ public class OpenAIController {
         return response;
     }
     
-    /**
-     * Build enhanced system prompt with KB context for Villy RAG
-     */
+    // OpenAI admission rejected the turn: nothing was generated, the client should retry later
+    private Map<String, Object> createBusyResponse(AdmissionRejectedException e) {
+        Map<String, Object> response = createErrorResponse("Villy is busy right now. Please try again in a few seconds.");
+        response.put("retryAfterSeconds", e.getRetryAfterSeconds());
+        return response;
+    }
+    
+    // Report generations are long; let conversational turns go first when OpenAI capacity is short
+    private OpenAIAdmissionController.Priority generationPriority(boolean likelyReport) {
+        return likelyReport ? OpenAIAdmissionController.Priority.REPORT : OpenAIAdmissionController.Priority.INTERACTIVE;
+    }
+    
     /**
      * Determines if a query is law-related based on user message and AI response
      */
@@ -849,87 +1206,6 @@ public class OpenAIController {
         return defaultLimit;
     }
 
-    private String buildEnhancedSystemPrompt(String baseSystemPrompt, String primaryKbAnswer,
-                                           java.util.List<com.capstone.civilify.DTO.KnowledgeBaseEntry> kbSources, String mode) {
-        StringBuilder enhancedPrompt = new StringBuilder(baseSystemPrompt);
-        
-        // Add KB context if available and meaningful
-        if (primaryKbAnswer != null && !primaryKbAnswer.trim().isEmpty() && 
-            !primaryKbAnswer.trim().equalsIgnoreCase("I don't know") && 
-            !primaryKbAnswer.trim().equalsIgnoreCase("No relevant information found")) {
-            
-            enhancedPrompt.append("\n\nKNOWLEDGE BASE CONTEXT:\n");
-            enhancedPrompt.append("The following information was retrieved from the legal knowledge base:\n\n");
-            enhancedPrompt.append(primaryKbAnswer);
-            
-            if (kbSources != null && !kbSources.isEmpty()) {
-                enhancedPrompt.append("\n\nSUPPORTING LEGAL SOURCES:\n");
-                for (com.capstone.civilify.DTO.KnowledgeBaseEntry source : kbSources) {
-                    enhancedPrompt.append("- ").append(source.getTitle());
-                    if (source.getCanonicalCitation() != null && !source.getCanonicalCitation().isEmpty()) {
-                        enhancedPrompt.append(" (").append(source.getCanonicalCitation()).append(")");
-                    }
-                    // Include source URLs if available and valid
-                    if (source.getSourceUrls() != null && !source.getSourceUrls().isEmpty()) {
-                        enhancedPrompt.append(" - Available Sources: ");
-                        for (int i = 0; i < source.getSourceUrls().size(); i++) {
-                            if (i > 0) enhancedPrompt.append(", ");
-                            enhancedPrompt.append(source.getSourceUrls().get(i));
-                        }
-                    }
-                    enhancedPrompt.append("\n");
-                }
-            }
-            
-            enhancedPrompt.append("\nIMPORTANT: Base your response primarily on the knowledge base context provided above. ");
-            enhancedPrompt.append("Use the specific legal provisions, citations, and information from the knowledge base. ");
-            enhancedPrompt.append("Only cite sources that are explicitly mentioned in the knowledge base context above.");
-            enhancedPrompt.append("\n\nACCURACY REQUIREMENT: Your analysis must accurately reflect the legal sources provided. ");
-            enhancedPrompt.append("Do not make up legal provisions or citations. Only reference laws, articles, or acts that are ");
-            enhancedPrompt.append("explicitly listed in the SUPPORTING LEGAL SOURCES section above.");
-            
-            if ("B".equals(mode)) {
-                // CPA mode: Reinforce strict formatting requirements
-                enhancedPrompt.append("\n\nCRITICAL FORMATTING REQUIREMENTS FOR CPA REPORT:\n");
-                enhancedPrompt.append("- Section headings (Case Summary, Legal Issues or Concerns, Plausibility Score, Suggested Next Steps, DISCLAIMER) must be plain text with colon, NO markdown bold (**)\n");
-                enhancedPrompt.append("- Follow the exact structure: Case Summary, Legal Issues or Concerns, Plausibility Score, Suggested Next Steps, DISCLAIMER\n");
-                enhancedPrompt.append("- Case Summary must be a single paragraph (no bullets, no markdown bold)\n");
-                enhancedPrompt.append("- Legal Issues or Concerns must use bullet points (-), no markdown bold in content\n");
-                enhancedPrompt.append("- Suggested Next Steps must be numbered (1., 2., 3.) with bold labels using **Label:** format (ONLY labels should be bold)\n");
-                enhancedPrompt.append("- DISCLAIMER must be plain text with colon (no markdown bold)\n");
-                enhancedPrompt.append("- DO NOT use ** for section headings - only use ** for step labels within Suggested Next Steps\n");
-                enhancedPrompt.append("- Integrate KB sources naturally into your analysis, but maintain the strict formatting structure above.");
-                enhancedPrompt.append("\n\nSOURCE ACCURACY: The sources listed in SUPPORTING LEGAL SOURCES above are the ONLY sources you should reference. ");
-                enhancedPrompt.append("Your legal analysis must be based on these specific sources. Do not reference laws or provisions that are not listed above.");
-            } else {
-                enhancedPrompt.append("\n\nSOURCE INSTRUCTIONS: Include relevant sources in your response using Markdown format: ");
-                enhancedPrompt.append("- [Source Title](URL) ");
-                enhancedPrompt.append("Do not include a 'Sources:' header - just list the links directly after your main content. ");
-                enhancedPrompt.append("You may mention specific laws, acts, or regulations by name if they are essential to the main answer content. ");
-                enhancedPrompt.append("Ensure your response is comprehensive and accurate based on the knowledge base context provided.");
-            }
-        } else {
-            if ("B".equals(mode)) {
-                // CPA mode: Even without KB, maintain formatting requirements
-                enhancedPrompt.append("\n\nCRITICAL FORMATTING REQUIREMENTS FOR CPA REPORT:\n");
-                enhancedPrompt.append("- Section headings (Case Summary, Legal Issues or Concerns, Plausibility Score, Suggested Next Steps, DISCLAIMER) must be plain text with colon, NO markdown bold (**)\n");
-                enhancedPrompt.append("- Follow the exact structure: Case Summary, Legal Issues or Concerns, Plausibility Score, Suggested Next Steps, DISCLAIMER\n");
-                enhancedPrompt.append("- Case Summary must be a single paragraph (no bullets, no markdown bold)\n");
-                enhancedPrompt.append("- Legal Issues or Concerns must use bullet points (-), no markdown bold in content\n");
-                enhancedPrompt.append("- Suggested Next Steps must be numbered (1., 2., 3.) with bold labels using **Label:** format (ONLY labels should be bold)\n");
-                enhancedPrompt.append("- DISCLAIMER must be plain text with colon (no markdown bold)\n");
-                enhancedPrompt.append("- DO NOT use ** for section headings - only use ** for step labels within Suggested Next Steps\n");
-            } else {
-                enhancedPrompt.append("\n\nNOTE: No relevant information was found in the knowledge base for this query. ");
-                enhancedPrompt.append("Provide general guidance while acknowledging this limitation. ");
-                enhancedPrompt.append("Do not invent or hallucinate sources. If you cannot provide accurate information, ");
-                enhancedPrompt.append("recommend consultation with a legal professional.");
-            }
-        }
-        
-        return enhancedPrompt.toString();
-    }
-    
     /**
      * Extract citations and legal references mentioned in the report response.
      * This ensures we query KB API for sources that are actually mentioned in the report.
@@ -2,6 +2,7 @@ package com.capstone.civilify.controller;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.security.Principal;
 
@@ -26,6 +27,7 @@ import com.capstone.civilify.DTO.ErrorResponse;
 import com.capstone.civilify.service.CloudinaryService;
 import com.capstone.civilify.service.FirebaseAuthService;
 import com.capstone.civilify.service.FirestoreService;
+import com.capstone.civilify.util.FutureAdapters;
 import com.capstone.civilify.util.JwtUtil;
 
 /**
@@ -112,30 +114,24 @@ public class UserController {
      * @return Response entity containing the profile picture URL.
      */
     @GetMapping("/{uid}/profile-picture")
-    public ResponseEntity<?> getUserProfilePicture(@PathVariable String uid) {
-        try {
-            // Fetch user profile from Firestore
-            Map<String, Object> userProfile = firestoreService.getUserProfile(uid);
-            
+    public CompletableFuture<ResponseEntity<?>> getUserProfilePicture(@PathVariable String uid) {
+        // Fetch user profile from Firestore without holding the request thread
+        return firestoreService.getUserProfileAsync(uid).<ResponseEntity<?>>thenApply(userProfile -> {
+            Map<String, String> response = new HashMap<>();
             if (userProfile != null && userProfile.containsKey("profile_picture_url")) {
-                String profilePictureUrl = (String) userProfile.get("profile_picture_url");
-                
                 // Return the profile picture URL
-                Map<String, String> response = new HashMap<>();
-                response.put("profile_picture_url", profilePictureUrl);
-                return ResponseEntity.ok(response);
+                response.put("profile_picture_url", (String) userProfile.get("profile_picture_url"));
             } else {
                 // Return a default profile picture URL if none is found
-                Map<String, String> response = new HashMap<>();
                 response.put("profile_picture_url", "https://randomuser.me/api/portraits/men/32.jpg");
-                return ResponseEntity.ok(response);
             }
-        } catch (Exception e) {
+            return ResponseEntity.ok(response);
+        }).exceptionally(e -> {
             Map<String, String> errorResponse = new HashMap<>();
-            errorResponse.put("message", "Error fetching user profile picture: " + e.getMessage());
+            errorResponse.put("message", "Error fetching user profile picture: " + FutureAdapters.unwrap(e).getMessage());
             
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
-        }
+        });
     }
 
     /**
@@ -181,10 +177,8 @@ public class UserController {
      * @return Response entity containing user details.
      */
     @GetMapping("/email/{email}")
-    public ResponseEntity<?> getUserByEmail(@PathVariable String email) {
-        try {
-            Map<String, Object> userData = firestoreService.getUserByEmail(email);
-            
+    public CompletableFuture<ResponseEntity<?>> getUserByEmail(@PathVariable String email) {
+        return firestoreService.getUserByEmailAsync(email).<ResponseEntity<?>>thenApply(userData -> {
             // Remove password from user data for security
             if (userData.containsKey("password")) {
                 userData.remove("password");
@@ -192,10 +186,8 @@ public class UserController {
             }
             
             return ResponseEntity.ok(userData);
-        } catch (InterruptedException | ExecutionException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                .body(new ErrorResponse("User not found"));
-        }
+        }).exceptionally(e -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+            .body(new ErrorResponse("User not found")));
     }
 
     /**
@@ -10,6 +10,8 @@ public class ChatConversation {
     private Date createdAt;
     private Date updatedAt;
     private String status; // pending, in-progress, completed
+    private String contextSummary; // rolling summary of turns no longer sent verbatim to OpenAI
+    private int summarizedMessageCount; // number of oldest messages folded into contextSummary
 
     // Default constructor for Firestore
     public ChatConversation() {}
@@ -83,6 +85,22 @@ public class ChatConversation {
         this.status = status;
     }
 
+    public String getContextSummary() {
+        return contextSummary;
+    }
+
+    public void setContextSummary(String contextSummary) {
+        this.contextSummary = contextSummary;
+    }
+
+    public int getSummarizedMessageCount() {
+        return summarizedMessageCount;
+    }
+
+    public void setSummarizedMessageCount(int summarizedMessageCount) {
+        this.summarizedMessageCount = summarizedMessageCount;
+    }
+
     
 
 
@@ -0,0 +1,110 @@
+package com.capstone.civilify.repository;
+
+import com.capstone.civilify.model.ChatConversation;
+import com.capstone.civilify.model.ChatMessage;
+import com.capstone.civilify.util.FirestoreCursor;
+import com.google.cloud.firestore.AggregateQuerySnapshot;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.firebase.cloud.FirestoreClient;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static com.capstone.civilify.util.FutureAdapters.toCompletable;
+
+/**
+ * Non-blocking reads of conversations and their messages in Firestore.
+ *
+ * Every method returns as soon as the request is sent; the future completes when Firestore
+ * answers, so independent reads can run concurrently and no request thread is held while
+ * waiting. Writes stay in {@code ChatService}.
+ */
+@Repository
+public class ConversationRepository {
+
+    private static final String CONVERSATIONS_COLLECTION = "conversations";
+    private static final String MESSAGES_COLLECTION = "messages";
+
+    /**
+     * @return The conversation, or null when it does not exist
+     */
+    public CompletableFuture<ChatConversation> findById(String conversationId) {
+        return toCompletable(conversations().document(conversationId).get())
+            .thenApply(document -> document.exists() ? document.toObject(ChatConversation.class) : null);
+    }
+
+    /**
+     * Conversations whose field equals the value, most recently updated first.
+     */
+    public CompletableFuture<List<ChatConversation>> findByField(String field, String value) {
+        Query query = conversations()
+            .whereEqualTo(field, value)
+            .orderBy("updatedAt", Query.Direction.DESCENDING);
+        return toCompletable(query.get()).thenApply(snapshot -> snapshot.getDocuments().stream()
+            .map(doc -> doc.toObject(ChatConversation.class))
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Up to {@code limit} conversations whose field equals the value, most recently updated
+     * first (ties by document id), starting after the cursor.
+     */
+    public CompletableFuture<List<QueryDocumentSnapshot>> findPageByField(String field, String value, FirestoreCursor after, int limit) {
+        Query query = conversations()
+            .whereEqualTo(field, value)
+            .orderBy("updatedAt", Query.Direction.DESCENDING)
+            .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+        if (after != null) {
+            query = query.startAfter(after.values());
+        }
+        return toCompletable(query.limit(limit).get()).thenApply(QuerySnapshot::getDocuments);
+    }
+
+    /**
+     * All messages of a conversation, oldest first.
+     */
+    public CompletableFuture<List<ChatMessage>> findMessages(String conversationId) {
+        Query query = messages(conversationId).orderBy("timestamp", Query.Direction.ASCENDING);
+        return toCompletable(query.get()).thenApply(snapshot -> snapshot.getDocuments().stream()
+            .map(doc -> doc.toObject(ChatMessage.class))
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Up to {@code limit} messages before the cursor (or the latest ones), newest first.
+     */
+    public CompletableFuture<List<QueryDocumentSnapshot>> findMessagesBefore(String conversationId, FirestoreCursor before, int limit) {
+        Query query = messages(conversationId)
+            .orderBy("timestamp", Query.Direction.DESCENDING)
+            .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+        if (before != null) {
+            query = query.startAfter(before.values());
+        }
+        return toCompletable(query.limit(limit).get()).thenApply(QuerySnapshot::getDocuments);
+    }
+
+    public CompletableFuture<Long> countMessages(String conversationId) {
+        return toCompletable(messages(conversationId).count().get()).thenApply(AggregateQuerySnapshot::getCount);
+    }
+
+    public CompletableFuture<Boolean> existsForUser(String userEmail) {
+        Query query = conversations().whereEqualTo("userEmail", userEmail).limit(1);
+        return toCompletable(query.get()).thenApply(snapshot -> !snapshot.isEmpty());
+    }
+
+    private static CollectionReference conversations() {
+        Firestore db = FirestoreClient.getFirestore();
+        return db.collection(CONVERSATIONS_COLLECTION);
+    }
+
+    private static CollectionReference messages(String conversationId) {
+        return conversations().document(conversationId).collection(MESSAGES_COLLECTION);
+    }
+}
@@ -0,0 +1,167 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.util.KnowledgeBaseSkipClassifier;
+import com.capstone.civilify.util.KnowledgeBaseSkipClassifier.Category;
+import com.capstone.civilify.util.PromptTemplate;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Answers small-talk turns (greetings, thanks, "who are you", "how does this work", platform
+ * questions) from curated templates instead of calling OpenAI.
+ *
+ * Templates live in {@code classpath:responses/<gli|cpa>-<category>.txt}; a missing file
+ * leaves that category to the model. {@code {{name}}} is replaced with the user's first name,
+ * or "there" when it is unknown. Only messages that are nothing but the small talk are
+ * answered here: "hi" is, "hi, my landlord kept my deposit" still goes to the model, and
+ * "how can you help?" is while "how can you help with my annulment" is not.
+ */
+@Service
+public class CannedResponseEngine {
+    private static final Logger logger = LoggerFactory.getLogger(CannedResponseEngine.class);
+
+    @Value("${openai.canned.enabled:true}")
+    private boolean enabled;
+
+    // Longer messages carry more than small talk and go to the model
+    @Value("${openai.canned.max-words:8}")
+    private int maxWords;
+
+    private static final String RESPONSE_LOCATION = "responses/";
+
+    private static final Set<Category> CANNED_CATEGORIES =
+        EnumSet.of(Category.GREETING, Category.FAREWELL, Category.IDENTITY, Category.USAGE, Category.META);
+
+    // Words a pure greeting or thank-you consists of; anything else means there is a real question
+    private static final Set<String> SMALL_TALK_WORDS = Set.of(
+        "hello", "hi", "hey", "good", "morning", "afternoon", "evening", "kumusta", "kamusta",
+        "what's", "whats", "up", "sup", "yo", "goodbye", "bye", "see", "you", "paalam", "salamat",
+        "thank", "thanks", "ty", "i'm", "im", "done", "that's", "thats", "all", "exit", "quit",
+        "villy", "there", "po", "everyone", "again", "so", "much", "very", "a", "lot", "for", "the",
+        "help", "your", "ok", "okay", "later", "soon", "and", "day", "night", "have", "nice", "great"
+    );
+
+    // Placeholder profile names that should not be used to greet someone
+    private static final Set<String> GENERIC_NAMES = Set.of("civilify", "user", "mock", "guest", "anonymous");
+
+    private static final Pattern NAME = Pattern.compile("[\\p{L}][\\p{L}'\\-]{0,29}");
+
+    private final Map<String, PromptTemplate> templates = new HashMap<>();
+    private final Map<Category, AtomicLong> hits = new EnumMap<>(Category.class);
+    private final AtomicLong turns = new AtomicLong();
+    private final AtomicLong declined = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        for (Category category : CANNED_CATEGORIES) {
+            hits.put(category, new AtomicLong());
+            for (String lane : new String[] {"gli", "cpa"}) {
+                String name = lane + "-" + category.name().toLowerCase(Locale.ROOT);
+                String source = load(name);
+                if (source != null) {
+                    templates.put(name, PromptTemplate.compile(name, source, include -> null));
+                }
+            }
+        }
+        logger.info("Canned responses {}: {} templates loaded", enabled ? "enabled" : "disabled", templates.size());
+    }
+
+    /**
+     * @param message  The user's message
+     * @param mode     A = GLI, B = CPA
+     * @param category How {@code KnowledgeBaseSkipClassifier} classified the message
+     * @param userName The user's display name, if known
+     * @return A local response, or null when the turn should go to the model
+     */
+    public String respond(String message, String mode, Category category, String userName) {
+        turns.incrementAndGet();
+        if (!enabled || message == null || !CANNED_CATEGORIES.contains(category)) {
+            return null;
+        }
+        PromptTemplate template = templates.get(("B".equals(mode) ? "cpa-" : "gli-") + category.name().toLowerCase(Locale.ROOT));
+        if (template == null) {
+            return null;
+        }
+        if (!isStandalone(message.toLowerCase(Locale.ROOT).trim(), category)) {
+            declined.incrementAndGet();
+            return null;
+        }
+        hits.get(category).incrementAndGet();
+        logger.info("Answered {} turn with a canned response (mode {})", category, mode);
+        return template.render(Map.of("name", firstName(userName)));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long total = turns.get();
+        long answered = hits.values().stream().mapToLong(AtomicLong::get).sum();
+        stats.put("enabled", enabled);
+        stats.put("turns", total);
+        stats.put("hits", answered);
+        stats.put("hitRate", total > 0 ? (double) answered / total : 0.0);
+        stats.put("declined", declined.get());
+        Map<String, Object> byCategory = new LinkedHashMap<>();
+        hits.forEach((category, count) -> byCategory.put(category.name().toLowerCase(Locale.ROOT), count.get()));
+        stats.put("byCategory", byCategory);
+        return stats;
+    }
+
+    private boolean isStandalone(String lowerMessage, Category category) {
+        String[] words = lowerMessage.split("[^\\p{L}\\p{N}']+");
+        if (words.length > maxWords) {
+            return false;
+        }
+        if (category == Category.GREETING || category == Category.FAREWELL) {
+            for (String word : words) {
+                if (!word.isEmpty() && !SMALL_TALK_WORDS.contains(word)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // Identity, usage and platform questions: the classifier's phrase and nothing else
+        return KnowledgeBaseSkipClassifier.isOnlyPhrase(lowerMessage, category);
+    }
+
+    private static String firstName(String userName) {
+        if (userName == null || userName.isBlank()) {
+            return "there";
+        }
+        String first = userName.trim().split("\\s+")[0];
+        if (!NAME.matcher(first).matches() || GENERIC_NAMES.contains(first.toLowerCase(Locale.ROOT))) {
+            return "there";
+        }
+        return Character.toUpperCase(first.charAt(0)) + first.substring(1);
+    }
+
+    private static String load(String name) {
+        ClassPathResource resource = new ClassPathResource(RESPONSE_LOCATION + name + ".txt");
+        if (!resource.exists()) {
+            return null;
+        }
+        try (InputStream in = resource.getInputStream()) {
+            String text = StreamUtils.copyToString(in, StandardCharsets.UTF_8).replace("\r\n", "\n");
+            return text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read canned response " + resource.getPath(), e);
+        }
+    }
+}
@@ -2,14 +2,19 @@ package com.capstone.civilify.service;
 
 import com.capstone.civilify.model.ChatConversation;
 import com.capstone.civilify.model.ChatMessage;
+import com.capstone.civilify.repository.ConversationRepository;
+import com.capstone.civilify.util.FirestoreCursor;
 import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
 import com.google.firebase.cloud.FirestoreClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
@@ -17,6 +22,29 @@ import java.util.stream.Collectors;
 public class ChatService {
     private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
     private static final String CONVERSATIONS_COLLECTION = "conversations";
+    
+    // Largest page any paginated listing returns
+    public static final int MAX_PAGE_SIZE = 500;
+    
+    private static final int DELETE_PAGE_SIZE = 500;
+    
+    /**
+     * One page of a listing; {@code nextCursor} continues it and is null on the last page.
+     * Conversation pages are newest first; message pages hold the latest messages before the
+     * cursor, oldest first.
+     */
+    public record Page<T>(List<T> items, String nextCursor) {}
+    
+    private record Positioned<T>(T item, FirestoreCursor position) {}
+    
+    @Autowired
+    private ConversationRepository conversations;
+    
+    @Autowired
+    private ChatWriteBehindQueue writeBehind;
+    
+    @Autowired
+    private ConversationHistoryCache historyCache;
 
     // Create a new conversation
     public ChatConversation createConversation(String userId, String userEmail, String title) 
@@ -41,6 +69,8 @@ public class ChatService {
         // Save to Firestore
         ApiFuture<WriteResult> result = docRef.set(conversation);
         result.get(); // Wait for operation to complete
+        writeBehind.rememberConversation(conversationId, title);
+        historyCache.load(historyCache.beginLoad(conversationId), conversation, List.of(), 0);
         
         logger.info("Created new conversation with ID: {}", conversationId);
         return conversation;
@@ -48,34 +78,80 @@ public class ChatService {
     
     // Get all conversations for a user
     public List<ChatConversation> getUserConversations(String userEmail) throws ExecutionException, InterruptedException {
-        Firestore db = FirestoreClient.getFirestore();
-        
-        // Query conversations by user email
-        Query query = db.collection(CONVERSATIONS_COLLECTION)
-                        .whereEqualTo("userEmail", userEmail)
-                        .orderBy("updatedAt", Query.Direction.DESCENDING);
-        
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        
-        return documents.stream()
-                .map(doc -> doc.toObject(ChatConversation.class))
-                .collect(Collectors.toList());
+        return getUserConversationsAsync(userEmail).get();
+    }
+    
+    public CompletableFuture<List<ChatConversation>> getUserConversationsAsync(String userEmail) {
+        return conversations.findByField("userEmail", userEmail);
+    }
+    
+    // Get one page of a user's conversations, most recently updated first
+    public Page<ChatConversation> getUserConversations(String userEmail, int limit, String cursor) throws ExecutionException, InterruptedException {
+        return getUserConversationsAsync(userEmail, limit, cursor).get();
+    }
+    
+    public CompletableFuture<Page<ChatConversation>> getUserConversationsAsync(String userEmail, int limit, String cursor) {
+        return pageConversations("userEmail", userEmail, limit, cursor);
     }
     
     // Get a specific conversation by ID
     public ChatConversation getConversation(String conversationId) throws ExecutionException, InterruptedException {
-        Firestore db = FirestoreClient.getFirestore();
-        
-        DocumentReference docRef = db.collection(CONVERSATIONS_COLLECTION).document(conversationId);
-        ApiFuture<DocumentSnapshot> future = docRef.get();
-        DocumentSnapshot document = future.get();
+        return getConversationAsync(conversationId).get();
+    }
+    
+    public CompletableFuture<ChatConversation> getConversationAsync(String conversationId) {
+        ConversationHistoryCache.Snapshot cached = historyCache.get(conversationId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.conversation());
+        }
         
-        if (document.exists()) {
-            return document.toObject(ChatConversation.class);
-        } else {
-            return null;
+        return conversations.findById(conversationId).thenApply(conversation -> {
+            if (conversation != null) {
+                writeBehind.rememberConversation(conversationId, conversation.getTitle());
+            }
+            return conversation;
+        });
+    }
+    
+    // Get a conversation with its latest messages, from the history cache when it is active;
+    // null when the conversation does not exist
+    public ConversationHistoryCache.Snapshot getConversationHistory(String conversationId) throws ExecutionException, InterruptedException {
+        return getConversationHistoryAsync(conversationId).get();
+    }
+    
+    public CompletableFuture<ConversationHistoryCache.Snapshot> getConversationHistoryAsync(String conversationId) {
+        ConversationHistoryCache.Snapshot cached = historyCache.get(conversationId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
+        
+        // The conversation document and its latest messages are read concurrently;
+        // older messages are counted, not fetched
+        long loadVersion = historyCache.beginLoad(conversationId);
+        CompletableFuture<ChatConversation> conversationRead = conversations.findById(conversationId);
+        CompletableFuture<Page<ChatMessage>> recentRead =
+                getConversationMessagesPageAsync(conversationId, historyCache.getMaxMessages(), null);
+        
+        return conversationRead.thenCombine(recentRead, (conversation, recent) -> {
+            if (conversation == null) {
+                return CompletableFuture.<ConversationHistoryCache.Snapshot>completedFuture(null);
+            }
+            writeBehind.rememberConversation(conversationId, conversation.getTitle());
+            List<ChatMessage> messages = recent.items();
+            CompletableFuture<Integer> earlierMessages = CompletableFuture.completedFuture(0);
+            if (recent.nextCursor() != null) {
+                Set<String> pendingIds = writeBehind.pendingMessages(conversationId).stream()
+                        .map(ChatMessage::getId)
+                        .collect(Collectors.toSet());
+                long storedInPage = messages.stream().filter(message -> !pendingIds.contains(message.getId())).count();
+                earlierMessages = conversations.countMessages(conversationId)
+                        .thenApply(stored -> (int) Math.max(0, stored - storedInPage));
+            }
+            return earlierMessages.thenApply(earlier -> {
+                historyCache.load(loadVersion, conversation, messages, earlier);
+                return new ConversationHistoryCache.Snapshot(conversation, messages, earlier);
+            });
+        }).thenCompose(snapshot -> snapshot);
     }
     
     // Update conversation details
@@ -88,82 +164,150 @@ public class ChatService {
         DocumentReference docRef = db.collection(CONVERSATIONS_COLLECTION).document(conversation.getId());
         ApiFuture<WriteResult> result = docRef.set(conversation);
         result.get(); // Wait for operation to complete
+        historyCache.updateConversation(conversation);
         
         logger.info("Updated conversation with ID: {}", conversation.getId());
         return conversation;
     }
     
-    // Add a message to a conversation
+    // Add a message to a conversation; the message is persisted by the write-behind queue
+    // (conversation updatedAt and, for the first user message, the title are updated with it)
     public ChatMessage addMessage(String conversationId, String userId, String userEmail, 
                                  String content, boolean isUserMessage) throws ExecutionException, InterruptedException {
         Firestore db = FirestoreClient.getFirestore();
         
-        // Create a new message document as a subcollection of the conversation
-        DocumentReference docRef = db.collection(CONVERSATIONS_COLLECTION)
-                                     .document(conversationId)
-                                     .collection("messages")
-                                     .document();
-        String messageId = docRef.getId();
+        // Allocate the message id locally; no round trip is needed for it
+        String messageId = db.collection(CONVERSATIONS_COLLECTION)
+                             .document(conversationId)
+                             .collection("messages")
+                             .document()
+                             .getId();
         
-        Date now = new Date();
         ChatMessage message = new ChatMessage(
             messageId,
             userId,
             userEmail,
             content,
             isUserMessage,
-            now,
+            new Date(),
             conversationId
         );
         
-        // Save to Firestore
-        ApiFuture<WriteResult> result = docRef.set(message);
-        result.get(); // Wait for operation to complete
-        
-        // Update the conversation's updatedAt timestamp
-        DocumentReference convRef = db.collection(CONVERSATIONS_COLLECTION).document(conversationId);
-        ApiFuture<DocumentSnapshot> convFuture = convRef.get();
-        DocumentSnapshot convDoc = convFuture.get();
-        
-        if (convDoc.exists()) {
-            Map<String, Object> updates = new HashMap<>();
-            updates.put("updatedAt", now);
-            
-            // If this is the first message, use it to set the title
-            if (isUserMessage) {
-                ChatConversation conversation = convDoc.toObject(ChatConversation.class);
-                if (conversation != null && (conversation.getTitle() == null || conversation.getTitle().isEmpty())) {
-                    // Use the first 50 characters of the first message as the title
-                    String title = content.length() > 50 ? content.substring(0, 50) + "..." : content;
-                    updates.put("title", title);
-                }
-            }
-            
-            convRef.update(updates);
-        }
+        writeBehind.submit(message);
+        historyCache.append(message);
         
         logger.info("Added message with ID: {} to conversation: {}", messageId, conversationId);
         return message;
     }
+    
+    // Write-behind queue depth, throughput and lag, for the metrics endpoint
+    public Map<String, Object> getWriteBehindStats() {
+        return writeBehind.stats();
+    }
+    
+    public Map<String, Object> getHistoryCacheStats() {
+        return historyCache.stats();
+    }
 
-
+    // Store the rolling context summary without touching updatedAt (not user activity)
+    public void updateContextSummary(String conversationId, String contextSummary, int summarizedMessageCount)
+                                     throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("contextSummary", contextSummary);
+        updates.put("summarizedMessageCount", summarizedMessageCount);
+        
+        DocumentReference convRef = db.collection(CONVERSATIONS_COLLECTION).document(conversationId);
+        convRef.update(updates).get();
+        historyCache.updateContextSummary(conversationId, contextSummary, summarizedMessageCount);
+        
+        logger.info("Updated context summary of conversation {} ({} messages summarized)", conversationId, summarizedMessageCount);
+    }
     
     // Get all messages for a conversation
     public List<ChatMessage> getConversationMessages(String conversationId) throws ExecutionException, InterruptedException {
-        Firestore db = FirestoreClient.getFirestore();
-        
-        // Query messages from the subcollection of the conversation
-        Query query = db.collection(CONVERSATIONS_COLLECTION)
-                        .document(conversationId)
-                        .collection("messages")
-                        .orderBy("timestamp", Query.Direction.ASCENDING);
+        return getConversationMessagesAsync(conversationId).get();
+    }
+    
+    public CompletableFuture<List<ChatMessage>> getConversationMessagesAsync(String conversationId) {
+        ConversationHistoryCache.Snapshot cached = historyCache.get(conversationId);
+        if (cached != null && cached.isComplete()) {
+            return CompletableFuture.completedFuture(cached.messages());
+        }
         
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
+        return conversations.findMessages(conversationId).thenApply(messages -> {
+            // Include messages still waiting in the write-behind queue
+            List<ChatMessage> pending = writeBehind.pendingMessages(conversationId);
+            if (!pending.isEmpty()) {
+                Set<String> stored = messages.stream().map(ChatMessage::getId).collect(Collectors.toSet());
+                for (ChatMessage message : pending) {
+                    if (!stored.contains(message.getId())) {
+                        messages.add(message);
+                    }
+                }
+                messages.sort(Comparator.comparing(ChatMessage::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder())));
+            }
+            return messages;
+        });
+    }
+    
+    // Get the latest messages of a conversation, oldest first (for prompt construction)
+    public List<ChatMessage> getRecentMessages(String conversationId, int count) throws ExecutionException, InterruptedException {
+        return getConversationMessagesPage(conversationId, count, null).items();
+    }
+    
+    // Get one page of messages, tail first: without a cursor the latest messages, with one the
+    // messages before it; each page is in chronological order
+    public Page<ChatMessage> getConversationMessagesPage(String conversationId, int limit, String cursor)
+                                                        throws ExecutionException, InterruptedException {
+        return getConversationMessagesPageAsync(conversationId, limit, cursor).get();
+    }
+    
+    // Invalid limit or cursor: IllegalArgumentException, thrown before anything is read
+    public CompletableFuture<Page<ChatMessage>> getConversationMessagesPageAsync(String conversationId, int limit, String cursor) {
+        int pageSize = pageSize(limit);
+        FirestoreCursor before = cursor != null ? FirestoreCursor.decode(cursor) : null;
+        
+        ConversationHistoryCache.Snapshot cached = before == null ? historyCache.get(conversationId) : null;
+        if (cached != null && (cached.isComplete() || cached.messages().size() > pageSize)) {
+            // The cache holds the tail, pending writes included
+            List<Positioned<ChatMessage>> messages = new ArrayList<>();
+            for (ChatMessage message : cached.messages()) {
+                messages.add(new Positioned<>(message, positionOf(message)));
+            }
+            return CompletableFuture.completedFuture(tailPage(messages, pageSize));
+        }
         
-        return documents.stream()
-                .map(doc -> doc.toObject(ChatMessage.class))
-                .collect(Collectors.toList());
+        return conversations.findMessagesBefore(conversationId, before, pageSize + 1).thenApply(documents -> {
+            List<Positioned<ChatMessage>> messages = new ArrayList<>();
+            Set<String> stored = new HashSet<>();
+            for (QueryDocumentSnapshot doc : documents) {
+                ChatMessage message = doc.toObject(ChatMessage.class);
+                Timestamp timestamp = doc.getTimestamp("timestamp");
+                messages.add(new Positioned<>(message, new FirestoreCursor(timestamp != null ? timestamp : Timestamp.MIN_VALUE, doc.getId())));
+                stored.add(doc.getId());
+            }
+            // The newest page also shows messages still waiting in the write-behind queue
+            if (before == null) {
+                for (ChatMessage message : writeBehind.pendingMessages(conversationId)) {
+                    if (!stored.contains(message.getId())) {
+                        messages.add(new Positioned<>(message, positionOf(message)));
+                    }
+                }
+            }
+            return tailPage(messages, pageSize);
+        });
+    }
+    
+    // The latest pageSize messages in chronological order, with a cursor to the older ones
+    private static Page<ChatMessage> tailPage(List<Positioned<ChatMessage>> messages, int pageSize) {
+        messages.sort(Comparator.comparing((Positioned<ChatMessage> m) -> m.position().timestamp())
+                .thenComparing(m -> m.position().documentId()));
+        boolean hasMore = messages.size() > pageSize;
+        List<Positioned<ChatMessage>> page = hasMore ? messages.subList(messages.size() - pageSize, messages.size()) : messages;
+        String nextCursor = hasMore ? page.get(0).position().encode() : null;
+        return new Page<>(page.stream().map(Positioned::item).collect(Collectors.toList()), nextCursor);
     }
     
     // Assign an admin to a conversation
@@ -182,6 +326,7 @@ public class ChatService {
                 
                 ApiFuture<WriteResult> result = docRef.set(conversation);
                 result.get(); // Wait for operation to complete
+                historyCache.updateConversation(conversation);
                 
                 logger.info("Assigned admin {} to conversation {}", adminId, conversationId);
                 return conversation;
@@ -207,6 +352,7 @@ public class ChatService {
                 
                 ApiFuture<WriteResult> result = docRef.set(conversation);
                 result.get(); // Wait for operation to complete
+                historyCache.updateConversation(conversation);
                 
                 logger.info("Updated status of conversation {} to {}", conversationId, status);
                 return conversation;
@@ -219,53 +365,56 @@ public class ChatService {
     
     // Get conversations by location
     public List<ChatConversation> getConversationsByLocation(String location) throws ExecutionException, InterruptedException {
-        Firestore db = FirestoreClient.getFirestore();
-        
-        // Query conversations by location
-        Query query = db.collection(CONVERSATIONS_COLLECTION)
-                        .whereEqualTo("location", location)
-                        .orderBy("updatedAt", Query.Direction.DESCENDING);
-        
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        
-        return documents.stream()
-                .map(doc -> doc.toObject(ChatConversation.class))
-                .collect(Collectors.toList());
+        return getConversationsByLocationAsync(location).get();
+    }
+    
+    public CompletableFuture<List<ChatConversation>> getConversationsByLocationAsync(String location) {
+        return conversations.findByField("location", location);
+    }
+    
+    // Get one page of conversations by location, most recently updated first
+    public Page<ChatConversation> getConversationsByLocation(String location, int limit, String cursor) throws ExecutionException, InterruptedException {
+        return getConversationsByLocationAsync(location, limit, cursor).get();
+    }
+    
+    public CompletableFuture<Page<ChatConversation>> getConversationsByLocationAsync(String location, int limit, String cursor) {
+        return pageConversations("location", location, limit, cursor);
     }
     
     // Get conversations by category
     public List<ChatConversation> getConversationsByCategory(String category) throws ExecutionException, InterruptedException {
-        Firestore db = FirestoreClient.getFirestore();
-        
-        // Query conversations by category
-        Query query = db.collection(CONVERSATIONS_COLLECTION)
-                        .whereEqualTo("category", category)
-                        .orderBy("updatedAt", Query.Direction.DESCENDING);
-        
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        
-        return documents.stream()
-                .map(doc -> doc.toObject(ChatConversation.class))
-                .collect(Collectors.toList());
+        return getConversationsByCategoryAsync(category).get();
+    }
+    
+    public CompletableFuture<List<ChatConversation>> getConversationsByCategoryAsync(String category) {
+        return conversations.findByField("category", category);
+    }
+    
+    // Get one page of conversations by category, most recently updated first
+    public Page<ChatConversation> getConversationsByCategory(String category, int limit, String cursor) throws ExecutionException, InterruptedException {
+        return getConversationsByCategoryAsync(category, limit, cursor).get();
+    }
+    
+    public CompletableFuture<Page<ChatConversation>> getConversationsByCategoryAsync(String category, int limit, String cursor) {
+        return pageConversations("category", category, limit, cursor);
     }
     
     // Get conversations by status
     public List<ChatConversation> getConversationsByStatus(String status) throws ExecutionException, InterruptedException {
-        Firestore db = FirestoreClient.getFirestore();
-        
-        // Query conversations by status
-        Query query = db.collection(CONVERSATIONS_COLLECTION)
-                        .whereEqualTo("status", status)
-                        .orderBy("updatedAt", Query.Direction.DESCENDING);
-        
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        
-        return documents.stream()
-                .map(doc -> doc.toObject(ChatConversation.class))
-                .collect(Collectors.toList());
+        return getConversationsByStatusAsync(status).get();
+    }
+    
+    public CompletableFuture<List<ChatConversation>> getConversationsByStatusAsync(String status) {
+        return conversations.findByField("status", status);
+    }
+    
+    // Get one page of conversations by status, most recently updated first
+    public Page<ChatConversation> getConversationsByStatus(String status, int limit, String cursor) throws ExecutionException, InterruptedException {
+        return getConversationsByStatusAsync(status, limit, cursor).get();
+    }
+    
+    public CompletableFuture<Page<ChatConversation>> getConversationsByStatusAsync(String status, int limit, String cursor) {
+        return pageConversations("status", status, limit, cursor);
     }
     
     // Delete a conversation and all its messages
@@ -278,73 +427,104 @@ public class ChatService {
         DocumentSnapshot convDoc = convFuture.get();
         
         if (!convDoc.exists()) {
+            forgetConversation(conversationId);
             logger.warn("Conversation not found for deletion: {}", conversationId);
             return false;
         }
         
-        // Delete all messages in the conversation
-        CollectionReference messagesRef = convRef.collection("messages");
-        ApiFuture<QuerySnapshot> messagesFuture = messagesRef.get();
-        List<QueryDocumentSnapshot> messages = messagesFuture.get().getDocuments();
-        
-        // Batch delete for better performance
-        WriteBatch batch = db.batch();
-        
-        for (QueryDocumentSnapshot message : messages) {
-            batch.delete(message.getReference());
+        // BulkWriter batches and retries the deletes; no 500-operation batch limit to hit
+        BulkWriter writer = db.bulkWriter();
+        List<ApiFuture<WriteResult>> deletes;
+        try {
+            deletes = deleteConversationTree(writer, conversationId, DELETE_PAGE_SIZE);
+        } finally {
+            writer.close(); // Waits for all queued deletes
+        }
+        for (ApiFuture<WriteResult> delete : deletes) {
+            delete.get(); // Surface the first failed delete
         }
         
-        // Delete the conversation document itself
-        batch.delete(convRef);
-        
-        // Commit the batch
-        ApiFuture<List<WriteResult>> result = batch.commit();
-        result.get(); // Wait for operation to complete
-        
-        logger.info("Deleted conversation {} with {} messages", conversationId, messages.size());
+        logger.info("Deleted conversation {} with {} messages", conversationId, deletes.size() - 1);
         return true;
     }
     
-    // Check if a user has any conversations
-    public boolean userHasConversations(String userEmail) throws ExecutionException, InterruptedException {
+    /**
+     * Queue the deletion of a conversation on a BulkWriter: its messages, listed page by page
+     * (ids only), then the conversation document. Queued write-behind messages and the cached
+     * history of the conversation are dropped first.
+     *
+     * @return The futures of the message deletes followed by that of the conversation delete
+     */
+    public List<ApiFuture<WriteResult>> deleteConversationTree(BulkWriter writer, String conversationId, int pageSize)
+                                                               throws ExecutionException, InterruptedException {
         Firestore db = FirestoreClient.getFirestore();
         
-        // Query conversations by user email with a limit of 1 (just to check existence)
-        Query query = db.collection(CONVERSATIONS_COLLECTION)
-                        .whereEqualTo("userEmail", userEmail)
-                        .limit(1);
+        // Queued messages must not be written after the delete
+        forgetConversation(conversationId);
         
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
+        DocumentReference convRef = db.collection(CONVERSATIONS_COLLECTION).document(conversationId);
+        Query messagesQuery = convRef.collection("messages")
+                                     .select(FieldPath.documentId())
+                                     .orderBy(FieldPath.documentId())
+                                     .limit(pageSize);
+        List<ApiFuture<WriteResult>> deletes = new ArrayList<>();
+        List<QueryDocumentSnapshot> page = messagesQuery.get().get().getDocuments();
+        while (!page.isEmpty()) {
+            for (QueryDocumentSnapshot message : page) {
+                deletes.add(writer.delete(message.getReference()));
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+            page = messagesQuery.startAfter(page.get(page.size() - 1)).get().get().getDocuments();
+        }
         
-        // Return true if at least one conversation exists
-        return !documents.isEmpty();
+        // Delete the conversation document itself
+        deletes.add(writer.delete(convRef));
+        return deletes;
     }
     
-    // Delete all previous conversations for a user by email
-    public int deleteAllUserConversations(String userEmail) throws ExecutionException, InterruptedException {
-        return deleteAllUserConversationsExcept(userEmail, null);
+    // Drop queued writes and the cached history of a conversation that is being deleted
+    private void forgetConversation(String conversationId) throws InterruptedException {
+        writeBehind.forgetConversation(conversationId);
+        historyCache.invalidate(conversationId);
     }
-
-    // Delete all previous conversations for a user by email, except one
-    public int deleteAllUserConversationsExcept(String userEmail, String excludeConversationId) throws ExecutionException, InterruptedException {
-        Firestore db = FirestoreClient.getFirestore();
-        // Query all conversations for the user
-        Query query = db.collection(CONVERSATIONS_COLLECTION)
-                       .whereEqualTo("userEmail", userEmail);
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        int deletedCount = 0;
-        for (QueryDocumentSnapshot document : documents) {
-            String conversationId = document.getId();
-            if (excludeConversationId != null && conversationId.equals(excludeConversationId)) {
-                continue; // skip the current conversation
-            }
-            if (deleteConversation(conversationId)) {
-                deletedCount++;
+    
+    // One page of the conversations whose field equals the value, most recently updated first
+    private CompletableFuture<Page<ChatConversation>> pageConversations(String field, String value, int limit, String cursor) {
+        int pageSize = pageSize(limit);
+        FirestoreCursor after = cursor != null ? FirestoreCursor.decode(cursor) : null;
+        
+        return conversations.findPageByField(field, value, after, pageSize + 1).thenApply(documents -> {
+            boolean hasMore = documents.size() > pageSize;
+            List<QueryDocumentSnapshot> page = hasMore ? documents.subList(0, pageSize) : documents;
+            
+            String nextCursor = null;
+            if (hasMore) {
+                QueryDocumentSnapshot last = page.get(page.size() - 1);
+                nextCursor = new FirestoreCursor(last.getTimestamp("updatedAt"), last.getId()).encode();
             }
+            List<ChatConversation> items = page.stream()
+                    .map(doc -> doc.toObject(ChatConversation.class))
+                    .collect(Collectors.toList());
+            return new Page<>(items, nextCursor);
+        });
+    }
+    
+    private static int pageSize(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
         }
-        logger.info("Deleted {} conversations for user: {} (excluding {})", deletedCount, userEmail, excludeConversationId);
-        return deletedCount;
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+    
+    private static FirestoreCursor positionOf(ChatMessage message) {
+        Date timestamp = message.getTimestamp() != null ? message.getTimestamp() : new Date(0);
+        return new FirestoreCursor(Timestamp.of(timestamp), message.getId());
+    }
+    
+    // Check if a user has any conversations
+    public boolean userHasConversations(String userEmail) throws ExecutionException, InterruptedException {
+        return conversations.existsForUser(userEmail).get();
     }
 }
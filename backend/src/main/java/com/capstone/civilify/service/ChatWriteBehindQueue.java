@@ -0,0 +1,527 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.model.ChatMessage;
+import com.capstone.civilify.util.BoundedCache;
+import com.capstone.civilify.util.LatencyTracker;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.firebase.cloud.FirestoreClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persistence for chat messages.
+ *
+ * {@link ChatService#addMessage} hands the message (with its client-generated id and
+ * timestamp) to this queue and returns. A single writer thread commits queued messages in
+ * micro-batches: one Firestore {@code WriteBatch} per batch, holding the message documents
+ * and one field-level {@code updatedAt} update per conversation. Because there is one
+ * writer and a failed batch is retried before anything behind it, messages of a
+ * conversation are written in the order they were added.
+ *
+ * Whether a conversation exists and already has a title is remembered from conversations
+ * created or read through {@link ChatService}; unknown conversations are looked up by the
+ * writer, off the request thread. Messages not yet committed are still returned by
+ * {@link #pendingMessages}, so the next turn sees them in its history. The queue is
+ * drained on shutdown; when it is disabled, messages are written synchronously.
+ *
+ * When the queue is full, {@link #submit} waits briefly for room and then rejects the
+ * message instead of writing it ahead of the ones already queued. A batch that still fails
+ * after {@code chat.write-behind.max-attempts} moves to a dead-letter list: its messages stay
+ * pending and are retried every {@code chat.write-behind.dead-letter-retry-ms} (they keep
+ * their timestamps, so history order is unchanged). Once a conversation is forgotten (deleted), none of its messages are
+ * written any more, and {@link #forgetConversation} waits for a batch that is already being
+ * committed with its messages, so the deletion that follows also removes those.
+ */
+@Service
+public class ChatWriteBehindQueue {
+    private static final Logger logger = LoggerFactory.getLogger(ChatWriteBehindQueue.class);
+
+    private static final String CONVERSATIONS_COLLECTION = "conversations";
+
+    /**
+     * Thrown by {@link #submit} when a message cannot be queued (queue full or shutting down).
+     */
+    public static class WriteRejectedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public WriteRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    @Value("${chat.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    // How long submit waits for room in a full queue before rejecting the message
+    @Value("${chat.write-behind.enqueue-timeout-ms:250}")
+    private long enqueueTimeoutMs;
+
+    // Messages per WriteBatch; each message costs up to two writes of Firestore's 500 per batch
+    @Value("${chat.write-behind.max-batch:100}")
+    private int maxBatch;
+
+    // How long the writer waits for more messages before committing a partial batch
+    @Value("${chat.write-behind.linger-ms:20}")
+    private long lingerMs;
+
+    @Value("${chat.write-behind.max-attempts:8}")
+    private int maxAttempts;
+
+    // Messages kept after their batch exhausted its attempts; the oldest are dropped beyond this
+    @Value("${chat.write-behind.dead-letter-capacity:10000}")
+    private int deadLetterCapacity;
+
+    @Value("${chat.write-behind.dead-letter-retry-ms:30000}")
+    private long deadLetterRetryMs;
+
+    @Value("${chat.write-behind.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private static final int MAX_BATCH_LIMIT = 200;
+    private static final long BASE_BACKOFF_MS = 200;
+    private static final long MAX_BACKOFF_MS = 10_000;
+    private static final int TITLE_LENGTH = 50;
+
+    private record PendingWrite(ChatMessage message, long enqueuedAtMs) {}
+
+    /**
+     * What the writer knows about a conversation document.
+     */
+    private record ConversationState(boolean exists, boolean titled) {}
+
+    private BlockingQueue<PendingWrite> queue;
+    private final Map<String, List<ChatMessage>> pendingByConversation = new ConcurrentHashMap<>();
+    private BoundedCache<String, ConversationState> conversations;
+    // Deleted conversations whose messages must not be written
+    private BoundedCache<String, Boolean> forgotten;
+    private final LatencyTracker lag = new LatencyTracker("chat-write-lag", 512);
+    private Thread writer;
+    private volatile boolean running;
+
+    // Conversations with messages in a batch being committed, with the number of such batches
+    private final Object commitLock = new Object();
+    private final Map<String, Integer> committing = new HashMap<>();
+
+    private final Deque<PendingWrite> deadLetters = new ArrayDeque<>();
+    private long nextDeadLetterRetryMs;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong syncWrites = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        maxBatch = Math.max(1, Math.min(MAX_BATCH_LIMIT, maxBatch));
+        conversations = new BoundedCache<>("chat-conversation-state", 10_000, TimeUnit.HOURS.toMillis(6));
+        forgotten = new BoundedCache<>("chat-forgotten-conversations", 10_000, TimeUnit.HOURS.toMillis(6));
+        if (!enabled) {
+            logger.info("Chat write-behind disabled; messages are written synchronously");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        running = true;
+        writer = new Thread(this::runWriter, "chat-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+        logger.info("Chat write-behind enabled: queue {}, batch {}, linger {} ms", queueCapacity, maxBatch, lingerMs);
+    }
+
+    @PreDestroy
+    private void flushOnShutdown() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            writer.interrupt();
+            logger.error("Chat write-behind did not drain within {} ms; {} messages not persisted",
+                shutdownTimeoutMs, queue.size() + pendingCount());
+        } else {
+            logger.info("Chat write-behind drained on shutdown");
+        }
+        int undelivered = deadLetterCount();
+        if (undelivered > 0) {
+            logger.error("Chat write-behind shut down with {} dead-lettered messages not persisted", undelivered);
+        }
+    }
+
+    /**
+     * Persists a message in the background, or right away when write-behind is disabled.
+     *
+     * @throws WriteRejectedException if the queue stays full for the enqueue timeout, or is shutting down
+     */
+    public void submit(ChatMessage message) throws ExecutionException, InterruptedException {
+        PendingWrite write = new PendingWrite(message, System.currentTimeMillis());
+        if (queue == null) {
+            syncWrites.incrementAndGet();
+            commitAttempt(new ArrayList<>(List.of(write)));
+            lag.record(System.currentTimeMillis() - write.enqueuedAtMs());
+            return;
+        }
+        if (!running) {
+            // Writing now would overtake the messages still being drained
+            rejected.incrementAndGet();
+            throw new WriteRejectedException("Chat messages cannot be saved while the server is shutting down");
+        }
+        pendingByConversation.computeIfAbsent(message.getConversationId(), id -> new CopyOnWriteArrayList<>()).add(message);
+        boolean queued = false;
+        try {
+            // Wait for room rather than writing ahead of the messages already queued
+            queued = queue.offer(write, enqueueTimeoutMs, TimeUnit.MILLISECONDS);
+        } finally {
+            if (!queued) {
+                removePending(List.of(write));
+            }
+        }
+        if (!queued) {
+            rejected.incrementAndGet();
+            logger.warn("Chat write-behind queue full for {} ms; rejecting message {}", enqueueTimeoutMs, message.getId());
+            throw new WriteRejectedException("Chat messages are being saved more slowly than they arrive; please try again");
+        }
+        enqueued.incrementAndGet();
+    }
+
+    /**
+     * Messages of a conversation that were submitted but are not committed yet, in submit order.
+     */
+    public List<ChatMessage> pendingMessages(String conversationId) {
+        List<ChatMessage> pending = pendingByConversation.get(conversationId);
+        return pending != null ? new ArrayList<>(pending) : List.of();
+    }
+
+    /**
+     * Records what the caller just saw of a conversation, sparing the writer a lookup.
+     */
+    public void rememberConversation(String conversationId, String title) {
+        conversations.put(conversationId, new ConversationState(true, title != null && !title.isEmpty()));
+    }
+
+    /**
+     * The conversation is being deleted: its messages are no longer written. Returns once no
+     * batch holding its messages is being committed, so a delete issued afterwards sees them.
+     */
+    public void forgetConversation(String conversationId) throws InterruptedException {
+        synchronized (commitLock) {
+            forgotten.put(conversationId, Boolean.TRUE);
+            while (committing.containsKey(conversationId)) {
+                commitLock.wait();
+            }
+        }
+        conversations.put(conversationId, new ConversationState(false, false));
+        if (queue != null) {
+            queue.removeIf(write -> conversationId.equals(write.message().getConversationId()));
+        }
+        synchronized (deadLetters) {
+            deadLetters.removeIf(write -> conversationId.equals(write.message().getConversationId()));
+        }
+        pendingByConversation.remove(conversationId);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queued", queue != null ? queue.size() : 0);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("pending", pendingCount());
+        stats.put("oldestPendingAgeMs", oldestPendingAgeMs());
+        stats.put("enqueued", enqueued.get());
+        stats.put("committed", committed.get());
+        stats.put("batches", batches.get());
+        stats.put("retries", retries.get());
+        stats.put("failed", failed.get());
+        stats.put("deadLetters", deadLetterCount());
+        stats.put("deadLettered", deadLettered.get());
+        stats.put("droppedForDeletedConversations", dropped.get());
+        stats.put("rejected", rejected.get());
+        stats.put("syncWrites", syncWrites.get());
+        stats.put("lag", lag.stats());
+        return stats;
+    }
+
+    private void runWriter() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (running) {
+                        retryDeadLetters();
+                    }
+                    continue;
+                }
+                List<PendingWrite> batch = new ArrayList<>(maxBatch);
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + lingerMs;
+                while (batch.size() < maxBatch) {
+                    long remaining = running ? deadline - System.currentTimeMillis() : 0;
+                    PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commitWithRetry(batch);
+                retryDeadLetters();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Chat write-behind writer error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    // Retries the batch before anything queued behind it, keeping per-conversation order
+    private void commitWithRetry(List<PendingWrite> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                commitAttempt(batch);
+                long now = System.currentTimeMillis();
+                batch.forEach(write -> lag.record(now - write.enqueuedAtMs()));
+                removePending(batch);
+                return;
+            } catch (ExecutionException | RuntimeException e) {
+                // A conversation may have been deleted since it was remembered; look it up again
+                batch.forEach(write -> conversations.invalidate(write.message().getConversationId()));
+                if (attempt >= maxAttempts) {
+                    deadLetter(batch);
+                    logger.error("Chat write-behind moved {} messages to the dead-letter list after {} attempts: {}",
+                        batch.size(), attempt, e.getMessage());
+                    return;
+                }
+                retries.incrementAndGet();
+                long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt - 1, 10));
+                logger.warn("Chat write-behind batch of {} failed (attempt {}), retrying in {} ms: {}",
+                    batch.size(), attempt, backoff, e.getMessage());
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    // Keeps the messages (still pending) for a later retry, dropping the oldest beyond capacity
+    private void deadLetter(List<PendingWrite> batch) {
+        List<PendingWrite> overflow = new ArrayList<>();
+        synchronized (deadLetters) {
+            deadLetters.addAll(batch);
+            while (deadLetters.size() > Math.max(1, deadLetterCapacity)) {
+                overflow.add(deadLetters.pollFirst());
+            }
+        }
+        deadLettered.addAndGet(batch.size());
+        if (!overflow.isEmpty()) {
+            failed.addAndGet(overflow.size());
+            removePending(overflow);
+            logger.error("Chat write-behind dead-letter list full; dropped {} messages", overflow.size());
+        }
+        if (nextDeadLetterRetryMs == 0) {
+            nextDeadLetterRetryMs = System.currentTimeMillis() + deadLetterRetryMs;
+        }
+    }
+
+    // One attempt at the oldest dead letters; they go back to the front of the list on failure
+    private void retryDeadLetters() throws InterruptedException {
+        if (nextDeadLetterRetryMs == 0 || System.currentTimeMillis() < nextDeadLetterRetryMs) {
+            return;
+        }
+        List<PendingWrite> batch = new ArrayList<>(maxBatch);
+        synchronized (deadLetters) {
+            while (batch.size() < maxBatch && !deadLetters.isEmpty()) {
+                batch.add(deadLetters.pollFirst());
+            }
+        }
+        if (batch.isEmpty()) {
+            nextDeadLetterRetryMs = 0;
+            return;
+        }
+        try {
+            commitAttempt(batch);
+            removePending(batch);
+            logger.info("Chat write-behind persisted {} dead-lettered messages", batch.size());
+            nextDeadLetterRetryMs = deadLetterCount() > 0 ? System.currentTimeMillis() : 0;
+        } catch (ExecutionException | RuntimeException e) {
+            batch.forEach(write -> conversations.invalidate(write.message().getConversationId()));
+            synchronized (deadLetters) {
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    deadLetters.addFirst(batch.get(i));
+                }
+            }
+            nextDeadLetterRetryMs = System.currentTimeMillis() + deadLetterRetryMs;
+            logger.warn("Chat write-behind dead-letter retry of {} messages failed: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * One commit of a batch. Messages of forgotten conversations are removed from it first,
+     * and {@link #forgetConversation} waits while the rest is being committed.
+     */
+    private void commitAttempt(List<PendingWrite> batch) throws ExecutionException, InterruptedException {
+        List<String> conversationIds = new ArrayList<>();
+        synchronized (commitLock) {
+            Iterator<PendingWrite> writes = batch.iterator();
+            while (writes.hasNext()) {
+                PendingWrite write = writes.next();
+                String conversationId = write.message().getConversationId();
+                if (forgotten.get(conversationId) != null) {
+                    writes.remove();
+                    removePending(List.of(write));
+                    dropped.incrementAndGet();
+                } else if (!conversationIds.contains(conversationId)) {
+                    conversationIds.add(conversationId);
+                }
+            }
+            conversationIds.forEach(id -> committing.merge(id, 1, Integer::sum));
+        }
+        try {
+            if (!batch.isEmpty()) {
+                commit(batch);
+            }
+        } finally {
+            synchronized (commitLock) {
+                conversationIds.forEach(id -> committing.computeIfPresent(id, (key, count) -> count > 1 ? count - 1 : null));
+                commitLock.notifyAll();
+            }
+        }
+    }
+
+    private void commit(List<PendingWrite> writes) throws ExecutionException, InterruptedException {
+        Firestore db = firestore();
+        WriteBatch batch = db.batch();
+
+        // Latest activity per conversation, and the title for a conversation that has none yet
+        Map<String, Date> updatedAt = new LinkedHashMap<>();
+        Map<String, String> titles = new HashMap<>();
+        for (PendingWrite write : writes) {
+            ChatMessage message = write.message();
+            DocumentReference messageRef = conversationRef(db, message.getConversationId())
+                .collection("messages").document(message.getId());
+            batch.set(messageRef, message);
+            updatedAt.merge(message.getConversationId(), message.getTimestamp(), (a, b) -> b.after(a) ? b : a);
+            if (message.isUserMessage() && !titles.containsKey(message.getConversationId())) {
+                String content = message.getContent() != null ? message.getContent() : "";
+                titles.put(message.getConversationId(),
+                    content.length() > TITLE_LENGTH ? content.substring(0, TITLE_LENGTH) + "..." : content);
+            }
+        }
+
+        Map<String, ConversationState> states = resolveConversations(db, updatedAt.keySet());
+        for (Map.Entry<String, Date> entry : updatedAt.entrySet()) {
+            String conversationId = entry.getKey();
+            ConversationState state = states.get(conversationId);
+            if (state == null || !state.exists()) {
+                continue; // Same as before: the message is stored, a missing conversation is not created
+            }
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("updatedAt", entry.getValue());
+            String title = titles.get(conversationId);
+            if (title != null && !state.titled()) {
+                updates.put("title", title);
+            }
+            batch.update(conversationRef(db, conversationId), updates);
+        }
+
+        batch.commit().get();
+        batches.incrementAndGet();
+        committed.addAndGet(writes.size());
+        titles.forEach((conversationId, title) -> {
+            ConversationState state = states.get(conversationId);
+            if (state != null && state.exists()) {
+                conversations.put(conversationId, new ConversationState(true, true));
+            }
+        });
+    }
+
+    // Known states from the cache; unknown conversations are read in one round trip
+    private Map<String, ConversationState> resolveConversations(Firestore db, Iterable<String> conversationIds)
+            throws ExecutionException, InterruptedException {
+        Map<String, ConversationState> states = new HashMap<>();
+        List<DocumentReference> unknown = new ArrayList<>();
+        for (String conversationId : conversationIds) {
+            ConversationState state = conversations.get(conversationId);
+            if (state != null) {
+                states.put(conversationId, state);
+            } else {
+                unknown.add(conversationRef(db, conversationId));
+            }
+        }
+        if (!unknown.isEmpty()) {
+            for (DocumentSnapshot snapshot : db.getAll(unknown.toArray(new DocumentReference[0])).get()) {
+                String title = snapshot.exists() ? snapshot.getString("title") : null;
+                ConversationState state = new ConversationState(snapshot.exists(), title != null && !title.isEmpty());
+                conversations.put(snapshot.getId(), state);
+                states.put(snapshot.getId(), state);
+            }
+        }
+        return states;
+    }
+
+    private void removePending(List<PendingWrite> writes) {
+        for (PendingWrite write : writes) {
+            String conversationId = write.message().getConversationId();
+            pendingByConversation.computeIfPresent(conversationId, (id, pending) -> {
+                pending.remove(write.message());
+                return pending.isEmpty() ? null : pending;
+            });
+        }
+    }
+
+    // Overridden in tests
+    Firestore firestore() {
+        return FirestoreClient.getFirestore();
+    }
+
+    private int deadLetterCount() {
+        synchronized (deadLetters) {
+            return deadLetters.size();
+        }
+    }
+
+    private int pendingCount() {
+        return pendingByConversation.values().stream().mapToInt(List::size).sum();
+    }
+
+    private long oldestPendingAgeMs() {
+        PendingWrite head = queue != null ? queue.peek() : null;
+        return head != null ? System.currentTimeMillis() - head.enqueuedAtMs() : 0;
+    }
+
+    private static DocumentReference conversationRef(Firestore db, String conversationId) {
+        return db.collection(CONVERSATIONS_COLLECTION).document(conversationId);
+    }
+}
@@ -0,0 +1,222 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.model.ChatConversation;
+import com.capstone.civilify.util.SingleFlight;
+import com.capstone.civilify.util.TokenEstimator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fits the conversation sent to OpenAI into a per-mode prompt token budget.
+ *
+ * System prompt (with KB context), the new user message and as many of the most recent
+ * turns as fit are sent verbatim. Older turns are represented by a rolling summary stored on
+ * the {@link ChatConversation} document ({@code contextSummary} covering the first
+ * {@code summarizedMessageCount} messages). When enough turns have fallen out of the window
+ * without being summarized, the summary is extended in the background, so requests never
+ * wait for it and long conversations stop growing the prompt.
+ */
+@Service
+public class ConversationContextManager {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationContextManager.class);
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private OpenAIService openAIService;
+
+    @Value("${openai.context.gli.max-prompt-tokens:8000}")
+    private int gliMaxPromptTokens;
+
+    @Value("${openai.context.cpa.max-prompt-tokens:6000}")
+    private int cpaMaxPromptTokens;
+
+    // Most recent messages always sent verbatim, even over budget
+    @Value("${openai.context.min-recent-messages:2}")
+    private int minRecentMessages;
+
+    @Value("${openai.context.summary.enabled:true}")
+    private boolean summaryEnabled;
+
+    // Unsummarized messages outside the window before the summary is extended
+    @Value("${openai.context.summary.batch-messages:4}")
+    private int summaryBatchMessages;
+
+    @Value("${openai.context.summary.max-chars:2000}")
+    private int summaryMaxChars;
+
+    private ThreadPoolExecutor summaryExecutor;
+    private final SingleFlight<String, Integer> summaryFlights = new SingleFlight<>();
+    private final AtomicLong windows = new AtomicLong();
+    private final AtomicLong trimmedWindows = new AtomicLong();
+    private final AtomicLong messagesDropped = new AtomicLong();
+    private final AtomicLong summariesWritten = new AtomicLong();
+    private final AtomicLong summaryFailures = new AtomicLong();
+
+    /**
+     * What to send for one completion: the system prompt (with the summary appended when
+     * older turns were left out) and the history that fits.
+     */
+    public record ContextWindow(String systemPrompt, List<Map<String, String>> history, int promptTokens, int droppedMessages) {}
+
+    @PostConstruct
+    private void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.summaryExecutor = new ThreadPoolExecutor(
+            1, 2, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(64),
+            runnable -> {
+                Thread thread = new Thread(runnable, "context-summary-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.summaryExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (summaryExecutor != null) {
+            summaryExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Fit system prompt, history and user message into the budget for the mode.
+     *
+     * @param conversation Conversation document holding the rolling summary (may be null)
+     * @param history      Full history, oldest first, in the content/isUserMessage shape
+     */
+    public ContextWindow fit(ChatConversation conversation, List<Map<String, String>> history,
+                             String systemPrompt, String userMessage, String mode) {
+        return fit(conversation, history, 0, systemPrompt, userMessage, mode);
+    }
+
+    /**
+     * Like {@link #fit(ChatConversation, List, String, String, String)} for a history holding
+     * only the latest messages of the conversation.
+     *
+     * @param earlierMessages Number of older messages not in {@code history}; the stored
+     *                        {@code summarizedMessageCount} is relative to the full conversation
+     */
+    public ContextWindow fit(ChatConversation conversation, List<Map<String, String>> history, int earlierMessages,
+                             String systemPrompt, String userMessage, String mode) {
+        windows.incrementAndGet();
+        List<Map<String, String>> all = history != null ? history : new ArrayList<>();
+        int budget = "B".equals(mode) ? cpaMaxPromptTokens : gliMaxPromptTokens;
+
+        // Everything fits: send the raw conversation as before
+        int fullTokens = TokenEstimator.countPrompt(systemPrompt, all, currentMessageFor(all, userMessage));
+        if (fullTokens <= budget && earlierMessages == 0) {
+            return new ContextWindow(systemPrompt, all, fullTokens, 0);
+        }
+
+        String summary = summaryEnabled && conversation != null ? conversation.getContextSummary() : null;
+        boolean hasSummary = summary != null && !summary.isBlank();
+        int summarized = hasSummary
+            ? Math.min(Math.max(0, conversation.getSummarizedMessageCount() - earlierMessages), all.size()) : 0;
+        String prompt = hasSummary ? withSummary(systemPrompt, summary) : systemPrompt;
+
+        // Walk back from the newest message; never re-send turns the summary already covers
+        int used = TokenEstimator.countPrompt(prompt, null, currentMessageFor(all, userMessage));
+        int start = all.size();
+        while (start > summarized) {
+            int cost = TokenEstimator.countMessage(all.get(start - 1).get("content"));
+            boolean mustKeep = all.size() - start < minRecentMessages;
+            if (!mustKeep && used + cost > budget) {
+                break;
+            }
+            used += cost;
+            start--;
+        }
+
+        List<Map<String, String>> window = new ArrayList<>(all.subList(start, all.size()));
+        int dropped = start + earlierMessages;
+        trimmedWindows.incrementAndGet();
+        messagesDropped.addAndGet(dropped);
+        logger.info("Context window for mode {}: {} of {} messages, ~{} prompt tokens (budget {}), summary covers {}",
+            mode, window.size(), all.size() + earlierMessages, used, budget, summarized + earlierMessages);
+
+        // Messages older than the held history cannot be summarized any more; the summary moves past them
+        int unsummarized = start - summarized;
+        if (summaryEnabled && conversation != null && conversation.getId() != null && unsummarized >= summaryBatchMessages) {
+            scheduleSummary(conversation.getId(), hasSummary ? summary : null, all.subList(summarized, start),
+                start + earlierMessages);
+        }
+        return new ContextWindow(prompt, window, used, dropped);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("gliMaxPromptTokens", gliMaxPromptTokens);
+        stats.put("cpaMaxPromptTokens", cpaMaxPromptTokens);
+        stats.put("windows", windows.get());
+        stats.put("trimmedWindows", trimmedWindows.get());
+        stats.put("messagesDropped", messagesDropped.get());
+        stats.put("summariesWritten", summariesWritten.get());
+        stats.put("summaryFailures", summaryFailures.get());
+        stats.put("summaryFlights", summaryFlights.stats());
+        return stats;
+    }
+
+    private void scheduleSummary(String conversationId, String previousSummary,
+                                 List<Map<String, String>> olderTurns, int newSummarizedCount) {
+        if (summaryFlights.isInFlight(conversationId)) {
+            return;
+        }
+        List<Map<String, String>> turns = new ArrayList<>(olderTurns);
+        summaryFlights.execute(conversationId, () -> {
+            String updated = openAIService.updateConversationSummary(previousSummary, turns);
+            if (updated == null || updated.isBlank()) {
+                throw new IllegalStateException("empty summary");
+            }
+            String bounded = updated.length() > summaryMaxChars ? updated.substring(0, summaryMaxChars) : updated;
+            try {
+                chatService.updateContextSummary(conversationId, bounded.trim(), newSummarizedCount);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            summariesWritten.incrementAndGet();
+            return newSummarizedCount;
+        }, summaryExecutor).whenComplete((count, error) -> {
+            if (error != null) {
+                summaryFailures.incrementAndGet();
+                logger.warn("Could not update context summary for conversation {}: {}", conversationId, error.getMessage());
+            }
+        });
+    }
+
+    private static String withSummary(String systemPrompt, String summary) {
+        return systemPrompt + "\n\nEARLIER IN THIS CONVERSATION (summary of turns no longer shown):\n" + summary.trim();
+    }
+
+    // The frontend persists the user message first, so it is often already the last history entry
+    private static String currentMessageFor(List<Map<String, String>> history, String userMessage) {
+        if (!history.isEmpty() && userMessage != null) {
+            Map<String, String> last = history.get(history.size() - 1);
+            if ("true".equals(last.get("isUserMessage")) && userMessage.trim().equals(
+                    last.get("content") != null ? last.get("content").trim() : null)) {
+                return null;
+            }
+        }
+        return userMessage;
+    }
+}
@@ -0,0 +1,350 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.util.BoundedCache;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteResult;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.firebase.cloud.FirestoreClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes all conversations of a user as a background job.
+ *
+ * A job lists the user's conversations page by page (ids only) and deletes them through
+ * {@link ChatService#deleteConversationTree} on one Firestore {@code BulkWriter} per job,
+ * with at most {@code chat.deletion.parallelism} conversations in progress across all jobs.
+ * BulkWriter batches, rate-limits and retries the deletes, so long conversations never run
+ * into the 500-operation limit of a single WriteBatch.
+ *
+ * Only conversations created before the job was submitted are deleted: the chat page starts
+ * a new conversation right after requesting the cleanup, and that one must survive. Jobs for
+ * the same user and exclusion that are still running are reused rather than started twice.
+ * Finished jobs can be queried until they expire.
+ */
+@Service
+public class ConversationDeletionService {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationDeletionService.class);
+
+    private static final String CONVERSATIONS_COLLECTION = "conversations";
+
+    @Autowired
+    private ChatService chatService;
+
+    // Conversations whose messages are listed and deleted concurrently
+    @Value("${chat.deletion.parallelism:4}")
+    private int parallelism;
+
+    // Documents listed per query page (conversations and messages)
+    @Value("${chat.deletion.page-size:200}")
+    private int pageSize;
+
+    @Value("${chat.deletion.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs;
+
+    @Value("${chat.deletion.job-retention-seconds:3600}")
+    private int jobRetentionSeconds;
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    /**
+     * Progress of one deletion job.
+     */
+    public static final class Job {
+        private final String jobId = UUID.randomUUID().toString();
+        private final String userEmail;
+        private final String excludeConversationId;
+        private final Timestamp createdBefore = Timestamp.now();
+        private volatile Status status = Status.QUEUED;
+        private final AtomicInteger conversationsFound = new AtomicInteger();
+        private final AtomicInteger conversationsDeleted = new AtomicInteger();
+        private final AtomicLong messagesDeleted = new AtomicLong();
+        private final AtomicLong failedDeletes = new AtomicLong();
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile String error;
+
+        private Job(String userEmail, String excludeConversationId) {
+            this.userEmail = userEmail;
+            this.excludeConversationId = excludeConversationId;
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        private boolean isActive() {
+            return status == Status.QUEUED || status == Status.RUNNING;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("jobId", jobId);
+            map.put("status", status.name().toLowerCase());
+            map.put("userEmail", userEmail);
+            map.put("excludeConversationId", excludeConversationId);
+            map.put("conversationsFound", conversationsFound.get());
+            map.put("conversationsDeleted", conversationsDeleted.get());
+            map.put("messagesDeleted", messagesDeleted.get());
+            map.put("failedDeletes", failedDeletes.get());
+            map.put("startedAt", startedAt > 0 ? startedAt : null);
+            map.put("finishedAt", finishedAt > 0 ? finishedAt : null);
+            map.put("error", error);
+            return map;
+        }
+    }
+
+    private ThreadPoolExecutor jobExecutor;
+    private ExecutorService conversationExecutor;
+    private BoundedCache<String, Job> jobs;
+    // Running job per user and exclusion, so repeated requests join it
+    private final Map<String, Job> activeJobs = new ConcurrentHashMap<>();
+    private final AtomicLong jobsStarted = new AtomicLong();
+    private final AtomicLong jobsCompleted = new AtomicLong();
+    private final AtomicLong jobsFailed = new AtomicLong();
+    private final AtomicLong jobsRejected = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        parallelism = Math.max(1, parallelism);
+        pageSize = Math.max(1, Math.min(ChatService.MAX_PAGE_SIZE, pageSize));
+        jobs = new BoundedCache<>("conversation-deletion-jobs", 1000, jobRetentionSeconds * 1000L);
+
+        AtomicInteger jobThreads = new AtomicInteger();
+        jobExecutor = new ThreadPoolExecutor(
+            Math.max(1, maxConcurrentJobs), Math.max(1, maxConcurrentJobs), 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(100),
+            runnable -> {
+                Thread thread = new Thread(runnable, "conversation-deletion-" + jobThreads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        jobExecutor.allowCoreThreadTimeOut(true);
+
+        AtomicInteger workerThreads = new AtomicInteger();
+        conversationExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "conversation-deletion-worker-" + workerThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (jobExecutor != null) {
+            jobExecutor.shutdownNow();
+        }
+        if (conversationExecutor != null) {
+            conversationExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts deleting the user's conversations in the background, or returns the job already
+     * doing so.
+     *
+     * @param excludeConversationId Conversation to keep (may be null)
+     * @throws java.util.concurrent.RejectedExecutionException When too many jobs are queued
+     */
+    public Job deleteUserConversations(String userEmail, String excludeConversationId) {
+        String key = userEmail + "|" + (excludeConversationId != null ? excludeConversationId : "");
+        Job[] started = new Job[1];
+        Job job = activeJobs.compute(key, (k, existing) -> {
+            if (existing != null && existing.isActive()) {
+                return existing;
+            }
+            started[0] = new Job(userEmail, excludeConversationId);
+            return started[0];
+        });
+        if (started[0] == null) {
+            logger.info("Conversation deletion for {} already running as job {}", userEmail, job.getJobId());
+            return job;
+        }
+
+        jobs.put(job.getJobId(), job);
+        try {
+            jobExecutor.execute(() -> run(job, key));
+        } catch (RuntimeException e) {
+            activeJobs.remove(key, job);
+            jobs.invalidate(job.getJobId());
+            jobsRejected.incrementAndGet();
+            throw e;
+        }
+        jobsStarted.incrementAndGet();
+        logger.info("Started conversation deletion job {} for {} (excluding {})", job.getJobId(), userEmail, excludeConversationId);
+        return job;
+    }
+
+    /**
+     * @return The job, or null when it is unknown or has expired
+     */
+    public Job getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("parallelism", parallelism);
+        stats.put("pageSize", pageSize);
+        stats.put("activeJobs", activeJobs.size());
+        stats.put("queuedJobs", jobExecutor.getQueue().size());
+        stats.put("jobsStarted", jobsStarted.get());
+        stats.put("jobsCompleted", jobsCompleted.get());
+        stats.put("jobsFailed", jobsFailed.get());
+        stats.put("jobsRejected", jobsRejected.get());
+        return stats;
+    }
+
+    private void run(Job job, String key) {
+        job.startedAt = System.currentTimeMillis();
+        job.status = Status.RUNNING;
+        Firestore db = firestore();
+        BulkWriter writer = db.bulkWriter();
+        try {
+            Query conversations = db.collection(CONVERSATIONS_COLLECTION)
+                                    .whereEqualTo("userEmail", job.userEmail)
+                                    .select("createdAt")
+                                    .orderBy(FieldPath.documentId())
+                                    .limit(pageSize);
+            List<QueryDocumentSnapshot> page = conversations.get().get().getDocuments();
+            while (!page.isEmpty()) {
+                List<CompletableFuture<Void>> deletions = new ArrayList<>();
+                for (QueryDocumentSnapshot conversation : page) {
+                    if (shouldDelete(job, conversation)) {
+                        job.conversationsFound.incrementAndGet();
+                        deletions.add(CompletableFuture.runAsync(
+                            () -> deleteConversation(job, writer, conversation.getId()), conversationExecutor));
+                    }
+                }
+                CompletableFuture.allOf(deletions.toArray(CompletableFuture<?>[]::new)).join();
+                if (page.size() < pageSize) {
+                    break;
+                }
+                page = conversations.startAfter(page.get(page.size() - 1)).get().get().getDocuments();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.status = Status.FAILED;
+            job.error = "interrupted";
+        } catch (Exception e) {
+            logger.error("Conversation deletion job {} failed: {}", job.getJobId(), e.getMessage(), e);
+            job.status = Status.FAILED;
+            job.error = e.getMessage();
+        } finally {
+            // Waits for every queued delete, also those queued before a failure
+            boolean flushed = closeQuietly(writer);
+            if (job.status == Status.RUNNING) {
+                if (!flushed) {
+                    job.status = Status.FAILED;
+                    job.error = "could not flush deletes";
+                } else if (job.failedDeletes.get() > 0) {
+                    job.status = Status.FAILED;
+                    job.error = job.failedDeletes.get() + " deletes failed";
+                } else {
+                    job.status = Status.COMPLETED;
+                }
+            }
+            job.finishedAt = System.currentTimeMillis();
+            activeJobs.remove(key, job);
+            (job.status == Status.COMPLETED ? jobsCompleted : jobsFailed).incrementAndGet();
+            // Refresh the entry so the job stays queryable for the full retention period
+            jobs.put(job.getJobId(), job);
+        }
+        logger.info("Conversation deletion job {} {}: {} of {} conversations, {} messages deleted in {} ms",
+            job.getJobId(), job.status, job.conversationsDeleted.get(), job.conversationsFound.get(),
+            job.messagesDeleted.get(), job.finishedAt - job.startedAt);
+    }
+
+    // Overridden in tests
+    Firestore firestore() {
+        return FirestoreClient.getFirestore();
+    }
+
+    // Flushes the queued deletes, whether or not the job itself failed; false when that failed
+    private boolean closeQuietly(BulkWriter writer) {
+        try {
+            writer.close();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Could not flush conversation deletes: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    private static boolean shouldDelete(Job job, QueryDocumentSnapshot conversation) {
+        if (conversation.getId().equals(job.excludeConversationId)) {
+            return false;
+        }
+        // Conversations started after the request (e.g. the chat that requested the cleanup) are kept
+        Timestamp createdAt = conversation.getTimestamp("createdAt");
+        return createdAt == null || createdAt.compareTo(job.createdBefore) <= 0;
+    }
+
+    private void deleteConversation(Job job, BulkWriter writer, String conversationId) {
+        List<ApiFuture<WriteResult>> deletes;
+        try {
+            deletes = chatService.deleteConversationTree(writer, conversationId, pageSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.failedDeletes.incrementAndGet();
+            return;
+        } catch (Exception e) {
+            logger.warn("Could not list messages of conversation {}: {}", conversationId, e.getMessage());
+            job.failedDeletes.incrementAndGet();
+            return;
+        }
+        for (int i = 0; i < deletes.size(); i++) {
+            boolean conversationDoc = i == deletes.size() - 1;
+            ApiFutures.addCallback(deletes.get(i), new ApiFutureCallback<WriteResult>() {
+                @Override
+                public void onSuccess(WriteResult result) {
+                    if (conversationDoc) {
+                        job.conversationsDeleted.incrementAndGet();
+                    } else {
+                        job.messagesDeleted.incrementAndGet();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    job.failedDeletes.incrementAndGet();
+                    logger.warn("Delete in conversation {} failed: {}", conversationId, t.getMessage());
+                }
+            }, MoreExecutors.directExecutor());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.model.ChatConversation;
+import com.capstone.civilify.model.ChatMessage;
+import com.capstone.civilify.util.BoundedCache;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory history of active conversations: the conversation document plus a ring buffer
+ * of its most recent messages.
+ *
+ * {@link ChatService} loads a conversation once from Firestore, then keeps the entry current
+ * itself: new messages are appended, conversation updates are applied, deletes drop it. A
+ * chat turn on a cached conversation therefore reads nothing from Firestore. Entries expire
+ * after an idle period; only the latest {@code max-messages} messages are kept, and the
+ * snapshot says how many earlier ones were dropped.
+ *
+ * A load that races with an append or invalidation on the same conversation is discarded
+ * rather than cached, so the cache never holds a history missing a message.
+ */
+@Service
+public class ConversationHistoryCache {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationHistoryCache.class);
+
+    @Value("${chat.history-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.history-cache.max-conversations:1000}")
+    private int maxConversations;
+
+    // Messages kept per conversation; older ones are only counted
+    @Value("${chat.history-cache.max-messages:200}")
+    private int maxMessages;
+
+    @Value("${chat.history-cache.idle-ttl-seconds:1800}")
+    private int idleTtlSeconds;
+
+    private static final int VERSION_STRIPES = 64;
+
+    /**
+     * A conversation and its latest messages, oldest first.
+     *
+     * @param earlierMessages Messages older than {@code messages} that are not held in memory
+     */
+    public record Snapshot(ChatConversation conversation, List<ChatMessage> messages, int earlierMessages) {
+        public boolean isComplete() {
+            return earlierMessages == 0;
+        }
+    }
+
+    private static final class History {
+        ChatConversation conversation;
+        final ArrayDeque<ChatMessage> messages = new ArrayDeque<>();
+        int earlierMessages;
+    }
+
+    private BoundedCache<String, History> histories;
+    // Bumped on every append/invalidation, cached or not, so a concurrent load can tell it is stale
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong discardedLoads = new AtomicLong();
+    private final AtomicLong appends = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        maxMessages = Math.max(1, maxMessages);
+        histories = new BoundedCache<>("chat-history", maxConversations, idleTtlSeconds * 1000L);
+        logger.info("Conversation history cache {}: {} conversations x {} messages, idle TTL {} s",
+            enabled ? "enabled" : "disabled", maxConversations, maxMessages, idleTtlSeconds);
+    }
+
+    /**
+     * @return The cached history, or null when the conversation is not cached
+     */
+    public Snapshot get(String conversationId) {
+        if (!enabled || conversationId == null) {
+            return null;
+        }
+        History history = histories.get(conversationId);
+        if (history == null) {
+            return null;
+        }
+        // Reading keeps an active conversation cached
+        histories.put(conversationId, history);
+        synchronized (history) {
+            return new Snapshot(copyOf(history.conversation), new ArrayList<>(history.messages), history.earlierMessages);
+        }
+    }
+
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    /**
+     * Call before reading a conversation from Firestore; pass the result to {@link #load}.
+     */
+    public long beginLoad(String conversationId) {
+        return versions.get(stripe(conversationId));
+    }
+
+    /**
+     * Caches a conversation read from Firestore, unless it changed while being read.
+     *
+     * @param messages        The latest messages of the conversation, oldest first
+     * @param earlierMessages How many older messages were not read
+     */
+    public void load(long loadVersion, ChatConversation conversation, List<ChatMessage> messages, int earlierMessages) {
+        if (!enabled || conversation == null || conversation.getId() == null) {
+            return;
+        }
+        if (versions.get(stripe(conversation.getId())) != loadVersion) {
+            discardedLoads.incrementAndGet();
+            return;
+        }
+        History history = new History();
+        history.conversation = copyOf(conversation);
+        int skip = Math.max(0, messages.size() - maxMessages);
+        history.earlierMessages = earlierMessages + skip;
+        history.messages.addAll(messages.subList(skip, messages.size()));
+        histories.put(conversation.getId(), history);
+        if (versions.get(stripe(conversation.getId())) != loadVersion) {
+            // An append or invalidation landed between the check and the put and may have missed this entry
+            histories.invalidate(conversation.getId());
+            discardedLoads.incrementAndGet();
+            return;
+        }
+        loads.incrementAndGet();
+    }
+
+    /**
+     * Appends a new message, applying the conversation updates it implies (updatedAt, and the
+     * title for a first user message), as {@link ChatWriteBehindQueue} does in Firestore.
+     */
+    public void append(ChatMessage message) {
+        versions.incrementAndGet(stripe(message.getConversationId()));
+        History history = enabled ? histories.get(message.getConversationId()) : null;
+        if (history == null) {
+            return;
+        }
+        synchronized (history) {
+            history.messages.addLast(message);
+            while (history.messages.size() > maxMessages) {
+                history.messages.removeFirst();
+                history.earlierMessages++;
+            }
+            history.conversation.setUpdatedAt(message.getTimestamp());
+            String title = history.conversation.getTitle();
+            if (message.isUserMessage() && (title == null || title.isEmpty()) && message.getContent() != null) {
+                String content = message.getContent();
+                history.conversation.setTitle(content.length() > 50 ? content.substring(0, 50) + "..." : content);
+            }
+        }
+        histories.put(message.getConversationId(), history);
+        appends.incrementAndGet();
+    }
+
+    /**
+     * Replaces the cached conversation document after it was written to Firestore.
+     */
+    public void updateConversation(ChatConversation conversation) {
+        History history = enabled ? histories.get(conversation.getId()) : null;
+        if (history == null) {
+            return;
+        }
+        synchronized (history) {
+            history.conversation = copyOf(conversation);
+        }
+    }
+
+    public void updateContextSummary(String conversationId, String contextSummary, int summarizedMessageCount) {
+        History history = enabled ? histories.get(conversationId) : null;
+        if (history == null) {
+            return;
+        }
+        synchronized (history) {
+            history.conversation.setContextSummary(contextSummary);
+            history.conversation.setSummarizedMessageCount(summarizedMessageCount);
+        }
+    }
+
+    public void invalidate(String conversationId) {
+        versions.incrementAndGet(stripe(conversationId));
+        histories.invalidate(conversationId);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxMessages", maxMessages);
+        stats.put("loads", loads.get());
+        stats.put("discardedLoads", discardedLoads.get());
+        stats.put("appends", appends.get());
+        stats.put("cache", histories.stats());
+        return stats;
+    }
+
+    private static int stripe(String conversationId) {
+        return (conversationId.hashCode() & 0x7fffffff) % VERSION_STRIPES;
+    }
+
+    // Callers may modify what they get back; the cached document is never shared
+    private static ChatConversation copyOf(ChatConversation source) {
+        ChatConversation copy = new ChatConversation(source.getId(), source.getUserId(), source.getUserEmail(),
+            source.getTitle(), source.getCreatedAt(), source.getUpdatedAt(), source.getStatus());
+        copy.setContextSummary(source.getContextSummary());
+        copy.setSummarizedMessageCount(source.getSummarizedMessageCount());
+        return copy;
+    }
+}
@@ -1,19 +1,19 @@
 package com.capstone.civilify.service;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-
-import java.nio.charset.StandardCharsets;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.context.annotation.DependsOn;
@@ -47,6 +47,12 @@ public class FirebaseAuthService {
     @Value("${spring.security.oauth2.client.registration.google.client-id:433624047904-ea5ipm4k3ogi6fumrpjdu9c59hq1119l.apps.googleusercontent.com}")
     private String googleClientId;
     
+    @Value("${http.client.firebase-timeout-ms:15000}")
+    private long identityToolkitTimeoutMs;
+    
+    @Autowired
+    private OutboundHttpClient outboundHttpClient;
+    
     private boolean mockMode = false;
     private final FirebaseApp firebaseApp;
 
@@ -141,71 +147,42 @@ public class FirebaseAuthService {
             
             // Firebase Admin SDK doesn't support email/password sign-in directly
             // Using Firebase Auth REST API instead
-            java.net.URI uri = new java.net.URI("https://identitytoolkit.googleapis.com/v1/accounts:signInWithPassword?key=" + apiKey);
-            HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setDoOutput(true);
-            
             // Create a JSON object to avoid string formatting issues with special characters
             JSONObject requestJson = new JSONObject();
             requestJson.put("email", email);
             requestJson.put("password", password);
             requestJson.put("returnSecureToken", true);
-            String inputJson = requestJson.toString();
             
             logger.debug("Sending authentication request to Firebase");
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = inputJson.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-            
-            int responseCode = conn.getResponseCode();
+            HttpResponse<String> response = postToIdentityToolkit("accounts:signInWithPassword", requestJson);
+            int responseCode = response.statusCode();
             logger.debug("Firebase authentication response code: {}", responseCode);
             
             if (responseCode == 200) {
-                try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-                    StringBuilder response = new StringBuilder();
-                    String responseLine;
-                    while ((responseLine = br.readLine()) != null) {
-                        response.append(responseLine);
-                    }
-                    
-                    // Use JSONObject to properly parse the response
-                    String jsonResponseStr = response.toString();
-                    logger.debug("Received successful response from Firebase");
-                    
-                    JSONObject jsonResponse = new JSONObject(jsonResponseStr);
-                    String idToken = jsonResponse.getString("idToken");
-                    
-                    logger.info("User successfully authenticated: {}", email);
-                    return idToken;
-                }
+                // Use JSONObject to properly parse the response
+                logger.debug("Received successful response from Firebase");
+                JSONObject jsonResponse = new JSONObject(response.body());
+                String idToken = jsonResponse.getString("idToken");
+                
+                logger.info("User successfully authenticated: {}", email);
+                return idToken;
             } else {
-                try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getErrorStream(), StandardCharsets.UTF_8))) {
-                    StringBuilder response = new StringBuilder();
-                    String responseLine;
-                    while ((responseLine = br.readLine()) != null) {
-                        response.append(responseLine);
-                    }
-                    
-                    String errorResponse = response.toString();
-                    logger.error("Authentication failed with response code {}: {}", responseCode, errorResponse);
-                    
-                    // Try to parse the error message from the JSON response
-                    try {
-                        JSONObject errorJson = new JSONObject(errorResponse);
-                        if (errorJson.has("error") && errorJson.getJSONObject("error").has("message")) {
-                            String errorMessage = errorJson.getJSONObject("error").getString("message");
-                            throw new RuntimeException("Authentication failed: " + errorMessage);
-                        }
-                    } catch (Exception e) {
-                        // If we can't parse the error, just use the raw response
-                        logger.warn("Could not parse error response: {}", e.getMessage());
+                String errorResponse = response.body();
+                logger.error("Authentication failed with response code {}: {}", responseCode, errorResponse);
+                
+                // Try to parse the error message from the JSON response
+                try {
+                    JSONObject errorJson = new JSONObject(errorResponse);
+                    if (errorJson.has("error") && errorJson.getJSONObject("error").has("message")) {
+                        String errorMessage = errorJson.getJSONObject("error").getString("message");
+                        throw new RuntimeException("Authentication failed: " + errorMessage);
                     }
-                    
-                    throw new RuntimeException("Authentication failed with status code: " + responseCode);
+                } catch (Exception e) {
+                    // If we can't parse the error, just use the raw response
+                    logger.warn("Could not parse error response: {}", e.getMessage());
                 }
+                
+                throw new RuntimeException("Authentication failed with status code: " + responseCode);
             }
         } catch (IOException e) {
             logger.error("Network error during authentication", e);
@@ -309,45 +286,24 @@ public class FirebaseAuthService {
             }
             
             // Fallback to Firebase Auth REST API
-            java.net.URI uri = new java.net.URI("https://identitytoolkit.googleapis.com/v1/accounts:sendOobCode?key=" + apiKey);
-            HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setDoOutput(true);
-            
             // Create a JSON object for the request
             JSONObject requestJson = new JSONObject();
             requestJson.put("requestType", "PASSWORD_RESET");
             requestJson.put("email", email);
             // Add continue URL for the reset password page
             requestJson.put("continueUrl", "http://localhost:3000/signin");
-            String inputJson = requestJson.toString();
             
             logger.debug("Sending password reset request to Firebase REST API");
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = inputJson.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-            
-            int responseCode = connection.getResponseCode();
+            HttpResponse<String> response = postToIdentityToolkit("accounts:sendOobCode", requestJson);
+            int responseCode = response.statusCode();
             logger.debug("Firebase password reset response code: {}", responseCode);
             
             if (responseCode == 200) {
                 logger.info("Password reset email sent successfully to: {}", email);
                 return true;
             } else {
-                try (BufferedReader br = new BufferedReader(
-                        new InputStreamReader(connection.getErrorStream(), StandardCharsets.UTF_8))) {
-                    StringBuilder response = new StringBuilder();
-                    String responseLine;
-                    while ((responseLine = br.readLine()) != null) {
-                        response.append(responseLine);
-                    }
-                    
-                    String errorResponse = response.toString();
-                    logger.error("Password reset failed with response code {}: {}", responseCode, errorResponse);
-                    return false;
-                }
+                logger.error("Password reset failed with response code {}: {}", responseCode, response.body());
+                return false;
             }
         } catch (Exception e) {
             logger.error("Error sending password reset email", e);
@@ -453,4 +409,29 @@ public class FirebaseAuthService {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * POST a JSON body to the Firebase Auth REST API over the shared pooled HTTP client.
+     * Timeouts and transport failures surface as IOException, as with the previous
+     * HttpURLConnection implementation.
+     */
+    private HttpResponse<String> postToIdentityToolkit(String endpoint, JSONObject body) throws IOException {
+        String url = "https://identitytoolkit.googleapis.com/v1/" + endpoint + "?key=" + apiKey;
+        Duration timeout = Duration.ofMillis(identityToolkitTimeoutMs);
+        try {
+            return outboundHttpClient.postJsonAsync(url, body.toString(), null, timeout)
+                .get(identityToolkitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calling Firebase Auth", e);
+        } catch (TimeoutException e) {
+            throw new IOException("Firebase Auth request timed out after " + identityToolkitTimeoutMs + "ms", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(cause != null ? cause.getMessage() : e.getMessage(), cause);
+        }
+    }
+}
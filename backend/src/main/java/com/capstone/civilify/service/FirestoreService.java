@@ -4,6 +4,7 @@ package com.capstone.civilify.service;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
@@ -19,6 +20,8 @@ import com.google.cloud.firestore.WriteResult;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.cloud.FirestoreClient;
 
+import static com.capstone.civilify.util.FutureAdapters.toCompletable;
+
 /**
  * Service class for interacting with Firestore.
  */
@@ -95,6 +98,16 @@ public class FirestoreService {
      * @throws InterruptedException If the operation is interrupted
      */
     public Map<String, Object> getUserByEmail(String email) throws ExecutionException, InterruptedException {
+        return getUserByEmailAsync(email).get();
+    }
+    
+    /**
+     * Non-blocking variant of {@link #getUserByEmail(String)}
+     * 
+     * @param email The email address of the user
+     * @return A future of the user's profile data; never fails, an empty map stands for no user
+     */
+    public CompletableFuture<Map<String, Object>> getUserByEmailAsync(String email) {
         if (mockMode) {
             logger.info("Mock mode: Returning mock user data for email {}", email);
             // Return mock user data
@@ -103,7 +116,7 @@ public class FirestoreService {
             mockUser.put("username", "Mock User");
             mockUser.put("profile_picture_url", "https://example.com/mock-profile.jpg");
             mockUser.put("uid", "mock-uid-" + email.hashCode());
-            return mockUser;
+            return CompletableFuture.completedFuture(mockUser);
         }
         
         try {
@@ -113,22 +126,24 @@ public class FirestoreService {
                     .limit(1)
                     .get();
             
-            // Get documents from the query result
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-            
-            if (!documents.isEmpty()) {
-                // Return the first matching user's data
-                return documents.get(0).getData();
-            } else {
+            return toCompletable(query).thenApply(snapshot -> {
+                List<QueryDocumentSnapshot> documents = snapshot.getDocuments();
+                if (!documents.isEmpty()) {
+                    // Return the first matching user's data
+                    return documents.get(0).getData();
+                }
                 // No user found with the given email
                 logger.warn("No user found with email: {}", email);
                 // Return empty map instead of throwing exception
+                return new HashMap<String, Object>();
+            }).exceptionally(e -> {
+                logger.error("Error getting user by email: {}", e.getMessage());
+                // Return empty map instead of throwing exception
                 return new HashMap<>();
-            }
+            });
         } catch (Exception e) {
             logger.error("Error getting user by email: {}", e.getMessage());
-            // Return empty map instead of throwing exception
-            return new HashMap<>();
+            return CompletableFuture.completedFuture(new HashMap<>());
         }
     }
     
@@ -139,6 +154,16 @@ public class FirestoreService {
      * @return A Map containing the user's profile data
      */
     public Map<String, Object> getUserProfile(String uid) {
+        return getUserProfileAsync(uid).join();
+    }
+    
+    /**
+     * Non-blocking variant of {@link #getUserProfile(String)}
+     * 
+     * @param uid The unique identifier of the user
+     * @return A future of the user's profile data; never fails, an empty map stands for no user
+     */
+    public CompletableFuture<Map<String, Object>> getUserProfileAsync(String uid) {
         if (mockMode) {
             logger.info("Mock mode: Returning mock user data for uid {}", uid);
             // Return mock user data
@@ -147,32 +172,33 @@ public class FirestoreService {
             mockUser.put("username", "Mock User");
             mockUser.put("profile_picture_url", "https://randomuser.me/api/portraits/men/32.jpg");
             mockUser.put("uid", uid);
-            return mockUser;
+            return CompletableFuture.completedFuture(mockUser);
         }
         
         try {
             // Get the user document directly by UID
             DocumentReference docRef = db.collection("users").document(uid);
-            ApiFuture<com.google.cloud.firestore.DocumentSnapshot> future = docRef.get();
-            com.google.cloud.firestore.DocumentSnapshot document = future.get();
             
-            if (document.exists()) {
+            return toCompletable(docRef.get()).thenApply(document -> {
+                if (!document.exists()) {
+                    logger.warn("No user found with UID: {}", uid);
+                    return new HashMap<String, Object>();
+                }
                 Map<String, Object> userData = document.getData();
-                if (userData != null) {
-                    // Add the UID to the data
-                    userData.put("uid", uid);
-                    return userData;
-                } else {
+                if (userData == null) {
                     logger.warn("Document exists but data is null for UID: {}", uid);
-                    return new HashMap<>();
+                    return new HashMap<String, Object>();
                 }
-            } else {
-                logger.warn("No user found with UID: {}", uid);
+                // Add the UID to the data
+                userData.put("uid", uid);
+                return userData;
+            }).exceptionally(e -> {
+                logger.error("Error fetching user profile for UID {}: {}", uid, e.getMessage());
                 return new HashMap<>();
-            }
+            });
         } catch (Exception e) {
             logger.error("Error fetching user profile for UID {}: {}", uid, e.getMessage());
-            return new HashMap<>();
+            return CompletableFuture.completedFuture(new HashMap<>());
         }
     }
     
@@ -0,0 +1,265 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.DTO.KnowledgeBaseEntry;
+import com.capstone.civilify.util.BoundedCache;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Answer cache for general legal information (GLI, mode A) questions.
+ *
+ * An answer is stored under the canonical form of the question plus the ids of the KB
+ * entries it was grounded on, so a hit always reuses an answer built from the same sources
+ * the current request retrieved. Lookup tries the exact canonical question first, then the
+ * most similar cached question over the same sources (token Jaccard similarity), which
+ * catches rewordings such as "What is bail?" / "what's bail" / "bail - what is it". A similar
+ * question only counts when the content words both questions share appear in the same
+ * order, so "can a wife sue her husband" never reuses the answer to "can a husband sue his
+ * wife".
+ *
+ * Only standalone questions are cached; follow-ups that lean on the conversation ("what
+ * about minors?") always go to the model. Entries expire after a TTL and are dropped as
+ * soon as the KB sync reports a change to any entry they were grounded on.
+ */
+@Service
+public class GliAnswerCache {
+    private static final Logger logger = LoggerFactory.getLogger(GliAnswerCache.class);
+
+    @Autowired
+    private KnowledgeBaseService knowledgeBaseService;
+
+    @Value("${openai.answer-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${openai.answer-cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${openai.answer-cache.ttl-seconds:21600}")
+    private int ttlSeconds;
+
+    // Token Jaccard similarity needed to reuse an answer to a reworded question
+    @Value("${openai.answer-cache.similarity-threshold:0.85}")
+    private double similarityThreshold;
+
+    // Filler that does not change what is being asked; question words are kept
+    private static final Set<String> FILLER_WORDS = Set.of(
+        "a", "an", "the", "is", "are", "am", "be", "do", "does", "did", "i", "me", "my", "we", "our",
+        "you", "your", "his", "her", "their", "please", "pls", "kindly", "can", "could", "would", "tell", "explain", "know",
+        "want", "like", "to", "about", "of", "in", "on", "it", "its", "this", "that", "there",
+        "philippines", "philippine", "ph", "law", "laws", "legal", "villy", "hi", "hello"
+    );
+
+    // May move freely within a question without changing what is asked
+    private static final Set<String> QUESTION_WORDS = Set.of(
+        "what", "how", "why", "when", "where", "who", "whom", "whose", "which"
+    );
+
+    // Openings that refer back to earlier turns
+    private static final Pattern FOLLOW_UP = Pattern.compile(
+        "^(and|also|but|so|then|what about|how about|what if|same|it|that|this|those|these|they|them|he|she|his|her)\\b.*");
+
+    private static final int MIN_CANONICAL_TOKENS = 1;
+    private static final int MAX_QUESTION_CHARS = 300;
+
+    private record CachedAnswer(List<String> tokens, String answer) {}
+
+    private BoundedCache<String, CachedAnswer> answers;
+    // Cached canonical questions per source signature, for similarity lookup
+    private final Map<String, Set<String>> questionsBySources = new ConcurrentHashMap<>();
+    private final AtomicLong exactHits = new AtomicLong();
+    private final AtomicLong similarHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong notCacheable = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        answers = new BoundedCache<>("gli-answers", maxEntries, ttlSeconds * 1000L);
+        knowledgeBaseService.addEntryChangeListener(this::invalidateEntries);
+    }
+
+    /**
+     * @param question  The user's GLI question
+     * @param kbSources The KB entries retrieved for it in this request
+     * @return A cached answer grounded on the same entries, or null
+     */
+    public String lookup(String question, List<KnowledgeBaseEntry> kbSources) {
+        String signature = sourceSignature(kbSources);
+        List<String> canonical = canonicalTokens(question);
+        if (!enabled || signature == null || !isCacheableQuestion(question, canonical)) {
+            notCacheable.incrementAndGet();
+            return null;
+        }
+        CachedAnswer exact = answers.get(key(signature, canonical));
+        if (exact != null) {
+            exactHits.incrementAndGet();
+            logger.info("GLI answer cache hit (exact) for '{}'", question);
+            return exact.answer();
+        }
+
+        Set<String> tokens = new HashSet<>(canonical);
+        Set<String> candidates = questionsBySources.get(signature);
+        CachedAnswer best = null;
+        double bestScore = 0;
+        if (candidates != null) {
+            for (String candidateKey : candidates.toArray(new String[0])) {
+                CachedAnswer candidate = answers.get(candidateKey);
+                if (candidate == null) {
+                    // Expired, evicted or invalidated
+                    candidates.remove(candidateKey);
+                    continue;
+                }
+                Set<String> candidateTokens = new HashSet<>(candidate.tokens());
+                if (!sameOrder(canonical, candidate.tokens(), tokens, candidateTokens)) {
+                    continue;
+                }
+                double score = jaccard(tokens, candidateTokens);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = candidate;
+                }
+            }
+        }
+        if (best != null && bestScore >= similarityThreshold) {
+            similarHits.incrementAndGet();
+            logger.info("GLI answer cache hit (similarity {}) for '{}'", String.format("%.2f", bestScore), question);
+            return best.answer();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Caches a generated answer; ignored for questions or source sets that are not cacheable.
+     */
+    public void store(String question, List<KnowledgeBaseEntry> kbSources, String answer) {
+        String signature = sourceSignature(kbSources);
+        List<String> canonical = canonicalTokens(question);
+        if (!enabled || signature == null || answer == null || answer.isBlank()
+                || !isCacheableQuestion(question, canonical)) {
+            return;
+        }
+        String key = key(signature, canonical);
+        answers.put(key, new CachedAnswer(List.copyOf(canonical), answer));
+        questionsBySources.computeIfAbsent(signature, s -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("exactHits", exactHits.get());
+        stats.put("similarHits", similarHits.get());
+        stats.put("misses", misses.get());
+        stats.put("notCacheable", notCacheable.get());
+        stats.put("invalidations", invalidations.get());
+        stats.put("cache", answers.stats());
+        return stats;
+    }
+
+    // Drop every answer grounded on a changed entry
+    private void invalidateEntries(Collection<String> changedEntryIds) {
+        if (changedEntryIds.isEmpty()) {
+            return;
+        }
+        Set<String> changed = new HashSet<>(changedEntryIds);
+        int removed = answers.invalidateIf(key -> {
+            String signature = key.substring(0, key.indexOf('|'));
+            return Arrays.stream(signature.split(",")).anyMatch(changed::contains);
+        });
+        questionsBySources.keySet().removeIf(signature -> Arrays.stream(signature.split(",")).anyMatch(changed::contains));
+        if (removed > 0) {
+            invalidations.addAndGet(removed);
+            logger.info("GLI answer cache: dropped {} answers after KB changes to {} entries", removed, changed.size());
+        }
+    }
+
+    private boolean isCacheableQuestion(String question, List<String> canonical) {
+        if (question == null || question.length() > MAX_QUESTION_CHARS || canonical.size() < MIN_CANONICAL_TOKENS) {
+            return false;
+        }
+        return !FOLLOW_UP.matcher(question.toLowerCase(Locale.ROOT).trim()).matches();
+    }
+
+    // Sorted entry ids; null when the answer was not grounded on any KB entry
+    private static String sourceSignature(List<KnowledgeBaseEntry> kbSources) {
+        if (kbSources == null || kbSources.isEmpty()) {
+            return null;
+        }
+        Set<String> ids = new TreeSet<>();
+        for (KnowledgeBaseEntry entry : kbSources) {
+            if (entry.getEntryId() == null) {
+                return null;
+            }
+            ids.add(entry.getEntryId());
+        }
+        return String.join(",", ids);
+    }
+
+    private static String key(String signature, List<String> canonical) {
+        return signature + "|" + String.join(" ", canonical);
+    }
+
+    /**
+     * Lowercased content words in question order, with filler removed and plurals folded.
+     */
+    private static List<String> canonicalTokens(String question) {
+        List<String> tokens = new ArrayList<>();
+        if (question == null) {
+            return tokens;
+        }
+        for (String raw : question.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (raw.isEmpty() || FILLER_WORDS.contains(raw) || (raw.length() < 2 && !Character.isDigit(raw.charAt(0)))) {
+                continue;
+            }
+            String token = raw.equals("whats") ? "what" : raw;
+            if (token.length() > 4 && token.endsWith("s") && !token.endsWith("ss")) {
+                token = token.substring(0, token.length() - 1);
+            }
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    // Content words present in both questions come in the same order in each
+    private static boolean sameOrder(List<String> a, List<String> b, Set<String> aTokens, Set<String> bTokens) {
+        return sharedContentWords(a, bTokens).equals(sharedContentWords(b, aTokens));
+    }
+
+    private static List<String> sharedContentWords(List<String> tokens, Set<String> other) {
+        List<String> shared = new ArrayList<>();
+        for (String token : tokens) {
+            if (other.contains(token) && !QUESTION_WORDS.contains(token) && !shared.contains(token)) {
+                shared.add(token);
+            }
+        }
+        return shared;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        Set<String> union = new HashSet<>(a);
+        union.addAll(b);
+        long shared = a.stream().filter(b::contains).count();
+        return (double) shared / union.size();
+    }
+}
@@ -0,0 +1,267 @@
+package com.capstone.civilify.service;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Negotiates which authentication style the law-entry KB service accepts.
+ *
+ * The KB has been deployed with different auth setups (minted service JWT, raw bearer
+ * token, or an x-api-key header). Instead of trying every variant on each request, the
+ * negotiator probes the variants once, remembers the one that was accepted, and only
+ * re-negotiates when the remembered variant is rejected with 401/403. Re-negotiation tries
+ * the other variants first and re-probes the rejected one last, so a single transient
+ * rejection of the only working variant does not take the KB offline.
+ *
+ * Only one caller probes at a time; callers arriving meanwhile wait on a shared future for
+ * the outcome and then make their own calls concurrently, so no network call runs under a
+ * lock. When every variant is rejected the failure is remembered for a cooldown period and
+ * calls fail fast instead of re-probing.
+ */
+@Component
+public class KnowledgeBaseAuthNegotiator {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnowledgeBaseAuthNegotiator.class);
+
+    public enum Variant { MINTED, RAW, X_API_KEY }
+
+    @Value("${knowledge.base.api.key:}")
+    private String knowledgeBaseApiKey;
+
+    // How long a negotiation in which every variant was rejected is remembered
+    @Value("${knowledge.base.auth.failure.cooldown.ms:30000}")
+    private long failureCooldownMs;
+
+    private final AtomicReference<Variant> preferred = new AtomicReference<>();
+    private volatile String cachedServiceToken;
+    private volatile long cachedServiceTokenExpiryMs = 0L;
+
+    // Completes with the negotiated variant, or null when the probe failed for a non-auth reason
+    private final AtomicReference<CompletableFuture<Variant>> negotiation = new AtomicReference<>();
+    private volatile HttpClientErrorException lastFailure;
+    private volatile long failedUntilMs = 0L;
+
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong renegotiations = new AtomicLong();
+    private final AtomicLong coalescedNegotiations = new AtomicLong();
+    private final AtomicLong failedNegotiations = new AtomicLong();
+    private final AtomicLong cooldownRejections = new AtomicLong();
+    private final Map<Variant, AtomicLong> successes = new EnumMap<>(Variant.class);
+
+    public KnowledgeBaseAuthNegotiator() {
+        for (Variant variant : Variant.values()) {
+            successes.put(variant, new AtomicLong());
+        }
+    }
+
+    /**
+     * Run an authenticated call with the negotiated headers.
+     * Non-auth failures (429, 5xx, I/O) propagate unchanged and do not affect the
+     * remembered variant.
+     *
+     * @param call Function performing the HTTP call with the given auth headers
+     * @return The call's result
+     */
+    public <T> T execute(Function<HttpHeaders, T> call) {
+        Variant current = preferred.get();
+        if (current != null) {
+            try {
+                return callWith(current, call);
+            } catch (HttpClientErrorException.Unauthorized | HttpClientErrorException.Forbidden e) {
+                rejections.incrementAndGet();
+                if (preferred.compareAndSet(current, null)) {
+                    renegotiations.incrementAndGet();
+                    logger.warn("KB rejected auth variant '{}' with {}; re-negotiating", current, e.getStatusCode());
+                }
+            }
+        }
+        return negotiate(call, current);
+    }
+
+    /**
+     * Headers for the remembered variant (or the default minted variant before negotiation).
+     * Used for calls that should not trigger a probe, such as health checks.
+     */
+    public HttpHeaders currentHeaders() {
+        Variant current = preferred.get();
+        return headersFor(current != null ? current : Variant.MINTED);
+    }
+
+    public Variant getPreferredVariant() {
+        return preferred.get();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Variant current = preferred.get();
+        stats.put("preferredVariant", current != null ? current.name() : null);
+        stats.put("probes", probes.get());
+        stats.put("rejections", rejections.get());
+        stats.put("renegotiations", renegotiations.get());
+        stats.put("coalescedNegotiations", coalescedNegotiations.get());
+        stats.put("failedNegotiations", failedNegotiations.get());
+        stats.put("cooldownRejections", cooldownRejections.get());
+        stats.put("coolingDown", System.currentTimeMillis() < failedUntilMs);
+        Map<String, Long> perVariant = new LinkedHashMap<>();
+        successes.forEach((variant, count) -> perVariant.put(variant.name(), count.get()));
+        stats.put("successes", perVariant);
+        return stats;
+    }
+
+    private <T> T negotiate(Function<HttpHeaders, T> call, Variant rejected) {
+        while (true) {
+            Variant negotiated = preferred.get();
+            if (negotiated != null) {
+                return callWith(negotiated, call);
+            }
+            HttpClientErrorException failure = lastFailure;
+            if (failure != null && System.currentTimeMillis() < failedUntilMs) {
+                cooldownRejections.incrementAndGet();
+                throw failure;
+            }
+
+            CompletableFuture<Variant> inFlight = negotiation.get();
+            if (inFlight == null) {
+                CompletableFuture<Variant> mine = new CompletableFuture<>();
+                if (negotiation.compareAndSet(null, mine)) {
+                    return probe(call, rejected, mine);
+                }
+                continue;
+            }
+
+            // Another caller is probing: wait for its outcome, then call without holding anything
+            coalescedNegotiations.incrementAndGet();
+            Variant outcome;
+            try {
+                outcome = inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof HttpClientErrorException rejection) {
+                    throw rejection;
+                }
+                throw e;
+            }
+            if (outcome != null) {
+                return callWith(outcome, call);
+            }
+            // The probe failed for a non-auth reason; loop and probe with our own call
+        }
+    }
+
+    // Probes the variants with the caller's own call; the first accepted one becomes preferred
+    private <T> T probe(Function<HttpHeaders, T> call, Variant rejected, CompletableFuture<Variant> outcome) {
+        Variant accepted = null;
+        HttpClientErrorException lastRejection = null;
+        try {
+            for (Variant variant : probeOrder(rejected)) {
+                probes.incrementAndGet();
+                try {
+                    T result = call.apply(headersFor(variant));
+                    accepted = variant;
+                    preferred.set(variant);
+                    lastFailure = null;
+                    successes.get(variant).incrementAndGet();
+                    logger.info("KB auth negotiated: using variant '{}'", variant);
+                    return result;
+                } catch (HttpClientErrorException.Unauthorized | HttpClientErrorException.Forbidden e) {
+                    rejections.incrementAndGet();
+                    lastRejection = e;
+                    logger.warn("KB auth variant '{}' rejected with {}: {}", variant, e.getStatusCode(), e.getResponseBodyAsString());
+                }
+            }
+            failedNegotiations.incrementAndGet();
+            lastFailure = lastRejection;
+            failedUntilMs = System.currentTimeMillis() + failureCooldownMs;
+            logger.warn("KB rejected every auth variant; not re-negotiating for {} ms", failureCooldownMs);
+            outcome.completeExceptionally(lastRejection);
+            throw lastRejection;
+        } finally {
+            // No-op when already completed; null tells waiters to probe themselves
+            outcome.complete(accepted);
+            negotiation.compareAndSet(outcome, null);
+        }
+    }
+
+    // The variant just rejected goes last: it is retried once rather than written off
+    private static List<Variant> probeOrder(Variant rejected) {
+        List<Variant> order = new ArrayList<>(List.of(Variant.values()));
+        if (rejected != null) {
+            order.remove(rejected);
+            order.add(rejected);
+        }
+        return order;
+    }
+
+    private <T> T callWith(Variant variant, Function<HttpHeaders, T> call) {
+        T result = call.apply(headersFor(variant));
+        successes.get(variant).incrementAndGet();
+        return result;
+    }
+
+    private HttpHeaders headersFor(Variant variant) {
+        HttpHeaders headers = new HttpHeaders();
+        String key = knowledgeBaseApiKey != null ? knowledgeBaseApiKey.trim() : "";
+        if (key.isEmpty()) {
+            return headers;
+        }
+        try {
+            switch (variant) {
+                case MINTED -> headers.set("Authorization", "Bearer " + mintedOrRawToken(key));
+                case RAW -> headers.set("Authorization", "Bearer " + key);
+                case X_API_KEY -> headers.set("x-api-key", key);
+            }
+        } catch (Exception e) {
+            // If minting fails due to weak key, continue without auth so the next variant can be probed
+            logger.debug("Auth header build error for variant '{}': {}", variant, e.getMessage());
+        }
+        return headers;
+    }
+
+    /**
+     * If the key looks like a complete JWT (three dot-separated parts), use it directly.
+     * Else, treat it as a signing secret and mint a short-lived service token (HS256) to avoid
+     * pasting static tokens in configs. This also prevents accidental whitespace/newline issues.
+     */
+    private String mintedOrRawToken(String key) {
+        if (key.split("\\.").length == 3) {
+            // Looks like a JWT already
+            return key;
+        }
+        // Looks like a raw shared secret; mint a short-lived JWT and cache it for 5 minutes
+        long now = System.currentTimeMillis();
+        if (cachedServiceToken == null || now > cachedServiceTokenExpiryMs) {
+            Date issuedAt = new Date(now);
+            Date expiry = new Date(now + 5 * 60 * 1000L); // 5 minutes
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            cachedServiceToken = Jwts.builder()
+                    .setSubject("civilify-service")
+                    .claim("role", "service")
+                    .setIssuedAt(issuedAt)
+                    .setExpiration(expiry)
+                    .signWith(Keys.hmacShaKeyFor(keyBytes), SignatureAlgorithm.HS256)
+                    .compact();
+            cachedServiceTokenExpiryMs = expiry.getTime() - 10_000L; // refresh slightly before expiry
+        }
+        return cachedServiceToken;
+    }
+}
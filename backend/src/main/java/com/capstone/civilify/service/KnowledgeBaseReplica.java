@@ -0,0 +1,195 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.DTO.KnowledgeBaseEntry;
+import com.capstone.civilify.util.Bm25Index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process copy of the law-entry corpus with a BM25 index over title, citation, tags,
+ * summary and text.
+ *
+ * Owned by {@link KnowledgeBaseService}, which feeds it full snapshots and deltas from the
+ * remote listing endpoint. Each sync builds a new immutable snapshot and swaps it in, so
+ * searches never block on a sync. Returned entries are copies because callers set
+ * per-query fields (similarity) and hydrate them in place.
+ */
+public class KnowledgeBaseReplica {
+
+    // Field weights: titles and citations are short and decisive, body text is long and noisy
+    private static final int TITLE_WEIGHT = 3;
+    private static final int CITATION_WEIGHT = 3;
+    private static final int TAG_WEIGHT = 2;
+    private static final int SUMMARY_WEIGHT = 2;
+    private static final int TEXT_WEIGHT = 1;
+
+    private record Snapshot(Map<String, KnowledgeBaseEntry> entries, Bm25Index index, long syncedAtMs) {}
+
+    private volatile Snapshot snapshot;
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong fullSyncs = new AtomicLong();
+    private final AtomicLong deltaSyncs = new AtomicLong();
+
+    public boolean isReady() {
+        Snapshot current = snapshot;
+        return current != null && current.index().size() > 0;
+    }
+
+    public long getLastSyncMs() {
+        Snapshot current = snapshot;
+        return current != null ? current.syncedAtMs() : 0L;
+    }
+
+    /**
+     * Replace the corpus with a full listing.
+     * @return Ids of entries whose content changed, including removed entries
+     */
+    public Set<String> replaceAll(Collection<KnowledgeBaseEntry> entries, long syncedAtMs) {
+        Snapshot current = snapshot;
+        Map<String, KnowledgeBaseEntry> previous = current != null ? current.entries() : Map.of();
+        Map<String, KnowledgeBaseEntry> byId = new LinkedHashMap<>();
+        Set<String> changedIds = new HashSet<>();
+        for (KnowledgeBaseEntry entry : entries) {
+            if (entry != null && entry.getEntryId() != null) {
+                byId.put(entry.getEntryId(), entry);
+                if (!sameContent(previous.get(entry.getEntryId()), entry)) {
+                    changedIds.add(entry.getEntryId());
+                }
+            }
+        }
+        for (String previousId : previous.keySet()) {
+            if (!byId.containsKey(previousId)) {
+                changedIds.add(previousId);
+            }
+        }
+        snapshot = build(byId, syncedAtMs);
+        fullSyncs.incrementAndGet();
+        return changedIds;
+    }
+
+    /**
+     * Merge changed entries into the current corpus and rebuild the index.
+     * @return Ids of entries whose content actually changed
+     */
+    public Set<String> applyDelta(Collection<KnowledgeBaseEntry> changed, long syncedAtMs) {
+        Snapshot current = snapshot;
+        Map<String, KnowledgeBaseEntry> byId = current != null
+            ? new LinkedHashMap<>(current.entries()) : new LinkedHashMap<>();
+        Set<String> changedIds = new HashSet<>();
+        for (KnowledgeBaseEntry entry : changed) {
+            if (entry != null && entry.getEntryId() != null) {
+                KnowledgeBaseEntry previous = byId.put(entry.getEntryId(), entry);
+                if (!sameContent(previous, entry)) {
+                    changedIds.add(entry.getEntryId());
+                }
+            }
+        }
+        snapshot = build(byId, syncedAtMs);
+        deltaSyncs.incrementAndGet();
+        return changedIds;
+    }
+
+    /**
+     * Search the local index.
+     * @return Copies of the best matching entries, best first, with similarity set to the
+     *         entry's IDF-weighted coverage of the query terms
+     */
+    public List<KnowledgeBaseEntry> search(String query, int limit) {
+        searches.incrementAndGet();
+        List<KnowledgeBaseEntry> results = new ArrayList<>();
+        Snapshot current = snapshot;
+        if (current == null) {
+            misses.incrementAndGet();
+            return results;
+        }
+        for (Bm25Index.Hit hit : current.index().search(query, limit)) {
+            KnowledgeBaseEntry entry = current.entries().get(hit.id());
+            if (entry != null) {
+                KnowledgeBaseEntry copy = copyOf(entry);
+                copy.setSimilarity(hit.coverage());
+                results.add(copy);
+            }
+        }
+        if (results.isEmpty()) {
+            misses.incrementAndGet();
+        }
+        return results;
+    }
+
+    /**
+     * @return A copy of the entry, or null if it is not in the replica
+     */
+    public KnowledgeBaseEntry get(String entryId) {
+        Snapshot current = snapshot;
+        if (current == null || entryId == null) {
+            return null;
+        }
+        KnowledgeBaseEntry entry = current.entries().get(entryId);
+        return entry != null ? copyOf(entry) : null;
+    }
+
+    public Map<String, Object> stats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", isReady());
+        stats.put("entries", current != null ? current.entries().size() : 0);
+        stats.put("terms", current != null ? current.index().termCount() : 0);
+        stats.put("lastSyncMs", current != null ? current.syncedAtMs() : null);
+        stats.put("searches", searches.get());
+        stats.put("misses", misses.get());
+        stats.put("fullSyncs", fullSyncs.get());
+        stats.put("deltaSyncs", deltaSyncs.get());
+        return stats;
+    }
+
+    private Snapshot build(Map<String, KnowledgeBaseEntry> byId, long syncedAtMs) {
+        List<Bm25Index.Document> documents = new ArrayList<>(byId.size());
+        for (KnowledgeBaseEntry entry : byId.values()) {
+            documents.add(new Bm25Index.Document(entry.getEntryId())
+                .field(entry.getTitle(), TITLE_WEIGHT)
+                .field(entry.getCanonicalCitation(), CITATION_WEIGHT)
+                .field(entry.getTags() != null ? String.join(" ", entry.getTags()) : null, TAG_WEIGHT)
+                .field(entry.getSummary(), SUMMARY_WEIGHT)
+                .field(entry.getText(), TEXT_WEIGHT));
+        }
+        return new Snapshot(Map.copyOf(byId), new Bm25Index(documents), syncedAtMs);
+    }
+
+    // Fields that end up in prompts or source links; similarity is per query and ignored
+    private static boolean sameContent(KnowledgeBaseEntry a, KnowledgeBaseEntry b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return Objects.equals(a.getTitle(), b.getTitle())
+            && Objects.equals(a.getCanonicalCitation(), b.getCanonicalCitation())
+            && Objects.equals(a.getSummary(), b.getSummary())
+            && Objects.equals(a.getText(), b.getText())
+            && Objects.equals(a.getTags(), b.getTags())
+            && Objects.equals(a.getSourceUrls(), b.getSourceUrls())
+            && Objects.equals(a.getPrimaryUrl(), b.getPrimaryUrl());
+    }
+
+    private static KnowledgeBaseEntry copyOf(KnowledgeBaseEntry source) {
+        KnowledgeBaseEntry copy = new KnowledgeBaseEntry(source.getEntryId(), source.getType(), source.getTitle());
+        copy.setCanonicalCitation(source.getCanonicalCitation());
+        copy.setSummary(source.getSummary());
+        copy.setText(source.getText());
+        copy.setTags(source.getTags() != null ? new ArrayList<>(source.getTags()) : null);
+        copy.setSimilarity(source.getSimilarity());
+        copy.setRuleNo(source.getRuleNo());
+        copy.setSectionNo(source.getSectionNo());
+        copy.setRightsScope(source.getRightsScope());
+        copy.setSourceUrls(source.getSourceUrls() != null ? new ArrayList<>(source.getSourceUrls()) : new ArrayList<>());
+        copy.setPrimaryUrl(source.getPrimaryUrl());
+        return copy;
+    }
+}
@@ -1,29 +1,55 @@
 package com.capstone.civilify.service;
 
 import com.capstone.civilify.DTO.KnowledgeBaseEntry;
+import com.capstone.civilify.DTO.KnowledgeBaseChatPayload;
 import com.capstone.civilify.DTO.KnowledgeBaseChatResponse;
+import com.capstone.civilify.DTO.KnowledgeBaseEntryListPayload;
+import com.capstone.civilify.DTO.KnowledgeBaseEntryPayload;
+import com.capstone.civilify.DTO.KnowledgeBaseSearchPayload;
+import com.capstone.civilify.util.BoundedCache;
+import com.capstone.civilify.util.CircuitBreaker;
+import com.capstone.civilify.util.HedgeBudget;
+import com.capstone.civilify.util.LatencyTracker;
+import com.capstone.civilify.util.SingleFlight;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.nio.charset.StandardCharsets;
-import java.util.Date;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.LinkedHashSet;
 
 /**
  * Service for interacting with the knowledge base system.
@@ -128,18 +154,126 @@ public class KnowledgeBaseService {
     @Value("${knowledge.base.performance.logging:true}")
     private boolean performanceLogging;
     
+    @Value("${knowledge.base.executor.threads:8}")
+    private int executorThreads;
+    
+    @Value("${knowledge.base.executor.queue:200}")
+    private int executorQueueCapacity;
+    
+    @Value("${knowledge.base.enhanced.stage.deadline.ms:8000}")
+    private long enhancedStageDeadlineMs;
+    
+    @Value("${knowledge.base.entry.cache.max:2000}")
+    private int entryCacheMax;
+    
+    @Value("${knowledge.base.entry.cache.ttl.seconds:1800}")
+    private int entryCacheTtlSeconds;
+    
+    @Value("${knowledge.base.hydration.threads:6}")
+    private int hydrationThreads;
+    
+    @Value("${knowledge.base.hydration.timeout.ms:6000}")
+    private long hydrationTimeoutMs;
+    
+    @Value("${knowledge.base.entries.bulk.enabled:false}")
+    private boolean bulkEntriesEnabled;
+    
+    @Value("${knowledge.base.entries.bulk.path:/kb/entries/batch}")
+    private String bulkEntriesPath;
+    
+    @Value("${knowledge.base.replica.enabled:false}")
+    private boolean replicaEnabled;
+    
+    @Value("${knowledge.base.replica.listing.path:/kb/entries}")
+    private String replicaListingPath;
+    
+    @Value("${knowledge.base.replica.page.size:200}")
+    private int replicaPageSize;
+    
+    @Value("${knowledge.base.replica.sync.interval.seconds:900}")
+    private long replicaSyncIntervalSeconds;
+    
+    @Value("${knowledge.base.replica.full.sync.every:12}")
+    private int replicaFullSyncEvery;
+    
+    // Minimum IDF-weighted query-term coverage for a replica hit; weaker queries go to the remote KB
+    @Value("${knowledge.base.replica.min.coverage:0.6}")
+    private double replicaMinCoverage;
+    
+    @Value("${knowledge.base.breaker.failure.rate:0.5}")
+    private double breakerFailureRate;
+    
+    @Value("${knowledge.base.breaker.minimum.calls:4}")
+    private int breakerMinimumCalls;
+    
+    @Value("${knowledge.base.breaker.window.ms:30000}")
+    private long breakerWindowMs;
+    
+    @Value("${knowledge.base.breaker.open.ms:30000}")
+    private long breakerOpenMs;
+    
+    @Value("${knowledge.base.breaker.half.open.calls:1}")
+    private int breakerHalfOpenCalls;
+    
+    @Value("${knowledge.base.cache.refresh.ahead.enabled:true}")
+    private boolean refreshAheadEnabled;
+    
+    @Value("${knowledge.base.cache.hard.ttl.seconds:1800}")
+    private int knowledgeBaseCacheHardTtlSeconds;
+    
+    @Value("${knowledge.base.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+    
+    @Value("${knowledge.base.hedge.percentile:0.95}")
+    private double hedgePercentile;
+    
+    @Value("${knowledge.base.hedge.min.delay.ms:300}")
+    private long hedgeMinDelayMs;
+    
+    @Value("${knowledge.base.hedge.min.samples:20}")
+    private int hedgeMinSamples;
+    
+    @Value("${knowledge.base.hedge.budget.ratio:0.1}")
+    private double hedgeBudgetRatio;
+    
+    @Value("${knowledge.base.hedge.budget.burst:5}")
+    private int hedgeBudgetBurst;
+    
     private final RestTemplate restTemplate;
-    private volatile String cachedServiceToken;
-    private volatile long cachedServiceTokenExpiryMs = 0L;
-    
-    // Simple in-memory cache and in-flight de-duplication
-    private static class CacheEntry<T> {
-        final T value; final long expiryMs;
-        CacheEntry(T value, long expiryMs) { this.value = value; this.expiryMs = expiryMs; }
-        boolean isExpired() { return System.currentTimeMillis() > expiryMs; }
-    }
-    private final Map<String, CacheEntry<List<KnowledgeBaseEntry>>> resultCache = new ConcurrentHashMap<>();
-    private final Map<String, Object> inFlightLocks = new ConcurrentHashMap<>();
+    
+    @Autowired
+    private KnowledgeBaseAuthNegotiator authNegotiator;
+    
+    @Autowired
+    private OutboundHttpClient outboundHttpClient;
+    
+    // Bounded result caches (sized from knowledge.base.*.cache.max) and in-flight de-duplication
+    private BoundedCache<String, List<KnowledgeBaseEntry>> resultCache;
+    private BoundedCache<String, Map<String, Object>> sqgCache;
+    private final SingleFlight<String, List<KnowledgeBaseEntry>> searchFlights = new SingleFlight<>();
+    private ExecutorService kbExecutor;
+    
+    // Entry detail store keyed by entryId, used to hydrate search results that lack URLs.
+    // Hydration runs on its own pool because it is triggered from inside kbExecutor tasks.
+    private BoundedCache<String, KnowledgeBaseEntry> entryCache;
+    private final SingleFlight<String, KnowledgeBaseEntry> entryFlights = new SingleFlight<>();
+    private ExecutorService hydrationExecutor;
+    
+    // Optional local BM25 replica of the entry corpus; searches fall back to the remote KB
+    private KnowledgeBaseReplica replica;
+    private ScheduledExecutorService replicaScheduler;
+    private int replicaSyncCycle = 0;
+    // Notified with the ids of entries whose content changed in a replica sync
+    private final List<Consumer<Collection<String>>> entryChangeListeners = new CopyOnWriteArrayList<>();
+    
+    // Guards every outbound KB call so an outage fails fast instead of waiting out timeouts
+    private CircuitBreaker kbBreaker;
+    
+    // Hedged search: a second attempt is sent when the first is slower than recent p95
+    private final LatencyTracker searchLatency = new LatencyTracker("kb-search", 256);
+    private HedgeBudget hedgeBudget;
+    private ExecutorService searchExecutor;
+    private final AtomicLong hedgesWon = new AtomicLong();
     
     public KnowledgeBaseService() {
         this.restTemplate = new RestTemplate();
@@ -148,55 +282,189 @@ public class KnowledgeBaseService {
     @PostConstruct
     private void configureRestTemplateTimeouts() {
         try {
-            SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-            factory.setConnectTimeout(knowledgeBaseTimeout);
-            factory.setReadTimeout(knowledgeBaseTimeout);
-            this.restTemplate.setRequestFactory(factory);
+            // Shared pooled HTTP/2 client; connect timeout is configured on the client itself
+            outboundHttpClient.configure(this.restTemplate, Duration.ofMillis(knowledgeBaseTimeout));
         } catch (Exception e) {
             logger.warn("Failed to configure KB timeouts: {}", e.getMessage());
         }
     }
     
+    @PostConstruct
+    private void initCaches() {
+        // With refresh-ahead, cache.ttl.seconds is the soft TTL: older results are served
+        // immediately while one background refresh runs, until the hard TTL drops them
+        long softTtlMs = TimeUnit.SECONDS.toMillis(knowledgeBaseCacheTtlSeconds);
+        long hardTtlMs = refreshAheadEnabled
+            ? Math.max(softTtlMs, TimeUnit.SECONDS.toMillis(knowledgeBaseCacheHardTtlSeconds))
+            : softTtlMs;
+        resultCache = new BoundedCache<>("kb-results", responseCacheMax, hardTtlMs, softTtlMs);
+        sqgCache = new BoundedCache<>("kb-sqg", sqgCacheMax, sqgTtlMs);
+        entryCache = new BoundedCache<>("kb-entries", entryCacheMax,
+            TimeUnit.SECONDS.toMillis(entryCacheTtlSeconds));
+        // Embeddings and cross-encoder scores are computed by the remote KB service; only log their limits
+        logger.info("KB caches configured: results max={} ttl={}s, sqg max={} ttl={}ms (embed max={}, cross-encoder max={} enforced remotely)",
+            responseCacheMax, knowledgeBaseCacheTtlSeconds, sqgCacheMax, sqgTtlMs, embedCacheMax, crossEncoderCacheMax);
+    }
+    
+    @PostConstruct
+    private void initExecutor() {
+        this.kbExecutor = newDaemonPool("kb-io-", executorThreads, executorQueueCapacity);
+        this.hydrationExecutor = newDaemonPool("kb-hydrate-", hydrationThreads, executorQueueCapacity);
+        this.searchExecutor = newDaemonPool("kb-search-", executorThreads, executorQueueCapacity);
+        this.hedgeBudget = new HedgeBudget(hedgeBudgetRatio, hedgeBudgetBurst);
+    }
+    
+    private ExecutorService newDaemonPool(String namePrefix, int poolThreads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, poolThreads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            runnable -> {
+                Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    @PostConstruct
+    private void initCircuitBreaker() {
+        // Only transport errors, 5xx and 429 count against the KB; other 4xx mean it is up,
+        // and local permit exhaustion never reached it
+        kbBreaker = new CircuitBreaker("knowledge-base", breakerFailureRate, breakerMinimumCalls,
+            breakerWindowMs, breakerOpenMs, breakerHalfOpenCalls,
+            e -> (e instanceof org.springframework.web.client.ResourceAccessException
+                    && !OutboundHttpClient.isHostSaturated(e))
+                || e instanceof HttpServerErrorException
+                || e instanceof HttpClientErrorException.TooManyRequests);
+    }
+    
+    @PostConstruct
+    private void initReplica() {
+        if (!knowledgeBaseEnabled || !replicaEnabled) {
+            return;
+        }
+        replica = new KnowledgeBaseReplica();
+        replicaScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kb-replica-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(60L, replicaSyncIntervalSeconds);
+        replicaScheduler.scheduleWithFixedDelay(this::syncReplica, 0L, interval, TimeUnit.SECONDS);
+        logger.info("KB replica enabled: listing={} syncInterval={}s fullSyncEvery={} cycles",
+            replicaListingPath, interval, replicaFullSyncEvery);
+    }
+    
+    @PreDestroy
+    private void shutdownExecutor() {
+        if (replicaScheduler != null) {
+            replicaScheduler.shutdownNow();
+        }
+        if (kbExecutor != null) {
+            kbExecutor.shutdownNow();
+        }
+        if (hydrationExecutor != null) {
+            hydrationExecutor.shutdownNow();
+        }
+        if (searchExecutor != null) {
+            searchExecutor.shutdownNow();
+        }
+    }
+    
     /**
-     * Build Authorization headers.
-     * - If knowledgeBaseApiKey looks like a complete JWT (three dot-separated parts), use it directly.
-     * - Else, treat it as a signing secret and mint a short-lived service token (HS256) to avoid
-     *   pasting static tokens in configs. This also prevents accidental whitespace/newline issues.
+     * Cache statistics (hits, misses, evictions, expirations) for the metrics endpoint.
      */
-    private HttpHeaders buildAuthHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        String key = knowledgeBaseApiKey != null ? knowledgeBaseApiKey.trim() : "";
-        if (key.isEmpty()) {
-            return headers;
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put(resultCache.getName(), resultCache.stats());
+        stats.put(sqgCache.getName(), sqgCache.stats());
+        stats.put(entryCache.getName(), entryCache.stats());
+        return stats;
+    }
+    
+    /**
+     * Auth negotiation decisions (preferred variant, probes, rejections) for the metrics endpoint.
+     */
+    public Map<String, Object> getAuthStats() {
+        return authNegotiator.stats();
+    }
+    
+    public Map<String, Object> getHttpClientStats() {
+        return outboundHttpClient.stats();
+    }
+    
+    /**
+     * Request coalescing statistics for the metrics endpoint.
+     */
+    public Map<String, Object> getSingleFlightStats() {
+        return searchFlights.stats();
+    }
+    
+    /**
+     * Circuit breaker state and rolling error rate for the metrics endpoint.
+     */
+    public Map<String, Object> getCircuitBreakerStats() {
+        return kbBreaker.stats();
+    }
+    
+    /**
+     * Search latency percentiles and hedge budget usage for the metrics endpoint.
+     */
+    public Map<String, Object> getHedgeStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", hedgeEnabled);
+        stats.put("latency", searchLatency.stats());
+        stats.put("budget", hedgeBudget.stats());
+        stats.put("hedgesWon", hedgesWon.get());
+        return stats;
+    }
+    
+    /**
+     * Whether KB calls are currently worth attempting (enabled and the breaker is not open).
+     * Callers can use this to skip optional KB stages during an outage.
+     */
+    public boolean isAvailable() {
+        return knowledgeBaseEnabled && kbBreaker.isCallPermitted();
+    }
+    
+    /**
+     * Register a callback for KB entry changes picked up by the replica sync, e.g. to drop
+     * cached answers grounded on an entry that was edited or removed.
+     */
+    public void addEntryChangeListener(Consumer<Collection<String>> listener) {
+        entryChangeListeners.add(listener);
+    }
+    
+    private void notifyEntryChanges(Set<String> changedIds) {
+        if (changedIds.isEmpty()) {
+            return;
         }
-
-        String token;
-        if (key.split("\\.").length == 3) {
-            // Looks like a JWT already
-            token = key;
-        } else {
-            // Looks like a raw shared secret; mint a short-lived JWT and cache it for 5 minutes
-            long now = System.currentTimeMillis();
-            if (cachedServiceToken == null || now > cachedServiceTokenExpiryMs) {
-                Date issuedAt = new Date(now);
-                Date expiry = new Date(now + 5 * 60 * 1000L); // 5 minutes
-                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
-                cachedServiceToken = Jwts.builder()
-                        .setSubject("civilify-service")
-                        .claim("role", "service")
-                        .setIssuedAt(issuedAt)
-                        .setExpiration(expiry)
-                        .signWith(Keys.hmacShaKeyFor(keyBytes), SignatureAlgorithm.HS256)
-                        .compact();
-                cachedServiceTokenExpiryMs = expiry.getTime() - 10_000L; // refresh slightly before expiry
+        for (Consumer<Collection<String>> listener : entryChangeListeners) {
+            try {
+                listener.accept(changedIds);
+            } catch (Exception e) {
+                logger.warn("KB entry change listener failed: {}", e.getMessage());
             }
-            token = cachedServiceToken;
         }
-
-        headers.set("Authorization", "Bearer " + token);
-        return headers;
     }
-
+    
+    /**
+     * Run an outbound KB call with negotiated auth headers through the circuit breaker.
+     */
+    private <T> T callKb(Function<HttpHeaders, T> call) {
+        return kbBreaker.execute(() -> authNegotiator.execute(call));
+    }
+    
+    /**
+     * Local replica status (entries, index terms, syncs, misses), or null when disabled.
+     */
+    public Map<String, Object> getReplicaStats() {
+        return replica != null ? replica.stats() : null;
+    }
+    
     /**
      * Search the knowledge base for relevant entries based on a query.
      * 
@@ -205,50 +473,185 @@ public class KnowledgeBaseService {
      * @return List of knowledge base entries
      */
     public List<KnowledgeBaseEntry> searchKnowledgeBase(String query, int limit) {
+        try {
+            return searchKnowledgeBaseAsync(query, limit).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.error("KB search failed for query '{}': {}", query, cause.getMessage(), cause);
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Non-blocking variant of {@link #searchKnowledgeBase(String, int)}.
+     * Concurrent calls for the same normalized query share one upstream request; callers
+     * attach to the shared future instead of holding a thread while the leader retries.
+     */
+    public CompletableFuture<List<KnowledgeBaseEntry>> searchKnowledgeBaseAsync(String query, int limit) {
         if (!knowledgeBaseEnabled) {
             logger.debug("Knowledge base is disabled, returning empty results");
-            return new ArrayList<>();
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
         if (query == null || query.trim().length() < knowledgeBaseMinQueryLength) {
-            return new ArrayList<>();
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
         String normalizedQuery = sanitizeUserText(query).toLowerCase(Locale.ROOT).trim();
         int effectiveLimit = Math.min(Math.max(1, limit), Math.max(1, maxResults));
         String cacheKey = normalizedQuery + "::" + effectiveLimit;
         
-        CacheEntry<List<KnowledgeBaseEntry>> cached = resultCache.get(cacheKey);
-        if (cached != null && !cached.isExpired()) {
-            return cached.value;
+        BoundedCache.Lookup<List<KnowledgeBaseEntry>> cached = resultCache.lookup(cacheKey);
+        if (cached != null) {
+            if (cached.stale()) {
+                refreshInBackground(normalizedQuery, effectiveLimit, cacheKey);
+            }
+            return CompletableFuture.completedFuture(cached.value());
+        }
+        
+        List<KnowledgeBaseEntry> local = searchReplica(normalizedQuery, effectiveLimit);
+        if (!local.isEmpty()) {
+            return CompletableFuture.completedFuture(local);
+        }
+        if (!kbBreaker.isCallPermitted()) {
+            logger.debug("KB circuit open; skipping remote search for query: {}", normalizedQuery);
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
         
-        Object lock = inFlightLocks.computeIfAbsent(cacheKey, k -> new Object());
-        synchronized (lock) {
-            try {
-                cached = resultCache.get(cacheKey);
-                if (cached != null && !cached.isExpired()) {
-                    return cached.value;
-                }
-                return executeSearchWithRetry(normalizedQuery, effectiveLimit, cacheKey);
-            } finally {
-                inFlightLocks.remove(cacheKey);
+        return searchFlights.execute(cacheKey, () -> {
+            // Another flight may have filled the cache between our lookup and becoming leader
+            BoundedCache.Lookup<List<KnowledgeBaseEntry>> fresh = resultCache.lookup(cacheKey);
+            if (fresh != null && !fresh.stale()) {
+                return fresh.value();
             }
+            return executeSearchWithRetry(normalizedQuery, effectiveLimit, cacheKey);
+        }, kbExecutor);
+    }
+    
+    /**
+     * Refresh a stale cached result without making the caller wait. Runs through the same
+     * single-flight key as foreground searches, so a hot query triggers one refresh at a time.
+     * A failed refresh leaves the stale value in place until its hard TTL.
+     */
+    private void refreshInBackground(String normalizedQuery, int effectiveLimit, String cacheKey) {
+        if (!kbBreaker.isCallPermitted() || searchFlights.isInFlight(cacheKey)) {
+            return;
         }
+        logger.debug("KB cache entry stale; refreshing in background: {}", cacheKey);
+        searchFlights.execute(cacheKey, () -> executeSearchWithRetry(normalizedQuery, effectiveLimit, cacheKey), kbExecutor);
     }
 
+    /**
+     * Serve a search from the local replica when it is synced and has a confident match.
+     * @return Matching entries, or an empty list to fall back to the remote KB
+     */
+    private List<KnowledgeBaseEntry> searchReplica(String query, int limit) {
+        if (replica == null || !replica.isReady()) {
+            return new ArrayList<>();
+        }
+        List<KnowledgeBaseEntry> hits = replica.search(query, limit);
+        hits.removeIf(entry -> entry.getSimilarity() == null || entry.getSimilarity() < replicaMinCoverage);
+        if (performanceLogging && !hits.isEmpty()) {
+            logger.info("KB search served from local replica: {} results", hits.size());
+        }
+        return hits;
+    }
+    
+    /**
+     * Pull the entry corpus into the local replica. Runs a full listing on the first cycle
+     * and every knowledge.base.replica.full.sync.every cycles (which also drops deleted
+     * entries); other cycles only fetch entries updated since the last sync.
+     */
+    private void syncReplica() {
+        long startTime = System.currentTimeMillis();
+        try {
+            boolean full = !replica.isReady() || replicaSyncCycle % Math.max(1, replicaFullSyncEvery) == 0;
+            String updatedSince = full ? null : Instant.ofEpochMilli(replica.getLastSyncMs()).toString();
+            List<KnowledgeBaseEntry> listed = new ArrayList<>();
+            int pageSize = Math.max(1, replicaPageSize);
+            String previousFirstId = null;
+            for (int offset = 0; ; offset += pageSize) {
+                List<KnowledgeBaseEntry> page = listKnowledgeBaseEntries(updatedSince, offset, pageSize);
+                // Stop if the listing ignores offset and keeps returning the same page
+                String firstId = page.isEmpty() ? null : page.get(0).getEntryId();
+                if (firstId != null && firstId.equals(previousFirstId)) {
+                    break;
+                }
+                previousFirstId = firstId;
+                listed.addAll(page);
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+            Set<String> changedIds = Collections.emptySet();
+            if (full) {
+                changedIds = replica.replaceAll(listed, startTime);
+            } else if (!listed.isEmpty()) {
+                changedIds = replica.applyDelta(listed, startTime);
+            }
+            replicaSyncCycle++;
+            listed.forEach(entry -> entryCache.invalidate(entry.getEntryId()));
+            notifyEntryChanges(changedIds);
+            logger.info("KB replica {} sync: {} entries in {}ms", full ? "full" : "delta",
+                listed.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            // Keep serving the previous snapshot (or the remote KB) until the next cycle
+            logger.warn("KB replica sync failed: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * One page of the KB entry listing.
+     * @param updatedSince ISO-8601 timestamp for delta listings, or null for all entries
+     */
+    private List<KnowledgeBaseEntry> listKnowledgeBaseEntries(String updatedSince, int offset, int limit) {
+        StringBuilder url = new StringBuilder(knowledgeBaseApiUrl).append(replicaListingPath)
+            .append("?limit=").append(limit).append("&offset=").append(offset);
+        if (updatedSince != null) {
+            url.append("&updated_since=").append(URLEncoder.encode(updatedSince, StandardCharsets.UTF_8));
+        }
+        ResponseEntity<KnowledgeBaseEntryListPayload> response = callKb(authHeaders -> {
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(authHeaders);
+            return restTemplate.exchange(url.toString(), HttpMethod.GET, new HttpEntity<>(headers),
+                KnowledgeBaseEntryListPayload.class);
+        });
+        List<KnowledgeBaseEntry> entries = new ArrayList<>();
+        KnowledgeBaseEntryListPayload body = response.getBody();
+        if (body == null) {
+            return entries;
+        }
+        for (KnowledgeBaseEntry entry : body.entries()) {
+            if (entry.getEntryId() != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+    
     private List<KnowledgeBaseEntry> executeSearchWithRetry(String query, int limit, String cacheKey) {
         int attempts = Math.max(1, knowledgeBaseRetryAttempts);
         long baseDelay = Math.max(100, knowledgeBaseRetryDelay);
         for (int attempt = 1; attempt <= attempts; attempt++) {
             try {
-                return doSearch(query, limit, cacheKey);
+                return hedgedSearch(query, limit, cacheKey);
+            } catch (CircuitBreaker.CircuitOpenException e) {
+                logger.warn("KB circuit open; returning empty results without retrying");
+                break;
             } catch (HttpClientErrorException.TooManyRequests e429) {
+                if (!kbBreaker.isCallPermitted()) {
+                    break;
+                }
                 long delayMs = parseRetryAfterMs(e429.getResponseHeaders(), baseDelay, attempt);
                 logger.warn("KB 429 Too Many Requests. Attempt {}/{}. Backing off for {} ms", attempt, attempts, delayMs);
                 sleepQuietly(delayMs);
-            } catch (org.springframework.web.client.ResourceAccessException e) {
-                if (attempt < attempts) {
+            } catch (org.springframework.web.client.ResourceAccessException | HttpServerErrorException e) {
+                if (OutboundHttpClient.isHostSaturated(e)) {
+                    // Our own per-host limit is full; retrying would only add to the queue
+                    logger.warn("KB search skipped: {}", e.getMessage());
+                    break;
+                }
+                if (attempt < attempts && kbBreaker.isCallPermitted()) {
                     long delayMs = jitteredDelay(baseDelay, attempt);
-                    logger.warn("KB connection issue. Attempt {}/{}. Backing off for {} ms", attempt, attempts, delayMs);
+                    logger.warn("KB connection issue ({}). Attempt {}/{}. Backing off for {} ms", e.getMessage(), attempt, attempts, delayMs);
                     sleepQuietly(delayMs);
                 } else {
                     logger.warn("Knowledge base service is not available (connection refused). Returning empty results.");
@@ -261,6 +664,131 @@ public class KnowledgeBaseService {
         return new ArrayList<>();
     }
 
+    /**
+     * One search attempt. Once enough latency samples exist, the attempt runs async and,
+     * if it has not answered by the configured percentile of recent latency, a second
+     * identical request is sent (subject to the hedge budget); the first success wins and
+     * the other attempt is cancelled, which interrupts its HTTP exchange.
+     * Failures are rethrown unchanged so the retry loop can classify them.
+     */
+    private List<KnowledgeBaseEntry> hedgedSearch(String query, int limit, String cacheKey) {
+        hedgeBudget.onRequest();
+        if (!hedgeEnabled || searchLatency.count() < hedgeMinSamples) {
+            return timedSearch(query, limit, cacheKey);
+        }
+        long hedgeDelayMs = Math.max(hedgeMinDelayMs, searchLatency.percentile(hedgePercentile));
+        CompletableFuture<List<KnowledgeBaseEntry>> primary;
+        try {
+            primary = supplyCancellable(() -> timedSearch(query, limit, cacheKey));
+        } catch (RejectedExecutionException e) {
+            return timedSearch(query, limit, cacheKey);
+        }
+        CompletableFuture<List<KnowledgeBaseEntry>> hedge = null;
+        try {
+            try {
+                return primary.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException slow) {
+                if (!kbBreaker.isCallPermitted() || !hedgeBudget.tryAcquire()) {
+                    return primary.get();
+                }
+                logger.info("KB search slower than {}ms (p{}); sending hedged request",
+                    hedgeDelayMs, Math.round(hedgePercentile * 100));
+                hedge = supplyCancellable(() -> timedSearch(query, limit, cacheKey));
+                hedge.thenRun(() -> {
+                    if (!primary.isDone()) {
+                        hedgesWon.incrementAndGet();
+                    }
+                });
+                return firstSuccessful(primary, hedge).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<>();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(cause);
+        } catch (RejectedExecutionException e) {
+            // No capacity for a hedge; keep waiting on the primary
+            try {
+                return primary.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return new ArrayList<>();
+            } catch (ExecutionException ee) {
+                throw ee.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(ee.getCause());
+            }
+        } finally {
+            // Whichever attempt is still running lost (or nobody is waiting any more)
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * Run the task on the search pool; cancelling the returned future interrupts the task.
+     */
+    private <T> CompletableFuture<T> supplyCancellable(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = searchExecutor.submit(() -> {
+            try {
+                result.complete(task.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Failed, timed-out and cancelled attempts are recorded too, so the percentile used as
+     * the hedge delay reflects every attempt rather than only the ones that succeeded.
+     * Fail-fast rejections from the open breaker never reached the KB and are skipped.
+     */
+    private List<KnowledgeBaseEntry> timedSearch(String query, int limit, String cacheKey) {
+        long start = System.currentTimeMillis();
+        boolean reachedKb = true;
+        try {
+            return doSearch(query, limit, cacheKey);
+        } catch (CircuitBreaker.CircuitOpenException e) {
+            reachedKb = false;
+            throw e;
+        } finally {
+            if (reachedKb) {
+                searchLatency.record(System.currentTimeMillis() - start);
+            }
+        }
+    }
+    
+    /**
+     * Completes with the first of the two futures to succeed, or exceptionally with the
+     * last failure if both fail.
+     */
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> a, CompletableFuture<T> b) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        BiConsumer<T, Throwable> onDone = (value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (failures.incrementAndGet() == 2) {
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error);
+            }
+        };
+        a.whenComplete(onDone);
+        b.whenComplete(onDone);
+        return result;
+    }
+
     private List<KnowledgeBaseEntry> doSearch(String query, int limit, String cacheKey) {
         logger.info("Searching knowledge base for query: {}", query);
         String url = knowledgeBaseApiUrl + "/kb/search";
@@ -268,84 +796,38 @@ public class KnowledgeBaseService {
         requestBody.put("query", query);
         requestBody.put("limit", limit);
 
-        // Try auth variants: minted/jwt -> raw bearer -> x-api-key
-        List<String> variants = Arrays.asList("minted", "raw", "x-api-key");
-        for (String variant : variants) {
-            try {
-                ResponseEntity<Map<String, Object>> response = postWithVariant(url, requestBody, variant);
-                if (response != null && response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                    Map<String, Object> responseBody = response.getBody();
-                    if (Boolean.TRUE.equals(responseBody.get("success"))) {
-                        Object resultsObj = responseBody.get("results");
-                        List<Map<String, Object>> results = new ArrayList<>();
-                        if (resultsObj instanceof List<?>) {
-                            for (Object item : (List<?>) resultsObj) {
-                                if (item instanceof Map<?, ?>) {
-                                    @SuppressWarnings("unchecked")
-                                    Map<String, Object> casted = (Map<String, Object>) item;
-                                    results.add(casted);
-                                    // Log raw response structure for debugging sourceUrls
-                                    if (logger.isDebugEnabled()) {
-                                        logger.debug("KB search result keys: {}", casted.keySet());
-                                        logger.debug("KB search result source_urls: {}", casted.get("source_urls"));
-                                        logger.debug("KB search result sourceUrls: {}", casted.get("sourceUrls"));
-                                    }
-                                }
-                            }
-                        }
-                        List<KnowledgeBaseEntry> entries = convertToKnowledgeBaseEntries(results);
-                        // Log final entries to verify sourceUrls are set
-                        for (KnowledgeBaseEntry entry : entries) {
-                            if (entry.getSourceUrls() != null && !entry.getSourceUrls().isEmpty()) {
-                                logger.info("Entry '{}' has {} sourceUrls: {}", entry.getTitle(), entry.getSourceUrls().size(), entry.getSourceUrls());
-                            } else {
-                                logger.debug("Entry '{}' has no sourceUrls", entry.getTitle());
-                            }
-                        }
-                        resultCache.put(cacheKey, new CacheEntry<>(entries, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(knowledgeBaseCacheTtlSeconds)));
-                        return entries;
+        // Auth variant (minted/jwt, raw bearer or x-api-key) is negotiated once and remembered
+        ResponseEntity<KnowledgeBaseSearchPayload> response = callKb(
+            authHeaders -> postSearch(url, requestBody, authHeaders));
+        if (response != null && response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+            KnowledgeBaseSearchPayload responseBody = response.getBody();
+            if (responseBody.success()) {
+                List<KnowledgeBaseEntry> entries = hydrateResultEntries(responseBody.results());
+                // Log final entries to verify sourceUrls are set
+                for (KnowledgeBaseEntry entry : entries) {
+                    if (entry.getSourceUrls() != null && !entry.getSourceUrls().isEmpty()) {
+                        logger.info("Entry '{}' has {} sourceUrls: {}", entry.getTitle(), entry.getSourceUrls().size(), entry.getSourceUrls());
+                    } else {
+                        logger.debug("Entry '{}' has no sourceUrls", entry.getTitle());
                     }
                 }
-            } catch (HttpClientErrorException.TooManyRequests e429) {
-                // Do not try other variants on rate limit; bubble up so outer retry/backoff applies
-                logger.warn("KB rate limited on variant '{}': {}", variant, e429.getMessage());
-                throw e429;
-            } catch (HttpClientErrorException.Forbidden e403) {
-                logger.warn("KB auth variant '{}' failed with 403: {}", variant, e403.getResponseBodyAsString());
-                // fallthrough to next variant
-            } catch (Exception e) {
-                logger.warn("KB variant '{}' failed: {}", variant, e.getMessage());
+                resultCache.put(cacheKey, entries);
+                return entries;
             }
+            logger.warn("KB search returned unsuccessful response for query: {}", query);
         }
         return new ArrayList<>();
     }
 
-    private ResponseEntity<Map<String, Object>> postWithVariant(String url, Map<String, Object> body, String variant) {
+    private ResponseEntity<KnowledgeBaseSearchPayload> postSearch(String url, Map<String, Object> body, HttpHeaders authHeaders) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
         headers.set("User-Agent", "Civilify/1.0 KB Client");
-
-        try {
-            if ("minted".equals(variant)) {
-                HttpHeaders auth = buildAuthHeaders();
-                headers.putAll(auth);
-            } else if ("raw".equals(variant)) {
-                if (knowledgeBaseApiKey != null && !knowledgeBaseApiKey.trim().isEmpty()) {
-                    headers.set("Authorization", "Bearer " + knowledgeBaseApiKey.trim());
-                }
-            } else if ("x-api-key".equals(variant)) {
-                if (knowledgeBaseApiKey != null && !knowledgeBaseApiKey.trim().isEmpty()) {
-                    headers.set("x-api-key", knowledgeBaseApiKey.trim());
-                }
-            }
-        } catch (Exception e) {
-            // If minting fails due to weak key, continue without throwing
-            logger.debug("Auth header build error for variant '{}': {}", variant, e.getMessage());
-        }
+        headers.putAll(authHeaders);
 
         HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
-        return restTemplate.exchange(url, HttpMethod.POST, request, new ParameterizedTypeReference<Map<String, Object>>() {});
+        return restTemplate.exchange(url, HttpMethod.POST, request, KnowledgeBaseSearchPayload.class);
     }
 
     private long parseRetryAfterMs(HttpHeaders headers, long baseDelay, int attempt) {
@@ -388,41 +870,30 @@ public class KnowledgeBaseService {
             
             String url = knowledgeBaseApiUrl + "/chat";
             
-            HttpHeaders headers = buildAuthHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
             Map<String, Object> requestBody = new HashMap<String, Object>();
             requestBody.put("question", sanitizeUserText(question));
             
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-            
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                url, HttpMethod.POST, request, new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
+            ResponseEntity<KnowledgeBaseChatPayload> response = callKb(authHeaders -> {
+                HttpHeaders headers = new HttpHeaders();
+                headers.putAll(authHeaders);
+                headers.setContentType(MediaType.APPLICATION_JSON);
+                HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+                return restTemplate.exchange(url, HttpMethod.POST, request, KnowledgeBaseChatPayload.class);
+            });
             
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                Map<String, Object> responseBody = response.getBody();
-                
-                String answer = (String) responseBody.get("answer");
-                Object sourcesObj = responseBody.get("sources");
-                List<Map<String, Object>> sources = new ArrayList<>();
-                if (sourcesObj instanceof List<?>) {
-                    for (Object item : (List<?>) sourcesObj) {
-                        if (item instanceof Map<?, ?>) {
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> casted = (Map<String, Object>) item;
-                            sources.add(casted);
-                        }
-                    }
-                }
+                KnowledgeBaseChatPayload responseBody = response.getBody();
                 
                 return new KnowledgeBaseChatResponse(
-                    answer != null ? answer : "",
-                    convertToKnowledgeBaseEntries(sources),
+                    responseBody.answer() != null ? responseBody.answer() : "",
+                    hydrateResultEntries(responseBody.sources()),
                     null
                 );
             }
             
+        } catch (CircuitBreaker.CircuitOpenException e) {
+            logger.warn("KB circuit open; skipping knowledge base chat");
+            return new KnowledgeBaseChatResponse("", new ArrayList<>(), "Knowledge base service is not available");
         } catch (org.springframework.web.client.ResourceAccessException e) {
             logger.warn("Knowledge base service is not available (connection refused). This is expected if the Villy service is not running. Falling back to empty response.");
             return new KnowledgeBaseChatResponse("", new ArrayList<>(), "Knowledge base service is not available");
@@ -480,7 +951,7 @@ public class KnowledgeBaseService {
                 : knowledgeBaseApiUrl;
             String url = baseUrl + "/health";
             
-            HttpHeaders headers = buildAuthHeaders();
+            HttpHeaders headers = authNegotiator.currentHeaders();
             
             HttpEntity<String> request = new HttpEntity<>(headers);
             
@@ -496,69 +967,26 @@ public class KnowledgeBaseService {
     }
     
     /**
-     * Convert raw API response to KnowledgeBaseEntry objects.
+     * Finish decoded search/chat results: backfill URLs for entries the result did not carry them on.
      */
-    private List<KnowledgeBaseEntry> convertToKnowledgeBaseEntries(List<Map<String, Object>> rawResults) {
-        List<KnowledgeBaseEntry> entries = new ArrayList<>();
-        
-        if (rawResults == null) {
-            return entries;
+    private List<KnowledgeBaseEntry> hydrateResultEntries(List<KnowledgeBaseEntry> entries) {
+        for (KnowledgeBaseEntry entry : entries) {
+            if (!entry.getSourceUrls().isEmpty()) {
+                logger.info("Using {} URLs from KB API for entry: {} - {}",
+                    entry.getSourceUrls().size(), entry.getTitle(), entry.getSourceUrls());
+            } else {
+                logger.debug("No KB-provided source URLs for entry: {}", entry.getTitle());
+            }
         }
         
-        for (Map<String, Object> result : rawResults) {
-            try {
-                KnowledgeBaseEntry entry = new KnowledgeBaseEntry();
-                
-                entry.setEntryId((String) result.get("entry_id"));
-                entry.setType((String) result.get("type"));
-                entry.setTitle((String) result.get("title"));
-                entry.setCanonicalCitation((String) result.get("canonical_citation"));
-                entry.setSummary((String) result.get("summary"));
-                entry.setText((String) result.get("text"));
-                
-                // Handle tags array
-                Object tagsObj = result.get("tags");
-            if (tagsObj instanceof List<?>) {
-                List<String> tags = new ArrayList<>();
-                for (Object t : (List<?>) tagsObj) {
-                    if (t instanceof String) tags.add((String) t);
-                }
-                entry.setTags(tags);
-            }
-                
-                // Handle similarity score
-                Object similarityObj = result.get("similarity");
-                if (similarityObj instanceof Number) {
-                    entry.setSimilarity(((Number) similarityObj).doubleValue());
-                }
-                
-                // Handle additional fields
-                entry.setRuleNo((String) result.get("rule_no"));
-                entry.setSectionNo((String) result.get("section_no"));
-                entry.setRightsScope((String) result.get("rights_scope"));
-                
-                List<String> sourceUrls = extractSourceUrls(result);
-                    entry.setSourceUrls(sourceUrls);
-                if (!sourceUrls.isEmpty()) {
-                    entry.setPrimaryUrl(sourceUrls.get(0));
-                    logger.info("Using {} URLs from KB API for entry: {} - {}", 
-                        sourceUrls.size(), entry.getTitle(), sourceUrls);
-                } else if (!backfillEntryDetails(entry)) {
-                    logger.debug("No KB-provided source URLs for entry: {} (available keys: {})",
-                        entry.getTitle(), result.keySet());
-                }
-                
-                // Log final state
-                if (entry.getSourceUrls().isEmpty()) {
-                    logger.debug("Entry '{}' has no sourceUrls after all attempts", entry.getTitle());
-                } else {
-                    logger.debug("Entry '{}' has {} sourceUrls: {}", entry.getTitle(), entry.getSourceUrls().size(), entry.getSourceUrls());
-                }
-                
-                entries.add(entry);
-                
-            } catch (Exception e) {
-                logger.warn("Failed to convert knowledge base result: {}", e.getMessage());
+        // Backfill entries without URLs from the entry store in one parallel batch
+        hydrateEntries(entries);
+        
+        for (KnowledgeBaseEntry entry : entries) {
+            if (entry.getSourceUrls() == null || entry.getSourceUrls().isEmpty()) {
+                logger.debug("Entry '{}' has no sourceUrls after all attempts", entry.getTitle());
+            } else {
+                logger.debug("Entry '{}' has {} sourceUrls: {}", entry.getTitle(), entry.getSourceUrls().size(), entry.getSourceUrls());
             }
         }
         
@@ -575,34 +1003,53 @@ public class KnowledgeBaseService {
             logger.debug("Knowledge base is disabled");
             return null;
         }
+        if (entryId == null || entryId.isBlank()) {
+            return null;
+        }
         
+        KnowledgeBaseEntry cached = entryCache.get(entryId);
+        if (cached != null) {
+            return cached;
+        }
+        if (replica != null) {
+            KnowledgeBaseEntry local = replica.get(entryId);
+            if (local != null) {
+                return local;
+            }
+        }
+        KnowledgeBaseEntry entry = fetchKnowledgeBaseEntry(entryId);
+        if (entry != null) {
+            entryCache.put(entryId, entry);
+        }
+        return entry;
+    }
+    
+    private KnowledgeBaseEntry fetchKnowledgeBaseEntry(String entryId) {
         try {
-            HttpHeaders headers = buildAuthHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                knowledgeBaseApiUrl + "/kb/entries/" + entryId,
-                HttpMethod.GET,
-                entity,
-                new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
+            ResponseEntity<KnowledgeBaseEntryPayload> response = callKb(authHeaders -> {
+                HttpHeaders headers = new HttpHeaders();
+                headers.putAll(authHeaders);
+                headers.setContentType(MediaType.APPLICATION_JSON);
+                HttpEntity<String> entity = new HttpEntity<>(headers);
+                return restTemplate.exchange(
+                    knowledgeBaseApiUrl + "/kb/entries/" + entryId,
+                    HttpMethod.GET,
+                    entity,
+                    KnowledgeBaseEntryPayload.class
+                );
+            });
             
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                Map<String, Object> body = response.getBody();
-                // KB API returns { success: true, entry: {...} } - unwrap the entry field
-                Object entryObj = body.get("entry");
-                if (entryObj instanceof Map) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> entryMap = (Map<String, Object>) entryObj;
-                    return mapToKnowledgeBaseEntry(entryMap);
-                } else {
-                    // Fallback: if response structure is different, try direct mapping
-                    logger.debug("KB entry response missing 'entry' field, attempting direct mapping. Keys: {}", body.keySet());
-                    return mapToKnowledgeBaseEntry(body);
+                // KB API returns { success: true, entry: {...} }; the decoder unwraps it
+                KnowledgeBaseEntry entry = response.getBody().entry();
+                if (entry.getEntryId() == null) {
+                    logger.warn("KB entry {} response carried no entry id", entryId);
                 }
+                return entry;
             }
             
+        } catch (CircuitBreaker.CircuitOpenException e) {
+            logger.debug("KB circuit open; not fetching entry {}", entryId);
         } catch (Exception e) {
             logger.error("Error retrieving knowledge base entry: " + entryId, e);
         }
@@ -611,178 +1058,159 @@ public class KnowledgeBaseService {
     }
     
     /**
-     * Convert a single map response to KnowledgeBaseEntry.
+     * Backfill entries that lack URL metadata from the authoritative entry records.
+     * Entry ids are de-duplicated, served from the entry store when cached, and the
+     * remaining ids are fetched in parallel (or through the bulk endpoint when enabled)
+     * under a single deadline.
+     *
+     * @param entries Entries to hydrate in place
+     * @return Number of entries that have source URLs after hydration
      */
-    private KnowledgeBaseEntry mapToKnowledgeBaseEntry(Map<String, Object> result) {
-        try {
-            KnowledgeBaseEntry entry = new KnowledgeBaseEntry();
-            
-            String entryId = firstNonBlank(
-                asString(result.get("entry_id")),
-                asString(result.get("entryId")),
-                asString(result.get("id"))
-            );
-            entry.setEntryId(entryId);
-            if (entryId == null || entryId.isBlank()) {
-                logger.warn("KB entry missing entry_id. Available keys: {}", result.keySet());
-            }
-            entry.setType((String) result.get("type"));
-            entry.setTitle((String) result.get("title"));
-            entry.setCanonicalCitation((String) result.get("canonical_citation"));
-            entry.setSummary((String) result.get("summary"));
-            entry.setText((String) result.get("text"));
-            
-            // Handle tags array
-            Object tagsObj = result.get("tags");
-            if (tagsObj instanceof List<?>) {
-                List<String> tags = new ArrayList<>();
-                for (Object t : (List<?>) tagsObj) {
-                    if (t instanceof String) tags.add((String) t);
-                }
-                entry.setTags(tags);
-            }
-            
-            // Handle similarity score
-            Object similarityObj = result.get("similarity");
-            if (similarityObj instanceof Number) {
-                entry.setSimilarity(((Number) similarityObj).doubleValue());
+    public int hydrateEntries(Collection<KnowledgeBaseEntry> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return 0;
+        }
+        Map<String, List<KnowledgeBaseEntry>> pending = new LinkedHashMap<>();
+        for (KnowledgeBaseEntry entry : entries) {
+            if (entry == null || entry.getEntryId() == null || entry.getEntryId().trim().isEmpty()) {
+                continue;
             }
-            
-            // Handle additional fields
-            entry.setRuleNo((String) result.get("rule_no"));
-            entry.setSectionNo((String) result.get("section_no"));
-            entry.setRightsScope((String) result.get("rights_scope"));
-            
-            List<String> sourceUrls = extractSourceUrls(result);
-                entry.setSourceUrls(sourceUrls);
-            if (!sourceUrls.isEmpty()) {
-                entry.setPrimaryUrl(sourceUrls.get(0));
-                logger.info("Using {} URLs from KB API for entry: {} - {}", 
-                    sourceUrls.size(), entry.getTitle(), sourceUrls);
-            } else if (!backfillEntryDetails(entry)) {
-                logger.debug("No KB-provided source URLs for entry: {} (available keys: {})",
-                    entry.getTitle(), result.keySet());
+            if (entry.getSourceUrls() != null && !entry.getSourceUrls().isEmpty()) {
+                continue;
             }
-            
-            return entry;
-            
-        } catch (Exception e) {
-            logger.warn("Failed to convert knowledge base entry: {}", e.getMessage());
-            return null;
+            pending.computeIfAbsent(entry.getEntryId().trim(), id -> new ArrayList<>()).add(entry);
         }
-    }
-    
-    private List<String> extractSourceUrls(Map<String, Object> result) {
-        LinkedHashSet<String> collector = new LinkedHashSet<>();
-        
-        addUrlIfValid(collector, result.get("primary_url"));
-        addUrlIfValid(collector, result.get("primaryUrl"));
-        
-        addUrlsFromObject(collector, result.get("source_urls"));
-        addUrlsFromObject(collector, result.get("sourceUrls"));
-        addUrlsFromObject(collector, result.get("source_url"));
-        addUrlsFromObject(collector, result.get("sourceUrl"));
-        
-        addUrlIfValid(collector, result.get("url"));
-        
-        Object urlsObj = result.get("urls");
-        if (urlsObj instanceof List<?>) {
-            for (Object item : (List<?>) urlsObj) {
-                if (item instanceof Map<?, ?> map) {
-                    addUrlIfValid(collector, map.get("url"));
-                } else {
-                    addUrlIfValid(collector, item);
-                }
-            }
-        } else {
-            addUrlIfValid(collector, urlsObj);
+        if (pending.isEmpty() || !knowledgeBaseEnabled) {
+            return countWithUrls(entries);
         }
         
-        Object externalRelationsObj = result.get("external_relations");
-        if (externalRelationsObj instanceof List<?>) {
-            for (Object relation : (List<?>) externalRelationsObj) {
-                if (relation instanceof Map<?, ?> map) {
-                    addUrlIfValid(collector, map.get("url"));
-                }
+        long startTime = System.currentTimeMillis();
+        Map<String, KnowledgeBaseEntry> resolved = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String entryId : pending.keySet()) {
+            KnowledgeBaseEntry cached = entryCache.get(entryId);
+            if (cached != null) {
+                resolved.put(entryId, cached);
+            } else {
+                missing.add(entryId);
             }
         }
-        
-        return new ArrayList<>(collector);
-    }
-    
-    /**
-     * If a KB search result doesn't include URL metadata, fetch the full entry
-     * to populate source URLs and summaries from the authoritative record.
-     */
-    private boolean backfillEntryDetails(KnowledgeBaseEntry entry) {
-        if (entry == null || entry.getEntryId() == null || entry.getEntryId().trim().isEmpty()) {
-            return false;
+        if (!missing.isEmpty() && bulkEntriesEnabled) {
+            resolved.putAll(fetchEntriesBulk(missing));
+            missing.removeIf(resolved::containsKey);
         }
-        try {
-            KnowledgeBaseEntry detailed = getKnowledgeBaseEntry(entry.getEntryId());
+        if (!missing.isEmpty()) {
+            resolved.putAll(fetchEntriesParallel(missing));
+        }
+        
+        pending.forEach((entryId, targets) -> {
+            KnowledgeBaseEntry detailed = resolved.get(entryId);
             if (detailed == null) {
-                return false;
+                logger.debug("KB entry {} could not be hydrated", entryId);
+                return;
             }
-            if ((entry.getSourceUrls() == null || entry.getSourceUrls().isEmpty())
-                && detailed.getSourceUrls() != null && !detailed.getSourceUrls().isEmpty()) {
-                entry.setSourceUrls(detailed.getSourceUrls());
-                entry.setPrimaryUrl(detailed.getPrimaryUrl());
+            for (KnowledgeBaseEntry target : targets) {
+                applyEntryDetails(target, detailed);
             }
-            if ((entry.getSummary() == null || entry.getSummary().isBlank()) && detailed.getSummary() != null) {
-                entry.setSummary(detailed.getSummary());
-            }
-            if ((entry.getText() == null || entry.getText().isBlank()) && detailed.getText() != null) {
-                entry.setText(detailed.getText());
-            }
-            boolean hydrated = entry.getSourceUrls() != null && !entry.getSourceUrls().isEmpty();
-            if (!hydrated) {
-                logger.debug("KB entry {} still lacks source URLs after hydration", entry.getEntryId());
-            }
-            return hydrated;
-        } catch (Exception e) {
-            logger.warn("Failed to backfill KB entry {}: {}", entry.getEntryId(), e.getMessage());
-            return false;
+        });
+        
+        if (performanceLogging) {
+            logger.info("KB hydration resolved {}/{} entry ids ({} fetched) in {}ms",
+                resolved.size(), pending.size(), missing.size(), System.currentTimeMillis() - startTime);
         }
+        return countWithUrls(entries);
     }
-
+    
     /**
-     * Public helper so higher layers (e.g., CPA controller) can hydrate entries on demand.
+     * Public helper so higher layers (e.g., CPA controller) can hydrate a single entry on demand.
      */
     public boolean hydrateEntryDetails(com.capstone.civilify.DTO.KnowledgeBaseEntry entry) {
-        return backfillEntryDetails(entry);
+        return entry != null && hydrateEntries(List.of(entry)) > 0;
     }
     
-    private void addUrlsFromObject(LinkedHashSet<String> collector, Object value) {
-        if (value instanceof List<?>) {
-            for (Object url : (List<?>) value) {
-                addUrlIfValid(collector, url);
-            }
-        } else {
-            addUrlIfValid(collector, value);
+    private Map<String, KnowledgeBaseEntry> fetchEntriesParallel(List<String> entryIds) {
+        Map<String, CompletableFuture<KnowledgeBaseEntry>> futures = new LinkedHashMap<>();
+        for (String entryId : entryIds) {
+            futures.put(entryId, entryFlights.execute(entryId, () -> getKnowledgeBaseEntry(entryId), hydrationExecutor));
         }
+        Map<String, KnowledgeBaseEntry> fetched = new HashMap<>();
+        long deadlineMs = System.currentTimeMillis() + hydrationTimeoutMs;
+        futures.forEach((entryId, future) -> {
+            long remainingMs = Math.max(0L, deadlineMs - System.currentTimeMillis());
+            try {
+                KnowledgeBaseEntry entry = future.get(remainingMs, TimeUnit.MILLISECONDS);
+                if (entry != null) {
+                    fetched.put(entryId, entry);
+                }
+            } catch (TimeoutException e) {
+                logger.warn("KB entry {} not hydrated within {}ms", entryId, hydrationTimeoutMs);
+                future.cancel(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(false);
+            } catch (ExecutionException | CancellationException e) {
+                logger.warn("Failed to backfill KB entry {}: {}", entryId,
+                    e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+        });
+        return fetched;
     }
     
-    private void addUrlIfValid(LinkedHashSet<String> collector, Object urlObj) {
-        if (urlObj instanceof String) {
-            String url = ((String) urlObj).trim();
-            if (!url.isEmpty() && url.startsWith("http")) {
-                collector.add(url);
+    /**
+     * Resolve several entries in one round trip when the KB exposes a bulk endpoint.
+     * Returns whatever could be resolved; callers fall back to per-id fetches for the rest.
+     */
+    private Map<String, KnowledgeBaseEntry> fetchEntriesBulk(List<String> entryIds) {
+        Map<String, KnowledgeBaseEntry> fetched = new HashMap<>();
+        try {
+            Map<String, Object> body = Map.of("ids", entryIds);
+            ResponseEntity<KnowledgeBaseEntryListPayload> response = callKb(authHeaders -> {
+                HttpHeaders headers = new HttpHeaders();
+                headers.putAll(authHeaders);
+                headers.setContentType(MediaType.APPLICATION_JSON);
+                return restTemplate.exchange(
+                    knowledgeBaseApiUrl + bulkEntriesPath,
+                    HttpMethod.POST,
+                    new HttpEntity<>(body, headers),
+                    KnowledgeBaseEntryListPayload.class
+                );
+            });
+            if (response.getBody() != null) {
+                for (KnowledgeBaseEntry entry : response.getBody().entries()) {
+                    if (entry.getEntryId() != null) {
+                        entryCache.put(entry.getEntryId(), entry);
+                        fetched.put(entry.getEntryId(), entry);
+                    }
+                }
             }
+        } catch (Exception e) {
+            logger.warn("KB bulk entry fetch failed, falling back to per-entry requests: {}", e.getMessage());
         }
+        return fetched;
     }
-
-    private String asString(Object value) {
-        return value instanceof String ? ((String) value).trim() : null;
+    
+    private void applyEntryDetails(KnowledgeBaseEntry entry, KnowledgeBaseEntry detailed) {
+        if ((entry.getSourceUrls() == null || entry.getSourceUrls().isEmpty())
+            && detailed.getSourceUrls() != null && !detailed.getSourceUrls().isEmpty()) {
+            entry.setSourceUrls(detailed.getSourceUrls());
+            entry.setPrimaryUrl(detailed.getPrimaryUrl());
+        }
+        if ((entry.getSummary() == null || entry.getSummary().isBlank()) && detailed.getSummary() != null) {
+            entry.setSummary(detailed.getSummary());
+        }
+        if ((entry.getText() == null || entry.getText().isBlank()) && detailed.getText() != null) {
+            entry.setText(detailed.getText());
+        }
     }
-
-    private String firstNonBlank(String... values) {
-        if (values == null) return null;
-        for (String value : values) {
-            if (value != null && !value.isBlank()) {
-                return value;
+    
+    private int countWithUrls(Collection<KnowledgeBaseEntry> entries) {
+        int count = 0;
+        for (KnowledgeBaseEntry entry : entries) {
+            if (entry != null && entry.getSourceUrls() != null && !entry.getSourceUrls().isEmpty()) {
+                count++;
             }
         }
-        return null;
+        return count;
     }
     
     private String sanitizeUserText(String text) {
@@ -814,7 +1242,9 @@ public class KnowledgeBaseService {
     
     /**
      * Enhanced chat with knowledge base using KB-first approach
-     * This method implements the Villy RAG pattern: KB-first, then AI enhancement
+     * This method implements the Villy RAG pattern: KB-first, then AI enhancement.
+     * The /chat and /kb/search calls run concurrently under one stage deadline; if one side
+     * is late the other side's result is returned on its own.
      */
     public KnowledgeBaseChatResponse chatWithKnowledgeBaseEnhanced(String question, String mode) {
         long startTime = System.currentTimeMillis();
@@ -833,27 +1263,40 @@ public class KnowledgeBaseService {
                 logger.info("Enhanced KB chat request for mode: {}, question: {}", mode, question);
             }
             
-            // Step 1: Get primary KB response using chat endpoint
-            long chatStartTime = System.currentTimeMillis();
-            KnowledgeBaseChatResponse kbResponse = chatWithKnowledgeBase(question);
-            long chatDuration = System.currentTimeMillis() - chatStartTime;
+            // Step 1: Fan out /chat and /kb/search concurrently; they are independent calls
+            long deadlineMs = startTime + enhancedStageDeadlineMs;
+            CompletableFuture<KnowledgeBaseChatResponse> chatFuture = submitChat(question);
+            CompletableFuture<List<KnowledgeBaseEntry>> searchFuture = searchKnowledgeBaseAsync(question, maxResults);
             
+            // Step 2: Wait for each side until the shared stage deadline
+            KnowledgeBaseChatResponse kbResponse = awaitStage(chatFuture, deadlineMs, "chat");
+            long chatDuration = System.currentTimeMillis() - startTime;
             if (performanceLogging) {
                 logger.info("KB chat completed in {}ms", chatDuration);
             }
             
-            if (kbResponse.hasError()) {
+            if (kbResponse != null && kbResponse.hasError()) {
                 logger.warn("KB chat failed: {}", kbResponse.getError());
+                searchFuture.cancel(false);
                 return kbResponse;
             }
             
-            // Step 2: Get additional sources for context enrichment
-            long searchStartTime = System.currentTimeMillis();
-            List<KnowledgeBaseEntry> additionalSources = searchKnowledgeBase(question, maxResults);
-            long searchDuration = System.currentTimeMillis() - searchStartTime;
-            
+            List<KnowledgeBaseEntry> additionalSources = awaitStage(searchFuture, deadlineMs, "search");
+            long searchDuration = System.currentTimeMillis() - startTime;
             if (performanceLogging) {
-                logger.info("KB search completed in {}ms, found {} sources", searchDuration, additionalSources.size());
+                logger.info("KB search completed in {}ms, found {} sources", searchDuration,
+                    additionalSources != null ? additionalSources.size() : 0);
+            }
+            
+            if (kbResponse == null && (additionalSources == null || additionalSources.isEmpty())) {
+                return new KnowledgeBaseChatResponse(null, null,
+                    "Knowledge base did not respond within " + enhancedStageDeadlineMs + "ms");
+            }
+            if (kbResponse == null) {
+                // Chat side was late: return the search sources without a primary answer
+                logger.info("KB chat missed the {}ms deadline; returning {} search sources only",
+                    enhancedStageDeadlineMs, additionalSources.size());
+                kbResponse = new KnowledgeBaseChatResponse(null, new ArrayList<>());
             }
             
             // Step 3: Combine primary answer with additional sources
@@ -893,6 +1336,36 @@ public class KnowledgeBaseService {
         }
     }
     
+    private CompletableFuture<KnowledgeBaseChatResponse> submitChat(String question) {
+        try {
+            return CompletableFuture.supplyAsync(() -> chatWithKnowledgeBase(question), kbExecutor);
+        } catch (RejectedExecutionException e) {
+            // Pool saturated: run the chat call on the caller thread rather than dropping it
+            logger.warn("KB executor saturated; running chat inline");
+            return CompletableFuture.completedFuture(chatWithKnowledgeBase(question));
+        }
+    }
+    
+    /**
+     * Wait for one side of the enhanced fan-out until the stage deadline.
+     * @return The result, or null if the call failed or missed the deadline
+     */
+    private <T> T awaitStage(CompletableFuture<T> future, long deadlineMs, String stage) {
+        long remainingMs = Math.max(0L, deadlineMs - System.currentTimeMillis());
+        try {
+            return future.get(remainingMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("KB {} missed the {}ms stage deadline", stage, enhancedStageDeadlineMs);
+            future.cancel(false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+        } catch (ExecutionException | CancellationException e) {
+            logger.warn("KB {} failed: {}", stage, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        }
+        return null;
+    }
+    
     /**
      * Generate structured query for better legal search
      * This implements the SQG (Structured Query Generation) pattern from Villy RAG
@@ -913,6 +1386,12 @@ public class KnowledgeBaseService {
             );
         }
         
+        String sqgKey = userQuery.trim().toLowerCase(Locale.ROOT);
+        Map<String, Object> cachedSqg = sqgCache.get(sqgKey);
+        if (cachedSqg != null) {
+            return cachedSqg;
+        }
+        
         try {
             logger.info("Generating structured query for: {}", userQuery);
             
@@ -920,15 +1399,16 @@ public class KnowledgeBaseService {
             String sqgUrl = knowledgeBaseApiUrl + "/api/sqg";
             Map<String, Object> requestBody = Map.of("question", userQuery);
             
-            HttpHeaders headers = buildAuthHeaders();
-            HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(requestBody, headers);
-            
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                sqgUrl, HttpMethod.POST, requestEntity, new ParameterizedTypeReference<Map<String, Object>>() {});
+            ResponseEntity<Map<String, Object>> response = callKb(authHeaders -> {
+                HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(requestBody, authHeaders);
+                return restTemplate.exchange(
+                    sqgUrl, HttpMethod.POST, requestEntity, new ParameterizedTypeReference<Map<String, Object>>() {});
+            });
             
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 Map<String, Object> sqgResult = response.getBody();
                 logger.info("SQG generated successfully: {}", sqgResult.keySet());
+                sqgCache.put(sqgKey, sqgResult);
                 return sqgResult;
             }
             
@@ -0,0 +1,317 @@
+package com.capstone.civilify.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control in front of the OpenAI chat completions API.
+ *
+ * Each chat mode has its own lane (A = GLI, B = CPA) with a concurrency limit, so a burst of
+ * long CPA reports cannot take every servlet thread from short GLI answers. Callers over the
+ * limit wait briefly in a bounded priority queue (interactive turns ahead of report
+ * generations ahead of background summaries). A caller is rejected straight away with a retry
+ * hint when the queue is full or its lane already has a full round of callers waiting, and
+ * otherwise when the short wait runs out, so servlet threads are not held waiting on OpenAI.
+ *
+ * Limits adapt per lane: a 429 from OpenAI halves the limit, a call slower than the lane's
+ * latency target shrinks it slightly, and calls within target grow it back by about one
+ * permit per window of calls, up to the configured maximum.
+ */
+@Service
+public class OpenAIAdmissionController {
+    private static final Logger logger = LoggerFactory.getLogger(OpenAIAdmissionController.class);
+
+    /**
+     * Queue order for callers waiting on a lane; lower ordinal is served first.
+     */
+    public enum Priority {
+        INTERACTIVE, REPORT, BACKGROUND
+    }
+
+    /**
+     * Thrown instead of calling OpenAI when the request cannot be admitted in time.
+     */
+    public static class AdmissionRejectedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterSeconds;
+
+        public AdmissionRejectedException(String message, long retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    @Value("${openai.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${openai.admission.gli.max-concurrency:16}")
+    private int gliMaxConcurrency;
+
+    @Value("${openai.admission.cpa.max-concurrency:8}")
+    private int cpaMaxConcurrency;
+
+    @Value("${openai.admission.min-concurrency:2}")
+    private int minConcurrency;
+
+    // Calls slower than this shrink the lane's limit
+    @Value("${openai.admission.gli.target-latency-ms:15000}")
+    private long gliTargetLatencyMs;
+
+    @Value("${openai.admission.cpa.target-latency-ms:40000}")
+    private long cpaTargetLatencyMs;
+
+    // Waiting callers across all lanes
+    @Value("${openai.admission.queue-capacity:32}")
+    private int queueCapacity;
+
+    // Kept short: a waiting caller holds a servlet thread
+    @Value("${openai.admission.max-wait-ms:2000}")
+    private long maxWaitMs;
+
+    private static final double THROTTLED_DECREASE = 0.5;
+    private static final double SLOW_DECREASE = 0.9;
+    private static final double LATENCY_EWMA_ALPHA = 0.2;
+    private static final long MAX_RETRY_AFTER_SECONDS = 60;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Lane gliLane;
+    private Lane cpaLane;
+    private int queued;
+    private long sequence;
+
+    @PostConstruct
+    private void init() {
+        gliLane = new Lane("gli", gliMaxConcurrency, gliTargetLatencyMs);
+        cpaLane = new Lane("cpa", cpaMaxConcurrency, cpaTargetLatencyMs);
+        logger.info("OpenAI admission control {}: gli limit {}, cpa limit {}, queue {}, max wait {} ms",
+            enabled ? "enabled" : "disabled", gliMaxConcurrency, cpaMaxConcurrency, queueCapacity, maxWaitMs);
+    }
+
+    /**
+     * Holds one concurrency slot of a lane until closed. Closing records the call's latency
+     * (and any throttling) to adapt the lane's limit.
+     */
+    public final class Permit implements AutoCloseable {
+        private final Lane lane;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean throttled;
+
+        private Permit(Lane lane) {
+            this.lane = lane;
+        }
+
+        /**
+         * OpenAI answered 429 for this call.
+         */
+        public void markThrottled() {
+            this.throttled = true;
+        }
+
+        @Override
+        public void close() {
+            if (lane != null && closed.compareAndSet(false, true)) {
+                release(lane, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), throttled);
+            }
+        }
+    }
+
+    /**
+     * Waits for a slot in the lane for {@code mode}.
+     *
+     * @throws AdmissionRejectedException if the queue or the lane's backlog is full, or no slot
+     *                                    frees up within the wait limit
+     */
+    public Permit acquire(String mode, Priority priority) throws InterruptedException {
+        if (!enabled) {
+            return new Permit(null);
+        }
+        Lane lane = "B".equals(mode) ? cpaLane : gliLane;
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (lane.waiting.isEmpty() && lane.inFlight < lane.currentLimit()) {
+                lane.inFlight++;
+                lane.admitted++;
+                return new Permit(lane);
+            }
+            if (queued >= queueCapacity) {
+                lane.rejected++;
+                throw reject(lane, "queue full");
+            }
+            if (lane.waiting.size() >= lane.currentLimit()) {
+                // A whole round of calls is already waiting; this one would not start within the wait
+                lane.rejected++;
+                throw reject(lane, "lane backlog");
+            }
+            waiter = new Waiter(priority, sequence++, lock.newCondition());
+            lane.waiting.add(waiter);
+            queued++;
+
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            try {
+                while (!waiter.granted) {
+                    if (remaining <= 0) {
+                        lane.waiting.remove(waiter);
+                        queued--;
+                        lane.timedOut++;
+                        throw reject(lane, "no capacity within " + maxWaitMs + " ms");
+                    }
+                    remaining = waiter.signal.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // Slot was handed over as we were interrupted; give it to the next caller
+                    lane.inFlight--;
+                    dispatch(lane);
+                } else {
+                    lane.waiting.remove(waiter);
+                    queued--;
+                }
+                throw e;
+            }
+            lane.admitted++;
+            lane.queuedAdmits++;
+            return new Permit(lane);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        lock.lock();
+        try {
+            stats.put("queued", queued);
+            stats.put("queueCapacity", queueCapacity);
+            stats.put("gli", gliLane.stats());
+            stats.put("cpa", cpaLane.stats());
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    private void release(Lane lane, long latencyMs, boolean throttled) {
+        lock.lock();
+        try {
+            lane.inFlight--;
+            lane.completed++;
+            lane.latencyEwmaMs = lane.latencyEwmaMs == 0
+                ? latencyMs
+                : lane.latencyEwmaMs + LATENCY_EWMA_ALPHA * (latencyMs - lane.latencyEwmaMs);
+            double before = lane.limit;
+            if (throttled) {
+                lane.throttled++;
+                lane.limit = Math.max(minConcurrency, lane.limit * THROTTLED_DECREASE);
+            } else if (latencyMs > lane.targetLatencyMs) {
+                lane.limit = Math.max(minConcurrency, lane.limit * SLOW_DECREASE);
+            } else {
+                lane.limit = Math.min(lane.maxLimit, lane.limit + 1.0 / lane.limit);
+            }
+            if ((int) before != (int) lane.limit) {
+                logger.info("OpenAI {} concurrency limit {} -> {} (latency {} ms{})",
+                    lane.name, (int) before, (int) lane.limit, latencyMs, throttled ? ", throttled" : "");
+            }
+            dispatch(lane);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Hands free slots to the highest-priority waiters; caller holds the lock
+    private void dispatch(Lane lane) {
+        while (lane.inFlight < lane.currentLimit() && !lane.waiting.isEmpty()) {
+            Waiter next = lane.waiting.poll();
+            queued--;
+            lane.inFlight++;
+            next.granted = true;
+            next.signal.signal();
+        }
+    }
+
+    // Roughly how long until the callers ahead of a retry have drained through the lane
+    private AdmissionRejectedException reject(Lane lane, String reason) {
+        double perSlotMs = lane.latencyEwmaMs > 0 ? lane.latencyEwmaMs : lane.targetLatencyMs / 2.0;
+        long retryAfter = (long) Math.ceil(perSlotMs * (lane.waiting.size() + 1) / lane.currentLimit() / 1000.0);
+        retryAfter = Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, retryAfter));
+        logger.warn("OpenAI {} request rejected: {} (in flight {}, limit {}, retry after {} s)",
+            lane.name, reason, lane.inFlight, lane.currentLimit(), retryAfter);
+        return new AdmissionRejectedException("Villy is handling many requests right now (" + reason + ")", retryAfter);
+    }
+
+    private static final class Waiter {
+        private final Priority priority;
+        private final long sequence;
+        private final Condition signal;
+        private boolean granted;
+
+        private Waiter(Priority priority, long sequence, Condition signal) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.signal = signal;
+        }
+    }
+
+    private final class Lane {
+        private final String name;
+        private final int maxLimit;
+        private final long targetLatencyMs;
+        private final PriorityQueue<Waiter> waiting = new PriorityQueue<>(
+            Comparator.comparingInt((Waiter w) -> w.priority.ordinal()).thenComparingLong(w -> w.sequence));
+        private double limit;
+        private int inFlight;
+        private double latencyEwmaMs;
+        private long admitted;
+        private long queuedAdmits;
+        private long completed;
+        private long rejected;
+        private long timedOut;
+        private long throttled;
+
+        private Lane(String name, int maxLimit, long targetLatencyMs) {
+            this.name = name;
+            this.maxLimit = Math.max(minConcurrency, maxLimit);
+            this.targetLatencyMs = targetLatencyMs;
+            this.limit = this.maxLimit;
+        }
+
+        private int currentLimit() {
+            return Math.max(minConcurrency, (int) limit);
+        }
+
+        private Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", currentLimit());
+            stats.put("maxLimit", maxLimit);
+            stats.put("inFlight", inFlight);
+            stats.put("waiting", waiting.size());
+            stats.put("latencyEwmaMs", Math.round(latencyEwmaMs));
+            stats.put("admitted", admitted);
+            stats.put("queuedAdmits", queuedAdmits);
+            stats.put("completed", completed);
+            stats.put("rejected", rejected);
+            stats.put("timedOut", timedOut);
+            stats.put("throttled", throttled);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.service.OpenAIAdmissionController.Priority;
+import com.capstone.civilify.util.LatencyTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the OpenAI model for a chat completion.
+ *
+ * Simple GLI turns (greetings, acknowledgments, platform and non-legal questions, i.e. the
+ * ones {@code KnowledgeBaseSkipClassifier} lets skip the KB) go to {@code openai.gli.fast-model}
+ * when one is configured. Everything else uses the mode's primary model, unless that model's
+ * observed p95 latency per output token is over the mode's SLA and a fallback model is
+ * configured; then turns go to the fallback, with a small share still probing the primary so
+ * recovery is noticed. Latency is judged per output token so long answers do not read as a
+ * slow model, and only over a recent window, so once old samples age out the primary is
+ * tried again. CPA report generations always stay on the primary model.
+ */
+@Service
+public class OpenAIModelRouter {
+    private static final Logger logger = LoggerFactory.getLogger(OpenAIModelRouter.class);
+
+    /**
+     * The chosen model and why, for logs.
+     */
+    public record Route(String model, String reason) {}
+
+    @Value("${openai.routing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${openai.gli.fast-model:}")
+    private String gliFastModel;
+
+    @Value("${openai.gli.fallback-model:}")
+    private String gliFallbackModel;
+
+    @Value("${openai.cpa.fallback-model:}")
+    private String cpaFallbackModel;
+
+    // p95 latency per output token above which the primary model is considered too slow
+    @Value("${openai.routing.gli.sla-ms-per-token:40}")
+    private long gliSlaMsPerToken;
+
+    @Value("${openai.routing.cpa.sla-ms-per-token:40}")
+    private long cpaSlaMsPerToken;
+
+    // Samples (within the window) needed before the p95 is trusted
+    @Value("${openai.routing.min-samples:20}")
+    private int minSamples;
+
+    // Samples older than this no longer count towards a model's p95
+    @Value("${openai.routing.sample-window-ms:300000}")
+    private long sampleWindowMs;
+
+    // Share of turns sent to a slow primary anyway to keep its latency current
+    @Value("${openai.routing.probe-ratio:0.1}")
+    private double probeRatio;
+
+    private static final int LATENCY_SAMPLES = 200;
+
+    // Shorter completions are dominated by time to first token and say little about the model's speed
+    private static final int MIN_MEASURED_TOKENS = 50;
+
+    private final Map<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> routed = new ConcurrentHashMap<>();
+    private final AtomicLong probeCounter = new AtomicLong();
+
+    /**
+     * @param mode         A = GLI, B = CPA, other = default settings
+     * @param primaryModel The model configured for the mode
+     * @param priority     REPORT turns are never moved off the primary model
+     * @param simpleQuery  The turn needs no KB context (KnowledgeBaseSkipClassifier)
+     */
+    public Route route(String mode, String primaryModel, Priority priority, boolean simpleQuery) {
+        Route route = choose(mode, primaryModel, priority, simpleQuery);
+        routed.computeIfAbsent(laneOf(mode) + ":" + route.model(), key -> new AtomicLong()).incrementAndGet();
+        if (!route.model().equals(primaryModel)) {
+            logger.info("Routing {} turn to {} instead of {} ({})", laneOf(mode), route.model(), primaryModel, route.reason());
+        }
+        return route;
+    }
+
+    private Route choose(String mode, String primaryModel, Priority priority, boolean simpleQuery) {
+        if (!enabled || primaryModel == null || priority == Priority.BACKGROUND) {
+            return new Route(primaryModel, "primary");
+        }
+        boolean gli = "A".equals(mode);
+        if (gli && simpleQuery && hasText(gliFastModel)) {
+            return new Route(gliFastModel, "simple query");
+        }
+        if (priority == Priority.REPORT) {
+            return new Route(primaryModel, "report");
+        }
+        String fallback = gli ? gliFallbackModel : "B".equals(mode) ? cpaFallbackModel : null;
+        if (!hasText(fallback) || fallback.equals(primaryModel)) {
+            return new Route(primaryModel, "primary");
+        }
+        long sla = gli ? gliSlaMsPerToken : cpaSlaMsPerToken;
+        LatencyTracker primary = latencies.get(laneOf(mode) + ":" + primaryModel);
+        if (primary == null || primary.count() < minSamples) {
+            return new Route(primaryModel, "primary");
+        }
+        long p95 = primary.percentile(0.95);
+        if (p95 <= sla) {
+            return new Route(primaryModel, "primary");
+        }
+        long probeEvery = probeRatio > 0 ? Math.max(1, Math.round(1.0 / probeRatio)) : Long.MAX_VALUE;
+        if (probeCounter.incrementAndGet() % probeEvery == 0) {
+            return new Route(primaryModel, "probe (p95 " + p95 + " ms/token over SLA " + sla + " ms/token)");
+        }
+        return new Route(fallback, "primary p95 " + p95 + " ms/token over SLA " + sla + " ms/token");
+    }
+
+    /**
+     * Records how long a completion took on a model (whole response, streamed or not) as
+     * latency per output token. Completions too short to measure are ignored.
+     *
+     * @param outputTokens Tokens of the generated text
+     */
+    public void recordLatency(String mode, String model, long latencyMs, int outputTokens) {
+        if (model == null || outputTokens < MIN_MEASURED_TOKENS) {
+            return;
+        }
+        latencies.computeIfAbsent(laneOf(mode) + ":" + model,
+                key -> new LatencyTracker(key, LATENCY_SAMPLES, sampleWindowMs))
+            .record(Math.round((double) latencyMs / outputTokens));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("gliSlaMsPerToken", gliSlaMsPerToken);
+        stats.put("cpaSlaMsPerToken", cpaSlaMsPerToken);
+        stats.put("sampleWindowMs", sampleWindowMs);
+        Map<String, Object> models = new LinkedHashMap<>();
+        latencies.forEach((key, tracker) -> models.put(key, tracker.stats()));
+        stats.put("latency", models);
+        Map<String, Object> counts = new LinkedHashMap<>();
+        routed.forEach((key, count) -> counts.put(key, count.get()));
+        stats.put("routed", counts);
+        return stats;
+    }
+
+    private static String laneOf(String mode) {
+        return "A".equals(mode) ? "gli" : "B".equals(mode) ? "cpa" : "default";
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+}
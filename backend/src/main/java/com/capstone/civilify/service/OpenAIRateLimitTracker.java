@@ -0,0 +1,317 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.service.OpenAIAdmissionController.AdmissionRejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Client-side view of OpenAI's request and token rate limits, one budget per API key.
+ *
+ * Every response carries {@code x-ratelimit-remaining-requests/tokens} and the time until
+ * each window resets. Before a call, the tracker takes the call's estimated tokens (prompt
+ * plus max completion tokens) out of what is left. When a window is nearly used up, calls
+ * are spaced so the rest lasts until the reset; when it is used up, they wait for the reset.
+ * A 429 pauses the key for the server-advised delay. Waits longer than
+ * {@code openai.ratelimit.max-wait-ms} are not taken: the call is rejected with a retry hint
+ * instead of spending a round trip on a predictable 429.
+ */
+@Service
+public class OpenAIRateLimitTracker {
+    private static final Logger logger = LoggerFactory.getLogger(OpenAIRateLimitTracker.class);
+
+    @Value("${openai.ratelimit.enabled:true}")
+    private boolean enabled;
+
+    // Longest a call is held back for pacing or a server-advised pause before it is rejected
+    @Value("${openai.ratelimit.max-wait-ms:5000}")
+    private long maxWaitMs;
+
+    // Below this fraction of a window's limit, calls are spaced out until the reset
+    @Value("${openai.ratelimit.low-watermark:0.1}")
+    private double lowWatermark;
+
+    // Retries of a 429 after the server-advised delay
+    @Value("${openai.ratelimit.max-retries:2}")
+    private int maxRetries;
+
+    // Pause after a 429 that carries no retry hint
+    private static final long DEFAULT_THROTTLE_PAUSE_MS = 1000;
+
+    // OpenAI reset durations look like "20ms", "1s", "6m0s" or "1h2m3.5s"
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    /**
+     * Budget taken by one call until its response (or failure) is recorded.
+     */
+    public final class Reservation {
+        private final Budget budget;
+        private final long tokens;
+        private boolean released;
+
+        private Reservation(Budget budget, long tokens) {
+            this.budget = budget;
+            this.tokens = tokens;
+        }
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Waits until the key's budget allows a call of {@code estimatedTokens}, then reserves it.
+     *
+     * @param keyName Label for logs and metrics (gli, cpa, default); keys shared by several
+     *                modes share one budget
+     * @throws AdmissionRejectedException if the wait would exceed the configured maximum
+     */
+    public Reservation reserve(String keyName, String apiKey, long estimatedTokens) throws InterruptedException {
+        Budget budget = budgets.computeIfAbsent(apiKey != null ? apiKey : "", key -> new Budget(keyName));
+        if (!enabled) {
+            Reservation untracked = new Reservation(budget, 0);
+            untracked.released = true;
+            return untracked;
+        }
+        long delayMs;
+        synchronized (budget) {
+            delayMs = budget.delayFor(estimatedTokens, System.currentTimeMillis());
+            if (delayMs > maxWaitMs) {
+                budget.rejected++;
+                long retryAfter = Math.max(1, (long) Math.ceil(delayMs / 1000.0));
+                logger.warn("OpenAI {} rate limit budget exhausted; rejecting call (retry after {} s)", budget.name, retryAfter);
+                throw new AdmissionRejectedException("OpenAI rate limit reached", retryAfter);
+            }
+            budget.reservedRequests++;
+            budget.reservedTokens += estimatedTokens;
+            if (delayMs > 0) {
+                budget.paced++;
+                budget.pacedMs += delayMs;
+            }
+        }
+        Reservation reservation = new Reservation(budget, estimatedTokens);
+        if (delayMs > 0) {
+            logger.info("Pacing OpenAI {} call by {} ms to stay within rate limits", budget.name, delayMs);
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                release(reservation);
+                throw e;
+            }
+        }
+        return reservation;
+    }
+
+    /**
+     * Records a successful response's rate limit headers and returns the reservation.
+     */
+    public void onResponse(Reservation reservation, Function<String, String> headers) {
+        Budget budget = reservation.budget;
+        synchronized (budget) {
+            budget.observe(headers, System.currentTimeMillis());
+        }
+        release(reservation);
+    }
+
+    /**
+     * Records a 429 and pauses the key for the server-advised delay.
+     *
+     * @return The delay in milliseconds before the key should be used again
+     */
+    public long onThrottled(Reservation reservation, Function<String, String> headers) {
+        Budget budget = reservation.budget;
+        long now = System.currentTimeMillis();
+        long delayMs;
+        synchronized (budget) {
+            budget.observe(headers, now);
+            budget.throttled++;
+            delayMs = retryAfterMs(headers);
+            if (delayMs < 0) {
+                // No explicit hint: wait for whichever window ran out
+                long requestsWait = budget.remainingRequests == 0 ? budget.requestsResetAt - now : -1;
+                long tokensWait = budget.remainingTokens == 0 ? budget.tokensResetAt - now : -1;
+                delayMs = Math.max(requestsWait, tokensWait);
+            }
+            if (delayMs <= 0) {
+                delayMs = DEFAULT_THROTTLE_PAUSE_MS;
+            }
+            budget.pausedUntil = Math.max(budget.pausedUntil, now + delayMs);
+        }
+        release(reservation);
+        logger.warn("OpenAI {} returned 429; pausing the key for {} ms", budget.name, delayMs);
+        return delayMs;
+    }
+
+    /**
+     * Returns the reservation of a call that failed without rate limit information.
+     */
+    public void release(Reservation reservation) {
+        Budget budget = reservation.budget;
+        synchronized (budget) {
+            if (reservation.released) {
+                return;
+            }
+            reservation.released = true;
+            budget.reservedRequests = Math.max(0, budget.reservedRequests - 1);
+            budget.reservedTokens = Math.max(0, budget.reservedTokens - reservation.tokens);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        long now = System.currentTimeMillis();
+        for (Budget budget : budgets.values()) {
+            synchronized (budget) {
+                stats.put(budget.name, budget.stats(now));
+            }
+        }
+        return stats;
+    }
+
+    // retry-after-ms (OpenAI) or retry-after in seconds; -1 when absent
+    private static long retryAfterMs(Function<String, String> headers) {
+        long millis = parseLong(headers.apply("retry-after-ms"));
+        if (millis >= 0) {
+            return millis;
+        }
+        String seconds = headers.apply("retry-after");
+        if (seconds != null) {
+            try {
+                return (long) (Double.parseDouble(seconds.trim()) * 1000);
+            } catch (NumberFormatException ignore) {
+                // HTTP-date form is not used by OpenAI
+            }
+        }
+        return -1;
+    }
+
+    static long parseDurationMs(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double total = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "h" -> total += amount * 3_600_000;
+                case "m" -> total += amount * 60_000;
+                case "s" -> total += amount * 1000;
+                default -> total += amount;
+            }
+        }
+        return matched ? (long) Math.ceil(total) : -1;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private final class Budget {
+        private final String name;
+        // -1 until the first response reports them
+        private long limitRequests = -1;
+        private long limitTokens = -1;
+        private long remainingRequests = -1;
+        private long remainingTokens = -1;
+        private long requestsResetAt;
+        private long tokensResetAt;
+        private long pausedUntil;
+        private int reservedRequests;
+        private long reservedTokens;
+
+        private long observed;
+        private long paced;
+        private long pacedMs;
+        private long rejected;
+        private long throttled;
+
+        private Budget(String name) {
+            this.name = name;
+        }
+
+        private long delayFor(long estimatedTokens, long now) {
+            if (remainingRequests >= 0 && now >= requestsResetAt) {
+                remainingRequests = -1;
+            }
+            if (remainingTokens >= 0 && now >= tokensResetAt) {
+                remainingTokens = -1;
+            }
+            long delay = Math.max(0, pausedUntil - now);
+            if (remainingRequests >= 0) {
+                long available = remainingRequests - reservedRequests;
+                long window = requestsResetAt - now;
+                if (available <= 0) {
+                    delay = Math.max(delay, window);
+                } else if (limitRequests > 0 && available < limitRequests * lowWatermark) {
+                    delay = Math.max(delay, window / (available + 1));
+                }
+            }
+            if (remainingTokens >= 0) {
+                long available = remainingTokens - reservedTokens;
+                long window = tokensResetAt - now;
+                if (available < estimatedTokens) {
+                    delay = Math.max(delay, window);
+                } else if (limitTokens > 0 && available < limitTokens * lowWatermark) {
+                    // Spend what is left at a rate that lasts until the window resets
+                    delay = Math.max(delay, window * estimatedTokens / available);
+                }
+            }
+            return delay;
+        }
+
+        private void observe(Function<String, String> headers, long now) {
+            long value;
+            if ((value = parseLong(headers.apply("x-ratelimit-limit-requests"))) >= 0) limitRequests = value;
+            if ((value = parseLong(headers.apply("x-ratelimit-limit-tokens"))) >= 0) limitTokens = value;
+            long requestsReset = parseDurationMs(headers.apply("x-ratelimit-reset-requests"));
+            long tokensReset = parseDurationMs(headers.apply("x-ratelimit-reset-tokens"));
+            if ((value = parseLong(headers.apply("x-ratelimit-remaining-requests"))) >= 0 && requestsReset >= 0) {
+                remainingRequests = value;
+                requestsResetAt = now + requestsReset;
+                observed++;
+            }
+            if ((value = parseLong(headers.apply("x-ratelimit-remaining-tokens"))) >= 0 && tokensReset >= 0) {
+                remainingTokens = value;
+                tokensResetAt = now + tokensReset;
+            }
+        }
+
+        private Map<String, Object> stats(long now) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limitRequests", limitRequests);
+            stats.put("remainingRequests", now < requestsResetAt ? remainingRequests : limitRequests);
+            stats.put("limitTokens", limitTokens);
+            stats.put("remainingTokens", now < tokensResetAt ? remainingTokens : limitTokens);
+            stats.put("reservedRequests", reservedRequests);
+            stats.put("reservedTokens", reservedTokens);
+            stats.put("pausedForMs", Math.max(0, pausedUntil - now));
+            stats.put("observedResponses", observed);
+            stats.put("pacedCalls", paced);
+            stats.put("pacedMs", pacedMs);
+            stats.put("rejected", rejected);
+            stats.put("throttled", throttled);
+            return stats;
+        }
+    }
+}
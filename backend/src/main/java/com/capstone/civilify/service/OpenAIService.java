@@ -1,26 +1,47 @@
 package com.capstone.civilify.service;
 
 import com.capstone.civilify.DTO.KnowledgeBaseEntry;
+import com.capstone.civilify.DTO.OpenAIChatCompletion;
+import com.capstone.civilify.service.OpenAIAdmissionController.AdmissionRejectedException;
+import com.capstone.civilify.service.OpenAIAdmissionController.Priority;
+import com.capstone.civilify.util.BoundedCache;
+import com.capstone.civilify.util.TokenEstimator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class OpenAIService {
@@ -29,6 +50,18 @@ public class OpenAIService {
     @Autowired
     private KnowledgeBaseService knowledgeBaseService;
     
+    @Autowired
+    private OutboundHttpClient outboundHttpClient;
+    
+    @Autowired
+    private OpenAIAdmissionController admissionController;
+    
+    @Autowired
+    private OpenAIRateLimitTracker rateLimitTracker;
+    
+    @Autowired
+    private OpenAIModelRouter modelRouter;
+    
     // Default OpenAI settings (fallback)
     @Value("${openai.api.key}")
     private String defaultApiKey;
@@ -101,25 +134,132 @@ public class OpenAIService {
     private int knowledgeBaseSourcesLimit;
     @Value("${knowledge.base.cache.ttl.seconds:300}")
     private int kbCacheTtlSeconds;
+    @Value("${knowledge.base.response.cache.max:1000}")
+    private int kbCacheMax;
 
-    private static class KbCacheEntry {
-        List<KnowledgeBaseEntry> data;
-        long expiresAtMs;
-        KbCacheEntry(List<KnowledgeBaseEntry> data, long ttlMs) {
-            this.data = data;
-            this.expiresAtMs = System.currentTimeMillis() + ttlMs;
+    private BoundedCache<String, List<KnowledgeBaseEntry>> kbCache;
+    
+    @Value("${openai.read.timeout.ms:20000}")
+    private long openAiReadTimeoutMs;
+    
+    // Longest gap between two lines of a streamed response before the stream is abandoned
+    @Value("${openai.stream.idle.timeout.ms:20000}")
+    private long streamIdleTimeoutMs;
+    
+    private ScheduledExecutorService streamWatchdog;
+    
+    private static final String CHAT_COMPLETIONS_URL = "https://api.openai.com/v1/chat/completions";
+    
+    // Apologies returned by generateResponse when no answer could be produced
+    private static final String NO_CONTENT_RESPONSE = "I'm sorry, I couldn't generate a response at this time.";
+    private static final String ERROR_RESPONSE_PREFIX = "I'm sorry, an error occurred while processing your request: ";
+    
+    public OpenAIService() {
+        this.restTemplate = new RestTemplate();
+    }
+    
+    @PostConstruct
+    private void configureHttpClient() {
+        // Keep-alive pooled HTTP/2 client shared with the KB service; allow more time for completions
+        outboundHttpClient.configure(this.restTemplate, Duration.ofMillis(openAiReadTimeoutMs));
+    }
+    
+    @PostConstruct
+    private void initCaches() {
+        kbCache = new BoundedCache<>("kb-sources", kbCacheMax, kbCacheTtlSeconds * 1000L);
+    }
+    
+    @PostConstruct
+    private void initStreamWatchdog() {
+        streamWatchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "openai-stream-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    private void shutdownStreamWatchdog() {
+        streamWatchdog.shutdownNow();
+    }
+    
+    /**
+     * Handle for aborting a streamed response from another thread, e.g. when the SSE client
+     * disconnects. Aborting closes the OpenAI response body and interrupts the thread reading
+     * it, so neither the thread nor its admission permit stays pinned to a dead exchange.
+     */
+    public static final class StreamControl {
+        private volatile boolean cancelled;
+        private volatile boolean idleTimedOut;
+        private volatile long lastActivityMs;
+        // Guarded by this; set only while a body is being read
+        private Stream<String> body;
+        private Thread reader;
+        
+        public void cancel() {
+            cancelled = true;
+            abort();
+        }
+        
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        
+        private void idleTimeout() {
+            idleTimedOut = true;
+            abort();
+        }
+        
+        private synchronized void abort() {
+            if (body != null) {
+                body.close();
+                reader.interrupt();
+                body = null;
+                reader = null;
+            }
+        }
+        
+        private synchronized boolean attach(Stream<String> lines) {
+            if (cancelled) {
+                return false;
+            }
+            body = lines;
+            reader = Thread.currentThread();
+            lastActivityMs = System.currentTimeMillis();
+            return true;
+        }
+        
+        private synchronized void detach() {
+            body = null;
+            reader = null;
+            if (cancelled || idleTimedOut) {
+                // Clear an interrupt delivered by abort() so it cannot leak into the caller
+                Thread.interrupted();
+            }
         }
-        boolean isExpired() { return System.currentTimeMillis() > expiresAtMs; }
     }
-    private final Map<String, KbCacheEntry> kbCache = new java.util.concurrent.ConcurrentHashMap<>();
     
-    public OpenAIService() {
-        // Configure timeouts (no extra dependency for pooling)
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        // Keep connects snappy, but allow more time for OpenAI completions
-        factory.setConnectTimeout(6000);
-        factory.setReadTimeout(20000);
-        this.restTemplate = new RestTemplate(factory);
+    /**
+     * Cache statistics for the KB source cache used by the chat endpoints.
+     */
+    public Map<String, Object> getCacheStats() {
+        return kbCache.stats();
+    }
+    
+    public Map<String, Object> getHttpClientStats() {
+        return outboundHttpClient.stats();
+    }
+    
+    public Map<String, Object> getAdmissionStats() {
+        return admissionController.stats();
+    }
+    
+    public Map<String, Object> getRateLimitStats() {
+        return rateLimitTracker.stats();
+    }
+    
+    public Map<String, Object> getModelRoutingStats() {
+        return modelRouter.stats();
     }
     
     public String generateResponse(String userMessage, String systemPrompt, List<Map<String, String>> conversationHistory) {
@@ -127,225 +267,405 @@ public class OpenAIService {
     }
     
     public String generateResponse(String userMessage, String systemPrompt, List<Map<String, String>> conversationHistory, String mode) {
+        return generateResponse(userMessage, systemPrompt, conversationHistory, mode, Priority.INTERACTIVE);
+    }
+    
+    public String generateResponse(String userMessage, String systemPrompt, List<Map<String, String>> conversationHistory,
+                                   String mode, Priority priority) {
+        return generateResponse(userMessage, systemPrompt, conversationHistory, mode, priority, false);
+    }
+    
+    /**
+     * @param priority    Queue position when the mode's OpenAI lane is at its concurrency limit
+     * @param simpleQuery The turn needs no KB context; GLI may answer it with the fast model
+     * @throws AdmissionRejectedException when the call cannot be admitted; other failures
+     *         are returned as an apology message
+     */
+    public String generateResponse(String userMessage, String systemPrompt, List<Map<String, String>> conversationHistory,
+                                   String mode, Priority priority, boolean simpleQuery) {
         try {
-            // Determine which API key, model, and parameters to use based on the mode
-            String apiKey;
-            String model;
-            double temperature;
-            double topP;
-            double frequencyPenalty;
-            double presencePenalty;
-            int maxTokens;
-            boolean stream;
-            
-            if (mode != null) {
-                if (mode.equals("A")) { // General Legal Information mode
-                    apiKey = gliApiKey;
-                    model = gliModel;
-                    temperature = gliTemperature;
-                    topP = gliTopP;
-                    frequencyPenalty = gliFrequencyPenalty;
-                    presencePenalty = gliPresencePenalty;
-                    maxTokens = gliMaxTokens;
-                    // Force non-streaming responses to avoid SSE content type
-                    stream = false;
-                    logger.info("Using GLI mode with model: {}, temperature: {}, max tokens: {}", model, temperature, maxTokens);
-                } else if (mode.equals("B")) { // Case Plausibility Assessment mode
-                    apiKey = cpaApiKey;
-                    model = cpaModel;
-                    temperature = cpaTemperature;
-                    topP = cpaTopP;
-                    frequencyPenalty = cpaFrequencyPenalty;
-                    presencePenalty = cpaPresencePenalty;
-                    maxTokens = cpaMaxTokens;
-                    // Force non-streaming responses to avoid SSE content type
-                    stream = false;
-                    logger.info("Using CPA mode with model: {}, temperature: {}, max tokens: {}", model, temperature, maxTokens);
-                } else {
-                    // Fallback to default for unknown modes
-                    apiKey = defaultApiKey;
-                    model = defaultModel;
-                    temperature = 0.7; // Default OpenAI temperature
-                    topP = 1.0;
-                    frequencyPenalty = 0.0;
-                    presencePenalty = 0.0;
-                    maxTokens = 1000;
-                    stream = false;
-                    logger.info("Using default mode with model: {}", model);
-                }
-            } else {
-                // No mode specified, use default
-                apiKey = defaultApiKey;
-                model = defaultModel;
-                temperature = 0.7; // Default OpenAI temperature
-                topP = 1.0;
-                frequencyPenalty = 0.0;
-                presencePenalty = 0.0;
-                maxTokens = 1000;
-                stream = false;
-                logger.info("No mode specified, using default model: {}", model);
-            }
-            
-            logger.info("Generating OpenAI response for message: {}", userMessage);
-            logger.info("Using API key: {}", apiKey.substring(0, 10) + "...");
-            logger.info("Conversation history size: {}", conversationHistory != null ? conversationHistory.size() : 0);
-            
-            // Use the correct API endpoint based on the key format
-            String apiUrl = "https://api.openai.com/v1/chat/completions";
-            
-            // If using a project-specific key (sk-proj-), you might need to use a different endpoint
-            if (apiKey.startsWith("sk-proj-")) {
-                apiUrl = "https://api.openai.com/v1/chat/completions";
-                logger.info("Using project-specific API endpoint");
-            }
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+            String content = completeChat(userMessage, systemPrompt, conversationHistory, mode, priority, simpleQuery);
+            return content != null ? content : NO_CONTENT_RESPONSE;
+        } catch (AdmissionRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error generating OpenAI response: {}", e.getMessage(), e);
+            return ERROR_RESPONSE_PREFIX + e.getMessage();
+        }
+    }
+    
+    /**
+     * Whether a {@code generateResponse} result is one of its apology messages rather than
+     * model output.
+     */
+    public boolean isFailureResponse(String response) {
+        return NO_CONTENT_RESPONSE.equals(response) || (response != null && response.startsWith(ERROR_RESPONSE_PREFIX));
+    }
+    
+    /**
+     * One blocking chat completion.
+     * @return The generated content, or null if the response carried none
+     * @throws Exception on transport or API errors, so callers can tell failures from answers
+     */
+    private String completeChat(String userMessage, String systemPrompt, List<Map<String, String>> conversationHistory,
+                                String mode, Priority priority, boolean simpleQuery) throws Exception {
+        // Determine which API key, model, and parameters to use based on the mode
+        ModelSettings settings = routedSettings(mode, priority, simpleQuery);
+        
+        logger.info("Generating OpenAI response for message: {}", userMessage);
+        logger.info("Using API key: {}", settings.apiKey().substring(0, 10) + "...");
+        logger.info("Conversation history size: {}", conversationHistory != null ? conversationHistory.size() : 0);
+        
+        HttpHeaders headers = buildHeaders(settings.apiKey(), MediaType.APPLICATION_JSON);
+        List<Map<String, Object>> messages = buildMessages(userMessage, systemPrompt, conversationHistory);
+        // Force non-streaming responses to avoid SSE content type; streaming goes through streamResponse
+        Map<String, Object> requestBody = buildRequestBody(settings, messages, false);
+        
+        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(requestBody, headers);
+        
+        logger.info("Making API request to: {}", CHAT_COMPLETIONS_URL);
+        // Mask Authorization header in logs
+        HttpHeaders masked = new HttpHeaders();
+        masked.putAll(headers);
+        if (masked.containsKey("Authorization")) {
+            masked.set("Authorization", "Bearer ****");
+        }
+        logger.info("Request headers: {}", masked);
+        // Avoid logging full request body for performance
+        
+        long estimatedTokens = TokenEstimator.countPrompt(systemPrompt, conversationHistory, userMessage) + settings.maxTokens();
+        try (OpenAIAdmissionController.Permit permit = admissionController.acquire(mode, priority)) {
+            ResponseEntity<OpenAIChatCompletion> response = exchangeWithinRateLimits(settings, mode, requestEntity, estimatedTokens, permit);
             
-            // Handle different API key formats
-            String authHeader = "Bearer " + apiKey;
-            headers.set("Authorization", authHeader);
+            logger.info("Response status code: {}", response.getStatusCode());
+            logger.info("Response headers: {}", response.getHeaders());
             
-            // Optional scoping headers
-            if (openAiOrganization != null && !openAiOrganization.isBlank()) {
-                headers.set("OpenAI-Organization", openAiOrganization.trim());
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                String content = response.getBody().content();
+                if (content != null) {
+                    logger.info("Generated content: {}", content);
+                    return content;
+                }
+                logger.warn("Could not extract content from the OpenAI response (no choices[0].message.content)");
             }
-            if (openAiProject != null && !openAiProject.isBlank()) {
-                headers.set("OpenAI-Project", openAiProject.trim());
+        } catch (AdmissionRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error during API call: {}", e.getMessage());
+            // Fallback: handle servers that (incorrectly) return text/event-stream
+            if (e.getMessage() != null && e.getMessage().toLowerCase().contains("text/event-stream")) {
+                try {
+                    String sseContent = trySseFallback(CHAT_COMPLETIONS_URL, headers, requestBody);
+                    if (sseContent != null) {
+                        logger.info("Parsed SSE fallback content: {}", sseContent);
+                        return sseContent;
+                    }
+                } catch (Exception suppressed) {
+                    logger.warn("SSE fallback parsing failed: {}", suppressed.getMessage());
+                }
             }
-            
-            // Prepare messages for the API call
-            List<Map<String, Object>> messages = new ArrayList<>();
-            
-            // Add system message first
-            Map<String, Object> systemMessage = new HashMap<>();
-            systemMessage.put("role", "system");
-            systemMessage.put("content", systemPrompt);
-            messages.add(systemMessage);
-            
-            // Add conversation history if available
-            if (conversationHistory != null && !conversationHistory.isEmpty()) {
-                for (Map<String, String> message : conversationHistory) {
-                    Map<String, Object> historyMessage = new HashMap<>();
-                    historyMessage.put("role", message.get("isUserMessage").equals("true") ? "user" : "assistant");
-                    historyMessage.put("content", message.get("content"));
-                    messages.add(historyMessage);
+            throw e; // Rethrow so the caller sees the failure
+        }
+        
+        return null;
+    }
+    
+    // Paces the call on the key's rate limit budget and retries a 429 after the server-advised delay
+    private ResponseEntity<OpenAIChatCompletion> exchangeWithinRateLimits(ModelSettings settings, String mode,
+            HttpEntity<Map<String, Object>> requestEntity, long estimatedTokens,
+            OpenAIAdmissionController.Permit permit) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            OpenAIRateLimitTracker.Reservation reservation =
+                rateLimitTracker.reserve(settings.keyName(), settings.apiKey(), estimatedTokens);
+            try {
+                long startMs = System.currentTimeMillis();
+                ResponseEntity<OpenAIChatCompletion> response = restTemplate.exchange(
+                    CHAT_COMPLETIONS_URL,
+                    HttpMethod.POST,
+                    requestEntity,
+                    OpenAIChatCompletion.class
+                );
+                long latencyMs = System.currentTimeMillis() - startMs;
+                String generated = response.getBody() != null ? response.getBody().content() : null;
+                modelRouter.recordLatency(mode, settings.model(), latencyMs, TokenEstimator.count(generated));
+                rateLimitTracker.onResponse(reservation, response.getHeaders()::getFirst);
+                return response;
+            } catch (HttpClientErrorException.TooManyRequests throttled) {
+                permit.markThrottled();
+                HttpHeaders responseHeaders = throttled.getResponseHeaders() != null
+                    ? throttled.getResponseHeaders() : new HttpHeaders();
+                long delayMs = rateLimitTracker.onThrottled(reservation, responseHeaders::getFirst);
+                if (attempt >= rateLimitTracker.getMaxRetries() || isQuotaExhausted(throttled.getResponseBodyAsString())) {
+                    throw throttled;
                 }
-                logger.info("Added {} messages from conversation history", conversationHistory.size());
+                logger.warn("OpenAI 429 on the {} key; retrying after {} ms (attempt {})", settings.keyName(), delayMs, attempt + 1);
+            } finally {
+                rateLimitTracker.release(reservation);
             }
-            
-            // Add the current user message only if it is not already the last history message
-            boolean lastIsSameUserMessage = false;
-            if (conversationHistory != null && !conversationHistory.isEmpty()) {
-                Map<String, String> last = conversationHistory.get(conversationHistory.size() - 1);
-                if (last != null && "true".equals(last.get("isUserMessage"))) {
-                    String lastContent = last.get("content");
-                    if (lastContent != null && lastContent.trim().equals(userMessage != null ? userMessage.trim() : null)) {
-                        lastIsSameUserMessage = true;
-                    }
+        }
+    }
+    
+    // Streaming counterpart of exchangeWithinRateLimits; returns once response headers arrive
+    private HttpResponse<Stream<String>> sendWithinRateLimits(HttpRequest request, ModelSettings settings,
+            long estimatedTokens, OpenAIAdmissionController.Permit permit) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            OpenAIRateLimitTracker.Reservation reservation =
+                rateLimitTracker.reserve(settings.keyName(), settings.apiKey(), estimatedTokens);
+            try {
+                // The timeout covers the wait for response headers; the body is read as it
+                // arrives, under the per-line idle deadline
+                CompletableFuture<HttpResponse<Stream<String>>> pending = outboundHttpClient
+                    .sendAsync(request, HttpResponse.BodyHandlers.ofLines());
+                HttpResponse<Stream<String>> response;
+                try {
+                    response = pending.get(openAiReadTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException | InterruptedException e) {
+                    pending.cancel(true);
+                    throw e;
+                }
+                if (response.statusCode() != 429) {
+                    rateLimitTracker.onResponse(reservation, name -> response.headers().firstValue(name).orElse(null));
+                    return response;
+                }
+                permit.markThrottled();
+                String body;
+                try (Stream<String> lines = response.body()) {
+                    body = lines.collect(Collectors.joining("\n"));
                 }
+                long delayMs = rateLimitTracker.onThrottled(reservation, name -> response.headers().firstValue(name).orElse(null));
+                if (attempt >= rateLimitTracker.getMaxRetries() || isQuotaExhausted(body)) {
+                    throw new IllegalStateException("OpenAI streaming request failed with status 429: " + body);
+                }
+                logger.warn("OpenAI 429 on the {} key; retrying stream after {} ms (attempt {})", settings.keyName(), delayMs, attempt + 1);
+            } finally {
+                rateLimitTracker.release(reservation);
             }
-
-            if (!lastIsSameUserMessage) {
-            Map<String, Object> userMessageMap = new HashMap<>();
-            userMessageMap.put("role", "user");
-            userMessageMap.put("content", userMessage);
-            messages.add(userMessageMap);
-            } else {
-                logger.info("Skipping duplicate current user message in request payload");
+        }
+    }
+    
+    // Billing quota errors are also 429s, but waiting does not help
+    private boolean isQuotaExhausted(String responseBody) {
+        return responseBody != null && responseBody.contains("insufficient_quota");
+    }
+    
+    /**
+     * Generate a response and hand each content delta to {@code onDelta} as OpenAI produces it.
+     * 
+     * Streams over the shared HTTP client when the mode has streaming enabled
+     * ({@code openai.gli.stream} / {@code openai.cpa.stream}); otherwise makes one blocking
+     * completion and delivers the whole answer as a single delta. Either way a failed call
+     * throws; no apology text is ever delivered as a delta.
+     * Exceptions thrown by {@code onDelta} (e.g. the client went away) abort the stream.
+     * A stream with no new line for {@code openai.stream.idle.timeout.ms} fails with a
+     * {@link TimeoutException}; one aborted through {@code control} fails with a
+     * {@link CancellationException}.
+     * 
+     * @return The full assembled response text, or null when the completion carried none
+     */
+    public String streamResponse(String userMessage, String systemPrompt, List<Map<String, String>> conversationHistory,
+                                 String mode, Priority priority, boolean simpleQuery, Consumer<String> onDelta,
+                                 StreamControl control) throws Exception {
+        ModelSettings settings = settingsFor(mode);
+        if (!settings.stream()) {
+            // Failures are thrown, not returned as an apology the caller would stream as an answer
+            String content = completeChat(userMessage, systemPrompt, conversationHistory, mode, priority, simpleQuery);
+            if (content != null && !content.isEmpty()) {
+                onDelta.accept(content);
             }
-            
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);  // Using the model selected based on mode
-            requestBody.put("messages", messages);
-            // Some newer models (e.g., GPT-4o family, GPT-5) pin sampling to defaults.
-            // Avoid sending sampling params to prevent 400 "unsupported_value" errors.
-            boolean fixedSampling = isFixedSamplingModel(model);
-            if (!fixedSampling) {
-            requestBody.put("temperature", temperature);
-            requestBody.put("top_p", topP);
-            requestBody.put("frequency_penalty", frequencyPenalty);
-            requestBody.put("presence_penalty", presencePenalty);
+            return content;
+        }
+        
+        settings = routedSettings(mode, priority, simpleQuery);
+        HttpHeaders headers = buildHeaders(settings.apiKey(), MediaType.TEXT_EVENT_STREAM);
+        List<Map<String, Object>> messages = buildMessages(userMessage, systemPrompt, conversationHistory);
+        String json = jsonMapper.writeValueAsString(buildRequestBody(settings, messages, true));
+        
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(CHAT_COMPLETIONS_URL))
+            .timeout(Duration.ofMillis(openAiReadTimeoutMs))
+            .POST(HttpRequest.BodyPublishers.ofString(json));
+        headers.forEach((name, values) -> values.forEach(value -> request.header(name, value)));
+        
+        long estimatedTokens = TokenEstimator.countPrompt(systemPrompt, conversationHistory, userMessage) + settings.maxTokens();
+        // The slot is held for the whole stream, since OpenAI is generating until the last delta
+        try (OpenAIAdmissionController.Permit permit = admissionController.acquire(mode, priority)) {
+            if (control.isCancelled()) {
+                throw new CancellationException("Stream cancelled before the request was sent");
             }
-            // Some org/project gateways for GPT-4o family require 'max_completion_tokens'
-            requestBody.put("max_completion_tokens", maxTokens);
-            requestBody.put("stream", stream);
-            
-            HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(requestBody, headers);
-            
-            logger.info("Making API request to: {}", apiUrl);
-            // Mask Authorization header in logs
-            HttpHeaders masked = new HttpHeaders();
-            masked.putAll(headers);
-            if (masked.containsKey("Authorization")) {
-                masked.set("Authorization", "Bearer ****");
+            long startMs = System.currentTimeMillis();
+            HttpResponse<Stream<String>> response = sendWithinRateLimits(request.build(), settings, estimatedTokens, permit);
+            String content = readStream(response, mode, startMs, onDelta, control);
+            modelRouter.recordLatency(mode, settings.model(), System.currentTimeMillis() - startMs, TokenEstimator.count(content));
+            return content;
+        }
+    }
+    
+    private String readStream(HttpResponse<Stream<String>> response, String mode, long startMs,
+                              Consumer<String> onDelta, StreamControl control) throws Exception {
+        StringBuilder assembled = new StringBuilder();
+        if (!control.attach(response.body())) {
+            response.body().close();
+            throw new CancellationException("Stream cancelled before the response was read");
+        }
+        long checkEveryMs = Math.max(100L, Math.min(1000L, streamIdleTimeoutMs / 4));
+        ScheduledFuture<?> watchdog = streamWatchdog.scheduleWithFixedDelay(() -> {
+            if (System.currentTimeMillis() - control.lastActivityMs > streamIdleTimeoutMs) {
+                control.idleTimeout();
             }
-            logger.info("Request headers: {}", masked);
-            // Avoid logging full request body for performance
-            
-            try {
-                ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                        apiUrl,
-                        HttpMethod.POST,
-                        requestEntity,
-                        new ParameterizedTypeReference<Map<String, Object>>() {}
-                );
-                
-                logger.info("Response status code: {}", response.getStatusCode());
-                logger.info("Response headers: {}", response.getHeaders());
-                
-                if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                    Map<String, Object> responseBody = response.getBody();
-                    logger.info("Received successful response body keys: {}", responseBody.keySet());
-                    
-                    Object choicesObj = responseBody.get("choices");
-                    if (choicesObj instanceof List) {
-                        List<?> choices = (List<?>) choicesObj;
-                        if (choices != null && !choices.isEmpty()) {
-                            Object firstChoice = choices.get(0);
-                            if (firstChoice instanceof Map) {
-                                Map<?, ?> choiceMap = (Map<?, ?>) firstChoice;
-                                Object messageObj = choiceMap.get("message");
-                                
-                                if (messageObj instanceof Map) {
-                                    Map<?, ?> messageMap = (Map<?, ?>) messageObj;
-                                    Object contentObj = messageMap.get("content");
-                                    
-                                    if (contentObj instanceof String) {
-                                        String content = (String) contentObj;
-                                        logger.info("Generated content: {}", content);
-                                        return content;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    
-                    logger.warn("Could not extract content from response structure: {}", responseBody);
+        }, checkEveryMs, checkEveryMs, TimeUnit.MILLISECONDS);
+        try (Stream<String> lines = response.body()) {
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                String body = lines.collect(Collectors.joining("\n"));
+                throw new IllegalStateException("OpenAI streaming request failed with status "
+                    + response.statusCode() + ": " + body);
+            }
+            Iterator<String> it = lines.iterator();
+            boolean firstDelta = true;
+            while (it.hasNext()) {
+                String line = it.next();
+                control.lastActivityMs = System.currentTimeMillis();
+                String trimmed = line.trim();
+                if (!trimmed.startsWith("data:")) continue;
+                String payload = trimmed.substring(5).trim();
+                if ("[DONE]".equals(payload)) break;
+                if (payload.isEmpty()) continue;
+                String delta;
+                try {
+                    delta = jsonMapper.readValue(payload, OpenAIChatCompletion.class).content();
+                } catch (Exception malformed) {
+                    continue; // skip malformed event
                 }
-            } catch (Exception e) {
-                logger.error("Error during API call: {}", e.getMessage());
-                // Fallback: handle servers that (incorrectly) return text/event-stream
-                if (e.getMessage() != null && e.getMessage().toLowerCase().contains("text/event-stream")) {
-                    try {
-                        String sseContent = trySseFallback(apiUrl, headers, requestBody);
-                        if (sseContent != null) {
-                            logger.info("Parsed SSE fallback content: {}", sseContent);
-                            return sseContent;
-                        }
-                    } catch (Exception suppressed) {
-                        logger.warn("SSE fallback parsing failed: {}", suppressed.getMessage());
-                    }
+                if (delta == null || delta.isEmpty()) continue;
+                if (firstDelta) {
+                    logger.info("First streamed token after {} ms (mode {})", System.currentTimeMillis() - startMs, mode);
+                    firstDelta = false;
                 }
-                throw e; // Rethrow to be caught by the outer try-catch block
+                assembled.append(delta);
+                onDelta.accept(delta);
             }
-            
-            return "I'm sorry, I couldn't generate a response at this time.";
-        } catch (Exception e) {
-            logger.error("Error generating OpenAI response: {}", e.getMessage(), e);
-            return "I'm sorry, an error occurred while processing your request: " + e.getMessage();
+        } catch (RuntimeException e) {
+            // Closing the body or interrupting the reader surfaces as an I/O failure; report why
+            if (control.idleTimedOut) {
+                throw new TimeoutException("OpenAI stream idle for more than " + streamIdleTimeoutMs + " ms");
+            }
+            if (control.isCancelled()) {
+                throw new CancellationException("Stream cancelled by the caller");
+            }
+            throw e;
+        } finally {
+            watchdog.cancel(false);
+            control.detach();
+        }
+        logger.info("Streamed response complete in {} ms, length {}", System.currentTimeMillis() - startMs, assembled.length());
+        return assembled.toString();
+    }
+    
+    private record ModelSettings(String keyName, String apiKey, String model, double temperature, double topP,
+                                 double frequencyPenalty, double presencePenalty, int maxTokens, boolean stream) {
+        ModelSettings withModel(String routedModel) {
+            return new ModelSettings(keyName, apiKey, routedModel, temperature, topP,
+                frequencyPenalty, presencePenalty, maxTokens, stream);
+        }
+    }
+    
+    // Mode settings with the model chosen by the router; sampling rules follow the routed model
+    private ModelSettings routedSettings(String mode, Priority priority, boolean simpleQuery) {
+        ModelSettings settings = settingsFor(mode);
+        OpenAIModelRouter.Route route = modelRouter.route(mode, settings.model(), priority, simpleQuery);
+        return route.model().equals(settings.model()) ? settings : settings.withModel(route.model());
+    }
+    
+    private ModelSettings settingsFor(String mode) {
+        if ("A".equals(mode)) { // General Legal Information mode
+            logger.info("Using GLI mode with model: {}, temperature: {}, max tokens: {}", gliModel, gliTemperature, gliMaxTokens);
+            return new ModelSettings("gli", gliApiKey, gliModel, gliTemperature, gliTopP,
+                gliFrequencyPenalty, gliPresencePenalty, gliMaxTokens, gliStream);
+        }
+        if ("B".equals(mode)) { // Case Plausibility Assessment mode
+            logger.info("Using CPA mode with model: {}, temperature: {}, max tokens: {}", cpaModel, cpaTemperature, cpaMaxTokens);
+            return new ModelSettings("cpa", cpaApiKey, cpaModel, cpaTemperature, cpaTopP,
+                cpaFrequencyPenalty, cpaPresencePenalty, cpaMaxTokens, cpaStream);
+        }
+        // No mode or unknown mode: use default (default OpenAI temperature)
+        logger.info("Using default mode with model: {}", defaultModel);
+        return new ModelSettings("default", defaultApiKey, defaultModel, 0.7, 1.0, 0.0, 0.0, 1000, false);
+    }
+    
+    private HttpHeaders buildHeaders(String apiKey, MediaType accept) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(Collections.singletonList(accept));
+        headers.set("Authorization", "Bearer " + apiKey);
+        
+        // Optional scoping headers
+        if (openAiOrganization != null && !openAiOrganization.isBlank()) {
+            headers.set("OpenAI-Organization", openAiOrganization.trim());
+        }
+        if (openAiProject != null && !openAiProject.isBlank()) {
+            headers.set("OpenAI-Project", openAiProject.trim());
+        }
+        return headers;
+    }
+    
+    private List<Map<String, Object>> buildMessages(String userMessage, String systemPrompt,
+                                                    List<Map<String, String>> conversationHistory) {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        
+        // Add system message first
+        Map<String, Object> systemMessage = new HashMap<>();
+        systemMessage.put("role", "system");
+        systemMessage.put("content", systemPrompt);
+        messages.add(systemMessage);
+        
+        // Add conversation history if available
+        if (conversationHistory != null && !conversationHistory.isEmpty()) {
+            for (Map<String, String> message : conversationHistory) {
+                Map<String, Object> historyMessage = new HashMap<>();
+                historyMessage.put("role", message.get("isUserMessage").equals("true") ? "user" : "assistant");
+                historyMessage.put("content", message.get("content"));
+                messages.add(historyMessage);
+            }
+            logger.info("Added {} messages from conversation history", conversationHistory.size());
+        }
+        
+        // Add the current user message only if it is not already the last history message
+        boolean lastIsSameUserMessage = false;
+        if (conversationHistory != null && !conversationHistory.isEmpty()) {
+            Map<String, String> last = conversationHistory.get(conversationHistory.size() - 1);
+            if (last != null && "true".equals(last.get("isUserMessage"))) {
+                String lastContent = last.get("content");
+                if (lastContent != null && lastContent.trim().equals(userMessage != null ? userMessage.trim() : null)) {
+                    lastIsSameUserMessage = true;
+                }
+            }
+        }
+        
+        if (!lastIsSameUserMessage) {
+            Map<String, Object> userMessageMap = new HashMap<>();
+            userMessageMap.put("role", "user");
+            userMessageMap.put("content", userMessage);
+            messages.add(userMessageMap);
+        } else {
+            logger.info("Skipping duplicate current user message in request payload");
+        }
+        return messages;
+    }
+    
+    private Map<String, Object> buildRequestBody(ModelSettings settings, List<Map<String, Object>> messages, boolean stream) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", settings.model());  // Using the model selected based on mode
+        requestBody.put("messages", messages);
+        // Some newer models (e.g., GPT-4o family, GPT-5) pin sampling to defaults.
+        // Avoid sending sampling params to prevent 400 "unsupported_value" errors.
+        if (!isFixedSamplingModel(settings.model())) {
+            requestBody.put("temperature", settings.temperature());
+            requestBody.put("top_p", settings.topP());
+            requestBody.put("frequency_penalty", settings.frequencyPenalty());
+            requestBody.put("presence_penalty", settings.presencePenalty());
         }
+        // Some org/project gateways for GPT-4o family require 'max_completion_tokens'
+        requestBody.put("max_completion_tokens", settings.maxTokens());
+        requestBody.put("stream", stream);
+        return requestBody;
     }
     
     // This method is no longer used by the controller for generation-first flow,
@@ -374,31 +694,15 @@ public class OpenAIService {
                 if ("[DONE]".equals(payload)) break;
                 if (payload.isEmpty()) continue;
                 try {
-                    Map<?, ?> evt = jsonMapper.readValue(payload, Map.class);
-                    Object choicesObj = evt.get("choices");
-                    if (choicesObj instanceof List<?> choices && !choices.isEmpty()) {
-                        Object first = choices.get(0);
-                        if (first instanceof Map<?, ?> cm) {
-                            // Try delta.content (streaming chunks)
-                            Object delta = cm.get("delta");
-                            if (delta instanceof Map<?, ?> dm) {
-                                Object dc = dm.get("content");
-                                if (dc instanceof String s) assembled.append(s);
-                            }
-                            // Fallback to message.content if present
-                            Object msg = cm.get("message");
-                            if (msg instanceof Map<?, ?> mm) {
-                                Object content = mm.get("content");
-                                if (content instanceof String s) assembled.append(s);
-                            }
-                        }
-                    }
+                    String content = jsonMapper.readValue(payload, OpenAIChatCompletion.class).content();
+                    if (content != null) assembled.append(content);
                 } catch (Exception ignore) { /* skip malformed event */ }
             }
             if (assembled.length() > 0) return assembled.toString();
         }
         return null;
     }
+    
     private String getGliSystemPrompt() {
         return """
             You are Villy, Civilify's AI-powered legal assistant specializing in Philippine law. Your role is to provide accurate, 
@@ -457,7 +761,8 @@ public class OpenAIService {
     private boolean isFixedSamplingModel(String model) {
         if (model == null) return false;
         String m = model.toLowerCase();
-        return m.contains("gpt-4o") || m.contains("gpt-5");
+        // o-series reasoning models (o1, o3, o4-mini, ...) reject sampling params as well
+        return m.contains("gpt-4o") || m.contains("gpt-5") || m.matches("^o\\d.*");
     }
     
     /**
@@ -467,13 +772,16 @@ public class OpenAIService {
     public List<KnowledgeBaseEntry> getKnowledgeBaseSources(String query) {
         try {
             String key = (query == null ? "" : query.trim().toLowerCase()) + "|limit=" + knowledgeBaseSourcesLimit;
-            KbCacheEntry cached = kbCache.get(key);
-            if (cached != null && !cached.isExpired()) {
+            List<KnowledgeBaseEntry> cached = kbCache.get(key);
+            if (cached != null) {
                 logger.info("KB cache hit for key='{}'", key);
-                return cached.data;
+                return cached;
             }
             List<KnowledgeBaseEntry> result = knowledgeBaseService.searchKnowledgeBase(query, knowledgeBaseSourcesLimit);
-            kbCache.put(key, new KbCacheEntry(result, kbCacheTtlSeconds * 1000L));
+            // Empty results may come from a KB outage (open breaker); don't pin them after recovery
+            if (!result.isEmpty()) {
+                kbCache.put(key, result);
+            }
             return result;
         } catch (Exception e) {
             logger.error("Error retrieving knowledge base sources", e);
@@ -488,13 +796,15 @@ public class OpenAIService {
         int effectiveLimit = (limitOverride > 0 && limitOverride <= 10) ? limitOverride : knowledgeBaseSourcesLimit;
         try {
             String key = (query == null ? "" : query.trim().toLowerCase()) + "|limit=" + effectiveLimit;
-            KbCacheEntry cached = kbCache.get(key);
-            if (cached != null && !cached.isExpired()) {
+            List<KnowledgeBaseEntry> cached = kbCache.get(key);
+            if (cached != null) {
                 logger.info("KB cache hit for key='{}'", key);
-                return cached.data;
+                return cached;
             }
             List<KnowledgeBaseEntry> result = knowledgeBaseService.searchKnowledgeBase(query, effectiveLimit);
-            kbCache.put(key, new KbCacheEntry(result, kbCacheTtlSeconds * 1000L));
+            if (!result.isEmpty()) {
+                kbCache.put(key, result);
+            }
             return result;
         } catch (Exception e) {
             logger.error("Error retrieving knowledge base sources (limit override)", e);
@@ -558,10 +868,36 @@ public class OpenAIService {
 
             // Use CPA model with low temperature for determinism
             String composed = sb.toString();
-            return generateResponse(composed, summarizerSystem, Collections.emptyList(), "B");
+            return generateResponse(composed, summarizerSystem, Collections.emptyList(), "B", Priority.REPORT);
         } catch (Exception ex) {
             logger.warn("summarizeConversationForKb failed: {}", ex.getMessage());
             return null;
         }
     }
+
+    /**
+     * Fold older conversation turns into the running summary that replaces them in prompts.
+     * Returns null on failure so callers keep the previous summary.
+     */
+    public String updateConversationSummary(String previousSummary, List<Map<String, String>> olderTurns) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            if (previousSummary != null && !previousSummary.isBlank()) {
+                sb.append("Current summary:\n").append(previousSummary.trim()).append("\n\n");
+            }
+            sb.append("New turns to fold in:\n");
+            for (Map<String, String> msg : olderTurns) {
+                String role = "true".equals(msg.get("isUserMessage")) ? "user" : "assistant";
+                sb.append(role).append(": ").append(msg.get("content")).append("\n");
+            }
+
+            String summarizerSystem = "You maintain the running summary of a Philippine legal assistance conversation. Rewrite the current summary so it also covers the new turns. Keep concrete facts (who/what/when/where, amounts, documents), the user's goals, legal issues and laws discussed, and advice or assessments already given. Drop greetings and repetition. Plain text, under 200 words, no headers.";
+
+            // Use CPA model with low temperature for determinism
+            return completeChat(sb.toString(), summarizerSystem, Collections.emptyList(), "B", Priority.BACKGROUND, false);
+        } catch (Exception ex) {
+            logger.warn("updateConversationSummary failed: {}", ex.getMessage());
+            return null;
+        }
+    }
 }
@@ -0,0 +1,211 @@
+package com.capstone.civilify.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared outbound HTTP client for calls to OpenAI, the law-entry KB and Firebase REST APIs.
+ *
+ * Backed by a single {@link HttpClient}, so connections are kept alive and pooled per host
+ * and HTTP/2 is negotiated where the server supports it (multiplexing requests over one
+ * connection). A per-host permit limit caps concurrent requests to each remote host.
+ * The JDK pool itself is tuned with JVM flags ({@code -Djdk.httpclient.keepalive.timeout},
+ * set in the Dockerfile), since those are read once per JVM when the pool class loads.
+ * RestTemplate-based services plug in through {@link #configure(RestTemplate, Duration)};
+ * everything else can use the asynchronous {@code CompletableFuture} API directly.
+ */
+@Component
+public class OutboundHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundHttpClient.class);
+
+    @Value("${http.client.connect-timeout-ms:6000}")
+    private long connectTimeoutMs;
+
+    @Value("${http.client.max-connections-per-host:32}")
+    private int maxConnectionsPerHost;
+
+    @Value("${http.client.acquire-timeout-ms:5000}")
+    private long acquireTimeoutMs;
+
+    @Value("${http.client.threads:8}")
+    private int threads;
+
+    private HttpClient httpClient;
+    private ExecutorService executor;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Map<String, AtomicLong> protocolCounts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(2, threads), runnable -> {
+            Thread thread = new Thread(runnable, "http-out-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(executor)
+            .build();
+        logger.info("Outbound HTTP client ready: HTTP/2 preferred, connectTimeout={}ms, maxConnectionsPerHost={}",
+            connectTimeoutMs, maxConnectionsPerHost);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Point a RestTemplate at the shared pooled client with the given read timeout.
+     */
+    public void configure(RestTemplate restTemplate, Duration readTimeout) {
+        restTemplate.setRequestFactory(requestFactory(readTimeout));
+        restTemplate.getInterceptors().add(hostLimitInterceptor());
+    }
+
+    public ClientHttpRequestFactory requestFactory(Duration readTimeout) {
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(readTimeout);
+        return factory;
+    }
+
+    /**
+     * Send a request asynchronously, holding a per-host permit until the response arrives.
+     * Never blocks the caller: when the host has no free permit the future fails at once
+     * with {@link HostSaturatedException}.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        Semaphore permit = permitFor(request.uri());
+        if (!permit.tryAcquire()) {
+            rejected.incrementAndGet();
+            return CompletableFuture.failedFuture(new HostSaturatedException(request.uri()));
+        }
+        requests.incrementAndGet();
+        return httpClient.sendAsync(request, handler)
+            .whenComplete((response, error) -> {
+                permit.release();
+                if (response != null) {
+                    protocolCounts.computeIfAbsent(response.version().name(), k -> new AtomicLong()).incrementAndGet();
+                }
+            });
+    }
+
+    /**
+     * POST a JSON body and return the response body as a string.
+     */
+    public CompletableFuture<HttpResponse<String>> postJsonAsync(String url, String json, Map<String, String> headers, Duration timeout) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+            .timeout(timeout)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(json));
+        if (headers != null) {
+            headers.forEach(builder::header);
+        }
+        return sendAsync(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("rejected", rejected.get());
+        Map<String, Integer> inFlight = new LinkedHashMap<>();
+        hostPermits.forEach((host, permit) -> inFlight.put(host, maxConnectionsPerHost - permit.availablePermits()));
+        stats.put("inFlightPerHost", inFlight);
+        Map<String, Long> protocols = new LinkedHashMap<>();
+        protocolCounts.forEach((protocol, count) -> protocols.put(protocol, count.get()));
+        stats.put("protocols", protocols);
+        return stats;
+    }
+
+    private ClientHttpRequestInterceptor hostLimitInterceptor() {
+        return (request, body, execution) -> {
+            Semaphore permit = permitFor(request.getURI());
+            acquire(permit, request.getURI());
+            requests.incrementAndGet();
+            try {
+                return execution.execute(request, body);
+            } finally {
+                permit.release();
+            }
+        };
+    }
+
+    private Semaphore permitFor(URI uri) {
+        String host = uri.getHost() != null ? uri.getHost() : "unknown";
+        return hostPermits.computeIfAbsent(host, h -> new Semaphore(Math.max(1, maxConnectionsPerHost)));
+    }
+
+    private void acquire(Semaphore permit, URI uri) throws IOException {
+        try {
+            if (!permit.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new HostSaturatedException(uri);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection to " + uri.getHost(), e);
+        }
+    }
+
+    /**
+     * True when the failure, or anything in its cause chain, is a local per-host permit
+     * rejection. The remote host was never contacted, so it says nothing about its health.
+     */
+    public static boolean isHostSaturated(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof HostSaturatedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Thrown when every local permit for a host is taken. An IOException so it passes through
+     * RestTemplate interceptors; RestTemplate then wraps it in a ResourceAccessException.
+     */
+    public static class HostSaturatedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public HostSaturatedException(URI uri) {
+            super("Too many concurrent requests to " + uri.getHost());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.DTO.KnowledgeBaseEntry;
+import com.capstone.civilify.util.PromptTemplate;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Villy system prompts, compiled once at startup from {@code classpath:prompts/*.txt}.
+ *
+ * Each variant (GLI/CPA, with or without KB context) is a complete template whose static
+ * instructions come first and whose per-request KB answer and source list come last. Every
+ * request of a variant therefore starts with the same long prefix, which OpenAI's prompt
+ * caching can reuse, and variants without KB context are returned as precompiled strings.
+ */
+@Service
+public class PromptLibrary {
+    private static final Logger logger = LoggerFactory.getLogger(PromptLibrary.class);
+
+    private static final String PROMPT_LOCATION = "prompts/";
+
+    private static final String GLI_KB = "gli-kb";
+    private static final String GLI_NO_KB = "gli-no-kb";
+    private static final String CPA_KB = "cpa-kb";
+    private static final String CPA_GROUNDED = "cpa-grounded";
+    private static final String CPA_NO_KB = "cpa-no-kb";
+
+    private final Map<String, PromptTemplate> templates = new HashMap<>();
+    private final Map<String, AtomicLong> renders = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        Map<String, String> sources = new HashMap<>();
+        for (String name : List.of(GLI_KB, GLI_NO_KB, CPA_KB, CPA_GROUNDED, CPA_NO_KB)) {
+            String source = load(name, sources);
+            if (source == null) {
+                throw new IllegalStateException("Missing prompt template " + PROMPT_LOCATION + name + ".txt");
+            }
+            PromptTemplate template = PromptTemplate.compile(name, source, include -> load(include, sources));
+            templates.put(name, template);
+            renders.put(name, new AtomicLong());
+            logger.info("Compiled prompt template '{}': {} static chars, slots {}",
+                name, template.getStaticLength(), template.getSlots());
+        }
+    }
+
+    /**
+     * System prompt for a chat turn.
+     *
+     * @param mode            A = general legal information, B = case plausibility assessment
+     * @param primaryKbAnswer KB answer for the question, or null when there is none
+     * @param kbSources       KB sources to list (GLI answer sources, or CPA report grounding)
+     */
+    public String systemPrompt(String mode, String primaryKbAnswer, List<KnowledgeBaseEntry> kbSources) {
+        boolean hasSources = kbSources != null && !kbSources.isEmpty();
+        boolean cpa = "B".equals(mode);
+
+        if (isMeaningfulAnswer(primaryKbAnswer)) {
+            Map<String, String> slots = new HashMap<>();
+            slots.put("kbAnswer", primaryKbAnswer);
+            if (hasSources) {
+                slots.put("supportingSources", "\n\nSUPPORTING LEGAL SOURCES:\n" + formatSources(kbSources));
+            }
+            return render(cpa ? CPA_KB : GLI_KB, slots);
+        }
+        if (cpa && hasSources) {
+            // CPA report turn grounded on KB sources (no KB answer): list them so the report is generated once
+            return render(CPA_GROUNDED, Map.of("sourceList", formatSources(kbSources)));
+        }
+        return render(cpa ? CPA_NO_KB : GLI_NO_KB, null);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        templates.keySet().stream().sorted().forEach(name -> {
+            PromptTemplate template = templates.get(name);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("staticPrefixChars", template.getStaticPrefixLength());
+            entry.put("slots", template.getSlots());
+            entry.put("renders", renders.get(name).get());
+            stats.put(name, entry);
+        });
+        return stats;
+    }
+
+    private String render(String name, Map<String, String> slots) {
+        renders.get(name).incrementAndGet();
+        return templates.get(name).render(slots);
+    }
+
+    private static boolean isMeaningfulAnswer(String answer) {
+        if (answer == null) {
+            return false;
+        }
+        String trimmed = answer.trim();
+        return !trimmed.isEmpty()
+            && !trimmed.equalsIgnoreCase("I don't know")
+            && !trimmed.equalsIgnoreCase("No relevant information found");
+    }
+
+    private static String formatSources(List<KnowledgeBaseEntry> kbSources) {
+        StringBuilder list = new StringBuilder(kbSources.size() * 160);
+        for (KnowledgeBaseEntry source : kbSources) {
+            list.append("- ").append(source.getTitle());
+            if (source.getCanonicalCitation() != null && !source.getCanonicalCitation().isEmpty()) {
+                list.append(" (").append(source.getCanonicalCitation()).append(")");
+            }
+            // Include source URLs if available and valid
+            if (source.getSourceUrls() != null && !source.getSourceUrls().isEmpty()) {
+                list.append(" - Available Sources: ").append(String.join(", ", source.getSourceUrls()));
+            }
+            list.append("\n");
+        }
+        return list.toString();
+    }
+
+    // Raw template text by name; includes are read once even when several templates share them
+    private static String load(String name, Map<String, String> cache) {
+        return cache.computeIfAbsent(name, key -> {
+            ClassPathResource resource = new ClassPathResource(PROMPT_LOCATION + key + ".txt");
+            if (!resource.exists()) {
+                return null;
+            }
+            try (InputStream in = resource.getInputStream()) {
+                String text = StreamUtils.copyToString(in, StandardCharsets.UTF_8).replace("\r\n", "\n");
+                // Files end with a newline; the prompt text itself does not
+                return text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read prompt template " + resource.getPath(), e);
+            }
+        });
+    }
+}
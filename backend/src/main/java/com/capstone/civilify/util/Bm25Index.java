@@ -0,0 +1,168 @@
+package com.capstone.civilify.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Immutable in-memory inverted index scored with Okapi BM25.
+ *
+ * Documents are made of weighted fields; a field with weight 3 counts each of its terms
+ * three times, which approximates BM25F field boosting without per-field statistics.
+ * The index is built once from a full snapshot and replaced wholesale on resync, so reads
+ * need no locking.
+ *
+ * BM25 scores are unbounded and not comparable across queries, so each hit also reports its
+ * query coverage: the IDF-weighted share of the query's terms the document contains. That
+ * is the signal to threshold on; the score only ranks.
+ */
+public class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "are", "as", "at", "be", "by", "can", "do", "for", "from", "how",
+        "i", "if", "in", "is", "it", "my", "of", "on", "or", "the", "to", "was", "what",
+        "when", "where", "which", "who", "why", "with"
+    );
+
+    /**
+     * A document to index: an id plus weighted text fields.
+     */
+    public static final class Document {
+        private final String id;
+        private final List<String> texts = new ArrayList<>();
+        private final List<Integer> weights = new ArrayList<>();
+
+        public Document(String id) {
+            this.id = id;
+        }
+
+        public Document field(String text, int weight) {
+            if (text != null && !text.isBlank() && weight > 0) {
+                texts.add(text);
+                weights.add(weight);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * @param coverage IDF-weighted fraction of the query terms found in the document, in [0, 1];
+     *                 terms absent from the corpus count with the highest possible IDF
+     */
+    public record Hit(String id, double score, double coverage) {}
+
+    private record Posting(int doc, int tf) {}
+
+    private final String[] docIds;
+    private final int[] docLengths;
+    private final double avgDocLength;
+    private final Map<String, List<Posting>> postings;
+
+    public Bm25Index(List<Document> documents) {
+        this.docIds = new String[documents.size()];
+        this.docLengths = new int[documents.size()];
+        Map<String, List<Posting>> index = new HashMap<>();
+        long totalLength = 0;
+        for (int d = 0; d < documents.size(); d++) {
+            Document doc = documents.get(d);
+            docIds[d] = doc.id;
+            Map<String, Integer> termFreqs = new HashMap<>();
+            int length = 0;
+            for (int f = 0; f < doc.texts.size(); f++) {
+                int weight = doc.weights.get(f);
+                for (String term : tokenize(doc.texts.get(f))) {
+                    termFreqs.merge(term, weight, Integer::sum);
+                    length += weight;
+                }
+            }
+            docLengths[d] = length;
+            totalLength += length;
+            for (Map.Entry<String, Integer> tf : termFreqs.entrySet()) {
+                index.computeIfAbsent(tf.getKey(), k -> new ArrayList<>()).add(new Posting(d, tf.getValue()));
+            }
+        }
+        this.avgDocLength = documents.isEmpty() ? 0.0 : (double) totalLength / documents.size();
+        this.postings = index;
+    }
+
+    public int size() {
+        return docIds.length;
+    }
+
+    public int termCount() {
+        return postings.size();
+    }
+
+    /**
+     * Score all documents matching at least one query term and return the best ones.
+     */
+    public List<Hit> search(String query, int limit) {
+        List<Hit> hits = new ArrayList<>();
+        if (docIds.length == 0 || query == null || limit <= 0) {
+            return hits;
+        }
+        Map<Integer, Double> scores = new HashMap<>();
+        Map<Integer, Double> matchedIdf = new HashMap<>();
+        double queryIdf = 0.0;
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            List<Posting> list = postings.get(term);
+            double idf = idf(list != null ? list.size() : 0);
+            queryIdf += idf;
+            if (list == null) {
+                continue;
+            }
+            for (Posting posting : list) {
+                double norm = K1 * (1 - B + B * docLengths[posting.doc] / avgDocLength);
+                double termScore = idf * (posting.tf * (K1 + 1)) / (posting.tf + norm);
+                scores.merge(posting.doc, termScore, Double::sum);
+                matchedIdf.merge(posting.doc, idf, Double::sum);
+            }
+        }
+        PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+            top.offer(score);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        while (!top.isEmpty()) {
+            Map.Entry<Integer, Double> best = top.poll();
+            double coverage = queryIdf > 0 ? Math.min(1.0, matchedIdf.get(best.getKey()) / queryIdf) : 0.0;
+            hits.add(0, new Hit(docIds[best.getKey()], best.getValue(), coverage));
+        }
+        return hits;
+    }
+
+    private double idf(int documentFrequency) {
+        return Math.log(1.0 + (docIds.length - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    /**
+     * Lowercase, split on non-alphanumerics, and drop stop words and single characters
+     * (article numbers such as "148" are kept).
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String raw : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (raw.length() < 2 && !raw.chars().allMatch(Character::isDigit)) {
+                continue;
+            }
+            if (raw.isEmpty() || STOP_WORDS.contains(raw)) {
+                continue;
+            }
+            tokens.add(raw);
+        }
+        return tokens;
+    }
+}
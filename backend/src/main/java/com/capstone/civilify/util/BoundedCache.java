@@ -0,0 +1,279 @@
+package com.capstone.civilify.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded, TTL-aware in-memory cache using a segmented LRU policy.
+ *
+ * New entries land in a probation segment; an entry that is read again is promoted
+ * to the protected segment. When the cache is full the least recently used probation
+ * entry is evicted first, so one-off queries cannot flush frequently used results.
+ * Expired entries are removed on access and by an amortized sweep that runs on writes,
+ * which keeps the heap bounded without a background thread.
+ *
+ * Optionally supports stale-while-revalidate: entries older than a soft TTL are still
+ * returned by {@link #lookup(Object)} but flagged as stale so the caller can refresh them
+ * in the background, until the hard TTL removes them.
+ */
+public class BoundedCache<K, V> {
+
+    private static final double PROTECTED_RATIO = 0.8;
+    private static final long MIN_SWEEP_INTERVAL_MS = 1_000L;
+
+    private static final class Node<V> {
+        final V value;
+        final long expiresAtMs;
+        final long staleAtMs;
+        Node(V value, long expiresAtMs, long staleAtMs) {
+            this.value = value;
+            this.expiresAtMs = expiresAtMs;
+            this.staleAtMs = staleAtMs;
+        }
+        boolean isExpired(long now) { return now > expiresAtMs; }
+        boolean isStale(long now) { return now > staleAtMs; }
+    }
+
+    /**
+     * Result of {@link #lookup(Object)}: the cached value and whether it is past its soft TTL.
+     */
+    public record Lookup<V>(V value, boolean stale) {}
+
+    private final String name;
+    private final int maxSize;
+    private final int protectedMax;
+    private final long ttlMs;
+    private final long softTtlMs;
+    private final long sweepIntervalMs;
+
+    // Access-ordered maps: iteration starts at the least recently used entry
+    private final LinkedHashMap<K, Node<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long lastSweepMs = System.currentTimeMillis();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+
+    /**
+     * @param name    Cache name used in statistics and logs
+     * @param maxSize Maximum number of entries (values below 1 are treated as 1)
+     * @param ttlMs   Time-to-live for each entry in milliseconds
+     */
+    public BoundedCache(String name, int maxSize, long ttlMs) {
+        this(name, maxSize, ttlMs, ttlMs);
+    }
+
+    /**
+     * @param name      Cache name used in statistics and logs
+     * @param maxSize   Maximum number of entries (values below 1 are treated as 1)
+     * @param ttlMs     Hard time-to-live; entries are removed after this
+     * @param softTtlMs Soft time-to-live; after this, {@link #lookup(Object)} reports the entry as stale
+     */
+    public BoundedCache(String name, int maxSize, long ttlMs, long softTtlMs) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.protectedMax = Math.max(1, (int) (this.maxSize * PROTECTED_RATIO));
+        this.ttlMs = Math.max(1L, ttlMs);
+        this.softTtlMs = Math.min(this.ttlMs, Math.max(1L, softTtlMs));
+        this.sweepIntervalMs = Math.max(MIN_SWEEP_INTERVAL_MS, this.ttlMs / 4);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the cached value, or null when absent or expired.
+     */
+    public synchronized V get(K key) {
+        Node<V> node = findLive(key, System.currentTimeMillis());
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Like {@link #get(Object)}, but also reports whether the value is past its soft TTL.
+     * @return The lookup, or null when absent or expired
+     */
+    public synchronized Lookup<V> lookup(K key) {
+        long now = System.currentTimeMillis();
+        Node<V> node = findLive(key, now);
+        if (node == null) {
+            return null;
+        }
+        boolean stale = node.isStale(now);
+        if (stale) {
+            staleHits.incrementAndGet();
+        }
+        return new Lookup<>(node.value, stale);
+    }
+
+    private Node<V> findLive(K key, long now) {
+        Node<V> node = protectedSegment.get(key);
+        if (node != null) {
+            if (node.isExpired(now)) {
+                protectedSegment.remove(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return node;
+        }
+        node = probation.remove(key);
+        if (node == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (node.isExpired(now)) {
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        // Second access: promote to the protected segment
+        promote(key, node);
+        hits.incrementAndGet();
+        return node;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, ttlMs);
+    }
+
+    public synchronized void put(K key, V value, long entryTtlMs) {
+        if (key == null || value == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        sweepIfDue(now);
+        long entryTtl = Math.max(1L, entryTtlMs);
+        Node<V> node = new Node<>(value, now + entryTtl, now + Math.min(entryTtl, softTtlMs));
+        puts.incrementAndGet();
+        if (protectedSegment.containsKey(key)) {
+            protectedSegment.put(key, node);
+            return;
+        }
+        probation.put(key, node);
+        evictIfNeeded();
+    }
+
+    public synchronized void invalidate(K key) {
+        if (protectedSegment.remove(key) == null) {
+            probation.remove(key);
+        }
+    }
+
+    /**
+     * Remove every entry whose key matches the predicate.
+     */
+    public synchronized int invalidateIf(Predicate<K> predicate) {
+        int removed = removeMatching(protectedSegment, predicate);
+        removed += removeMatching(probation, predicate);
+        return removed;
+    }
+
+    public synchronized void invalidateAll() {
+        protectedSegment.clear();
+        probation.clear();
+    }
+
+    public synchronized int size() {
+        return protectedSegment.size() + probation.size();
+    }
+
+    /**
+     * Remove all expired entries now.
+     */
+    public synchronized void cleanUp() {
+        sweep(System.currentTimeMillis());
+    }
+
+    /**
+     * Snapshot of counters for metrics endpoints.
+     */
+    public synchronized Map<String, Object> stats() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("size", size());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlMs", ttlMs);
+        stats.put("softTtlMs", softTtlMs);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("puts", puts.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("staleHits", staleHits.get());
+        return stats;
+    }
+
+    private void promote(K key, Node<V> node) {
+        protectedSegment.put(key, node);
+        // Demote the least recently used protected entry back to probation on overflow
+        while (protectedSegment.size() > protectedMax) {
+            Iterator<Map.Entry<K, Node<V>>> it = protectedSegment.entrySet().iterator();
+            Map.Entry<K, Node<V>> eldest = it.next();
+            it.remove();
+            probation.put(eldest.getKey(), eldest.getValue());
+        }
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        while (size() > maxSize) {
+            LinkedHashMap<K, Node<V>> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+            Iterator<Map.Entry<K, Node<V>>> it = victimSegment.entrySet().iterator();
+            if (!it.hasNext()) {
+                return;
+            }
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void sweepIfDue(long now) {
+        if (now - lastSweepMs >= sweepIntervalMs) {
+            sweep(now);
+        }
+    }
+
+    private void sweep(long now) {
+        lastSweepMs = now;
+        expirations.addAndGet(removeExpired(protectedSegment, now));
+        expirations.addAndGet(removeExpired(probation, now));
+    }
+
+    private int removeExpired(LinkedHashMap<K, Node<V>> segment, long now) {
+        int removed = 0;
+        Iterator<Map.Entry<K, Node<V>>> it = segment.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().isExpired(now)) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private int removeMatching(LinkedHashMap<K, Node<V>> segment, Predicate<K> predicate) {
+        int removed = 0;
+        Iterator<Map.Entry<K, Node<V>>> it = segment.entrySet().iterator();
+        while (it.hasNext()) {
+            if (predicate.test(it.next().getKey())) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,223 @@
+package com.capstone.civilify.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker with a rolling, time-bucketed error-rate window.
+ *
+ * CLOSED: calls pass through and outcomes are recorded. Once the window holds at least
+ * {@code minimumCalls} outcomes and the failure rate reaches the threshold, the breaker
+ * OPENs. OPEN: calls fail fast with {@link CircuitOpenException} until the open period
+ * has elapsed. HALF_OPEN: a limited number of probe calls are let through; a success
+ * closes the breaker and a failure re-opens it.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Thrown instead of calling the dependency while the breaker is open.
+     */
+    public static class CircuitOpenException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String name) {
+            super("Circuit '" + name + "' is open; failing fast");
+        }
+    }
+
+    private static final int BUCKETS = 10;
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long bucketMs;
+    private final long openDurationMs;
+    private final int halfOpenMaxCalls;
+    private final Predicate<Throwable> recordAsFailure;
+
+    private final long[] bucketEpochs = new long[BUCKETS];
+    private final int[] bucketSuccesses = new int[BUCKETS];
+    private final int[] bucketFailures = new int[BUCKETS];
+
+    private State state = State.CLOSED;
+    private long openedAtMs;
+    private int halfOpenInFlight;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    /**
+     * @param name                 Name used in exceptions and statistics
+     * @param failureRateThreshold Failure ratio (0..1) that opens the breaker
+     * @param minimumCalls         Outcomes required in the window before the rate is evaluated
+     * @param windowMs             Length of the rolling window
+     * @param openDurationMs       How long to fail fast before probing again
+     * @param halfOpenMaxCalls     Concurrent probe calls allowed while half-open
+     * @param recordAsFailure      Which exceptions count against the dependency; others count as successes
+     */
+    public CircuitBreaker(String name, double failureRateThreshold, int minimumCalls, long windowMs,
+                          long openDurationMs, int halfOpenMaxCalls, Predicate<Throwable> recordAsFailure) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = Math.max(1, minimumCalls);
+        this.bucketMs = Math.max(1L, windowMs / BUCKETS);
+        this.openDurationMs = Math.max(1L, openDurationMs);
+        this.halfOpenMaxCalls = Math.max(1, halfOpenMaxCalls);
+        this.recordAsFailure = recordAsFailure;
+    }
+
+    /**
+     * Run the call through the breaker.
+     * @throws CircuitOpenException if the breaker is open or all half-open probes are taken
+     */
+    public <T> T execute(Supplier<T> call) {
+        State permittedIn = acquirePermission();
+        // Errors and sneaky checked exceptions count as failures; the outcome is always
+        // recorded so a half-open probe slot can never leak
+        boolean success = false;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } catch (RuntimeException e) {
+            success = !recordAsFailure.test(e);
+            throw e;
+        } finally {
+            if (success) {
+                onSuccess(permittedIn);
+            } else {
+                onFailure(permittedIn);
+            }
+        }
+    }
+
+    /**
+     * Whether a call made now would be let through. Does not consume a half-open probe,
+     * so callers can use it to skip optional work entirely.
+     */
+    public synchronized boolean isCallPermitted() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> System.currentTimeMillis() - openedAtMs >= openDurationMs;
+            case HALF_OPEN -> halfOpenInFlight < halfOpenMaxCalls;
+        };
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        long now = System.currentTimeMillis();
+        int[] window = windowCounts(now);
+        int successes = window[0];
+        int failures = window[1];
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("state", state.name());
+        stats.put("windowSuccesses", successes);
+        stats.put("windowFailures", failures);
+        stats.put("failureRate", (successes + failures) == 0 ? 0.0 : (double) failures / (successes + failures));
+        stats.put("rejected", rejected.get());
+        stats.put("timesOpened", opened.get());
+        stats.put("openForMs", state == State.OPEN ? Math.max(0L, openDurationMs - (now - openedAtMs)) : 0L);
+        return stats;
+    }
+
+    private synchronized State acquirePermission() {
+        long now = System.currentTimeMillis();
+        if (state == State.OPEN && now - openedAtMs >= openDurationMs) {
+            state = State.HALF_OPEN;
+            halfOpenInFlight = 0;
+        }
+        if (state == State.OPEN || (state == State.HALF_OPEN && halfOpenInFlight >= halfOpenMaxCalls)) {
+            rejected.incrementAndGet();
+            throw new CircuitOpenException(name);
+        }
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight++;
+        }
+        return state;
+    }
+
+    private synchronized void onSuccess(State permittedIn) {
+        if (permittedIn == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            if (state == State.HALF_OPEN) {
+                close();
+            }
+            return;
+        }
+        record(true);
+    }
+
+    private synchronized void onFailure(State permittedIn) {
+        if (permittedIn == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            if (state == State.HALF_OPEN) {
+                open();
+            }
+            return;
+        }
+        record(false);
+        if (state == State.CLOSED && shouldOpen()) {
+            open();
+        }
+    }
+
+    private void record(boolean success) {
+        long epoch = System.currentTimeMillis() / bucketMs;
+        int slot = (int) (epoch % BUCKETS);
+        if (bucketEpochs[slot] != epoch) {
+            bucketEpochs[slot] = epoch;
+            bucketSuccesses[slot] = 0;
+            bucketFailures[slot] = 0;
+        }
+        if (success) {
+            bucketSuccesses[slot]++;
+        } else {
+            bucketFailures[slot]++;
+        }
+    }
+
+    private boolean shouldOpen() {
+        int[] window = windowCounts(System.currentTimeMillis());
+        int total = window[0] + window[1];
+        return total >= minimumCalls && (double) window[1] / total >= failureRateThreshold;
+    }
+
+    /**
+     * @return {successes, failures} across buckets that are still inside the window
+     */
+    private int[] windowCounts(long now) {
+        long currentEpoch = now / bucketMs;
+        int[] counts = new int[2];
+        for (int i = 0; i < BUCKETS; i++) {
+            if (currentEpoch - bucketEpochs[i] < BUCKETS) {
+                counts[0] += bucketSuccesses[i];
+                counts[1] += bucketFailures[i];
+            }
+        }
+        return counts;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtMs = System.currentTimeMillis();
+        opened.incrementAndGet();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketEpochs[i] = 0L;
+            bucketSuccesses[i] = 0;
+            bucketFailures[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.capstone.civilify.util;
+
+import org.springframework.stereotype.Component;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Predicts whether a CPA (Case Plausibility Assessment) turn is likely to produce the
+ * structured assessment report rather than another clarifying question.
+ *
+ * The model decides when it has enough facts, so this is a heuristic over the conversation
+ * state: an explicit request for an assessment, or enough substantive user turns since the
+ * last report. A positive prediction lets the controller fetch KB context before generation
+ * so the report is produced in one grounded pass instead of being regenerated.
+ */
+@Component
+public class CpaReportTurnPredictor {
+
+    // Explicit requests for an assessment
+    private static final List<String> REPORT_REQUEST_PATTERNS = Arrays.asList(
+        "assess my", "assessment", "evaluate my case", "evaluate my situation", "the report",
+        "plausibility", "my chances", "chance of winning", "chances of winning", "do i have a case",
+        "is my case strong", "strong case", "will i win", "can i win", "can i file", "can i sue",
+        "should i file", "what are my options", "what can i do", "what should i do"
+    );
+
+    // Facts gathered before the model usually has enough to assess
+    private static final int MIN_USER_TURNS = 3;
+    private static final int MIN_USER_CHARS = 250;
+
+    // Replies this short after a report are follow-ups, not new cases
+    private static final int SHORT_FOLLOW_UP_CHARS = 40;
+
+    // Content terms a message needs before it is worth searching the KB with on its own
+    private static final int MIN_QUERY_TERMS = 5;
+
+    /**
+     * @param userMessage The current user message
+     * @param history     Conversation history as sent to OpenAI (content / isUserMessage)
+     * @return true if this turn will likely produce the structured report
+     */
+    public boolean isLikelyReportTurn(String userMessage, List<Map<String, String>> history) {
+        return predict(userMessage, history).likely();
+    }
+
+    /**
+     * Gets a prediction reason for logging purposes.
+     */
+    public String getPredictionReason(String userMessage, List<Map<String, String>> history) {
+        return predict(userMessage, history).reason();
+    }
+
+    /**
+     * Whether the message describes enough of the case to be a KB query by itself, as opposed
+     * to a short answer to a clarifying question ("yes, last March").
+     */
+    public boolean isSelfContainedQuery(String userMessage) {
+        return Bm25Index.tokenize(userMessage).size() >= MIN_QUERY_TERMS;
+    }
+
+    private record Prediction(boolean likely, String reason) {}
+
+    private Prediction predict(String userMessage, List<Map<String, String>> history) {
+        String lowerMessage = userMessage != null ? userMessage.toLowerCase().trim() : "";
+
+        if (isExplicitReportRequest(lowerMessage)) {
+            return new Prediction(true, "Explicit assessment request");
+        }
+
+        // Only count facts shared since the last report; a finished report resets the case
+        int userTurns = lowerMessage.isEmpty() ? 0 : 1;
+        int userChars = lowerMessage.length();
+        boolean reportSeen = false;
+        if (history != null) {
+            for (int i = history.size() - 1; i >= 0; i--) {
+                Map<String, String> message = history.get(i);
+                String content = message.get("content");
+                if (content == null) {
+                    continue;
+                }
+                if ("true".equals(message.get("isUserMessage"))) {
+                    // The current message may already be the last history entry
+                    if (i == history.size() - 1 && content.trim().equalsIgnoreCase(lowerMessage)) {
+                        continue;
+                    }
+                    userTurns++;
+                    userChars += content.length();
+                } else if (content.contains("Plausibility Score:")) {
+                    reportSeen = true;
+                    break;
+                }
+            }
+        }
+
+        if (reportSeen && lowerMessage.length() <= SHORT_FOLLOW_UP_CHARS) {
+            return new Prediction(false, "Follow-up to a previous report");
+        }
+        if (userTurns >= MIN_USER_TURNS && userChars >= MIN_USER_CHARS) {
+            return new Prediction(true, "Enough case facts gathered (" + userTurns + " user turns, " + userChars + " chars)");
+        }
+        return new Prediction(false, "No report signals");
+    }
+
+    /**
+     * Checks if the message explicitly asks for an assessment of the user's case.
+     */
+    private boolean isExplicitReportRequest(String lowerMessage) {
+        return REPORT_REQUEST_PATTERNS.stream()
+            .anyMatch(lowerMessage::contains);
+    }
+}
@@ -0,0 +1,44 @@
+package com.capstone.civilify.util;
+
+import com.google.cloud.Timestamp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque page cursor for Firestore queries ordered by a timestamp field and then by
+ * document id.
+ *
+ * The cursor carries the sort values of the last document of a page, so the next page is
+ * {@code query.startAfter(cursor.timestamp(), cursor.documentId())}: the same position
+ * {@code startAfter(snapshot)} would resume from, without reading that document again.
+ */
+public record FirestoreCursor(Timestamp timestamp, String documentId) {
+
+    public String encode() {
+        String raw = timestamp.getSeconds() + ":" + timestamp.getNanos() + ":" + documentId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException When the cursor was not produced by {@link #encode()}
+     */
+    public static FirestoreCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            if (parts.length != 3 || parts[2].isEmpty()) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Timestamp timestamp = Timestamp.ofTimeSecondsAndNanos(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+            return new FirestoreCursor(timestamp, parts[2]);
+        } catch (IllegalArgumentException e) {
+            // Also covers bad Base64 and NumberFormatException
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public Object[] values() {
+        return new Object[] {timestamp, documentId};
+    }
+}
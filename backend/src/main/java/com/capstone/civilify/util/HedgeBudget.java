@@ -0,0 +1,57 @@
+package com.capstone.civilify.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps hedged (duplicate) requests to a fraction of primary traffic.
+ *
+ * Every primary request deposits {@code ratio} tokens, up to {@code maxTokens}; each hedge
+ * spends one. With a ratio of 0.1 at most about one request in ten is duplicated, so a
+ * slow dependency cannot be flooded with twice its normal load.
+ */
+public class HedgeBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong denied = new AtomicLong();
+
+    /**
+     * @param ratio     Hedges allowed per primary request (0..1)
+     * @param maxTokens Largest burst of hedges that can be saved up
+     */
+    public HedgeBudget(double ratio, double maxTokens) {
+        this.ratio = Math.max(0.0, ratio);
+        this.maxTokens = Math.max(1.0, maxTokens);
+    }
+
+    public synchronized void onRequest() {
+        requests.incrementAndGet();
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            granted.incrementAndGet();
+            return true;
+        }
+        denied.incrementAndGet();
+        return false;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ratio", ratio);
+        stats.put("tokens", tokens);
+        stats.put("requests", requests.get());
+        stats.put("hedgesGranted", granted.get());
+        stats.put("hedgesDenied", denied.get());
+        return stats;
+    }
+}
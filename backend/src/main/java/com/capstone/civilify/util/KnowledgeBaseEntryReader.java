@@ -0,0 +1,208 @@
+package com.capstone.civilify.util;
+
+import com.capstone.civilify.DTO.KnowledgeBaseEntry;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Reads KB entry objects straight off a Jackson token stream into {@link KnowledgeBaseEntry}.
+ *
+ * The KB returns the same entry shape from search, chat, listing, bulk and detail endpoints,
+ * with a few spelling variants (entry_id / entryId / id, snake and camel case URL fields).
+ * Every payload decoder goes through this one reader, so all endpoints map entries the same
+ * way and no intermediate {@code Map} is built per entry.
+ */
+public final class KnowledgeBaseEntryReader {
+
+    // URL fields in the order their values are listed on the entry (primary URL first)
+    private static final int PRIMARY_URL = 0;
+    private static final int PRIMARY_URL_CAMEL = 1;
+    private static final int SOURCE_URLS = 2;
+    private static final int SOURCE_URLS_CAMEL = 3;
+    private static final int SOURCE_URL = 4;
+    private static final int SOURCE_URL_CAMEL = 5;
+    private static final int URL = 6;
+    private static final int URLS = 7;
+    private static final int EXTERNAL_RELATIONS = 8;
+    private static final int URL_FIELDS = 9;
+
+    private KnowledgeBaseEntryReader() {}
+
+    /**
+     * Reads an array of entries; the parser is positioned on its START_ARRAY (or a null).
+     * Elements that are not objects are skipped.
+     */
+    public static List<KnowledgeBaseEntry> readArray(JsonParser p) throws IOException {
+        List<KnowledgeBaseEntry> entries = new ArrayList<>();
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return entries;
+        }
+        JsonToken token;
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                entries.add(read(p, false));
+            } else {
+                p.skipChildren();
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Reads one entry; the parser is positioned on its START_OBJECT.
+     *
+     * @param unwrap Detail responses may wrap the entry as {@code {"success": true, "entry": {...}}};
+     *               when set, a nested {@code entry} object is returned instead of the outer object
+     */
+    public static KnowledgeBaseEntry read(JsonParser p, boolean unwrap) throws IOException {
+        KnowledgeBaseEntry entry = new KnowledgeBaseEntry();
+        KnowledgeBaseEntry wrapped = null;
+        String entryId = null;
+        String entryIdCamel = null;
+        String id = null;
+        List<List<String>> urls = new ArrayList<>(URL_FIELDS);
+        for (int i = 0; i < URL_FIELDS; i++) {
+            urls.add(null);
+        }
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "entry" -> {
+                    if (unwrap && value == JsonToken.START_OBJECT) {
+                        wrapped = read(p, false);
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                case "entry_id" -> entryId = text(p);
+                case "entryId" -> entryIdCamel = text(p);
+                case "id" -> id = text(p);
+                case "type" -> entry.setType(text(p));
+                case "title" -> entry.setTitle(text(p));
+                case "canonical_citation" -> entry.setCanonicalCitation(text(p));
+                case "summary" -> entry.setSummary(text(p));
+                case "text" -> entry.setText(text(p));
+                case "rule_no" -> entry.setRuleNo(text(p));
+                case "section_no" -> entry.setSectionNo(text(p));
+                case "rights_scope" -> entry.setRightsScope(text(p));
+                case "tags" -> entry.setTags(value == JsonToken.START_ARRAY ? strings(p) : skip(p));
+                case "similarity" -> {
+                    if (value.isNumeric()) {
+                        entry.setSimilarity(p.getDoubleValue());
+                    }
+                }
+                case "primary_url" -> urls.set(PRIMARY_URL, urls(p, false));
+                case "primaryUrl" -> urls.set(PRIMARY_URL_CAMEL, urls(p, false));
+                case "source_urls" -> urls.set(SOURCE_URLS, urls(p, false));
+                case "sourceUrls" -> urls.set(SOURCE_URLS_CAMEL, urls(p, false));
+                case "source_url" -> urls.set(SOURCE_URL, urls(p, false));
+                case "sourceUrl" -> urls.set(SOURCE_URL_CAMEL, urls(p, false));
+                case "url" -> urls.set(URL, urls(p, false));
+                case "urls" -> urls.set(URLS, urls(p, true));
+                case "external_relations" -> urls.set(EXTERNAL_RELATIONS, value == JsonToken.START_ARRAY ? urls(p, true) : skip(p));
+                default -> p.skipChildren();
+            }
+        }
+        if (wrapped != null) {
+            return wrapped;
+        }
+
+        entry.setEntryId(firstNonBlank(entryId, entryIdCamel, id));
+        LinkedHashSet<String> sourceUrls = new LinkedHashSet<>();
+        for (List<String> field : urls) {
+            if (field != null) {
+                sourceUrls.addAll(field);
+            }
+        }
+        entry.setSourceUrls(new ArrayList<>(sourceUrls));
+        if (!sourceUrls.isEmpty()) {
+            entry.setPrimaryUrl(sourceUrls.iterator().next());
+        }
+        return entry;
+    }
+
+    private static String text(JsonParser p) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_STRING) {
+            return p.getText();
+        }
+        p.skipChildren();
+        return null;
+    }
+
+    private static List<String> strings(JsonParser p) throws IOException {
+        List<String> values = new ArrayList<>();
+        JsonToken token;
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.VALUE_STRING) {
+                values.add(p.getText());
+            } else {
+                p.skipChildren();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Valid URLs from a string, an array of strings or, when {@code objects} is set, an array
+     * of objects carrying a {@code url} field.
+     */
+    private static List<String> urls(JsonParser p, boolean objects) throws IOException {
+        List<String> values = new ArrayList<>();
+        JsonToken current = p.currentToken();
+        if (current == JsonToken.VALUE_STRING) {
+            addIfValid(values, p.getText());
+            return values;
+        }
+        if (current != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return values;
+        }
+        JsonToken token;
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.VALUE_STRING) {
+                addIfValid(values, p.getText());
+            } else if (token == JsonToken.START_OBJECT && objects) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    if (p.nextToken() == JsonToken.VALUE_STRING && "url".equals(field)) {
+                        addIfValid(values, p.getText());
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        return values;
+    }
+
+    private static void addIfValid(List<String> values, String url) {
+        String trimmed = url.trim();
+        if (!trimmed.isEmpty() && trimmed.startsWith("http")) {
+            values.add(trimmed);
+        }
+    }
+
+    private static <T> List<T> skip(JsonParser p) throws IOException {
+        p.skipChildren();
+        return null;
+    }
+
+    private static String firstNonBlank(String... values) {
+        for (String value : values) {
+            if (value != null && !value.isBlank()) {
+                return value.trim();
+            }
+        }
+        return null;
+    }
+}
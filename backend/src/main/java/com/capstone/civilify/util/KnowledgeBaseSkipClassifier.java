@@ -3,7 +3,9 @@ package com.capstone.civilify.util;
 import org.springframework.stereotype.Component;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Classifier to determine if a user query can be answered without Knowledge Base lookup.
@@ -13,6 +15,41 @@ import java.util.regex.Pattern;
 @Component
 public class KnowledgeBaseSkipClassifier {
 
+    /**
+     * What kind of turn a query is, in the order the classifier checks for it.
+     */
+    public enum Category {
+        EMPTY("Empty query", true),
+        CPA_REPORT("CPA report generation - KB required", false),
+        KB_REQUIRED("Requires specific legal provisions - KB required", false),
+        GREETING("Greeting", true),
+        FAREWELL("Farewell/Thank you", true),
+        IDENTITY("Identity/Capability question", true),
+        USAGE("Usage instruction question", true),
+        ACKNOWLEDGMENT("Simple acknowledgment", true),
+        META("Meta/Platform question", true),
+        LEGAL_SYSTEM_OVERVIEW("Legal system overview (general)", true),
+        NON_LEGAL("Non-legal question (redirect)", true),
+        SHORT_CONVERSATIONAL("Short conversational response", true),
+        STANDARD("Standard query - KB recommended", false);
+
+        private final String reason;
+        private final boolean skipsKnowledgeBase;
+
+        Category(String reason, boolean skipsKnowledgeBase) {
+            this.reason = reason;
+            this.skipsKnowledgeBase = skipsKnowledgeBase;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public boolean skipsKnowledgeBase() {
+            return skipsKnowledgeBase;
+        }
+    }
+
     // Greeting patterns
     private static final List<String> GREETING_PATTERNS = Arrays.asList(
         "hello", "hi", "hey", "good morning", "good afternoon", "good evening",
@@ -46,6 +83,11 @@ public class KnowledgeBaseSkipClassifier {
     );
 
     // Acknowledgment/affirmation patterns
+    // Words around a phrase that do not change what is asked
+    private static final Set<String> COURTESY_WORDS = Set.of(
+        "villy", "please", "pls", "po", "hi", "hello", "hey", "so", "um", "ok", "okay", "again"
+    );
+
     private static final List<String> ACKNOWLEDGMENT_PATTERNS = Arrays.asList(
         "okay", "ok", "got it", "i understand", "i see", "alright",
         "yes", "yeah", "yep", "no", "nope", "sure", "fine"
@@ -100,32 +142,66 @@ public class KnowledgeBaseSkipClassifier {
      * @return true if KB lookup can be skipped, false otherwise
      */
     public boolean canSkipKnowledgeBase(String query, String mode, boolean isReport) {
+        return classify(query, mode, isReport).skipsKnowledgeBase();
+    }
+
+    /**
+     * Classifies a query; the first matching category wins.
+     * 
+     * @param query The user's input message
+     * @param mode The chat mode ("A" for GLI, "B" for CPA)
+     * @param isReport Whether the query is triggering a report generation (CPA only)
+     */
+    public Category classify(String query, String mode, boolean isReport) {
         if (query == null || query.trim().isEmpty()) {
-            return true; // Skip KB for empty queries
+            return Category.EMPTY; // Skip KB for empty queries
         }
 
         String lowerQuery = query.toLowerCase().trim();
 
         // CPA report generation ALWAYS needs KB for citations
         if ("B".equals(mode) && isReport) {
-            return false;
+            return Category.CPA_REPORT;
         }
 
         // Check if query explicitly requires KB lookup (specific legal provisions)
         if (requiresKnowledgeBase(lowerQuery)) {
-            return false;
+            return Category.KB_REQUIRED;
         }
 
         // Check if query can be answered without KB
-        return isGreeting(lowerQuery)
-            || isFarewell(lowerQuery)
-            || isIdentityQuestion(lowerQuery)
-            || isUsageQuestion(lowerQuery)
-            || isAcknowledgment(lowerQuery)
-            || isMetaQuestion(lowerQuery)
-            || isLegalSystemOverview(lowerQuery)
-            || isNonLegalQuestion(lowerQuery)
-            || isShortConversationalResponse(lowerQuery);
+        if (isGreeting(lowerQuery)) return Category.GREETING;
+        if (isFarewell(lowerQuery)) return Category.FAREWELL;
+        if (isIdentityQuestion(lowerQuery)) return Category.IDENTITY;
+        if (isUsageQuestion(lowerQuery)) return Category.USAGE;
+        if (isAcknowledgment(lowerQuery)) return Category.ACKNOWLEDGMENT;
+        if (isMetaQuestion(lowerQuery)) return Category.META;
+        if (isLegalSystemOverview(lowerQuery)) return Category.LEGAL_SYSTEM_OVERVIEW;
+        if (isNonLegalQuestion(lowerQuery)) return Category.NON_LEGAL;
+        if (isShortConversationalResponse(lowerQuery)) return Category.SHORT_CONVERSATIONAL;
+
+        return Category.STANDARD;
+    }
+
+    /**
+     * Whether the query is nothing but one of the category's phrases, give or take courtesy
+     * words and punctuation: "who are you, Villy?" is, "how can you help with my annulment" is
+     * not. Only identity, usage and meta questions have phrases; other categories never match.
+     */
+    public static boolean isOnlyPhrase(String query, Category category) {
+        List<String> phrases = switch (category) {
+            case IDENTITY -> IDENTITY_PATTERNS;
+            case USAGE -> USAGE_PATTERNS;
+            case META -> META_PATTERNS;
+            default -> List.of();
+        };
+        if (query == null || phrases.isEmpty()) {
+            return false;
+        }
+        String words = Arrays.stream(query.toLowerCase().split("[^\\p{L}\\p{N}']+"))
+            .filter(word -> !word.isEmpty() && !COURTESY_WORDS.contains(word))
+            .collect(Collectors.joining(" "));
+        return phrases.contains(words);
     }
 
     /**
@@ -232,31 +308,6 @@ public class KnowledgeBaseSkipClassifier {
      * Gets a classification reason for logging purposes.
      */
     public String getClassificationReason(String query, String mode, boolean isReport) {
-        if (query == null || query.trim().isEmpty()) {
-            return "Empty query";
-        }
-
-        String lowerQuery = query.toLowerCase().trim();
-
-        if ("B".equals(mode) && isReport) {
-            return "CPA report generation - KB required";
-        }
-
-        if (requiresKnowledgeBase(lowerQuery)) {
-            return "Requires specific legal provisions - KB required";
-        }
-
-        if (isGreeting(lowerQuery)) return "Greeting";
-        if (isFarewell(lowerQuery)) return "Farewell/Thank you";
-        if (isIdentityQuestion(lowerQuery)) return "Identity/Capability question";
-        if (isUsageQuestion(lowerQuery)) return "Usage instruction question";
-        if (isAcknowledgment(lowerQuery)) return "Simple acknowledgment";
-        if (isMetaQuestion(lowerQuery)) return "Meta/Platform question";
-        if (isLegalSystemOverview(lowerQuery)) return "Legal system overview (general)";
-        if (isNonLegalQuestion(lowerQuery)) return "Non-legal question (redirect)";
-        if (isShortConversationalResponse(lowerQuery)) return "Short conversational response";
-
-        return "Standard query - KB recommended";
+        return classify(query, mode, isReport).getReason();
     }
 }
-
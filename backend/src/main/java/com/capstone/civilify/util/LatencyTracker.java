@@ -0,0 +1,90 @@
+package com.capstone.civilify.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rolling latency samples for one outbound dependency.
+ *
+ * Keeps the most recent {@code capacity} samples in a ring buffer and answers percentile
+ * queries over them, so hedging delays and timeouts can follow what the dependency is
+ * doing now rather than a fixed guess. With a maximum age, samples older than that are
+ * left out, so a dependency that is rarely called is not judged on how it behaved long ago.
+ */
+public class LatencyTracker {
+
+    private final String name;
+    private final long[] samples;
+    private final long[] recordedAt;
+    private final long maxAgeMs;
+    private int next;
+    private int count;
+
+    public LatencyTracker(String name, int capacity) {
+        this(name, capacity, 0L);
+    }
+
+    /**
+     * @param maxAgeMs Samples older than this are ignored; 0 keeps them until overwritten
+     */
+    public LatencyTracker(String name, int capacity, long maxAgeMs) {
+        this.name = name;
+        this.samples = new long[Math.max(1, capacity)];
+        this.recordedAt = new long[samples.length];
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    public synchronized void record(long latencyMs) {
+        samples[next] = Math.max(0L, latencyMs);
+        recordedAt[next] = System.currentTimeMillis();
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    public synchronized int count() {
+        return current().length;
+    }
+
+    /**
+     * @param percentile Value between 0 and 1 (e.g. 0.95)
+     * @return The latency at that percentile, or -1 when there are no samples yet
+     */
+    public synchronized long percentile(double percentile) {
+        long[] sorted = current();
+        if (sorted.length == 0) {
+            return -1L;
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(Math.min(1.0, Math.max(0.0, percentile)) * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    // Samples within the maximum age; caller holds the monitor
+    private long[] current() {
+        if (maxAgeMs <= 0) {
+            return Arrays.copyOf(samples, count);
+        }
+        long cutoff = System.currentTimeMillis() - maxAgeMs;
+        long[] current = new long[count];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (recordedAt[i] >= cutoff) {
+                current[kept++] = samples[i];
+            }
+        }
+        return Arrays.copyOf(current, kept);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("samples", count());
+        stats.put("p50Ms", percentile(0.50));
+        stats.put("p95Ms", percentile(0.95));
+        stats.put("p99Ms", percentile(0.99));
+        return stats;
+    }
+}
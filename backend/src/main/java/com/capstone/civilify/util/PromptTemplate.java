@@ -0,0 +1,125 @@
+package com.capstone.civilify.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A prompt compiled once into static text and named slots.
+ *
+ * Source text may include other templates with {@code {{> name}}} (expanded at compile time)
+ * and mark per-request values with {@code {{slot}}}. Compiling flattens the includes and
+ * merges adjacent literals, so rendering is a single pass into a buffer sized for the final
+ * prompt. A template without slots renders to the same precompiled string every time.
+ */
+public final class PromptTemplate {
+
+    private static final Pattern TAG = Pattern.compile("\\{\\{\\s*(>\\s*)?([\\w.-]+)\\s*}}");
+
+    // Guards against include cycles
+    private static final int MAX_INCLUDE_DEPTH = 8;
+
+    private final String name;
+    // literals.length == slots.length + 1; slot i sits between literals i and i + 1
+    private final String[] literals;
+    private final String[] slots;
+    private final int staticLength;
+    private final String staticText;
+
+    private PromptTemplate(String name, List<String> literals, List<String> slots) {
+        this.name = name;
+        this.literals = literals.toArray(new String[0]);
+        this.slots = slots.toArray(new String[0]);
+        int length = 0;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.staticLength = length;
+        this.staticText = this.slots.length == 0 ? this.literals[0] : null;
+    }
+
+    /**
+     * @param name     Template name, used in error messages
+     * @param source   Template text
+     * @param includes Resolves {@code {{> name}}} to the included template's source
+     */
+    public static PromptTemplate compile(String name, String source, Function<String, String> includes) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        expand(name, source, includes, 0, literal, literals, slots);
+        literals.add(literal.toString());
+        return new PromptTemplate(name, literals, slots);
+    }
+
+    private static void expand(String name, String source, Function<String, String> includes, int depth,
+                               StringBuilder literal, List<String> literals, List<String> slots) {
+        if (depth > MAX_INCLUDE_DEPTH) {
+            throw new IllegalArgumentException("Prompt template '" + name + "' includes too deeply (cycle?)");
+        }
+        Matcher matcher = TAG.matcher(source);
+        int last = 0;
+        while (matcher.find()) {
+            literal.append(source, last, matcher.start());
+            String tag = matcher.group(2);
+            if (matcher.group(1) != null) {
+                String included = includes.apply(tag);
+                if (included == null) {
+                    throw new IllegalArgumentException("Prompt template '" + name + "' includes unknown template '" + tag + "'");
+                }
+                expand(tag, included, includes, depth + 1, literal, literals, slots);
+            } else {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                slots.add(tag);
+            }
+            last = matcher.end();
+        }
+        literal.append(source, last, source.length());
+    }
+
+    /**
+     * Fills the slots; missing values render as empty.
+     */
+    public String render(Map<String, String> values) {
+        if (staticText != null) {
+            return staticText;
+        }
+        String[] filled = new String[slots.length];
+        int length = staticLength;
+        for (int i = 0; i < slots.length; i++) {
+            String value = values != null ? values.get(slots[i]) : null;
+            filled[i] = value != null ? value : "";
+            length += filled[i].length();
+        }
+        StringBuilder prompt = new StringBuilder(length);
+        prompt.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            prompt.append(filled[i]).append(literals[i + 1]);
+        }
+        return prompt.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getSlots() {
+        return List.of(slots);
+    }
+
+    /**
+     * Characters before the first slot: the part of every rendered prompt that is identical
+     * across requests.
+     */
+    public int getStaticPrefixLength() {
+        return literals[0].length();
+    }
+
+    public int getStaticLength() {
+        return staticLength;
+    }
+}
@@ -0,0 +1,73 @@
+package com.capstone.civilify.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into one execution.
+ *
+ * The first caller (the leader) schedules the loader on the given executor; every caller
+ * that arrives while it is running receives a view of the same future instead of blocking
+ * a thread on a lock. The key is only released after the shared future has completed,
+ * so late arrivals can never start a duplicate upstream call. Failures are delivered to
+ * every waiter.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Run the loader for the key unless a call for it is already in flight.
+     *
+     * @return A future that completes with the loader's result; cancelling it does not
+     *         affect other waiters
+     */
+    public CompletableFuture<V> execute(K key, Supplier<V> loader, Executor executor) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing.copy();
+        }
+        leaders.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(loader.get());
+                } catch (Throwable t) {
+                    created.completeExceptionally(t);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created.copy();
+    }
+
+    public boolean isInFlight(K key) {
+        return inFlight.containsKey(key);
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.size());
+        stats.put("leaders", leaders.get());
+        stats.put("coalesced", coalesced.get());
+        return stats;
+    }
+}
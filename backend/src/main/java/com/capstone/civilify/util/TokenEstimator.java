@@ -0,0 +1,88 @@
+package com.capstone.civilify.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process token counter for OpenAI chat prompts.
+ *
+ * Splits text the way the GPT byte-pair tokenizers pre-tokenize it (contractions, letter runs
+ * with their leading space, digit groups of up to three, punctuation runs, whitespace) and
+ * charges each piece by length: short words are one token, longer words roughly one token
+ * per four characters. This is an estimate, not an exact count, but it is close enough to
+ * budget a prompt without a network call or a vocabulary file.
+ */
+public final class TokenEstimator {
+
+    // Same split as the cl100k/o200k pre-tokenizer, without the Unicode category subtleties
+    private static final Pattern PIECES = Pattern.compile(
+        "'(?:s|t|re|ve|m|ll|d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s+",
+        Pattern.CASE_INSENSITIVE
+    );
+
+    // Words up to this length are usually a single vocabulary entry
+    private static final int SINGLE_TOKEN_WORD = 7;
+
+    // Longer words split into pieces of about this many characters
+    private static final double CHARS_PER_TOKEN = 4.0;
+
+    // Per-message framing added by the chat format (role, separators)
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    // Every reply is primed with <|start|>assistant<|message|>
+    private static final int REPLY_PRIMING = 3;
+
+    private TokenEstimator() {}
+
+    /**
+     * Estimated token count of a piece of text.
+     */
+    public static int count(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        Matcher matcher = PIECES.matcher(text);
+        while (matcher.find()) {
+            String piece = matcher.group();
+            if (piece.isBlank()) {
+                // Runs of whitespace merge into one token; newlines mostly pair up
+                tokens += piece.indexOf('\n') >= 0 ? Math.max(1, (piece.length() + 1) / 2) : 1;
+            } else {
+                String core = piece.strip();
+                if (Character.isLetter(core.charAt(core.length() - 1))) {
+                    tokens += core.length() <= SINGLE_TOKEN_WORD ? 1 : (int) Math.ceil(core.length() / CHARS_PER_TOKEN);
+                } else if (Character.isDigit(core.charAt(0))) {
+                    tokens += 1;
+                } else {
+                    // Punctuation and markdown runs: pairs such as "**" or ".\n" are usually one token
+                    tokens += Math.max(1, (core.length() + 1) / 2);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Estimated tokens of one chat message including its framing.
+     */
+    public static int countMessage(String content) {
+        return count(content) + MESSAGE_OVERHEAD;
+    }
+
+    /**
+     * Estimated prompt tokens of a full chat request: system prompt, history in the
+     * {@code content}/{@code isUserMessage} shape, the new user message and reply priming.
+     */
+    public static int countPrompt(String systemPrompt, List<Map<String, String>> history, String userMessage) {
+        int tokens = countMessage(systemPrompt) + countMessage(userMessage) + REPLY_PRIMING;
+        if (history != null) {
+            for (Map<String, String> message : history) {
+                tokens += countMessage(message.get("content"));
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,50 @@
+package com.capstone.civilify.DTO;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OpenAIChatCompletionTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void readsTheFirstChoiceMessage() throws Exception {
+        String json = """
+            {"id": "chatcmpl-1", "object": "chat.completion",
+             "choices": [
+               {"index": 0, "message": {"role": "assistant", "content": "Bail is security.", "refusal": null}, "finish_reason": "stop"},
+               {"index": 1, "message": {"role": "assistant", "content": "Second choice"}}
+             ],
+             "usage": {"prompt_tokens": 10, "completion_tokens": 4}}
+            """;
+
+        assertEquals("Bail is security.", mapper.readValue(json, OpenAIChatCompletion.class).content());
+    }
+
+    @Test
+    void readsAStreamedDelta() throws Exception {
+        String json = "{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Ba\"},\"finish_reason\":null}]}";
+
+        assertEquals("Ba", mapper.readValue(json, OpenAIChatCompletion.class).content());
+    }
+
+    @Test
+    void keepsAnEmptyContentString() throws Exception {
+        String json = "{\"choices\":[{\"delta\":{\"role\":\"assistant\",\"content\":\"\"}}]}";
+
+        assertEquals("", mapper.readValue(json, OpenAIChatCompletion.class).content());
+    }
+
+    @Test
+    void returnsNullWhenNoContentStringIsPresent() throws Exception {
+        assertNull(mapper.readValue("{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":null}}]}",
+            OpenAIChatCompletion.class).content());
+        assertNull(mapper.readValue("{\"choices\":[{\"delta\":{},\"finish_reason\":\"stop\"}]}",
+            OpenAIChatCompletion.class).content());
+        assertNull(mapper.readValue("{\"choices\":[]}", OpenAIChatCompletion.class).content());
+        assertNull(mapper.readValue("{\"error\":{\"message\":\"bad\"}}", OpenAIChatCompletion.class).content());
+    }
+}
@@ -0,0 +1,79 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.util.KnowledgeBaseSkipClassifier;
+import com.capstone.civilify.util.KnowledgeBaseSkipClassifier.Category;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CannedResponseEngineTest {
+
+    private final KnowledgeBaseSkipClassifier classifier = new KnowledgeBaseSkipClassifier();
+    private CannedResponseEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new CannedResponseEngine();
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "maxWords", 8);
+        ReflectionTestUtils.invokeMethod(engine, "init");
+    }
+
+    @Test
+    void answersBareSmallTalkLocally() {
+        assertNotNull(respond("Hi Villy!", "A"));
+        assertNotNull(respond("Who are you?", "A"));
+        assertNotNull(respond("how can you help, villy?", "B"));
+        assertNotNull(respond("How to use?", "A"));
+        assertNotNull(respond("Is this free?", "A"));
+    }
+
+    @Test
+    void sendsLegalQuestionsThatContainAPhraseToTheModel() {
+        assertEquals(Category.USAGE, classify("how to use a special power of attorney"));
+        assertNull(respond("how to use a special power of attorney", "A"));
+        assertEquals(Category.USAGE, classify("what are the instructions for filing an appeal"));
+        assertNull(respond("what are the instructions for filing an appeal", "A"));
+        assertEquals(Category.IDENTITY, classify("how can you help with my annulment"));
+        assertNull(respond("how can you help with my annulment", "B"));
+        assertNull(respond("is this free if my employer withheld 5000 pesos", "A"));
+        assertNull(respond("hi, my landlord kept my deposit", "A"));
+    }
+
+    @Test
+    void farewellDoesNotAssumeTheUserSaidThanks() {
+        String gli = respond("bye", "A");
+        String cpa = respond("bye", "B");
+
+        assertNotNull(gli);
+        assertNotNull(cpa);
+        assertFalse(gli.contains("welcome"), gli);
+        assertFalse(cpa.contains("welcome"), cpa);
+    }
+
+    @Test
+    void greetsByFirstNameUnlessItIsAPlaceholder() {
+        assertTrue(engine.respond("hello", "A", Category.GREETING, "maria clara").contains("Maria"));
+        assertFalse(engine.respond("hello", "A", Category.GREETING, "guest").contains("Guest"));
+    }
+
+    @Test
+    void leavesOtherCategoriesToTheModel() {
+        assertNull(engine.respond("what is estafa", "A", Category.STANDARD, null));
+        assertNull(engine.respond("okay", "A", Category.ACKNOWLEDGMENT, null));
+    }
+
+    private Category classify(String message) {
+        return classifier.classify(message, "A", false);
+    }
+
+    private String respond(String message, String mode) {
+        return engine.respond(message, mode, classifier.classify(message, mode, false), null);
+    }
+}
@@ -0,0 +1,201 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.model.ChatMessage;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatWriteBehindQueueTest {
+
+    private final Firestore db = mock(Firestore.class, RETURNS_DEEP_STUBS);
+    // Messages set on a batch, in call order, and the futures later commits return
+    private final List<ChatMessage> written = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<ApiFuture<List<WriteResult>>> commits = new ConcurrentLinkedQueue<>();
+    private ChatWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        WriteBatch batch = mock(WriteBatch.class);
+        when(db.batch()).thenReturn(batch);
+        doAnswer(invocation -> {
+            written.add(invocation.getArgument(1));
+            return batch;
+        }).when(batch).set(any(DocumentReference.class), any(ChatMessage.class));
+        when(batch.commit()).thenAnswer(invocation -> {
+            ApiFuture<List<WriteResult>> next = commits.poll();
+            return next != null ? next : ApiFutures.immediateFuture(List.of());
+        });
+        // After a failed commit the writer looks the conversation up again
+        DocumentSnapshot conversation = mock(DocumentSnapshot.class);
+        when(conversation.exists()).thenReturn(true);
+        when(conversation.getId()).thenReturn("c1");
+        when(conversation.getString("title")).thenReturn("Titled");
+        when(db.getAll(any(DocumentReference[].class))).thenReturn(ApiFutures.immediateFuture(List.of(conversation)));
+
+        queue = new ChatWriteBehindQueue() {
+            @Override
+            Firestore firestore() {
+                return db;
+            }
+        };
+        ReflectionTestUtils.setField(queue, "enabled", true);
+        ReflectionTestUtils.setField(queue, "queueCapacity", 100);
+        ReflectionTestUtils.setField(queue, "enqueueTimeoutMs", 50L);
+        ReflectionTestUtils.setField(queue, "maxBatch", 2);
+        ReflectionTestUtils.setField(queue, "lingerMs", 0L);
+        ReflectionTestUtils.setField(queue, "maxAttempts", 1);
+        ReflectionTestUtils.setField(queue, "deadLetterCapacity", 100);
+        ReflectionTestUtils.setField(queue, "deadLetterRetryMs", 20L);
+        ReflectionTestUtils.setField(queue, "shutdownTimeoutMs", 2_000L);
+        ReflectionTestUtils.invokeMethod(queue, "init");
+        queue.rememberConversation("c1", "Titled");
+        queue.rememberConversation("c2", "Titled");
+    }
+
+    @AfterEach
+    void tearDown() {
+        commits.forEach(future -> {
+            if (future instanceof SettableApiFuture<List<WriteResult>> pending) {
+                pending.set(List.of());
+            }
+        });
+        ReflectionTestUtils.invokeMethod(queue, "flushOnShutdown");
+    }
+
+    @Test
+    void writesMessagesInSubmitOrderAcrossBatches() throws Exception {
+        List<ChatMessage> messages = List.of(
+            message("1", "c1"), message("2", "c2"), message("3", "c1"), message("4", "c1"), message("5", "c2"));
+        for (ChatMessage message : messages) {
+            queue.submit(message);
+        }
+
+        await(() -> stat("committed") == 5L);
+        assertEquals(messages, written);
+        assertTrue(queue.pendingMessages("c1").isEmpty());
+    }
+
+    @Test
+    void keepsUncommittedMessagesPending() throws Exception {
+        SettableApiFuture<List<WriteResult>> commit = SettableApiFuture.create();
+        commits.add(commit);
+        ChatMessage first = message("1", "c1");
+        ChatMessage second = message("2", "c1");
+
+        queue.submit(first);
+        queue.submit(second);
+
+        assertEquals(List.of(first, second), queue.pendingMessages("c1"));
+        commit.set(List.of());
+        await(() -> queue.pendingMessages("c1").isEmpty());
+    }
+
+    @Test
+    void forgetWaitsForTheBatchBeingCommittedAndDropsLaterMessages() throws Exception {
+        SettableApiFuture<List<WriteResult>> commit = SettableApiFuture.create();
+        commits.add(commit);
+        queue.submit(message("1", "c1"));
+        await(() -> written.size() == 1);
+
+        CompletableFuture<Void> forget = CompletableFuture.runAsync(() -> {
+            try {
+                queue.forgetConversation("c1");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(forget.isDone(), "forget must wait for the in-flight batch");
+
+        commit.set(List.of());
+        forget.get(2, TimeUnit.SECONDS);
+        queue.submit(message("2", "c1"));
+        queue.submit(message("3", "c2"));
+
+        await(() -> stat("droppedForDeletedConversations") == 1L && stat("committed") == 2L);
+        assertEquals(List.of("1", "3"), written.stream().map(ChatMessage::getId).toList());
+        assertTrue(queue.pendingMessages("c1").isEmpty());
+    }
+
+    @Test
+    void keepsFailedBatchesAsDeadLettersAndRetriesThem() throws Exception {
+        commits.add(ApiFutures.immediateFailedFuture(new IllegalStateException("unavailable")));
+        ChatMessage message = message("1", "c1");
+
+        queue.submit(message);
+
+        await(() -> stat("deadLettered") == 1L);
+        await(() -> stat("committed") == 1L);
+        assertEquals(0L, stat("deadLetters"));
+        assertEquals(0L, stat("failed"));
+        assertTrue(queue.pendingMessages("c1").isEmpty());
+    }
+
+    @Test
+    void rejectsInsteadOfWritingAheadWhenTheQueueIsFull() throws Exception {
+        ReflectionTestUtils.invokeMethod(queue, "flushOnShutdown");
+        ReflectionTestUtils.setField(queue, "queueCapacity", 1);
+        ReflectionTestUtils.invokeMethod(queue, "init");
+        queue.rememberConversation("c1", "Titled");
+        SettableApiFuture<List<WriteResult>> commit = SettableApiFuture.create();
+        commits.add(commit);
+
+        queue.submit(message("1", "c1"));
+        await(() -> written.size() == 1);
+        queue.submit(message("2", "c1"));
+        ChatMessage third = message("3", "c1");
+
+        assertThrows(ChatWriteBehindQueue.WriteRejectedException.class, () -> queue.submit(third));
+        assertFalse(queue.pendingMessages("c1").contains(third));
+        assertEquals(1L, stat("rejected"));
+
+        commit.set(List.of());
+        await(() -> stat("committed") == 2L);
+        assertEquals(List.of("1", "2"), written.stream().map(ChatMessage::getId).toList());
+    }
+
+    private static ChatMessage message(String id, String conversationId) {
+        return new ChatMessage(id, "user", "user@example.com", "message " + id, true, new Date(), conversationId);
+    }
+
+    private long stat(String name) {
+        Map<String, Object> stats = queue.stats();
+        return ((Number) stats.get(name)).longValue();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.capstone.civilify.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.WriteResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversationDeletionServiceTest {
+
+    private static final String USER = "user@example.com";
+
+    private ConversationDeletionService service;
+    private ChatService chatService;
+    private Firestore db;
+    private BulkWriter writer;
+    private Query conversations;
+
+    @BeforeEach
+    void setUp() {
+        chatService = mock(ChatService.class);
+        db = mock(Firestore.class, RETURNS_DEEP_STUBS);
+        writer = mock(BulkWriter.class);
+        conversations = mock(Query.class);
+        when(db.bulkWriter()).thenReturn(writer);
+        when(db.collection("conversations").whereEqualTo("userEmail", USER).select("createdAt")
+            .orderBy(FieldPath.documentId()).limit(200)).thenReturn(conversations);
+
+        service = new ConversationDeletionService() {
+            @Override
+            Firestore firestore() {
+                return db;
+            }
+        };
+        ReflectionTestUtils.setField(service, "chatService", chatService);
+        ReflectionTestUtils.setField(service, "parallelism", 2);
+        ReflectionTestUtils.setField(service, "pageSize", 200);
+        ReflectionTestUtils.setField(service, "maxConcurrentJobs", 1);
+        ReflectionTestUtils.setField(service, "jobRetentionSeconds", 3600);
+        ReflectionTestUtils.invokeMethod(service, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(service, "shutdown");
+    }
+
+    @Test
+    void deletesEveryConversationButTheExcludedOneAndFlushesOnce() throws Exception {
+        listConversations("conv-1", "conv-2", "keep");
+        when(chatService.deleteConversationTree(eq(writer), anyString(), eq(200)))
+            .thenReturn(List.of(done(), done(), done()));
+
+        ConversationDeletionService.Job job = finished(service.deleteUserConversations(USER, "keep"));
+
+        assertEquals(ConversationDeletionService.Status.COMPLETED, job.getStatus());
+        Map<String, Object> status = service.getJob(job.getJobId()).toMap();
+        assertEquals("completed", status.get("status"));
+        assertEquals(2, status.get("conversationsFound"));
+        assertEquals(2, status.get("conversationsDeleted"));
+        assertEquals(4L, status.get("messagesDeleted"));
+        assertEquals(0L, status.get("failedDeletes"));
+        assertNull(status.get("error"));
+        verify(chatService, never()).deleteConversationTree(writer, "keep", 200);
+        verify(writer, times(1)).close();
+        assertEquals(1L, service.stats().get("jobsCompleted"));
+    }
+
+    @Test
+    void failedDeletesFailTheJobAfterTheWriterIsFlushed() throws Exception {
+        listConversations("conv-1");
+        when(chatService.deleteConversationTree(writer, "conv-1", 200))
+            .thenReturn(List.of(done(), ApiFutures.immediateFailedFuture(new IllegalStateException("denied"))));
+
+        ConversationDeletionService.Job job = finished(service.deleteUserConversations(USER, null));
+
+        Map<String, Object> status = service.getJob(job.getJobId()).toMap();
+        assertEquals("failed", status.get("status"));
+        assertEquals("1 deletes failed", status.get("error"));
+        assertEquals(0, status.get("conversationsDeleted"));
+        assertEquals(1L, status.get("messagesDeleted"));
+        verify(writer, times(1)).close();
+        assertEquals(1L, service.stats().get("jobsFailed"));
+    }
+
+    @Test
+    void aFailedListingStillFlushesTheQueuedDeletes() throws Exception {
+        when(conversations.get()).thenReturn(ApiFutures.immediateFailedFuture(new IllegalStateException("unavailable")));
+
+        ConversationDeletionService.Job job = finished(service.deleteUserConversations(USER, null));
+
+        assertEquals(ConversationDeletionService.Status.FAILED, job.getStatus());
+        assertEquals("java.lang.IllegalStateException: unavailable", job.toMap().get("error"));
+        verify(writer, times(1)).close();
+    }
+
+    @Test
+    void aFailedFlushFailsTheJob() throws Exception {
+        listConversations("conv-1");
+        when(chatService.deleteConversationTree(writer, "conv-1", 200)).thenReturn(List.of(done()));
+        doThrow(new ExecutionException(new IllegalStateException("deadline exceeded"))).when(writer).close();
+
+        ConversationDeletionService.Job job = finished(service.deleteUserConversations(USER, null));
+
+        assertEquals(ConversationDeletionService.Status.FAILED, job.getStatus());
+        assertEquals("could not flush deletes", job.toMap().get("error"));
+    }
+
+    @Test
+    void looksUpJobsById() throws Exception {
+        listConversations();
+
+        ConversationDeletionService.Job job = finished(service.deleteUserConversations(USER, null));
+
+        assertSame(job, service.getJob(job.getJobId()));
+        assertEquals("completed", service.getJob(job.getJobId()).toMap().get("status"));
+        assertNull(service.getJob("unknown-job"));
+        verify(chatService, never()).deleteConversationTree(eq(writer), anyString(), anyInt());
+    }
+
+    private void listConversations(String... ids) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        List<QueryDocumentSnapshot> documents = new ArrayList<>();
+        for (String id : ids) {
+            QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+            when(document.getId()).thenReturn(id);
+            documents.add(document);
+        }
+        when(snapshot.getDocuments()).thenReturn(documents);
+        when(conversations.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+    }
+
+    private static ApiFuture<WriteResult> done() {
+        return ApiFutures.immediateFuture(mock(WriteResult.class));
+    }
+
+    // Waits until every started job has been counted as completed or failed
+    private ConversationDeletionService.Job finished(ConversationDeletionService.Job job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline && stat("jobsCompleted") + stat("jobsFailed") < stat("jobsStarted")) {
+            Thread.sleep(10);
+        }
+        return job;
+    }
+
+    private long stat(String name) {
+        return ((Number) service.stats().get(name)).longValue();
+    }
+}
@@ -0,0 +1,140 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.model.ChatConversation;
+import com.capstone.civilify.model.ChatMessage;
+import com.capstone.civilify.service.ConversationHistoryCache.Snapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversationHistoryCacheTest {
+
+    private final ExecutorService threads = Executors.newFixedThreadPool(2);
+    private ConversationHistoryCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ConversationHistoryCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxConversations", 1000);
+        ReflectionTestUtils.setField(cache, "maxMessages", 3);
+        ReflectionTestUtils.setField(cache, "idleTtlSeconds", 600);
+        ReflectionTestUtils.invokeMethod(cache, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    void appendsToALoadedConversationAndKeepsTheLatestMessages() {
+        cache.load(cache.beginLoad("c1"), conversation("c1", ""), List.of(message("1", "c1"), message("2", "c1")), 4);
+
+        cache.append(message("3", "c1"));
+        cache.append(message("4", "c1"));
+
+        Snapshot snapshot = cache.get("c1");
+        assertEquals(List.of("2", "3", "4"), ids(snapshot));
+        assertEquals(5, snapshot.earlierMessages());
+        assertFalse(snapshot.isComplete());
+        assertEquals("message 3", snapshot.conversation().getTitle());
+    }
+
+    @Test
+    void discardsALoadThatRacedWithAnAppend() {
+        long version = cache.beginLoad("c1");
+        cache.append(message("1", "c1"));
+
+        cache.load(version, conversation("c1", "Title"), List.of(), 0);
+
+        assertNull(cache.get("c1"));
+        assertEquals(1L, cache.stats().get("discardedLoads"));
+    }
+
+    @Test
+    void discardsALoadThatRacedWithAnInvalidation() {
+        long version = cache.beginLoad("c1");
+        cache.invalidate("c1");
+
+        cache.load(version, conversation("c1", "Title"), List.of(), 0);
+
+        assertNull(cache.get("c1"));
+    }
+
+    @Test
+    void neverCachesAHistoryMissingAConcurrentAppend() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            String conversationId = "race-" + i;
+            ChatMessage appended = message("m" + i, conversationId);
+            CountDownLatch start = new CountDownLatch(1);
+            // The read from Firestore starts, and misses the message, before the append
+            long version = cache.beginLoad(conversationId);
+            Future<?> load = threads.submit(() -> {
+                await(start);
+                cache.load(version, conversation(conversationId, "Title"), List.of(), 0);
+            });
+            Future<?> append = threads.submit(() -> {
+                await(start);
+                cache.append(appended);
+            });
+            start.countDown();
+            load.get(2, TimeUnit.SECONDS);
+            append.get(2, TimeUnit.SECONDS);
+
+            Snapshot snapshot = cache.get(conversationId);
+            if (snapshot != null) {
+                assertTrue(snapshot.messages().contains(appended), "cached history lost an append in round " + i);
+            }
+        }
+    }
+
+    @Test
+    void returnsCopiesOfTheConversation() {
+        cache.load(cache.beginLoad("c1"), conversation("c1", "Title"), List.of(), 0);
+
+        Snapshot snapshot = cache.get("c1");
+        assertNotNull(snapshot);
+        snapshot.conversation().setTitle("Changed");
+
+        assertEquals("Title", cache.get("c1").conversation().getTitle());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ChatConversation conversation(String id, String title) {
+        return new ChatConversation(id, "user", "user@example.com", title, new Date(), new Date(), "active");
+    }
+
+    private static ChatMessage message(String id, String conversationId) {
+        return new ChatMessage(id, "user", "user@example.com", "message " + id, true, new Date(), conversationId);
+    }
+
+    private static List<String> ids(Snapshot snapshot) {
+        List<String> ids = new ArrayList<>();
+        snapshot.messages().forEach(message -> ids.add(message.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,56 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.DTO.KnowledgeBaseEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+class GliAnswerCacheTest {
+
+    private static final List<KnowledgeBaseEntry> SOURCES = List.of(
+        new KnowledgeBaseEntry("fc-art-195", "statute", "Support between spouses"));
+
+    private GliAnswerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new GliAnswerCache();
+        ReflectionTestUtils.setField(cache, "knowledgeBaseService", mock(KnowledgeBaseService.class));
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 3600);
+        // The shipped default of openai.answer-cache.similarity-threshold
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.85);
+        ReflectionTestUtils.invokeMethod(cache, "init");
+    }
+
+    @Test
+    void servesRewordingsOfTheSameQuestion() {
+        cache.store("What is bail?", SOURCES, "Bail is security given for release.");
+
+        assertEquals("Bail is security given for release.", cache.lookup("what's bail", SOURCES));
+        assertEquals("Bail is security given for release.", cache.lookup("bail - what is it", SOURCES));
+    }
+
+    @Test
+    void doesNotServeAQuestionWithTheRolesSwapped() {
+        cache.store("Can a wife sue her husband for support?", SOURCES, "Yes, under Article 195.");
+
+        assertNull(cache.lookup("Can a husband sue his wife for support?", SOURCES));
+        assertNull(cache.lookup("can husband sue wife for support", SOURCES));
+        assertEquals("Yes, under Article 195.", cache.lookup("can wife sue husband for support", SOURCES));
+    }
+
+    @Test
+    void onlyServesAnswersGroundedOnTheSameSources() {
+        cache.store("What is bail?", SOURCES, "Bail is security given for release.");
+
+        assertNull(cache.lookup("What is bail?", List.of(new KnowledgeBaseEntry("roc-114", "rule", "Bail"))));
+    }
+}
@@ -0,0 +1,167 @@
+package com.capstone.civilify.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KnowledgeBaseAuthNegotiatorTest {
+
+    private KnowledgeBaseAuthNegotiator negotiator;
+
+    @BeforeEach
+    void setUp() {
+        negotiator = new KnowledgeBaseAuthNegotiator();
+        ReflectionTestUtils.setField(negotiator, "knowledgeBaseApiKey", "a-shared-secret-long-enough-for-hs256-signing");
+        ReflectionTestUtils.setField(negotiator, "failureCooldownMs", 60_000L);
+    }
+
+    @Test
+    void negotiatesOnceAndRemembersTheAcceptedVariant() {
+        AtomicInteger calls = new AtomicInteger();
+        Function<HttpHeaders, String> call = acceptingApiKey(calls);
+
+        assertEquals("ok", negotiator.execute(call));
+        assertEquals(3, calls.get());
+        assertEquals(KnowledgeBaseAuthNegotiator.Variant.X_API_KEY, negotiator.getPreferredVariant());
+
+        assertEquals("ok", negotiator.execute(call));
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void remembersTotalRejectionForTheCooldown() {
+        AtomicInteger calls = new AtomicInteger();
+        Function<HttpHeaders, String> call = headers -> {
+            calls.incrementAndGet();
+            throw unauthorized();
+        };
+
+        assertThrows(HttpClientErrorException.Unauthorized.class, () -> negotiator.execute(call));
+        assertEquals(3, calls.get());
+
+        assertThrows(HttpClientErrorException.Unauthorized.class, () -> negotiator.execute(call));
+        assertEquals(3, calls.get());
+        assertEquals(1L, negotiator.stats().get("cooldownRejections"));
+    }
+
+    @Test
+    void concurrentCallersWaitForOneNegotiation() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch probing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<HttpHeaders, String> slowProbe = headers -> {
+            if (headers.containsKey("x-api-key") && probing.getCount() > 0) {
+                probing.countDown();
+                await(release);
+            }
+            return acceptingApiKey(calls).apply(headers);
+        };
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> negotiator.execute(slowProbe));
+        assertEquals(true, probing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> negotiator.execute(acceptingApiKey(calls)));
+        waitForWaiter();
+        release.countDown();
+
+        assertEquals("ok", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("ok", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(3L, negotiator.stats().get("probes"));
+        assertEquals(1L, negotiator.stats().get("coalescedNegotiations"));
+    }
+
+    @Test
+    void renegotiatesWhenTheRememberedVariantIsRejected() {
+        AtomicInteger calls = new AtomicInteger();
+        negotiator.execute(acceptingApiKey(calls));
+
+        Function<HttpHeaders, String> rawOnly = headers -> {
+            String auth = headers.getFirst(HttpHeaders.AUTHORIZATION);
+            if (auth != null && auth.equals("Bearer a-shared-secret-long-enough-for-hs256-signing")) {
+                return "ok";
+            }
+            throw unauthorized();
+        };
+
+        assertEquals("ok", negotiator.execute(rawOnly));
+        assertEquals(KnowledgeBaseAuthNegotiator.Variant.RAW, negotiator.getPreferredVariant());
+        assertEquals(1L, negotiator.stats().get("renegotiations"));
+    }
+
+    @Test
+    void reprobesTheRememberedVariantAfterATransientRejection() {
+        AtomicInteger calls = new AtomicInteger();
+        negotiator.execute(acceptingApiKey(calls));
+
+        AtomicInteger apiKeyCalls = new AtomicInteger();
+        Function<HttpHeaders, String> rejectsOnce = headers -> {
+            if (headers.containsKey("x-api-key") && apiKeyCalls.incrementAndGet() > 1) {
+                return "ok";
+            }
+            throw unauthorized();
+        };
+
+        assertEquals("ok", negotiator.execute(rejectsOnce));
+        assertEquals(KnowledgeBaseAuthNegotiator.Variant.X_API_KEY, negotiator.getPreferredVariant());
+        assertEquals(0L, negotiator.stats().get("failedNegotiations"));
+        assertEquals(false, negotiator.stats().get("coolingDown"));
+    }
+
+    @Test
+    void coolsDownOnlyWhenTheRememberedVariantIsRejectedAgain() {
+        AtomicInteger calls = new AtomicInteger();
+        negotiator.execute(acceptingApiKey(calls));
+
+        AtomicInteger rejectedCalls = new AtomicInteger();
+        Function<HttpHeaders, String> rejectsAll = headers -> {
+            rejectedCalls.incrementAndGet();
+            throw unauthorized();
+        };
+
+        assertThrows(HttpClientErrorException.Unauthorized.class, () -> negotiator.execute(rejectsAll));
+        // The remembered variant, then the other two, then the remembered one again
+        assertEquals(4, rejectedCalls.get());
+        assertEquals(1L, negotiator.stats().get("failedNegotiations"));
+        assertEquals(true, negotiator.stats().get("coolingDown"));
+    }
+
+    private static Function<HttpHeaders, String> acceptingApiKey(AtomicInteger calls) {
+        return headers -> {
+            calls.incrementAndGet();
+            if (headers.containsKey("x-api-key")) {
+                return "ok";
+            }
+            throw unauthorized();
+        };
+    }
+
+    private static HttpClientErrorException unauthorized() {
+        return HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized", new HttpHeaders(), new byte[0], null);
+    }
+
+    private void waitForWaiter() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((Long) negotiator.stats().get("coalescedNegotiations") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
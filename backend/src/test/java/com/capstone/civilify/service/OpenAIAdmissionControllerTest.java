@@ -0,0 +1,170 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.service.OpenAIAdmissionController.AdmissionRejectedException;
+import com.capstone.civilify.service.OpenAIAdmissionController.Permit;
+import com.capstone.civilify.service.OpenAIAdmissionController.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenAIAdmissionControllerTest {
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private OpenAIAdmissionController admission;
+
+    @BeforeEach
+    void setUp() {
+        admission = new OpenAIAdmissionController();
+        ReflectionTestUtils.setField(admission, "enabled", true);
+        ReflectionTestUtils.setField(admission, "gliMaxConcurrency", 2);
+        ReflectionTestUtils.setField(admission, "cpaMaxConcurrency", 4);
+        ReflectionTestUtils.setField(admission, "minConcurrency", 1);
+        ReflectionTestUtils.setField(admission, "gliTargetLatencyMs", 60_000L);
+        ReflectionTestUtils.setField(admission, "cpaTargetLatencyMs", 60_000L);
+        ReflectionTestUtils.setField(admission, "queueCapacity", 8);
+        ReflectionTestUtils.setField(admission, "maxWaitMs", 5_000L);
+        ReflectionTestUtils.invokeMethod(admission, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void admitsUpToTheLimitAndHandsReleasedSlotsToWaiters() throws Exception {
+        Permit first = admission.acquire("A", Priority.INTERACTIVE);
+        Permit second = admission.acquire("A", Priority.INTERACTIVE);
+        Future<Permit> third = callers.submit(() -> admission.acquire("A", Priority.INTERACTIVE));
+        awaitWaiting("gli", 1);
+
+        assertFalse(third.isDone());
+        first.close();
+        third.get(2, TimeUnit.SECONDS).close();
+        second.close();
+
+        Map<String, Object> gli = lane("gli");
+        assertEquals(3L, gli.get("admitted"));
+        assertEquals(1L, gli.get("queuedAdmits"));
+        assertEquals(0, gli.get("inFlight"));
+    }
+
+    @Test
+    void lanesAreIndependent() throws Exception {
+        Permit first = admission.acquire("A", Priority.INTERACTIVE);
+        Permit second = admission.acquire("A", Priority.INTERACTIVE);
+
+        try (Permit report = admission.acquire("B", Priority.REPORT)) {
+            assertEquals(1, lane("cpa").get("inFlight"));
+        }
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void servesHigherPriorityWaitersFirst() throws Exception {
+        Permit first = admission.acquire("A", Priority.INTERACTIVE);
+        Permit second = admission.acquire("A", Priority.INTERACTIVE);
+        List<Priority> order = new CopyOnWriteArrayList<>();
+        Future<?> background = callers.submit(() -> admitAndRecord(Priority.BACKGROUND, order));
+        awaitWaiting("gli", 1);
+        Future<?> interactive = callers.submit(() -> admitAndRecord(Priority.INTERACTIVE, order));
+        awaitWaiting("gli", 2);
+
+        first.close();
+        interactive.get(2, TimeUnit.SECONDS);
+        second.close();
+        background.get(2, TimeUnit.SECONDS);
+
+        assertEquals(List.of(Priority.INTERACTIVE, Priority.BACKGROUND), order);
+    }
+
+    @Test
+    void rejectsImmediatelyWhenTheLaneBacklogIsFull() throws Exception {
+        Permit first = admission.acquire("A", Priority.INTERACTIVE);
+        Permit second = admission.acquire("A", Priority.INTERACTIVE);
+        callers.submit(() -> admission.acquire("A", Priority.INTERACTIVE));
+        callers.submit(() -> admission.acquire("A", Priority.INTERACTIVE));
+        awaitWaiting("gli", 2);
+
+        long start = System.nanoTime();
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+            () -> admission.acquire("A", Priority.INTERACTIVE));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000);
+        assertTrue(rejected.getRetryAfterSeconds() >= 1);
+        assertEquals(1L, lane("gli").get("rejected"));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void rejectsWhenNoSlotFreesUpWithinTheWait() throws Exception {
+        ReflectionTestUtils.setField(admission, "maxWaitMs", 50L);
+        Permit first = admission.acquire("A", Priority.INTERACTIVE);
+        Permit second = admission.acquire("A", Priority.INTERACTIVE);
+
+        assertThrows(AdmissionRejectedException.class, () -> admission.acquire("A", Priority.INTERACTIVE));
+
+        Map<String, Object> gli = lane("gli");
+        assertEquals(1L, gli.get("timedOut"));
+        assertEquals(0, gli.get("waiting"));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void throttlingHalvesTheLimit() throws Exception {
+        try (Permit permit = admission.acquire("B", Priority.REPORT)) {
+            permit.markThrottled();
+        }
+
+        assertEquals(2, lane("cpa").get("limit"));
+        assertEquals(1L, lane("cpa").get("throttled"));
+    }
+
+    @Test
+    void disabledAdmitsEverything() throws Exception {
+        ReflectionTestUtils.setField(admission, "enabled", false);
+
+        for (int i = 0; i < 10; i++) {
+            admission.acquire("A", Priority.INTERACTIVE);
+        }
+        assertEquals(0, lane("gli").get("inFlight"));
+    }
+
+    private void admitAndRecord(Priority priority, List<Priority> order) {
+        try (Permit permit = admission.acquire("A", priority)) {
+            order.add(priority);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lane(String name) {
+        return (Map<String, Object>) admission.stats().get(name);
+    }
+
+    private void awaitWaiting(String name, int waiting) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while ((int) lane(name).get("waiting") < waiting) {
+            assertTrue(System.nanoTime() < deadline, "waiters did not queue");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.service.OpenAIAdmissionController.Priority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OpenAIModelRouterTest {
+
+    private OpenAIModelRouter router;
+
+    @BeforeEach
+    void setUp() {
+        router = new OpenAIModelRouter();
+        ReflectionTestUtils.setField(router, "enabled", true);
+        ReflectionTestUtils.setField(router, "gliFastModel", "");
+        ReflectionTestUtils.setField(router, "gliFallbackModel", "fallback");
+        ReflectionTestUtils.setField(router, "cpaFallbackModel", "");
+        ReflectionTestUtils.setField(router, "gliSlaMsPerToken", 40L);
+        ReflectionTestUtils.setField(router, "cpaSlaMsPerToken", 40L);
+        ReflectionTestUtils.setField(router, "minSamples", 5);
+        ReflectionTestUtils.setField(router, "sampleWindowMs", 300_000L);
+        ReflectionTestUtils.setField(router, "probeRatio", 0.0);
+    }
+
+    @Test
+    void failsOverWhenThePrimaryIsSlowPerToken() {
+        record(5, 20_000, 200);
+
+        assertEquals("fallback", route());
+    }
+
+    @Test
+    void longAnswersAtANormalRateStayOnThePrimary() {
+        record(5, 30_000, 1_000);
+
+        assertEquals("primary", route());
+    }
+
+    @Test
+    void ignoresCompletionsTooShortToMeasure() {
+        record(5, 5_000, 10);
+
+        assertEquals("primary", route());
+    }
+
+    @Test
+    void returnsToThePrimaryOnceSlowSamplesAgeOut() throws InterruptedException {
+        ReflectionTestUtils.setField(router, "sampleWindowMs", 50L);
+        record(5, 20_000, 200);
+        assertEquals("fallback", route());
+
+        Thread.sleep(100);
+
+        assertEquals("primary", route());
+    }
+
+    private void record(int times, long latencyMs, int outputTokens) {
+        for (int i = 0; i < times; i++) {
+            router.recordLatency("A", "primary", latencyMs, outputTokens);
+        }
+    }
+
+    private String route() {
+        return router.route("A", "primary", Priority.INTERACTIVE, false).model();
+    }
+}
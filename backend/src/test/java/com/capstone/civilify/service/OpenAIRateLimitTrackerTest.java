@@ -0,0 +1,143 @@
+package com.capstone.civilify.service;
+
+import com.capstone.civilify.service.OpenAIAdmissionController.AdmissionRejectedException;
+import com.capstone.civilify.service.OpenAIRateLimitTracker.Reservation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenAIRateLimitTrackerTest {
+
+    private OpenAIRateLimitTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new OpenAIRateLimitTracker();
+        ReflectionTestUtils.setField(tracker, "enabled", true);
+        ReflectionTestUtils.setField(tracker, "maxWaitMs", 5_000L);
+        ReflectionTestUtils.setField(tracker, "lowWatermark", 0.1);
+        ReflectionTestUtils.setField(tracker, "maxRetries", 2);
+    }
+
+    @Test
+    void parsesOpenAIResetDurations() {
+        assertEquals(20, OpenAIRateLimitTracker.parseDurationMs("20ms"));
+        assertEquals(1000, OpenAIRateLimitTracker.parseDurationMs("1s"));
+        assertEquals(360_000, OpenAIRateLimitTracker.parseDurationMs("6m0s"));
+        assertEquals(3_723_500, OpenAIRateLimitTracker.parseDurationMs("1h2m3.5s"));
+        assertEquals(2, OpenAIRateLimitTracker.parseDurationMs("1.2ms"));
+    }
+
+    @Test
+    void rejectsMissingOrMalformedDurations() {
+        assertEquals(-1, OpenAIRateLimitTracker.parseDurationMs(null));
+        assertEquals(-1, OpenAIRateLimitTracker.parseDurationMs(" "));
+        assertEquals(-1, OpenAIRateLimitTracker.parseDurationMs("soon"));
+    }
+
+    @Test
+    void unknownBudgetDoesNotDelay() throws Exception {
+        assertNoDelay(() -> tracker.reserve("gli", "key", 1_000));
+    }
+
+    @Test
+    void rejectsWhenTokensRunOutBeforeAFarReset() throws Exception {
+        observe(Map.of(
+            "x-ratelimit-remaining-tokens", "100",
+            "x-ratelimit-reset-tokens", "30s"));
+
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+            () -> tracker.reserve("gli", "key", 500));
+        assertEquals(30, rejected.getRetryAfterSeconds());
+    }
+
+    @Test
+    void rejectsWhenRequestsRunOut() throws Exception {
+        observe(Map.of(
+            "x-ratelimit-remaining-requests", "0",
+            "x-ratelimit-reset-requests", "20s"));
+
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+            () -> tracker.reserve("gli", "key", 1));
+        assertEquals(20, rejected.getRetryAfterSeconds());
+    }
+
+    @Test
+    void pacesCallsBelowTheLowWatermark() throws Exception {
+        observe(Map.of(
+            "x-ratelimit-limit-tokens", "10000",
+            "x-ratelimit-remaining-tokens", "500",
+            "x-ratelimit-reset-tokens", "1s"));
+
+        long start = System.nanoTime();
+        tracker.reserve("gli", "key", 100);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // About window * estimate / remaining = 1000 * 100 / 500 ms
+        assertTrue(elapsedMs >= 100 && elapsedMs < 1_000, "paced " + elapsedMs + " ms");
+        assertEquals(1L, budget().get("pacedCalls"));
+    }
+
+    @Test
+    void forgetsAWindowOnceItResets() throws Exception {
+        observe(Map.of(
+            "x-ratelimit-remaining-tokens", "0",
+            "x-ratelimit-reset-tokens", "20ms"));
+        Thread.sleep(50);
+
+        assertNoDelay(() -> tracker.reserve("gli", "key", 1_000));
+    }
+
+    @Test
+    void reservationsCountAgainstTheRemainingBudget() throws Exception {
+        observe(Map.of(
+            "x-ratelimit-remaining-tokens", "1000",
+            "x-ratelimit-reset-tokens", "30s"));
+
+        Reservation held = tracker.reserve("gli", "key", 800);
+        assertThrows(AdmissionRejectedException.class, () -> tracker.reserve("gli", "key", 800));
+
+        tracker.release(held);
+        tracker.release(held);
+        assertEquals(0L, budget().get("reservedTokens"));
+        assertNoDelay(() -> tracker.reserve("gli", "key", 800));
+    }
+
+    @Test
+    void throttlingPausesTheKeyForTheAdvisedDelay() throws Exception {
+        Reservation reservation = tracker.reserve("gli", "key", 10);
+
+        long delayMs = tracker.onThrottled(reservation, Map.of("retry-after-ms", "8000")::get);
+
+        assertEquals(8000, delayMs);
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+            () -> tracker.reserve("gli", "key", 10));
+        assertTrue(rejected.getRetryAfterSeconds() >= 7);
+    }
+
+    private void observe(Map<String, String> headers) throws InterruptedException {
+        tracker.onResponse(tracker.reserve("gli", "key", 0), headers::get);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> budget() {
+        return (Map<String, Object>) tracker.stats().get("gli");
+    }
+
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    private static void assertNoDelay(Call call) throws Exception {
+        long start = System.nanoTime();
+        call.run();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+    }
+}
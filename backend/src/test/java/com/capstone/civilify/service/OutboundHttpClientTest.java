@@ -0,0 +1,71 @@
+package com.capstone.civilify.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundHttpClientTest {
+
+    private OutboundHttpClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = new OutboundHttpClient();
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(client, "maxConnectionsPerHost", 1);
+        ReflectionTestUtils.setField(client, "acquireTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(client, "threads", 2);
+        ReflectionTestUtils.invokeMethod(client, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(client, "shutdown");
+    }
+
+    @Test
+    void sendAsyncFailsAtOnceWhenTheHostHasNoFreePermit() {
+        hostPermits().put("kb.example.test", new Semaphore(0));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("https://kb.example.test/search")).build();
+
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> pending = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(pending.isCompletedExceptionally());
+        assertTrue(elapsedMs < 1000, "sendAsync waited " + elapsedMs + " ms for a permit");
+        ExecutionException failure = assertThrows(ExecutionException.class, pending::get);
+        assertInstanceOf(OutboundHttpClient.HostSaturatedException.class, failure.getCause());
+        assertEquals(1L, client.stats().get("rejected"));
+    }
+
+    @Test
+    void recognisesSaturationWrappedByRestTemplate() {
+        IOException saturated = new OutboundHttpClient.HostSaturatedException(URI.create("https://kb.example.test/"));
+
+        assertTrue(OutboundHttpClient.isHostSaturated(new ResourceAccessException("I/O error", saturated)));
+        assertFalse(OutboundHttpClient.isHostSaturated(new ResourceAccessException("I/O error", new IOException("refused"))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Semaphore> hostPermits() {
+        return (Map<String, Semaphore>) ReflectionTestUtils.getField(client, "hostPermits");
+    }
+}
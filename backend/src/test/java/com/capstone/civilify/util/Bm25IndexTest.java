@@ -0,0 +1,75 @@
+package com.capstone.civilify.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Bm25IndexTest {
+
+    private final Bm25Index index = new Bm25Index(List.of(
+        new Bm25Index.Document("theft")
+            .field("Theft", 3)
+            .field("Article 308 Revised Penal Code", 3)
+            .field("Taking personal property of another without consent and with intent to gain", 1),
+        new Bm25Index.Document("estafa")
+            .field("Estafa", 3)
+            .field("Article 315 Revised Penal Code", 3)
+            .field("Defrauding another by abuse of confidence or deceit causing damage", 1),
+        new Bm25Index.Document("support")
+            .field("Support between spouses", 3)
+            .field("Article 195 Family Code", 3)
+            .field("Spouses are obliged to support each other", 1)
+    ));
+
+    @Test
+    void tokenizesWithoutStopWordsAndSingleLetters() {
+        assertEquals(List.of("article", "308", "theft"), Bm25Index.tokenize("What is Article 308 on a theft?"));
+        assertEquals(List.of("5"), Bm25Index.tokenize("a 5"));
+        assertTrue(Bm25Index.tokenize(null).isEmpty());
+    }
+
+    @Test
+    void ranksTheBestMatchFirst() {
+        List<Bm25Index.Hit> hits = index.search("estafa deceit", 3);
+
+        assertEquals(1, hits.size());
+        assertEquals("estafa", hits.get(0).id());
+        assertEquals(1.0, hits.get(0).coverage(), 1e-9);
+    }
+
+    @Test
+    void weightedFieldsOutrankBodyText() {
+        List<Bm25Index.Hit> hits = index.search("support", 3);
+
+        assertEquals("support", hits.get(0).id());
+    }
+
+    @Test
+    void respectsLimit() {
+        assertEquals(2, index.search("article code", 2).size());
+        assertTrue(index.search("article", 0).isEmpty());
+        assertTrue(index.search(null, 5).isEmpty());
+    }
+
+    @Test
+    void coverageReflectsMissingQueryTerms() {
+        List<Bm25Index.Hit> partial = index.search("theft of a motorcycle", 3);
+        assertEquals("theft", partial.get(0).id());
+        assertTrue(partial.get(0).coverage() < 0.6, "unknown term should weigh heavily");
+
+        // A term shared by every document says little: matching only it gives low coverage
+        List<Bm25Index.Hit> common = index.search("code spouses", 3);
+        Bm25Index.Hit weak = common.stream().filter(hit -> !hit.id().equals("support")).findFirst().orElseThrow();
+        Bm25Index.Hit strong = common.stream().filter(hit -> hit.id().equals("support")).findFirst().orElseThrow();
+        assertEquals(1.0, strong.coverage(), 1e-9);
+        assertTrue(weak.coverage() < 0.3, "matching only a ubiquitous term should not look confident");
+    }
+
+    @Test
+    void emptyIndexReturnsNoHits() {
+        assertTrue(new Bm25Index(List.of()).search("theft", 3).isEmpty());
+    }
+}
@@ -0,0 +1,121 @@
+package com.capstone.civilify.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedCacheTest {
+
+    @Test
+    void returnsWhatWasPut() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 60_000);
+        cache.put("a", "1");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void ignoresNullKeysAndValues() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 60_000);
+        cache.put(null, "1");
+        cache.put("a", null);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void evictsOneOffEntriesBeforeEntriesReadAgain() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 3, 60_000);
+        cache.put("hot", "1");
+        cache.get("hot");
+        cache.put("a", "2");
+        cache.put("b", "3");
+        cache.put("c", "4");
+
+        assertEquals(3, cache.size());
+        assertEquals("1", cache.get("hot"));
+        assertNull(cache.get("a"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    void evictsFromProtectedSegmentWhenProbationIsEmpty() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 2, 60_000);
+        cache.put("a", "1");
+        cache.get("a");
+        cache.put("b", "2");
+        cache.get("b");
+        cache.put("c", "3");
+
+        assertEquals(2, cache.size());
+        assertEquals("3", cache.get("c"));
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 50);
+        cache.put("a", "1");
+        Thread.sleep(80);
+
+        assertNull(cache.get("a"));
+        assertEquals(1L, cache.stats().get("expirations"));
+    }
+
+    @Test
+    void perEntryTtlOverridesDefault() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 60_000);
+        cache.put("short", "1", 30);
+        cache.put("long", "2");
+        Thread.sleep(60);
+
+        assertNull(cache.get("short"));
+        assertEquals("2", cache.get("long"));
+    }
+
+    @Test
+    void puttingAgainRefreshesTtl() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 150);
+        cache.put("a", "1");
+        Thread.sleep(100);
+        cache.put("a", "2");
+        Thread.sleep(100);
+
+        assertEquals("2", cache.get("a"));
+    }
+
+    @Test
+    void lookupReportsStaleEntriesUntilHardTtl() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 60_000, 30);
+        cache.put("a", "1");
+
+        BoundedCache.Lookup<String> fresh = cache.lookup("a");
+        assertEquals("1", fresh.value());
+        assertFalse(fresh.stale());
+
+        Thread.sleep(60);
+        BoundedCache.Lookup<String> stale = cache.lookup("a");
+        assertEquals("1", stale.value());
+        assertTrue(stale.stale());
+        assertEquals(1L, cache.stats().get("staleHits"));
+    }
+
+    @Test
+    void invalidatesMatchingKeys() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 60_000);
+        cache.put("user:1", "a");
+        cache.put("user:2", "b");
+        cache.get("user:2");
+        cache.put("other", "c");
+
+        assertEquals(2, cache.invalidateIf(key -> key.startsWith("user:")));
+        assertEquals(1, cache.size());
+        cache.invalidate("other");
+        assertEquals(0, cache.size());
+    }
+}
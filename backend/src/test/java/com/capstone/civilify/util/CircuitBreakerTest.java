@@ -0,0 +1,135 @@
+package com.capstone.civilify.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_MS = 50;
+
+    private static CircuitBreaker breaker() {
+        return new CircuitBreaker("test", 0.5, 4, 10_000, OPEN_MS, 1,
+            t -> !(t instanceof IllegalArgumentException));
+    }
+
+    @Test
+    void opensOnceFailureRateReachesThreshold() {
+        CircuitBreaker breaker = breaker();
+        breaker.execute(() -> "ok");
+        breaker.execute(() -> "ok");
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        fail(breaker);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitBreaker.CircuitOpenException.class, () -> breaker.execute(() -> "ok"));
+        assertFalse(breaker.isCallPermitted());
+        assertEquals(1L, breaker.stats().get("rejected"));
+    }
+
+    @Test
+    void waitsForMinimumCallsBeforeOpening() {
+        CircuitBreaker breaker = breaker();
+        fail(breaker);
+        fail(breaker);
+        fail(breaker);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void ignoredExceptionsCountAsSuccesses() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IllegalArgumentException.class, () -> breaker.execute(() -> {
+                throw new IllegalArgumentException("caller error");
+            }));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(4, breaker.stats().get("windowSuccesses"));
+    }
+
+    @Test
+    void halfOpenProbeClosesOnSuccess() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_MS + 20);
+
+        assertTrue(breaker.isCallPermitted());
+        assertEquals("ok", breaker.execute(() -> "ok"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void halfOpenProbeReopensOnFailure() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_MS + 20);
+
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void halfOpenAllowsOnlyConfiguredProbes() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_MS + 20);
+
+        breaker.execute(() -> {
+            assertThrows(CircuitBreaker.CircuitOpenException.class, () -> breaker.execute(() -> "second probe"));
+            return "ok";
+        });
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void errorInHalfOpenProbeReleasesTheSlot() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_MS + 20);
+
+        assertThrows(AssertionError.class, () -> breaker.execute(() -> {
+            throw new AssertionError("boom");
+        }));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(OPEN_MS + 20);
+        assertEquals("ok", breaker.execute(() -> "ok"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void checkedExceptionInHalfOpenProbeReleasesTheSlot() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_MS + 20);
+
+        assertThrows(IOException.class, () -> breaker.execute(() -> sneakyThrow(new IOException("boom"))));
+        Thread.sleep(OPEN_MS + 20);
+        assertEquals("ok", breaker.execute(() -> "ok"));
+    }
+
+    private static CircuitBreaker openBreaker() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            fail(breaker);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static void fail(CircuitBreaker breaker) {
+        assertThrows(UncheckedIOException.class, () -> breaker.execute(() -> {
+            throw new UncheckedIOException(new IOException("down"));
+        }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, E extends Throwable> T sneakyThrow(Throwable t) throws E {
+        throw (E) t;
+    }
+}
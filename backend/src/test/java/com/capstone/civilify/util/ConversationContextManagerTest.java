@@ -0,0 +1,176 @@
+package com.capstone.civilify.util;
+
+import com.capstone.civilify.model.ChatConversation;
+import com.capstone.civilify.service.ChatService;
+import com.capstone.civilify.service.ConversationContextManager;
+import com.capstone.civilify.service.ConversationContextManager.ContextWindow;
+import com.capstone.civilify.service.OpenAIService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversationContextManagerTest {
+
+    private static final String SYSTEM_PROMPT = "You are Villy, a legal information assistant.";
+    private static final String USER_MESSAGE = "What happens next?";
+    private static final String TURN = "An earlier turn about the annulment case and its grounds.";
+
+    private ConversationContextManager manager;
+    private ChatService chatService;
+    private OpenAIService openAIService;
+
+    @BeforeEach
+    void setUp() {
+        chatService = mock(ChatService.class);
+        openAIService = mock(OpenAIService.class);
+        manager = new ConversationContextManager();
+        ReflectionTestUtils.setField(manager, "chatService", chatService);
+        ReflectionTestUtils.setField(manager, "openAIService", openAIService);
+        ReflectionTestUtils.setField(manager, "minRecentMessages", 2);
+        ReflectionTestUtils.setField(manager, "summaryEnabled", true);
+        ReflectionTestUtils.setField(manager, "summaryBatchMessages", 4);
+        ReflectionTestUtils.setField(manager, "summaryMaxChars", 2000);
+        budgetForTurns(3, 0);
+        ReflectionTestUtils.invokeMethod(manager, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(manager, "shutdown");
+    }
+
+    @Test
+    void sendsTheWholeConversationWhenItFits() {
+        List<Map<String, String>> history = turns(3);
+
+        ContextWindow window = manager.fit(null, history, SYSTEM_PROMPT, USER_MESSAGE, "A");
+
+        assertSame(history, window.history());
+        assertEquals(SYSTEM_PROMPT, window.systemPrompt());
+        assertEquals(0, window.droppedMessages());
+        assertEquals(TokenEstimator.countPrompt(SYSTEM_PROMPT, history, USER_MESSAGE), window.promptTokens());
+    }
+
+    @Test
+    void keepsTheNewestMessagesThatFitTheBudget() {
+        List<Map<String, String>> history = turns(10);
+
+        ContextWindow window = manager.fit(null, history, SYSTEM_PROMPT, USER_MESSAGE, "A");
+
+        assertEquals(history.subList(7, 10), window.history());
+        assertEquals(7, window.droppedMessages());
+        assertTrue(window.promptTokens() <= gliBudget());
+    }
+
+    @Test
+    void alwaysKeepsTheMinimumRecentMessagesEvenOverBudget() {
+        budgetForTurns(0, 0);
+        List<Map<String, String>> history = turns(5);
+
+        ContextWindow window = manager.fit(null, history, SYSTEM_PROMPT, USER_MESSAGE, "A");
+
+        assertEquals(history.subList(3, 5), window.history());
+        assertEquals(3, window.droppedMessages());
+        assertTrue(window.promptTokens() > gliBudget());
+    }
+
+    @Test
+    void offsetsTheStoredSummaryCountByTheMessagesNotHeld() {
+        budgetForTurns(100, 0);
+        ChatConversation conversation = conversation("Earlier the user asked about grounds for annulment.", 8);
+        List<Map<String, String>> history = turns(6);
+
+        // 5 older messages are not held, so the summary covers the first 3 held ones
+        ContextWindow window = manager.fit(conversation, history, 5, SYSTEM_PROMPT, USER_MESSAGE, "A");
+
+        assertEquals(history.subList(3, 6), window.history());
+        assertEquals(8, window.droppedMessages());
+        assertTrue(window.systemPrompt().startsWith(SYSTEM_PROMPT));
+        assertTrue(window.systemPrompt().contains("Earlier the user asked about grounds for annulment."));
+        verify(openAIService, after(200).never()).updateConversationSummary(any(), anyList());
+    }
+
+    @Test
+    void extendsTheSummaryOnceEnoughMessagesFallOutOfTheWindow() throws Exception {
+        when(openAIService.updateConversationSummary(isNull(), anyList())).thenReturn("The user asked about annulment.");
+        List<Map<String, String>> history = turns(10);
+
+        manager.fit(conversation(null, 0), history, SYSTEM_PROMPT, USER_MESSAGE, "A");
+
+        verify(openAIService, timeout(2000)).updateConversationSummary(null, history.subList(0, 7));
+        verify(chatService, timeout(2000)).updateContextSummary("conv-1", "The user asked about annulment.", 7);
+    }
+
+    @Test
+    void waitsForAFullBatchBeforeSummarizing() throws Exception {
+        List<Map<String, String>> history = turns(6);
+
+        ContextWindow window = manager.fit(conversation(null, 0), history, SYSTEM_PROMPT, USER_MESSAGE, "A");
+
+        assertEquals(3, window.droppedMessages());
+        verify(openAIService, after(200).never()).updateConversationSummary(any(), anyList());
+        verify(chatService, never()).updateContextSummary(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    void usesTheCpaBudgetInModeB() {
+        budgetForTurns(3, 5);
+        List<Map<String, String>> history = turns(10);
+
+        assertEquals(3, manager.fit(null, history, SYSTEM_PROMPT, USER_MESSAGE, "A").history().size());
+        assertEquals(5, manager.fit(null, history, SYSTEM_PROMPT, USER_MESSAGE, "B").history().size());
+    }
+
+    // Budgets that fit exactly the given number of turns next to the system prompt and user message
+    private void budgetForTurns(int gliTurns, int cpaTurns) {
+        int base = TokenEstimator.countPrompt(SYSTEM_PROMPT, null, USER_MESSAGE);
+        int perTurn = TokenEstimator.countMessage(turn(0));
+        ReflectionTestUtils.setField(manager, "gliMaxPromptTokens", base + gliTurns * perTurn);
+        ReflectionTestUtils.setField(manager, "cpaMaxPromptTokens", base + cpaTurns * perTurn);
+    }
+
+    private int gliBudget() {
+        return (int) ReflectionTestUtils.getField(manager, "gliMaxPromptTokens");
+    }
+
+    private static ChatConversation conversation(String summary, int summarizedMessageCount) {
+        ChatConversation conversation = new ChatConversation();
+        conversation.setId("conv-1");
+        conversation.setContextSummary(summary);
+        conversation.setSummarizedMessageCount(summarizedMessageCount);
+        return conversation;
+    }
+
+    private static List<Map<String, String>> turns(int count) {
+        List<Map<String, String>> turns = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            turns.add(Map.of("content", turn(i), "isUserMessage", String.valueOf(i % 2 == 0)));
+        }
+        return turns;
+    }
+
+    // Distinct turns of equal estimated size
+    private static String turn(int index) {
+        return TURN + " " + (char) ('a' + index);
+    }
+}
@@ -0,0 +1,85 @@
+package com.capstone.civilify.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CpaReportTurnPredictorTest {
+
+    // About 100 characters of case facts per turn
+    private static final String FACTS = "My landlord kept my deposit after I moved out in March and says the walls were damaged, "
+        + "which is false.";
+
+    private final CpaReportTurnPredictor predictor = new CpaReportTurnPredictor();
+
+    @Test
+    void explicitAssessmentRequestIsAReportTurn() {
+        assertTrue(predictor.isLikelyReportTurn("Can I sue my landlord?", List.of()));
+        assertTrue(predictor.isLikelyReportTurn("Do I have a case?", null));
+        assertEquals("Explicit assessment request", predictor.getPredictionReason("Please ASSESS MY situation", List.of()));
+    }
+
+    @Test
+    void needsEnoughUserTurnsSinceTheStart() {
+        List<Map<String, String>> twoTurns = conversation(user(FACTS), assistant("When did you move out?"));
+        List<Map<String, String>> threeTurns = conversation(user(FACTS), assistant("When did you move out?"),
+            user(FACTS), assistant("Do you have a receipt?"));
+
+        assertFalse(predictor.isLikelyReportTurn(FACTS, twoTurns));
+        assertTrue(predictor.isLikelyReportTurn(FACTS, threeTurns));
+    }
+
+    @Test
+    void needsEnoughCharactersOfFacts() {
+        List<Map<String, String>> shortTurns = conversation(user("My deposit."), assistant("When did you move out?"),
+            user("In March."), assistant("Do you have a receipt?"));
+
+        assertFalse(predictor.isLikelyReportTurn("Yes, I have one.", shortTurns));
+        assertEquals("No report signals", predictor.getPredictionReason("Yes, I have one.", shortTurns));
+    }
+
+    @Test
+    void doesNotCountTheCurrentMessageTwice() {
+        List<Map<String, String>> history = conversation(user(FACTS), assistant("When did you move out?"), user(FACTS));
+
+        assertFalse(predictor.isLikelyReportTurn(FACTS, history));
+    }
+
+    @Test
+    void aFinishedReportResetsTheCase() {
+        List<Map<String, String>> history = conversation(user(FACTS), assistant("When did you move out?"),
+            user(FACTS), assistant("Do you have a receipt?"), user(FACTS),
+            assistant("Case summary...\nPlausibility Score: 70%"));
+
+        assertFalse(predictor.isLikelyReportTurn("Thanks, that helps.", history));
+        assertEquals("Follow-up to a previous report", predictor.getPredictionReason("Thanks, that helps.", history));
+        // A long new message after the report only counts the turns since it
+        assertFalse(predictor.isLikelyReportTurn(FACTS + " " + FACTS + " " + FACTS, history));
+    }
+
+    @Test
+    void selfContainedQueriesDescribeTheCase() {
+        assertTrue(predictor.isSelfContainedQuery(FACTS));
+        assertFalse(predictor.isSelfContainedQuery("Yes, last March."));
+        assertFalse(predictor.isSelfContainedQuery(null));
+    }
+
+    @SafeVarargs
+    private static List<Map<String, String>> conversation(Map<String, String>... messages) {
+        return new ArrayList<>(List.of(messages));
+    }
+
+    private static Map<String, String> user(String content) {
+        return Map.of("content", content, "isUserMessage", "true");
+    }
+
+    private static Map<String, String> assistant(String content) {
+        return Map.of("content", content, "isUserMessage", "false");
+    }
+}
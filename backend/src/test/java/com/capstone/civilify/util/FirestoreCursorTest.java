@@ -0,0 +1,51 @@
+package com.capstone.civilify.util;
+
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FirestoreCursorTest {
+
+    @Test
+    void roundTripsTimestampAndDocumentId() {
+        FirestoreCursor cursor = new FirestoreCursor(Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 123_456_789), "abc:DEF_123");
+
+        FirestoreCursor decoded = FirestoreCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+        assertArrayEquals(new Object[] {cursor.timestamp(), "abc:DEF_123"}, decoded.values());
+    }
+
+    @Test
+    void encodesAsUrlSafeTextWithoutPadding() {
+        String encoded = new FirestoreCursor(Timestamp.ofTimeSecondsAndNanos(1, 0), "??>>").encode();
+
+        assertFalse(encoded.contains("+") || encoded.contains("/") || encoded.contains("="), encoded);
+    }
+
+    @Test
+    void rejectsCursorsItDidNotProduce() {
+        assertInvalid("not base64!");
+        assertInvalid(encode("no-separators"));
+        assertInvalid(encode("1:2:"));
+        assertInvalid(encode("x:2:doc"));
+        assertInvalid(encode("1:2000000000:doc"));
+        assertInvalid("");
+    }
+
+    private static void assertInvalid(String cursor) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> FirestoreCursor.decode(cursor));
+        assertEquals("Invalid cursor", e.getMessage());
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,89 @@
+package com.capstone.civilify.util;
+
+import com.capstone.civilify.DTO.KnowledgeBaseEntry;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KnowledgeBaseEntryReaderTest {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    @Test
+    void readsFieldsAndSkipsUnknownOnes() throws IOException {
+        KnowledgeBaseEntry entry = readOne("""
+            {"entry_id": "rpc-art-308", "type": "statute", "title": "Theft",
+             "canonical_citation": "RPC Art. 308", "summary": "Taking without consent",
+             "tags": ["theft", 3, "property"], "similarity": 0.82,
+             "embedding": [0.1, 0.2], "meta": {"nested": {"deep": true}}}
+            """, false);
+
+        assertEquals("rpc-art-308", entry.getEntryId());
+        assertEquals("statute", entry.getType());
+        assertEquals("Theft", entry.getTitle());
+        assertEquals("RPC Art. 308", entry.getCanonicalCitation());
+        assertEquals(List.of("theft", "property"), entry.getTags());
+        assertEquals(0.82, entry.getSimilarity(), 1e-9);
+    }
+
+    @Test
+    void prefersSnakeCaseEntryIdThenCamelCaseThenId() throws IOException {
+        assertEquals("snake", readOne("{\"id\": \"plain\", \"entryId\": \"camel\", \"entry_id\": \"snake\"}", false).getEntryId());
+        assertEquals("camel", readOne("{\"id\": \"plain\", \"entryId\": \"camel\", \"entry_id\": \" \"}", false).getEntryId());
+        assertEquals("plain", readOne("{\"id\": \" plain \"}", false).getEntryId());
+        assertNull(readOne("{\"entry_id\": 42}", false).getEntryId());
+    }
+
+    @Test
+    void mergesUrlFieldsInOrderWithoutDuplicates() throws IOException {
+        KnowledgeBaseEntry entry = readOne("""
+            {"url": "https://example.ph/c",
+             "external_relations": [{"url": "https://example.ph/d"}, {"label": "no url"}],
+             "source_urls": ["https://example.ph/b", "not a url", "https://example.ph/a"],
+             "primary_url": " https://example.ph/a "}
+            """, false);
+
+        assertEquals(List.of("https://example.ph/a", "https://example.ph/b", "https://example.ph/c", "https://example.ph/d"),
+            entry.getSourceUrls());
+        assertEquals("https://example.ph/a", entry.getPrimaryUrl());
+    }
+
+    @Test
+    void unwrapsDetailResponsesOnlyWhenAsked() throws IOException {
+        String json = "{\"success\": true, \"entry\": {\"entry_id\": \"inner\"}, \"id\": \"outer\"}";
+
+        assertEquals("inner", readOne(json, true).getEntryId());
+        assertEquals("outer", readOne(json, false).getEntryId());
+    }
+
+    @Test
+    void readsArraysAndToleratesOtherShapes() throws IOException {
+        try (JsonParser p = JSON.createParser("[{\"entry_id\": \"a\"}, null, 5, {\"entry_id\": \"b\"}]")) {
+            p.nextToken();
+            List<KnowledgeBaseEntry> entries = KnowledgeBaseEntryReader.readArray(p);
+            assertEquals(2, entries.size());
+            assertEquals("b", entries.get(1).getEntryId());
+        }
+        try (JsonParser p = JSON.createParser("null")) {
+            p.nextToken();
+            assertTrue(KnowledgeBaseEntryReader.readArray(p).isEmpty());
+        }
+    }
+
+    private static KnowledgeBaseEntry readOne(String json, boolean unwrap) throws IOException {
+        try (JsonParser p = JSON.createParser(json)) {
+            assertEquals(JsonToken.START_OBJECT, p.nextToken());
+            KnowledgeBaseEntry entry = KnowledgeBaseEntryReader.read(p, unwrap);
+            assertNull(p.nextToken());
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.capstone.civilify.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PromptTemplateTest {
+
+    private static final Map<String, String> SOURCES = Map.of(
+        "persona", "You are Villy, a legal assistant.",
+        "rules", "Rules for {{ mode }}:\n{{> footer}}",
+        "footer", "Cite your sources.",
+        "loop", "again {{> loop}}"
+    );
+
+    @Test
+    void fillsSlotsAndExpandsIncludes() {
+        PromptTemplate template = PromptTemplate.compile("system", "{{> persona}}\n{{> rules}}\nUser: {{name}}", SOURCES::get);
+
+        assertEquals(List.of("mode", "name"), template.getSlots());
+        assertEquals("You are Villy, a legal assistant.\nRules for CPA:\nCite your sources.\nUser: Ana",
+            template.render(Map.of("mode", "CPA", "name", "Ana")));
+    }
+
+    @Test
+    void missingValuesRenderAsEmpty() {
+        PromptTemplate template = PromptTemplate.compile("t", "[{{a}}|{{b}}]", SOURCES::get);
+
+        assertEquals("[x|]", template.render(Map.of("a", "x")));
+        assertEquals("[|]", template.render(null));
+    }
+
+    @Test
+    void staticTemplateRendersThePrecompiledString() {
+        PromptTemplate template = PromptTemplate.compile("t", "{{> persona}} {{> footer}}", SOURCES::get);
+
+        assertTrue(template.getSlots().isEmpty());
+        assertSame(template.render(Map.of()), template.render(Map.of("unused", "x")));
+        assertEquals("You are Villy, a legal assistant. Cite your sources.", template.render(null));
+    }
+
+    @Test
+    void reportsStaticPrefixAndLength() {
+        PromptTemplate template = PromptTemplate.compile("t", "abc{{x}}de{{y}}f", SOURCES::get);
+
+        assertEquals(3, template.getStaticPrefixLength());
+        assertEquals(6, template.getStaticLength());
+    }
+
+    @Test
+    void rejectsUnknownAndCyclicIncludes() {
+        IllegalArgumentException unknown = assertThrows(IllegalArgumentException.class,
+            () -> PromptTemplate.compile("t", "{{> missing}}", SOURCES::get));
+        assertTrue(unknown.getMessage().contains("missing"));
+
+        assertThrows(IllegalArgumentException.class, () -> PromptTemplate.compile("t", "{{> loop}}", SOURCES::get));
+    }
+}
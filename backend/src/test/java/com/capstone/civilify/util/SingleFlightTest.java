@@ -0,0 +1,125 @@
+package com.capstone.civilify.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void coalescesConcurrentCallsForTheSameKey() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> first = flight.execute("k", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "value";
+        }, executor);
+        CompletableFuture<String> second = flight.execute("k", () -> {
+            calls.incrementAndGet();
+            return "other";
+        }, executor);
+        assertTrue(flight.isInFlight("k"));
+        release.countDown();
+
+        assertEquals("value", first.get(5, TimeUnit.SECONDS));
+        assertEquals("value", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1L, flight.stats().get("coalesced"));
+    }
+
+    @Test
+    void releasesKeyAfterCompletion() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        flight.execute("k", calls::incrementAndGet, executor).get(5, TimeUnit.SECONDS);
+        waitUntilReleased(flight, "k");
+        assertEquals(2, flight.execute("k", calls::incrementAndGet, executor).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void deliversFailureToEveryWaiter() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = flight.execute("k", () -> {
+            await(release);
+            throw new IllegalStateException("boom");
+        }, executor);
+        CompletableFuture<String> second = flight.execute("k", () -> "unused", executor);
+        release.countDown();
+
+        ExecutionException e1 = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        ExecutionException e2 = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e1.getCause());
+        assertInstanceOf(IllegalStateException.class, e2.getCause());
+    }
+
+    @Test
+    void cancellingOneWaiterDoesNotAffectOthers() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = flight.execute("k", () -> {
+            await(release);
+            return "value";
+        }, executor);
+        CompletableFuture<String> second = flight.execute("k", () -> "unused", executor);
+        first.cancel(true);
+        release.countDown();
+
+        assertEquals("value", second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failsAndReleasesKeyWhenExecutorRejects() {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CompletableFuture<String> result = flight.execute("k", () -> "value", task -> {
+            throw new RejectedExecutionException("full");
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertFalse(flight.isInFlight("k"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The key is removed just after the future completes, on the loader thread
+    private static void waitUntilReleased(SingleFlight<String, ?> flight, String key) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (flight.isInFlight(key) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.capstone.civilify.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenEstimatorTest {
+
+    @Test
+    void emptyTextHasNoTokens() {
+        assertEquals(0, TokenEstimator.count(null));
+        assertEquals(0, TokenEstimator.count(""));
+    }
+
+    @Test
+    void shortWordsAreOneTokenEach() {
+        assertEquals(2, TokenEstimator.count("Hello world"));
+        assertEquals(4, TokenEstimator.count("Hello, world!"));
+    }
+
+    @Test
+    void longWordsSplitByLength() {
+        assertEquals(5, TokenEstimator.count("internationalization"));
+    }
+
+    @Test
+    void contractionsAndDigitGroupsSplitLikeTheTokenizer() {
+        assertEquals(2, TokenEstimator.count("don't"));
+        assertEquals(2, TokenEstimator.count("12345"));
+    }
+
+    @Test
+    void newlineRunsAndMarkdownPairsMerge() {
+        assertEquals(4, TokenEstimator.count("a\n\n\nb"));
+        assertEquals(3, TokenEstimator.count("**bold**"));
+    }
+
+    @Test
+    void promptAddsMessageFramingAndReplyPriming() {
+        Map<String, String> empty = new HashMap<>();
+        empty.put("content", null);
+        List<Map<String, String>> history = List.of(Map.of("content", "don't", "isUserMessage", "true"), empty);
+
+        assertEquals(4, TokenEstimator.countMessage(""));
+        assertEquals(6 + 6 + 4 + 6 + 3, TokenEstimator.countPrompt("Hello world", history, "12345"));
+        assertEquals(6 + 4 + 3, TokenEstimator.countPrompt("Hello world", null, null));
+    }
+}
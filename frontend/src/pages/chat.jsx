@@ -93,6 +93,7 @@ const fetchGPTResponse = async (
         conversationId: conversationId,
         userId: userId || (user ? user.uid : null),
         userEmail: userEmail || (user ? user.email : null),
+        userName: user ? user.username : null,
       },
       { signal: currentAbortController.signal }
     );
@@ -1394,7 +1395,7 @@ const Chat = () => {
           // Log the result based on whether conversations existed
           if (response.data.conversationsExisted) {
             console.log(
-              `Deleted ${response.data.deletedCount} previous conversations for user ${userData.email}`
+              `Deleting previous conversations for user ${userData.email} (job ${response.data.jobId})`
             );
           } else {
             console.log("No previous conversations found to delete");